@@ -0,0 +1,84 @@
+/*
+ * This software Copyright by the RPTools.net development team, and
+ * licensed under the Affero GPL Version 3 or, at your option, any later
+ * version.
+ *
+ * MapTool Source Code is distributed in the hope that it will be
+ * useful, but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ *
+ * You should have received a copy of the GNU Affero General Public
+ * License * along with this source Code.  If not, please visit
+ * <http://www.gnu.org/licenses/> and specifically the Affero license
+ * text at <http://www.gnu.org/licenses/agpl.html>.
+ */
+package net.rptools.maptool.benchmark;
+
+import java.awt.geom.Area;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import net.rptools.maptool.client.ui.zone.FogUtil;
+import net.rptools.maptool.client.ui.zone.vbl.NodedTopology;
+import net.rptools.maptool.model.ExposedAreaMetaData;
+import net.rptools.maptool.model.Zone;
+import net.rptools.maptool.model.topology.MaskTopology;
+import net.rptools.maptool.model.topology.VisibilityType;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Measures accumulating exposed fog of war, stored either as an {@link Area} (a resolution of 0)
+ * or as a tiled bit mask, and turning it back into an area for rendering. The exposures are the
+ * real vision areas of tokens walking through a map of rooms.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class ExposureBenchmark {
+
+  private static final int ROOMS = 400;
+
+  /** The range of sight, in cells. */
+  private static final int RANGE_CELLS = 8;
+
+  @Param({"0", "10"})
+  public int resolution;
+
+  @Param({"50", "200"})
+  public int exposures;
+
+  private List<Area> visibleAreas;
+
+  @Setup(Level.Trial)
+  public void setUp() {
+    var masks =
+        MaskTopology.createFromLegacy(Zone.TopologyType.WALL_VBL, SyntheticMaps.pillars(ROOMS));
+    var topology = NodedTopology.prepare(SyntheticMaps.walls(ROOMS), masks);
+    visibleAreas =
+        SyntheticMaps.origins(ROOMS, exposures).stream()
+            .map(
+                origin ->
+                    FogUtil.calculateVisibility(
+                        VisibilityType.Sight,
+                        origin,
+                        SyntheticMaps.circle(origin, RANGE_CELLS * SyntheticMaps.CELL_SIZE),
+                        topology))
+            .toList();
+  }
+
+  @Benchmark
+  public Area expose() {
+    var exposed = ExposedAreaMetaData.create(resolution);
+    for (var area : visibleAreas) {
+      exposed.addToExposedAreaHistory(area);
+    }
+    return exposed.getExposedAreaHistory();
+  }
+}
@@ -0,0 +1,90 @@
+/*
+ * This software Copyright by the RPTools.net development team, and
+ * licensed under the Affero GPL Version 3 or, at your option, any later
+ * version.
+ *
+ * MapTool Source Code is distributed in the hope that it will be
+ * useful, but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ *
+ * You should have received a copy of the GNU Affero General Public
+ * License * along with this source Code.  If not, please visit
+ * <http://www.gnu.org/licenses/> and specifically the Affero license
+ * text at <http://www.gnu.org/licenses/agpl.html>.
+ */
+package net.rptools.maptool.benchmark;
+
+import java.util.concurrent.TimeUnit;
+import net.rptools.maptool.client.MapTool;
+import net.rptools.maptool.client.MapToolLineParser;
+import net.rptools.maptool.client.MapToolMacroContext;
+import net.rptools.maptool.client.MapToolVariableResolver;
+import net.rptools.maptool.model.Token;
+import net.rptools.parser.ParserException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Measures running macros through {@link MapToolLineParser}: a single roll, a loop, JSON
+ * manipulation and a chain of calls into a large macro library on a token.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class MacroParserBenchmark {
+
+  /** The number of macros each call into the library runs. */
+  private static final int CALL_DEPTH = 10;
+
+  @Param({"100", "1000"})
+  public int librarySize;
+
+  private MapToolLineParser parser;
+  private Token library;
+  private String libraryCall;
+
+  @Setup(Level.Trial)
+  public void setUp() {
+    parser = MapTool.getParser();
+    library = SyntheticMaps.macroLibrary(librarySize, CALL_DEPTH);
+    libraryCall = "[macro(\"macro" + (librarySize - 1) + "@TOKEN\"): 0]";
+  }
+
+  private String parseLine(String line, Token tokenInContext) throws ParserException {
+    var context = new MapToolMacroContext("benchmark", "benchmark", true);
+    return parser.parseLine(
+        new MapToolVariableResolver(tokenInContext), tokenInContext, line, context);
+  }
+
+  @Benchmark
+  public String roll() throws ParserException {
+    return parseLine("[r: 1d20 + 5]", null);
+  }
+
+  @Benchmark
+  public String loop() throws ParserException {
+    return parseLine(
+        "[h: total = 0][h, count(100): total = total + roll(1, 6)][r: total]", null);
+  }
+
+  @Benchmark
+  public String json() throws ParserException {
+    return parseLine(
+        "[h: obj = json.set('{}', 'a', 1, 'b', json.append('[]', 1, 2, 3))]"
+            + "[h: obj = json.path.set(obj, '$.b[1]', 5)]"
+            + "[r: json.get(obj, 'b')]",
+        null);
+  }
+
+  @Benchmark
+  public String libraryCall() throws ParserException {
+    return parseLine(libraryCall, library);
+  }
+}
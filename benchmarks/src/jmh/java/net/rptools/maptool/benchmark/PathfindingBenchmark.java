@@ -0,0 +1,142 @@
+/*
+ * This software Copyright by the RPTools.net development team, and
+ * licensed under the Affero GPL Version 3 or, at your option, any later
+ * version.
+ *
+ * MapTool Source Code is distributed in the hope that it will be
+ * useful, but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ *
+ * You should have received a copy of the GNU Affero General Public
+ * License * along with this source Code.  If not, please visit
+ * <http://www.gnu.org/licenses/> and specifically the Affero license
+ * text at <http://www.gnu.org/licenses/agpl.html>.
+ */
+package net.rptools.maptool.benchmark;
+
+import java.awt.Rectangle;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import net.rptools.maptool.client.ui.zone.vbl.MovementBlockingTopology;
+import net.rptools.maptool.client.walker.DistanceField;
+import net.rptools.maptool.client.walker.WalkerMetric;
+import net.rptools.maptool.client.walker.astar.AStarSquareEuclideanWalker;
+import net.rptools.maptool.model.CellPoint;
+import net.rptools.maptool.model.Path;
+import net.rptools.maptool.model.Token;
+import net.rptools.maptool.model.Zone;
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.GeometryFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * Measures movement pathfinding with the A* walker of a square grid through maps of walled rooms,
+ * where movement is blocked by the walls and pillars.
+ *
+ * <p>Paths only prepare the topology themselves on maps that are shown, and there is no renderer
+ * when running headless, so the topology is prepared before each path is measured. The setup checks
+ * that paths go around the walls. Distance fields always prepare the topology, which is measured.
+ *
+ * <p>A new walker is used for each path, as the walker caches blocked moves between calls.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class PathfindingBenchmark {
+
+  private static final Set<Token.TerrainModifierOperation> NO_IGNORED_TERRAIN =
+      Set.of(Token.TerrainModifierOperation.NONE);
+
+  @Param({"25", "100"})
+  public int rooms;
+
+  private final GeometryFactory geometryFactory = new GeometryFactory();
+
+  private Zone zone;
+  private CellPoint start;
+  private CellPoint goal;
+  private AStarSquareEuclideanWalker walker;
+
+  @Setup(Level.Trial)
+  public void setUp() {
+    zone = SyntheticMaps.zone(rooms, 0);
+    // From inside the first room to inside the last.
+    int cells = SyntheticMaps.roomsPerSide(rooms) * SyntheticMaps.ROOM_CELLS;
+    start = new CellPoint(1, 1);
+    goal = new CellPoint(cells - 2, cells - 2);
+
+    // A path that ignores the topology crosses walls, one that avoids it must go around them.
+    try (var open = new AStarSquareEuclideanWalker(zone, WalkerMetric.ONE_TWO_ONE)) {
+      if (!crossesTopology(path(open))) {
+        throw new IllegalStateException("The walls are not in the way of the path");
+      }
+    }
+    try (var walled = new AStarSquareEuclideanWalker(zone, WalkerMetric.ONE_TWO_ONE)) {
+      walled.prepareTopology();
+      if (crossesTopology(path(walled))) {
+        throw new IllegalStateException("The path crosses the walls");
+      }
+    }
+  }
+
+  @Setup(Level.Invocation)
+  public void createWalker() {
+    walker = new AStarSquareEuclideanWalker(zone, WalkerMetric.ONE_TWO_ONE);
+    walker.prepareTopology();
+  }
+
+  @TearDown(Level.Invocation)
+  public void closeWalker() {
+    walker.close();
+  }
+
+  private Path<CellPoint> path(AStarSquareEuclideanWalker walker) {
+    walker.setWaypoints(start, start);
+    walker.replaceLastWaypoint(goal, true, NO_IGNORED_TERRAIN, null);
+    return walker.getPath();
+  }
+
+  /** Returns if a step of a path, from cell centre to cell centre, crosses the topology. */
+  private boolean crossesTopology(Path<CellPoint> path) {
+    var topology =
+        new MovementBlockingTopology(
+            zone.getWalls(), zone.getMasks(EnumSet.allOf(Zone.TopologyType.class), null));
+    List<CellPoint> cells = path.getCellPath();
+    for (int i = 1; i < cells.size(); i++) {
+      Rectangle from = zone.getGrid().getBounds(cells.get(i - 1));
+      Rectangle to = zone.getGrid().getBounds(cells.get(i));
+      var step =
+          geometryFactory.createLineString(
+              new Coordinate[] {
+                new Coordinate(from.getCenterX(), from.getCenterY()),
+                new Coordinate(to.getCenterX(), to.getCenterY())
+              });
+      if (topology.intersects(step)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  @Benchmark
+  public Path<CellPoint> path() {
+    return path(walker);
+  }
+
+  @Benchmark
+  public DistanceField distanceField() {
+    return walker.calculateDistanceField(
+        List.of(start), List.of(), 4 * SyntheticMaps.ROOM_CELLS, NO_IGNORED_TERRAIN, null);
+  }
+}
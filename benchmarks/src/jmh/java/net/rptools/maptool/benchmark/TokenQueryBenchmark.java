@@ -0,0 +1,105 @@
+/*
+ * This software Copyright by the RPTools.net development team, and
+ * licensed under the Affero GPL Version 3 or, at your option, any later
+ * version.
+ *
+ * MapTool Source Code is distributed in the hope that it will be
+ * useful, but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ *
+ * You should have received a copy of the GNU Affero General Public
+ * License * along with this source Code.  If not, please visit
+ * <http://www.gnu.org/licenses/> and specifically the Affero license
+ * text at <http://www.gnu.org/licenses/agpl.html>.
+ */
+package net.rptools.maptool.benchmark;
+
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import net.rptools.maptool.client.functions.TokenLocationFunctions;
+import net.rptools.maptool.client.functions.TokenQueryPlanner;
+import net.rptools.maptool.model.Token;
+import net.rptools.maptool.model.Zone;
+import net.rptools.parser.ParserException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Measures the range condition of {@code getTokens()}: the way it used to be applied, testing every
+ * token and keeping the matches with {@link List#retainAll} on a {@link LinkedList}, against the
+ * {@link TokenQueryPlanner} that only tests the tokens near the source in the token index.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class TokenQueryBenchmark {
+
+  /** The number of tokens the queries are made from, in turn. */
+  private static final int SOURCES = 64;
+
+  /** The range of the queries in map units, six cells on the default grid. */
+  private static final int RANGE = 30;
+
+  private static final String METRIC = "ONE_TWO_ONE";
+
+  @Param({"1000", "5000", "20000"})
+  public int tokens;
+
+  private Zone zone;
+  private List<Token> allTokens;
+  private int next;
+
+  @Setup(Level.Trial)
+  public void setUp() throws ParserException {
+    // Four tokens a room gives each query a handful of matches.
+    zone = SyntheticMaps.zone(tokens / 4, tokens);
+    allTokens = zone.getAllTokens();
+    // Build the index before measuring, and check both ways agree while doing it.
+    for (Token source : allTokens.subList(0, SOURCES)) {
+      if (!retainAll(source).equals(planned(source))) {
+        throw new IllegalStateException("Planned query differs from retainAll");
+      }
+    }
+  }
+
+  private Token nextSource() {
+    next = (next + 1) % SOURCES;
+    return allTokens.get(next);
+  }
+
+  private List<Token> retainAll(Token source) throws ParserException {
+    List<Token> tokenList = new LinkedList<>(allTokens);
+    List<Token> inrange = new LinkedList<>();
+    for (Token targetToken : tokenList) {
+      double distance = TokenLocationFunctions.getDistance(zone, source, targetToken, true, METRIC);
+      if (distance <= RANGE && distance >= 0 && source != targetToken) {
+        inrange.add(targetToken);
+      }
+    }
+    tokenList.retainAll(inrange);
+    return tokenList;
+  }
+
+  private List<Token> planned(Token source) throws ParserException {
+    var conditions = List.of(TokenQueryPlanner.range(zone, source, 0, RANGE, true, METRIC));
+    return TokenQueryPlanner.filter(zone, allTokens, conditions);
+  }
+
+  @Benchmark
+  public List<Token> retainAll() throws ParserException {
+    return retainAll(nextSource());
+  }
+
+  @Benchmark
+  public List<Token> planned() throws ParserException {
+    return planned(nextSource());
+  }
+}
@@ -0,0 +1,98 @@
+/*
+ * This software Copyright by the RPTools.net development team, and
+ * licensed under the Affero GPL Version 3 or, at your option, any later
+ * version.
+ *
+ * MapTool Source Code is distributed in the hope that it will be
+ * useful, but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ *
+ * You should have received a copy of the GNU Affero General Public
+ * License * along with this source Code.  If not, please visit
+ * <http://www.gnu.org/licenses/> and specifically the Affero license
+ * text at <http://www.gnu.org/licenses/agpl.html>.
+ */
+package net.rptools.maptool.benchmark;
+
+import java.awt.geom.Area;
+import java.awt.geom.Point2D;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import net.rptools.maptool.client.ui.zone.FogUtil;
+import net.rptools.maptool.client.ui.zone.vbl.NodedTopology;
+import net.rptools.maptool.model.Zone;
+import net.rptools.maptool.model.topology.MaskTopology;
+import net.rptools.maptool.model.topology.VisibilityType;
+import net.rptools.maptool.model.topology.WallTopology;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Measures vision and light calculation with {@link FogUtil#calculateVisibility} on maps with a
+ * growing number of walled rooms, and the preparation of the topology it runs against.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class VisibilityBenchmark {
+
+  /** The number of points that are looked from in turn. */
+  private static final int ORIGINS = 64;
+
+  /** The range of sight and light, in cells. */
+  private static final int RANGE_CELLS = 12;
+
+  @Param({"100", "1000"})
+  public int rooms;
+
+  private WallTopology walls;
+  private List<MaskTopology> masks;
+  private NodedTopology topology;
+  private List<Point2D> origins;
+  private List<Area> visions;
+  private int next;
+
+  @Setup(Level.Trial)
+  public void setUp() {
+    walls = SyntheticMaps.walls(rooms);
+    masks = MaskTopology.createFromLegacy(Zone.TopologyType.WALL_VBL, SyntheticMaps.pillars(rooms));
+    topology = NodedTopology.prepare(walls, masks);
+    origins = SyntheticMaps.origins(rooms, ORIGINS);
+    visions =
+        origins.stream()
+            .map(o -> SyntheticMaps.circle(o, RANGE_CELLS * SyntheticMaps.CELL_SIZE))
+            .toList();
+  }
+
+  private int nextOrigin() {
+    next = (next + 1) % ORIGINS;
+    return next;
+  }
+
+  @Benchmark
+  public Area sight() {
+    int i = nextOrigin();
+    return FogUtil.calculateVisibility(
+        VisibilityType.Sight, origins.get(i), visions.get(i), topology);
+  }
+
+  @Benchmark
+  public Area light() {
+    int i = nextOrigin();
+    return FogUtil.calculateVisibility(
+        VisibilityType.Light, origins.get(i), visions.get(i), topology);
+  }
+
+  @Benchmark
+  @OutputTimeUnit(TimeUnit.MILLISECONDS)
+  public NodedTopology prepareTopology() {
+    return NodedTopology.prepare(walls, masks);
+  }
+}
@@ -0,0 +1,112 @@
+/*
+ * This software Copyright by the RPTools.net development team, and
+ * licensed under the Affero GPL Version 3 or, at your option, any later
+ * version.
+ *
+ * MapTool Source Code is distributed in the hope that it will be
+ * useful, but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ *
+ * You should have received a copy of the GNU Affero General Public
+ * License * along with this source Code.  If not, please visit
+ * <http://www.gnu.org/licenses/> and specifically the Affero license
+ * text at <http://www.gnu.org/licenses/agpl.html>.
+ */
+package net.rptools.maptool.client.functions.json;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonPrimitive;
+import com.jayway.jsonpath.Configuration;
+import com.jayway.jsonpath.JsonPath;
+import com.jayway.jsonpath.spi.json.GsonJsonProvider;
+import com.jayway.jsonpath.spi.mapper.GsonMappingProvider;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Compares reading and updating a document through JSONPath, compiling the path each time and
+ * updating a deep copy as the json.path.* functions used to, with the cached paths of {@link
+ * JsonPathCache} and the copy on write updates of {@link JsonPathCopier}, for simple paths and a
+ * filter path. It lives in the package of the json functions to reach the package private classes.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class JsonPathBenchmark {
+
+  private static final Configuration config =
+      Configuration.builder()
+          .jsonProvider(new GsonJsonProvider())
+          .mappingProvider(new GsonMappingProvider())
+          .build();
+
+  private static final JsonPrimitive value = new JsonPrimitive(1);
+
+  @Param({"$.stats.hp", "$.items[12].name", "$.items[?(@.weight > 5)].weight"})
+  public String path;
+
+  /** The number of items in the document. */
+  @Param({"50", "1000"})
+  public int items;
+
+  private JsonElement document;
+
+  /** Creates a document similar to the property objects kept on tokens by frameworks. */
+  @Setup(Level.Trial)
+  public void setUp() {
+    JsonObject root = new JsonObject();
+    JsonArray list = new JsonArray();
+    for (int i = 0; i < items; i++) {
+      JsonObject item = new JsonObject();
+      item.addProperty("name", "item" + i);
+      item.addProperty("weight", i % 7);
+      list.add(item);
+    }
+    JsonObject stats = new JsonObject();
+    stats.addProperty("hp", 42);
+    stats.addProperty("ac", 15);
+    root.add("stats", stats);
+    root.add("items", list);
+    document = root;
+  }
+
+  @Benchmark
+  public Object readUncached() {
+    return JsonPath.using(config).parse(document).read(path);
+  }
+
+  @Benchmark
+  public Object readCached() {
+    return JsonPathCache.read(config, document, path);
+  }
+
+  @Benchmark
+  public JsonElement setOnDeepCopy() {
+    return JsonPath.using(config).parse(document.deepCopy()).set(path, value).json();
+  }
+
+  @Benchmark
+  public JsonElement setCopyOnWrite() {
+    return JsonPathCopier.set(config, document, JsonPathCache.get(path), value);
+  }
+
+  @Benchmark
+  public JsonElement deleteOnDeepCopy() {
+    return JsonPath.using(config).parse(document.deepCopy()).delete(path).json();
+  }
+
+  @Benchmark
+  public JsonElement deleteCopyOnWrite() {
+    return JsonPathCopier.delete(config, document, JsonPathCache.get(path));
+  }
+}
@@ -0,0 +1,107 @@
+/*
+ * This software Copyright by the RPTools.net development team, and
+ * licensed under the Affero GPL Version 3 or, at your option, any later
+ * version.
+ *
+ * MapTool Source Code is distributed in the hope that it will be
+ * useful, but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ *
+ * You should have received a copy of the GNU Affero General Public
+ * License * along with this source Code.  If not, please visit
+ * <http://www.gnu.org/licenses/> and specifically the Affero license
+ * text at <http://www.gnu.org/licenses/agpl.html>.
+ */
+package net.rptools.maptool.util;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+import net.rptools.maptool.benchmark.SyntheticMaps;
+import net.rptools.maptool.model.Campaign;
+import net.rptools.maptool.model.Zone;
+import net.rptools.maptool.server.proto.ZoneDto;
+import net.rptools.maptool.util.PersistenceUtil.PersistedCampaign;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * Measures converting maps to and from their protobuf DTOs, and writing and reading the campaign
+ * format {@link PersistenceUtil} saves campaigns in. It is in this package to reach {@link
+ * CampaignProtobufFormat}, the saving of campaign files needs a running client.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class PersistenceBenchmark {
+
+  private static final int ZONES = 4;
+
+  private static final int ROOMS = 100;
+
+  @Param({"100", "2000"})
+  public int tokens;
+
+  private Zone zone;
+  private ZoneDto zoneDto;
+  private PersistedCampaign persistedCampaign;
+  private byte[] campaignBytes;
+  private File mapFile;
+
+  @Setup(Level.Trial)
+  public void setUp() throws IOException {
+    Campaign campaign = SyntheticMaps.campaign(ZONES, ROOMS, tokens);
+    zone = campaign.getZones().getFirst();
+    zoneDto = zone.toDto();
+
+    persistedCampaign = new PersistedCampaign();
+    persistedCampaign.campaign = campaign;
+    campaignBytes = writeCampaign();
+
+    mapFile = Files.createTempFile("benchmark", ".rpmap").toFile();
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() {
+    mapFile.delete();
+  }
+
+  @Benchmark
+  public ZoneDto zoneToDto() {
+    return zone.toDto();
+  }
+
+  @Benchmark
+  public Zone zoneFromDto() {
+    return Zone.fromDto(zoneDto);
+  }
+
+  @Benchmark
+  public byte[] writeCampaign() throws IOException {
+    var out = new ByteArrayOutputStream();
+    CampaignProtobufFormat.write(persistedCampaign, out);
+    return out.toByteArray();
+  }
+
+  @Benchmark
+  public PersistedCampaign readCampaign() throws IOException {
+    return CampaignProtobufFormat.read(new ByteArrayInputStream(campaignBytes));
+  }
+
+  @Benchmark
+  public File saveMap() throws IOException {
+    PersistenceUtil.saveMap(zone, mapFile);
+    return mapFile;
+  }
+}
@@ -0,0 +1,252 @@
+/*
+ * This software Copyright by the RPTools.net development team, and
+ * licensed under the Affero GPL Version 3 or, at your option, any later
+ * version.
+ *
+ * MapTool Source Code is distributed in the hope that it will be
+ * useful, but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ *
+ * You should have received a copy of the GNU Affero General Public
+ * License * along with this source Code.  If not, please visit
+ * <http://www.gnu.org/licenses/> and specifically the Affero license
+ * text at <http://www.gnu.org/licenses/agpl.html>.
+ */
+package net.rptools.maptool.benchmark;
+
+import java.awt.Rectangle;
+import java.awt.geom.Area;
+import java.awt.geom.Ellipse2D;
+import java.awt.geom.Point2D;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import net.rptools.maptool.model.Campaign;
+import net.rptools.maptool.model.CampaignFactory;
+import net.rptools.maptool.model.GridFactory;
+import net.rptools.maptool.model.MacroButtonProperties;
+import net.rptools.maptool.model.Token;
+import net.rptools.maptool.model.Zone;
+import net.rptools.maptool.model.topology.WallTopology;
+
+/**
+ * Builds the synthetic maps and campaigns the benchmarks and the load test run against. Everything
+ * is generated from a fixed seed so every run, on every commit, measures the same content.
+ *
+ * <p>Maps are a square block of rooms. Each room is walled on all four sides with a door in one of
+ * them, and a pillar of mask topology stands in every fourth room, so both kinds of topology are
+ * exercised.
+ */
+public final class SyntheticMaps {
+
+  /** The seed used for all generated content. */
+  public static final long SEED = 0x6d61_7074_6f6f_6cL;
+
+  /** The size of a grid cell in map units. */
+  public static final int CELL_SIZE = 50;
+
+  /** The width and height of a room in cells, including its walls. */
+  public static final int ROOM_CELLS = 6;
+
+  private SyntheticMaps() {}
+
+  /**
+   * Returns the number of rooms along each side of a map with at least {@code rooms} rooms.
+   *
+   * @param rooms the minimum number of rooms.
+   * @return the number of rooms along a side.
+   */
+  public static int roomsPerSide(int rooms) {
+    return (int) Math.ceil(Math.sqrt(rooms));
+  }
+
+  /**
+   * Returns the width and height of a map with at least {@code rooms} rooms in map units.
+   *
+   * @param rooms the minimum number of rooms.
+   * @return the extent of the map.
+   */
+  public static int extent(int rooms) {
+    return roomsPerSide(rooms) * ROOM_CELLS * CELL_SIZE;
+  }
+
+  /**
+   * Creates the walls of a block of rooms.
+   *
+   * @param rooms the minimum number of rooms.
+   * @return the walls.
+   */
+  public static WallTopology walls(int rooms) {
+    var random = new Random(SEED);
+    var walls = new WallTopology();
+    int side = roomsPerSide(rooms);
+    int roomSize = ROOM_CELLS * CELL_SIZE;
+    for (int row = 0; row < side; row++) {
+      for (int column = 0; column < side; column++) {
+        double x = column * roomSize;
+        double y = row * roomSize;
+        // Walk around the room from the door, so the door is the gap between the first and last
+        // vertex.
+        var corners =
+            List.of(
+                new Point2D.Double(x, y),
+                new Point2D.Double(x + roomSize, y),
+                new Point2D.Double(x + roomSize, y + roomSize),
+                new Point2D.Double(x, y + roomSize));
+        int doorSide = random.nextInt(4);
+        var doorStart = corners.get(doorSide);
+        var doorEnd = corners.get((doorSide + 1) % 4);
+        var start = interpolate(doorStart, doorEnd, 0.6);
+        var end = interpolate(doorStart, doorEnd, 0.4);
+        walls.string(
+            start,
+            builder -> {
+              for (int i = 1; i <= 4; i++) {
+                builder.push(corners.get((doorSide + i) % 4));
+              }
+              builder.push(end);
+            });
+      }
+    }
+    return walls;
+  }
+
+  /**
+   * Creates the pillars of mask topology that stand in every fourth room.
+   *
+   * @param rooms the minimum number of rooms.
+   * @return the area covered by pillars.
+   */
+  public static Area pillars(int rooms) {
+    var pillars = new Area();
+    int side = roomsPerSide(rooms);
+    int roomSize = ROOM_CELLS * CELL_SIZE;
+    for (int row = 0; row < side; row += 2) {
+      for (int column = 0; column < side; column += 2) {
+        int x = column * roomSize + roomSize / 2 - CELL_SIZE / 2;
+        int y = row * roomSize + roomSize / 2 - CELL_SIZE / 2;
+        pillars.add(new Area(new Rectangle(x, y, CELL_SIZE, CELL_SIZE)));
+      }
+    }
+    return pillars;
+  }
+
+  /**
+   * Creates a square grid map of rooms with tokens scattered over it. A tenth of the tokens have
+   * sight.
+   *
+   * @param rooms the minimum number of rooms.
+   * @param tokens the number of tokens.
+   * @return the map.
+   */
+  public static Zone zone(int rooms, int tokens) {
+    var random = new Random(SEED);
+    var zone = new Zone();
+    zone.setName("Synthetic " + rooms + " rooms");
+    zone.setGrid(GridFactory.createGrid(GridFactory.SQUARE));
+    zone.replaceWalls(walls(rooms));
+    zone.updateMaskTopology(pillars(rooms), false, Zone.TopologyType.WALL_VBL);
+
+    int extent = extent(rooms);
+    for (int i = 0; i < tokens; i++) {
+      var token = new Token();
+      token.setName("Token " + i);
+      token.setX(random.nextInt(extent));
+      token.setY(random.nextInt(extent));
+      token.setHasSight(i % 10 == 0);
+      token.setProperty("HP", Integer.toString(random.nextInt(100)));
+      zone.putToken(token);
+    }
+    return zone;
+  }
+
+  /**
+   * Creates a campaign with several maps of rooms and tokens.
+   *
+   * @param zones the number of maps.
+   * @param rooms the minimum number of rooms on each map.
+   * @param tokens the number of tokens on each map.
+   * @return the campaign.
+   */
+  public static Campaign campaign(int zones, int rooms, int tokens) {
+    var campaign = CampaignFactory.createBasicCampaign();
+    for (var zone : List.copyOf(campaign.getZones())) {
+      campaign.removeZone(zone.getId());
+    }
+    for (int i = 0; i < zones; i++) {
+      campaign.putZone(zone(rooms, tokens));
+    }
+    return campaign;
+  }
+
+  /**
+   * Returns points to look or shine from, spread over a map of rooms. Points are never on a wall.
+   *
+   * @param rooms the minimum number of rooms.
+   * @param count the number of points.
+   * @return the points.
+   */
+  public static List<Point2D> origins(int rooms, int count) {
+    var random = new Random(SEED);
+    int side = roomsPerSide(rooms);
+    int roomSize = ROOM_CELLS * CELL_SIZE;
+    var origins = new ArrayList<Point2D>(count);
+    for (int i = 0; i < count; i++) {
+      // Keep clear of the walls and of the pillar in the middle of the room.
+      double x = random.nextInt(side) * roomSize + CELL_SIZE + random.nextInt(CELL_SIZE);
+      double y = random.nextInt(side) * roomSize + CELL_SIZE + random.nextInt(CELL_SIZE);
+      origins.add(new Point2D.Double(x + 0.5, y + 0.5));
+    }
+    return origins;
+  }
+
+  /**
+   * Returns a circular vision or light area around a point.
+   *
+   * @param origin the centre of the area.
+   * @param radius the radius in map units.
+   * @return the area.
+   */
+  public static Area circle(Point2D origin, double radius) {
+    return new Area(
+        new Ellipse2D.Double(
+            origin.getX() - radius, origin.getY() - radius, radius * 2, radius * 2));
+  }
+
+  /**
+   * Creates a token carrying a library of macros, named <code>macro0</code> to <code>macro
+   * <i>n</i></code>. Each macro adds up a few rolls and calls the macro below it, every {@code
+   * depth}th macro just rolls, so calling a macro runs up to {@code depth} of them.
+   *
+   * @param macros the number of macros.
+   * @param depth the number of macros each macro call runs, at most {@code macros}.
+   * @return the token.
+   */
+  public static Token macroLibrary(int macros, int depth) {
+    var token = new Token();
+    token.setName("Lib:Benchmark");
+    var list = new ArrayList<MacroButtonProperties>(macros);
+    for (int i = 0; i < macros; i++) {
+      var macro = new MacroButtonProperties(i);
+      macro.setLabel("macro" + i);
+      if (i % depth == 0) {
+        macro.setCommand("[r: 1d6 + 2]");
+      } else {
+        macro.setCommand(
+            "[h: total = 0][h, count(3): total = total + roll(1, 6)]"
+                + "[macro(\"macro"
+                + (i - 1)
+                + "@TOKEN\"): total]");
+      }
+      list.add(macro);
+    }
+    token.saveMacroList(list, true);
+    return token;
+  }
+
+  private static Point2D interpolate(Point2D from, Point2D to, double fraction) {
+    return new Point2D.Double(
+        from.getX() + (to.getX() - from.getX()) * fraction,
+        from.getY() + (to.getY() - from.getY()) * fraction);
+  }
+}
@@ -0,0 +1,63 @@
+/*
+ * This software Copyright by the RPTools.net development team, and
+ * licensed under the Affero GPL Version 3 or, at your option, any later
+ * version.
+ *
+ * MapTool Source Code is distributed in the hope that it will be
+ * useful, but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ *
+ * You should have received a copy of the GNU Affero General Public
+ * License * along with this source Code.  If not, please visit
+ * <http://www.gnu.org/licenses/> and specifically the Affero license
+ * text at <http://www.gnu.org/licenses/agpl.html>.
+ */
+package net.rptools.maptool.loadtest;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import net.rptools.maptool.util.metrics.LatencyHistogram;
+
+/**
+ * Remembers when messages that the server relays to other clients were sent, so receiving clients
+ * can record how long the relay took. All clients run in the same process, so {@link
+ * System#nanoTime()} can be compared between them.
+ *
+ * <p>Messages are identified by a key built from their content, e.g. a token id and position, that
+ * every receiving client can rebuild. This class is thread safe.
+ */
+final class Deliveries {
+  /** How long a message is remembered, long after any client should have received it. */
+  private static final long EXPIRY_NANOS = TimeUnit.SECONDS.toNanos(60);
+
+  private final Map<String, Long> sentAt = new ConcurrentHashMap<>();
+
+  /**
+   * Records that a message is being sent.
+   *
+   * @param key the key of the message.
+   */
+  void sent(String key) {
+    sentAt.put(key, System.nanoTime());
+  }
+
+  /**
+   * Records that a client received a message, if it was sent by a scripted client.
+   *
+   * @param key the key of the message.
+   * @param latency the histogram to record the time since the message was sent in.
+   */
+  void received(String key, LatencyHistogram latency) {
+    var sent = sentAt.get(key);
+    if (sent != null) {
+      latency.recordSince(sent);
+    }
+  }
+
+  /** Forgets messages that were sent too long ago to still be in flight. */
+  void expire() {
+    long cutoff = System.nanoTime() - EXPIRY_NANOS;
+    sentAt.values().removeIf(sent -> sent < cutoff);
+  }
+}
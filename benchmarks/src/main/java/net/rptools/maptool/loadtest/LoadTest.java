@@ -0,0 +1,352 @@
+/*
+ * This software Copyright by the RPTools.net development team, and
+ * licensed under the Affero GPL Version 3 or, at your option, any later
+ * version.
+ *
+ * MapTool Source Code is distributed in the hope that it will be
+ * useful, but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ *
+ * You should have received a copy of the GNU Affero General Public
+ * License * along with this source Code.  If not, please visit
+ * <http://www.gnu.org/licenses/> and specifically the Affero license
+ * text at <http://www.gnu.org/licenses/agpl.html>.
+ */
+package net.rptools.maptool.loadtest;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.ToLongFunction;
+import net.rptools.lib.MD5Key;
+import net.rptools.maptool.benchmark.SyntheticMaps;
+import net.rptools.maptool.model.Asset;
+import net.rptools.maptool.model.AssetManager;
+import net.rptools.maptool.model.Token;
+import net.rptools.maptool.model.Zone;
+import net.rptools.maptool.model.player.PlayerDatabaseFactory;
+import net.rptools.maptool.server.MapToolServer;
+import net.rptools.maptool.server.ServerConfig;
+import net.rptools.maptool.server.ServerPolicy;
+import net.rptools.maptool.util.metrics.LatencyHistogram;
+import net.rptools.maptool.util.metrics.MetricsRegistry;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Starts a server with a synthetic campaign and connects scripted clients to it over loopback
+ * sockets, then reports the message throughput, the latency of relayed messages and asset
+ * transfers, the CPU used by the server and the bytes sent to and from each client.
+ *
+ * <p>Clients join one after another, run for a warm up period, then everything is measured for
+ * the rest of the run. The results are printed and, if asked for, written as JSON in the same
+ * format as {@link MetricsRegistry#writeSnapshot(java.nio.file.Path)}. Run it with the <code>
+ * loadTest</code> task of the benchmarks project, see {@link LoadTestOptions} for the options.
+ */
+public final class LoadTest {
+
+  private static final Logger log = LogManager.getLogger(LoadTest.class);
+
+  private static final String PLAYER_PASSWORD = "player";
+
+  private static final String GM_PASSWORD = "gm";
+
+  /** How long each client has to join once it started connecting. */
+  private static final long JOIN_TIMEOUT_SECONDS = 120;
+
+  /** How long to wait for the assets to be written to the cache the server serves them from. */
+  private static final long ASSET_WRITE_TIMEOUT_SECONDS = 60;
+
+  private static final double NANOS_PER_SECOND = 1_000_000_000.0;
+
+  private final LoadTestOptions options;
+
+  private final Deliveries deliveries = new Deliveries();
+
+  /** The group of every thread that runs clients, so their CPU time can be told from the server. */
+  private final ThreadGroup clientThreads = new ThreadGroup("LoadTest clients");
+
+  private final List<ScriptedClient> clients = new ArrayList<>();
+
+  private LoadTest(LoadTestOptions options) {
+    this.options = options;
+  }
+
+  public static void main(String[] args) {
+    LoadTestOptions options;
+    try {
+      options = LoadTestOptions.parse(args);
+    } catch (IllegalArgumentException e) {
+      System.err.println(e.getMessage());
+      System.err.print(LoadTestOptions.USAGE);
+      System.exit(2);
+      return;
+    }
+
+    int status = 0;
+    try {
+      new LoadTest(options).run();
+    } catch (Exception e) {
+      log.error("Load test failed", e);
+      status = 1;
+    }
+    // Loading MapTool starts threads that never end.
+    System.exit(status);
+  }
+
+  private void run() throws IOException, InterruptedException {
+    var campaign = SyntheticMaps.campaign(options.zones(), options.rooms(), options.tokens());
+    var landingZone = campaign.getZones().get(0);
+    campaign.setLandingMapId(landingZone.getId());
+    var assets = createAssets();
+    var tokens = addClientTokens(landingZone, assets);
+
+    var server =
+        new MapToolServer(
+            "LoadTest",
+            campaign,
+            new ServerConfig(
+                "LoadTest",
+                GM_PASSWORD,
+                PLAYER_PASSWORD,
+                options.port(),
+                null,
+                "localhost",
+                false,
+                false),
+            false,
+            new ServerPolicy(),
+            PlayerDatabaseFactory.getDefaultPlayerDatabase(PLAYER_PASSWORD, GM_PASSWORD));
+    server.start();
+    log.info("Server started on port {} with {} maps", options.port(), options.zones());
+
+    var threadCount = new AtomicInteger();
+    ScheduledExecutorService scheduler =
+        Executors.newScheduledThreadPool(
+            Math.max(2, Runtime.getRuntime().availableProcessors() / 2),
+            r -> {
+              var thread =
+                  new Thread(clientThreads, r, "LoadTest client " + threadCount.incrementAndGet());
+              thread.setDaemon(true);
+              return thread;
+            });
+    try {
+      var joinTimes = join(scheduler, landingZone, tokens, assets);
+      scheduler.scheduleWithFixedDelay(deliveries::expire, 10, 10, TimeUnit.SECONDS);
+
+      log.info("{} clients joined, warming up for {}s", joinTimes.size(), options.warmupSeconds());
+      TimeUnit.SECONDS.sleep(options.warmupSeconds());
+
+      log.info("Measuring for {}s", options.durationSeconds());
+      measure(joinTimes);
+      report();
+    } finally {
+      for (var client : clients) {
+        client.close();
+      }
+      scheduler.shutdownNow();
+      server.stop();
+    }
+  }
+
+  /**
+   * Creates image assets of random bytes and adds them to the asset cache the server serves them
+   * from. The server never decodes them so they don't have to be real images.
+   */
+  private List<MD5Key> createAssets() throws InterruptedException, IOException {
+    var random = new Random(SyntheticMaps.SEED);
+    var keys = new ArrayList<MD5Key>();
+    for (int i = 0; i < options.assets(); i++) {
+      var data = new byte[options.assetKilobytes() * 1024];
+      random.nextBytes(data);
+      var asset = Asset.createImageAsset("Load test " + i, data);
+      AssetManager.putAsset(asset);
+      keys.add(asset.getMD5Key());
+    }
+
+    // The cache is written in the background.
+    long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(ASSET_WRITE_TIMEOUT_SECONDS);
+    for (var key : keys) {
+      while (!AssetManager.getAssetCacheFile(key).exists()) {
+        if (System.nanoTime() > deadline) {
+          throw new IOException("Timed out writing asset " + key + " to the cache");
+        }
+        TimeUnit.MILLISECONDS.sleep(10);
+      }
+    }
+    return keys;
+  }
+
+  /** Adds a token for each client to move, so that clients don't fight over tokens. */
+  private List<Token> addClientTokens(Zone zone, List<MD5Key> assets) {
+    var random = new Random(SyntheticMaps.SEED);
+    int extent = SyntheticMaps.extent(options.rooms());
+    var tokens = new ArrayList<Token>();
+    for (int i = 0; i < options.clients(); i++) {
+      var token = new Token("Client " + i, assets.isEmpty() ? null : assets.get(i % assets.size()));
+      token.setX(random.nextInt(extent));
+      token.setY(random.nextInt(extent));
+      zone.putToken(token);
+      tokens.add(token);
+    }
+    return tokens;
+  }
+
+  /** Connects the clients one after another and waits for them to join. */
+  private List<ScriptedClient.JoinTimes> join(
+      ScheduledExecutorService scheduler, Zone zone, List<Token> tokens, List<MD5Key> assets)
+      throws InterruptedException {
+    for (int i = 0; i < options.clients(); i++) {
+      var client =
+          new ScriptedClient(
+              "Client " + i,
+              PLAYER_PASSWORD,
+              options,
+              deliveries,
+              scheduler,
+              zone.getId(),
+              tokens.get(i).toDto(),
+              assets,
+              SyntheticMaps.SEED + i);
+      clients.add(client);
+      // Connect from a client thread, so the connection threads are in the client thread group.
+      scheduler.schedule(
+          client::connect, (long) i * options.joinIntervalMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    var joinTimes = new ArrayList<ScriptedClient.JoinTimes>();
+    long deadline =
+        System.nanoTime()
+            + TimeUnit.MILLISECONDS.toNanos((long) options.clients() * options.joinIntervalMillis())
+            + TimeUnit.SECONDS.toNanos(JOIN_TIMEOUT_SECONDS);
+    for (var client : List.copyOf(clients)) {
+      try {
+        joinTimes.add(
+            client.joined().get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS));
+      } catch (ExecutionException | TimeoutException e) {
+        log.warn("{} failed to join", client.getName(), e.getCause() != null ? e.getCause() : e);
+        client.close();
+        clients.remove(client);
+      }
+    }
+    return joinTimes;
+  }
+
+  /** Resets the metrics, waits for the measurement to finish and records the derived values. */
+  private void measure(List<ScriptedClient.JoinTimes> joinTimes) throws InterruptedException {
+    var threads = ManagementFactory.getThreadMXBean();
+    var os =
+        (com.sun.management.OperatingSystemMXBean) ManagementFactory.getOperatingSystemMXBean();
+
+    MetricsRegistry.reset();
+    clients.forEach(ScriptedClient::resetStatistics);
+    long startProcessCpu = os.getProcessCpuTime();
+    long startClientCpu = clientCpuTime(threads);
+    long start = System.nanoTime();
+
+    TimeUnit.SECONDS.sleep(options.durationSeconds());
+
+    double seconds = (System.nanoTime() - start) / NANOS_PER_SECOND;
+    long processCpu = os.getProcessCpuTime() - startProcessCpu;
+    long clientCpu = clientCpuTime(threads) - startClientCpu;
+
+    // The joins happened before the reset, record them now so they are part of the results.
+    record(joinTimes, "loadtest.join.handshake", ScriptedClient.JoinTimes::handshakeNanos);
+    record(joinTimes, "loadtest.join.campaign", ScriptedClient.JoinTimes::campaignNanos);
+    record(joinTimes, "loadtest.join.allZones", ScriptedClient.JoinTimes::allZonesNanos);
+
+    // The values are fixed at the end of the measurement, not read when a snapshot is taken.
+    double connected = clients.size();
+    double failed = options.clients() - clients.size();
+    double sentPerSecond = MetricsRegistry.counter("loadtest.messages.sent").get() / seconds;
+    double receivedPerSecond =
+        MetricsRegistry.counter("loadtest.messages.received").get() / seconds;
+    // Everything that is not a client is the server, including garbage collection and the JIT.
+    double serverCpuPercent =
+        100.0 * Math.max(0, processCpu - clientCpu) / (seconds * NANOS_PER_SECOND);
+    MetricsRegistry.gauge("loadtest.clients.connected", () -> connected);
+    MetricsRegistry.gauge("loadtest.clients.failed", () -> failed);
+    MetricsRegistry.gauge("loadtest.throughput.sentPerSecond", () -> sentPerSecond);
+    MetricsRegistry.gauge("loadtest.throughput.receivedPerSecond", () -> receivedPerSecond);
+    MetricsRegistry.gauge("loadtest.server.cpuPercent", () -> serverCpuPercent);
+    perClient("loadtest.perClient.bytesSent", ScriptedClient::getBytesSent);
+    perClient("loadtest.perClient.bytesReceived", ScriptedClient::getBytesReceived);
+  }
+
+  private static void record(
+      List<ScriptedClient.JoinTimes> joinTimes,
+      String name,
+      ToLongFunction<ScriptedClient.JoinTimes> nanos) {
+    LatencyHistogram histogram = MetricsRegistry.histogram(name);
+    for (var times : joinTimes) {
+      histogram.record(nanos.applyAsLong(times));
+    }
+  }
+
+  /** Records the mean, minimum and maximum of a per client value as gauges. */
+  private void perClient(String name, ToLongFunction<ScriptedClient> value) {
+    var stats = clients.stream().mapToLong(value).summaryStatistics();
+    double mean = stats.getAverage();
+    double min = clients.isEmpty() ? 0 : stats.getMin();
+    double max = clients.isEmpty() ? 0 : stats.getMax();
+    MetricsRegistry.gauge(name + ".mean", () -> mean);
+    MetricsRegistry.gauge(name + ".min", () -> min);
+    MetricsRegistry.gauge(name + ".max", () -> max);
+  }
+
+  /** Returns the CPU time used by the threads of the clients that are still running. */
+  private long clientCpuTime(ThreadMXBean threads) {
+    var group = new Thread[clientThreads.activeCount() * 2 + 16];
+    int count = clientThreads.enumerate(group);
+    long total = 0;
+    for (int i = 0; i < count; i++) {
+      long cpu = threads.getThreadCpuTime(group[i].threadId());
+      if (cpu > 0) {
+        total += cpu;
+      }
+    }
+    return total;
+  }
+
+  private void report() throws IOException {
+    for (var sample : MetricsRegistry.snapshot()) {
+      if (!sample.name().startsWith("loadtest.")) {
+        continue;
+      }
+      switch (sample.kind()) {
+        case COUNTER ->
+            System.out.printf(Locale.ROOT, "%-45s %12d%n", sample.name(), sample.count());
+        case GAUGE ->
+            System.out.printf(Locale.ROOT, "%-45s %12.1f%n", sample.name(), sample.value());
+        case HISTOGRAM -> {
+          var latency = sample.latency();
+          System.out.printf(
+              Locale.ROOT,
+              "%-45s %12d  p50 %8.2f ms  p90 %8.2f ms  p99 %8.2f ms  max %8.2f ms%n",
+              sample.name(),
+              latency.count(),
+              latency.p50Millis(),
+              latency.p90Millis(),
+              latency.p99Millis(),
+              latency.maxMillis());
+        }
+      }
+    }
+
+    var output = options.output();
+    if (output != null) {
+      MetricsRegistry.writeSnapshot(output);
+      log.info("Results written to {}", output);
+    }
+  }
+}
@@ -0,0 +1,172 @@
+/*
+ * This software Copyright by the RPTools.net development team, and
+ * licensed under the Affero GPL Version 3 or, at your option, any later
+ * version.
+ *
+ * MapTool Source Code is distributed in the hope that it will be
+ * useful, but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ *
+ * You should have received a copy of the GNU Affero General Public
+ * License * along with this source Code.  If not, please visit
+ * <http://www.gnu.org/licenses/> and specifically the Affero license
+ * text at <http://www.gnu.org/licenses/agpl.html>.
+ */
+package net.rptools.maptool.loadtest;
+
+import java.nio.file.Path;
+import javax.annotation.Nullable;
+
+/**
+ * The options of a load test run.
+ *
+ * <p>Rates are per client, so the load on the server grows with the number of clients the same way
+ * it does with a real group.
+ *
+ * @param clients the number of scripted clients.
+ * @param port the port the server listens on.
+ * @param joinIntervalMillis the delay between clients joining.
+ * @param warmupSeconds how long clients run before measurement starts.
+ * @param durationSeconds how long the measurement runs.
+ * @param zones the number of maps in the campaign.
+ * @param rooms the minimum number of rooms on each map.
+ * @param tokens the number of tokens on each map.
+ * @param assets the number of image assets used by the tokens.
+ * @param assetKilobytes the size of each asset.
+ * @param movesPerSecond how often a client drags its token.
+ * @param moveSteps the number of intermediate positions sent while dragging a token.
+ * @param chatsPerSecond how often a client sends a chat message.
+ * @param assetPullsPerSecond how often a client asks the server for an asset after joining.
+ * @param output the file to write the results to as JSON, or {@code null} for none.
+ */
+public record LoadTestOptions(
+    int clients,
+    int port,
+    int joinIntervalMillis,
+    int warmupSeconds,
+    int durationSeconds,
+    int zones,
+    int rooms,
+    int tokens,
+    int assets,
+    int assetKilobytes,
+    double movesPerSecond,
+    int moveSteps,
+    double chatsPerSecond,
+    double assetPullsPerSecond,
+    @Nullable Path output) {
+
+  /** The usage message printed for bad arguments. */
+  public static final String USAGE =
+      """
+      Usage: LoadTest [options]
+        --clients N            scripted clients to connect (20)
+        --port N               port for the server to listen on (51235)
+        --join-interval MS     delay between clients joining (50)
+        --warmup S             seconds to run before measuring (10)
+        --duration S           seconds to measure (60)
+        --zones N              maps in the campaign (3)
+        --rooms N              rooms on each map (100)
+        --tokens N             tokens on each map (200)
+        --assets N             image assets used by the tokens (20)
+        --asset-size KB        size of each asset (256)
+        --move-rate R          token drags per second per client (1.0)
+        --move-steps N         positions sent while dragging a token (10)
+        --chat-rate R          chat messages per second per client (0.2)
+        --asset-rate R         asset pulls per second per client after joining (0.05)
+        --output FILE          write the results as JSON
+      """;
+
+  /**
+   * Parses the command line arguments, using defaults for any that are missing.
+   *
+   * @param args the command line arguments.
+   * @return the options.
+   * @throws IllegalArgumentException if an argument is unknown or its value is invalid.
+   */
+  public static LoadTestOptions parse(String... args) {
+    int clients = 20;
+    int port = 51235;
+    int joinInterval = 50;
+    int warmup = 10;
+    int duration = 60;
+    int zones = 3;
+    int rooms = 100;
+    int tokens = 200;
+    int assets = 20;
+    int assetSize = 256;
+    double moveRate = 1.0;
+    int moveSteps = 10;
+    double chatRate = 0.2;
+    double assetRate = 0.05;
+    Path output = null;
+
+    for (int i = 0; i < args.length; i += 2) {
+      var name = args[i];
+      if (i + 1 >= args.length) {
+        throw new IllegalArgumentException("Missing value for " + name);
+      }
+      var value = args[i + 1];
+      try {
+        switch (name) {
+          case "--clients" -> clients = positive(name, Integer.parseInt(value));
+          case "--port" -> port = positive(name, Integer.parseInt(value));
+          case "--join-interval" -> joinInterval = notNegative(name, Integer.parseInt(value));
+          case "--warmup" -> warmup = notNegative(name, Integer.parseInt(value));
+          case "--duration" -> duration = positive(name, Integer.parseInt(value));
+          case "--zones" -> zones = positive(name, Integer.parseInt(value));
+          case "--rooms" -> rooms = positive(name, Integer.parseInt(value));
+          case "--tokens" -> tokens = positive(name, Integer.parseInt(value));
+          case "--assets" -> assets = notNegative(name, Integer.parseInt(value));
+          case "--asset-size" -> assetSize = positive(name, Integer.parseInt(value));
+          case "--move-rate" -> moveRate = notNegative(name, Double.parseDouble(value));
+          case "--move-steps" -> moveSteps = positive(name, Integer.parseInt(value));
+          case "--chat-rate" -> chatRate = notNegative(name, Double.parseDouble(value));
+          case "--asset-rate" -> assetRate = notNegative(name, Double.parseDouble(value));
+          case "--output" -> output = Path.of(value);
+          default -> throw new IllegalArgumentException("Unknown option " + name);
+        }
+      } catch (NumberFormatException e) {
+        throw new IllegalArgumentException("Invalid value for " + name + ": " + value, e);
+      }
+    }
+
+    return new LoadTestOptions(
+        clients,
+        port,
+        joinInterval,
+        warmup,
+        duration,
+        zones,
+        rooms,
+        tokens,
+        assets,
+        assetSize,
+        moveRate,
+        moveSteps,
+        chatRate,
+        assetRate,
+        output);
+  }
+
+  private static int positive(String name, int value) {
+    if (value <= 0) {
+      throw new IllegalArgumentException(name + " must be positive");
+    }
+    return value;
+  }
+
+  private static int notNegative(String name, int value) {
+    if (value < 0) {
+      throw new IllegalArgumentException(name + " must not be negative");
+    }
+    return value;
+  }
+
+  private static double notNegative(String name, double value) {
+    if (value < 0 || Double.isNaN(value)) {
+      throw new IllegalArgumentException(name + " must not be negative");
+    }
+    return value;
+  }
+}
@@ -0,0 +1,558 @@
+/*
+ * This software Copyright by the RPTools.net development team, and
+ * licensed under the Affero GPL Version 3 or, at your option, any later
+ * version.
+ *
+ * MapTool Source Code is distributed in the hope that it will be
+ * useful, but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ *
+ * You should have received a copy of the GNU Affero General Public
+ * License * along with this source Code.  If not, please visit
+ * <http://www.gnu.org/licenses/> and specifically the Affero license
+ * text at <http://www.gnu.org/licenses/agpl.html>.
+ */
+package net.rptools.maptool.loadtest;
+
+import com.google.protobuf.ByteString;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import net.rptools.clientserver.ActivityListener;
+import net.rptools.clientserver.simple.MessageHandler;
+import net.rptools.clientserver.simple.connection.Connection;
+import net.rptools.clientserver.simple.connection.SocketConnection;
+import net.rptools.lib.MD5Key;
+import net.rptools.maptool.benchmark.SyntheticMaps;
+import net.rptools.maptool.client.MapTool;
+import net.rptools.maptool.model.GUID;
+import net.rptools.maptool.model.TextMessage;
+import net.rptools.maptool.server.HandshakeChallenge;
+import net.rptools.maptool.server.TokenDeltaTracker;
+import net.rptools.maptool.server.proto.AuthTypeEnum;
+import net.rptools.maptool.server.proto.ClientAuthMsg;
+import net.rptools.maptool.server.proto.ClientInitMsg;
+import net.rptools.maptool.server.proto.GetAssetMsg;
+import net.rptools.maptool.server.proto.HandshakeMsg;
+import net.rptools.maptool.server.proto.Message;
+import net.rptools.maptool.server.proto.MessageMsg;
+import net.rptools.maptool.server.proto.StartTokenMoveMsg;
+import net.rptools.maptool.server.proto.StopTokenMoveMsg;
+import net.rptools.maptool.server.proto.TokenDto;
+import net.rptools.maptool.server.proto.UpdatePlayerStatusMsg;
+import net.rptools.maptool.server.proto.UpdateTokenMoveMsg;
+import net.rptools.maptool.server.proto.UseAuthTypeMsg;
+import net.rptools.maptool.server.proto.drawing.IntPointDto;
+import net.rptools.maptool.util.cipher.CipherUtil;
+import net.rptools.maptool.util.metrics.Counter;
+import net.rptools.maptool.util.metrics.LatencyHistogram;
+import net.rptools.maptool.util.metrics.MetricsRegistry;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * A player connected to the server over a socket that behaves like a busy player: it joins, loads
+ * the images of the tokens, then drags its token around, chats and pulls assets at random
+ * intervals.
+ *
+ * <p>The client speaks the wire protocol directly instead of using {@link
+ * net.rptools.maptool.client.MapToolClient}, which needs the user interface and keeps its state in
+ * globals, so many clients can run in one process. It only decodes what it needs to measure the
+ * server, the rest of the messages are counted and dropped.
+ */
+final class ScriptedClient implements MessageHandler {
+
+  private static final Logger log = LogManager.getLogger(ScriptedClient.class);
+
+  private static final LatencyHistogram TOKEN_MOVE_RELAY =
+      MetricsRegistry.histogram("loadtest.relay.tokenMove");
+
+  private static final LatencyHistogram TOKEN_UPDATE_RELAY =
+      MetricsRegistry.histogram("loadtest.relay.tokenUpdate");
+
+  private static final LatencyHistogram CHAT_RELAY =
+      MetricsRegistry.histogram("loadtest.relay.chat");
+
+  private static final LatencyHistogram ASSET_PULL =
+      MetricsRegistry.histogram("loadtest.asset.pull");
+
+  private static final Counter MESSAGES_SENT = MetricsRegistry.counter("loadtest.messages.sent");
+
+  private static final Counter MESSAGES_RECEIVED =
+      MetricsRegistry.counter("loadtest.messages.received");
+
+  private static final Counter BYTES_SENT = MetricsRegistry.counter("loadtest.bytes.sent");
+
+  private static final Counter BYTES_RECEIVED = MetricsRegistry.counter("loadtest.bytes.received");
+
+  private static final Counter ASSETS_FAILED = MetricsRegistry.counter("loadtest.assets.failed");
+
+  /** The delay between the positions sent while dragging a token, about what a mouse produces. */
+  private static final long MOVE_STEP_MILLIS = 50;
+
+  /**
+   * How long joining took, measured from opening the connection.
+   *
+   * @param handshakeNanos until the handshake completed.
+   * @param campaignNanos until the campaign with the landing map arrived.
+   * @param allZonesNanos until every map arrived.
+   */
+  record JoinTimes(long handshakeNanos, long campaignNanos, long allZonesNanos) {}
+
+  private final String name;
+  private final String password;
+  private final LoadTestOptions options;
+  private final Deliveries deliveries;
+  private final ScheduledExecutorService scheduler;
+  private final GUID zoneId;
+  private final GUID tokenId;
+  private final List<MD5Key> assets;
+  private final Random random;
+  private final Connection connection;
+
+  /** The versions of the token, so updates can be sent as patches like a real client does. */
+  private final TokenDeltaTracker tokenDeltaTracker = new TokenDeltaTracker();
+
+  private final CompletableFuture<JoinTimes> joined = new CompletableFuture<>();
+
+  /** When each asset being pulled was requested, by asset id. */
+  private final Map<String, Long> assetRequests = new ConcurrentHashMap<>();
+
+  /** The bytes still to arrive for each asset being transferred, by asset id. */
+  private final Map<String, Long> assetRemaining = new ConcurrentHashMap<>();
+
+  private final AtomicInteger chats = new AtomicInteger();
+  private final LongAdder bytesSent = new LongAdder();
+  private final LongAdder bytesReceived = new LongAdder();
+
+  /** The state of the token as this client last sent it, only changed by the drag steps. */
+  private TokenDto token;
+
+  /** Whether the handshake is still going, only accessed by the receiving thread. */
+  private boolean handshaking = true;
+
+  /** The maps still to arrive after the campaign, only accessed by the receiving thread. */
+  private int pendingZones;
+
+  private long connectedAt;
+  private long handshakeNanos;
+  private long campaignNanos;
+  private volatile boolean running = true;
+
+  /**
+   * Creates a client, {@link #connect()} connects it.
+   *
+   * @param name the name of the player.
+   * @param password the player password of the server.
+   * @param options the options of the load test.
+   * @param deliveries the messages sent by all clients.
+   * @param scheduler runs the actions of the clients.
+   * @param zoneId the id of the map the client plays on.
+   * @param token the token the client moves, which must be on the map.
+   * @param assets the assets the tokens use.
+   * @param seed the seed of the random choices of the client.
+   */
+  ScriptedClient(
+      String name,
+      String password,
+      LoadTestOptions options,
+      Deliveries deliveries,
+      ScheduledExecutorService scheduler,
+      GUID zoneId,
+      TokenDto token,
+      List<MD5Key> assets,
+      long seed) {
+    this.name = name;
+    this.password = password;
+    this.options = options;
+    this.deliveries = deliveries;
+    this.scheduler = scheduler;
+    this.zoneId = zoneId;
+    this.tokenId = GUID.valueOf(token.getId());
+    this.token = token;
+    this.assets = assets;
+    this.random = new Random(seed);
+
+    connection = new SocketConnection(name, "localhost", options.port());
+    connection.addMessageHandler(this);
+    connection.addActivityListener(this::onActivity);
+    connection.addDisconnectHandler(
+        conn -> {
+          if (running) {
+            log.warn("{} was disconnected", name);
+          }
+          running = false;
+          joined.completeExceptionally(new IOException(name + " was disconnected"));
+        });
+  }
+
+  /**
+   * Returns the name of the player.
+   *
+   * @return the name of the player.
+   */
+  String getName() {
+    return name;
+  }
+
+  /**
+   * Connects to the server and starts the handshake. The threads reading from and writing to the
+   * socket are created in the thread group of the caller.
+   */
+  void connect() {
+    connectedAt = System.nanoTime();
+    try {
+      connection.open();
+    } catch (IOException e) {
+      running = false;
+      joined.completeExceptionally(e);
+      return;
+    }
+    var clientInitMsg =
+        ClientInitMsg.newBuilder()
+            .setPlayerName(name)
+            .setVersion(MapTool.getVersion())
+            .setPublicKeyMd5(new MD5Key(name.getBytes(StandardCharsets.UTF_8)).toString());
+    connection.sendMessage(
+        HandshakeMsg.newBuilder().setClientInitMsg(clientInitMsg).build().toByteArray());
+  }
+
+  /**
+   * Returns the future that completes when the client has received every map, or fails if the
+   * client could not join.
+   *
+   * @return how long joining took.
+   */
+  CompletableFuture<JoinTimes> joined() {
+    return joined;
+  }
+
+  /**
+   * Returns the compressed bytes this client sent since the statistics were last reset.
+   *
+   * @return the bytes sent.
+   */
+  long getBytesSent() {
+    return bytesSent.sum();
+  }
+
+  /**
+   * Returns the compressed bytes this client received since the statistics were last reset.
+   *
+   * @return the bytes received.
+   */
+  long getBytesReceived() {
+    return bytesReceived.sum();
+  }
+
+  /** Resets the bytes sent and received, e.g. at the end of the warm up. */
+  void resetStatistics() {
+    bytesSent.reset();
+    bytesReceived.reset();
+  }
+
+  /** Stops the actions of the client and closes its connection. */
+  void close() {
+    running = false;
+    connection.close();
+  }
+
+  @Override
+  public void handleMessage(String id, byte[] message) {
+    try {
+      if (handshaking) {
+        handle(HandshakeMsg.parseFrom(message));
+      } else {
+        MESSAGES_RECEIVED.increment();
+        handle(Message.parseFrom(message));
+      }
+    } catch (IOException | GeneralSecurityException | RuntimeException e) {
+      log.warn("{} failed to handle a message", name, e);
+      if (!joined.isDone()) {
+        joined.completeExceptionally(e);
+        close();
+      }
+    }
+  }
+
+  private void onActivity(
+      ActivityListener.Direction direction,
+      ActivityListener.State state,
+      int totalTransferSize,
+      int currentTransferSize) {
+    if (state != ActivityListener.State.Complete) {
+      return;
+    }
+    if (direction == ActivityListener.Direction.Outbound) {
+      bytesSent.add(totalTransferSize);
+      BYTES_SENT.add(totalTransferSize);
+    } else {
+      bytesReceived.add(totalTransferSize);
+      BYTES_RECEIVED.add(totalTransferSize);
+    }
+  }
+
+  private void handle(HandshakeMsg handshakeMsg) throws IOException, GeneralSecurityException {
+    switch (handshakeMsg.getMessageTypeCase()) {
+      case USE_AUTH_TYPE_MSG -> answer(handshakeMsg.getUseAuthTypeMsg());
+      case CONNECTION_SUCCESSFUL_MSG -> {
+        handshakeNanos = System.nanoTime() - connectedAt;
+        handshaking = false;
+      }
+      case HANDSHAKE_RESPONSE_CODE_MSG ->
+          throw new IOException(
+              name + " was refused by the server: " + handshakeMsg.getHandshakeResponseCodeMsg());
+      default ->
+          throw new IOException(
+              name + " got an unexpected handshake message " + handshakeMsg.getMessageTypeCase());
+    }
+  }
+
+  /** Answers the password challenge the same way the real client does. */
+  private void answer(UseAuthTypeMsg useAuthTypeMsg)
+      throws IOException, GeneralSecurityException {
+    if (useAuthTypeMsg.getAuthType() != AuthTypeEnum.SHARED_PASSWORD) {
+      throw new IOException(name + " can only use a shared password");
+    }
+    var key = CipherUtil.createKey(password, useAuthTypeMsg.getSalt().toByteArray());
+    var iv = useAuthTypeMsg.getIv().toByteArray();
+    var responseIv = new byte[CipherUtil.CIPHER_BLOCK_SIZE];
+    new SecureRandom().nextBytes(responseIv);
+
+    // One challenge is encrypted with the player password and one with the GM password, only the
+    // one for our password can be read.
+    Exception failure = null;
+    for (var challenge : useAuthTypeMsg.getChallengeList()) {
+      try {
+        var handshakeChallenge =
+            HandshakeChallenge.fromSymmetricChallengeBytes(
+                name, challenge.toByteArray(), key, iv);
+        var clientAuthMsg =
+            ClientAuthMsg.newBuilder()
+                .setChallengeResponse(
+                    ByteString.copyFrom(handshakeChallenge.getExpectedResponse(responseIv)))
+                .setIv(ByteString.copyFrom(responseIv));
+        connection.sendMessage(
+            HandshakeMsg.newBuilder().setClientAuthMessage(clientAuthMsg).build().toByteArray());
+        return;
+      } catch (GeneralSecurityException | IllegalStateException e) {
+        failure = e;
+      }
+    }
+    throw new IOException(name + " could not answer the password challenge", failure);
+  }
+
+  private void handle(Message msg) {
+    switch (msg.getMessageTypeCase()) {
+      case SET_CAMPAIGN_MSG -> {
+        campaignNanos = System.nanoTime() - connectedAt;
+        pendingZones = msg.getSetCampaignMsg().getPendingZoneGuidsCount();
+        if (pendingZones == 0) {
+          onJoined();
+        }
+      }
+      case PUT_ZONE_MSG -> {
+        if (pendingZones > 0 && --pendingZones == 0) {
+          onJoined();
+        }
+      }
+      case UPDATE_TOKEN_MOVE_MSG -> {
+        var move = msg.getUpdateTokenMoveMsg();
+        deliveries.received(
+            moveKey(move.getKeyTokenId(), move.getPoint().getX(), move.getPoint().getY()),
+            TOKEN_MOVE_RELAY);
+      }
+      case PUT_TOKEN_MSG -> {
+        var put = msg.getPutTokenMsg();
+        var id = put.getToken().getId();
+        if (tokenId.toString().equals(id)) {
+          // The server fell back to sending the whole token, patch against what it sent.
+          tokenDeltaTracker.update(tokenId, put.getVersion(), put.getToken());
+        }
+        deliveries.received(updateKey(id, put.getVersion()), TOKEN_UPDATE_RELAY);
+      }
+      case PATCH_TOKEN_MSG -> {
+        var patch = msg.getPatchTokenMsg();
+        deliveries.received(
+            updateKey(patch.getTokenGuid(), patch.getVersion()), TOKEN_UPDATE_RELAY);
+      }
+      case MESSAGE_MSG ->
+          deliveries.received(msg.getMessageMsg().getMessage().getMessage(), CHAT_RELAY);
+      case START_ASSET_TRANSFER_MSG -> {
+        var header = msg.getStartAssetTransferMsg().getHeader();
+        assetRemaining.put(header.getId(), header.getSize());
+        if (header.getSize() == 0) {
+          assetReceived(header.getId());
+        }
+      }
+      case UPDATE_ASSET_TRANSFER_MSG -> {
+        var chunk = msg.getUpdateAssetTransferMsg().getChunk();
+        long remaining =
+            assetRemaining.merge(chunk.getId(), (long) -chunk.getData().size(), Long::sum);
+        if (remaining <= 0) {
+          assetReceived(chunk.getId());
+        }
+      }
+      case PUT_ASSET_MSG -> {
+        // Only sent for assets the server does not have.
+        ASSETS_FAILED.increment();
+        assetRequests.remove(msg.getPutAssetMsg().getAsset().getMd5Key());
+      }
+      default -> {}
+    }
+  }
+
+  /** Does what a client does once it has loaded the campaign, then starts playing. */
+  private void onJoined() {
+    joined.complete(
+        new JoinTimes(handshakeNanos, campaignNanos, System.nanoTime() - connectedAt));
+
+    var status =
+        UpdatePlayerStatusMsg.newBuilder()
+            .setPlayer(name)
+            .setZoneGuid(zoneId.toString())
+            .setLoaded(true);
+    send(Message.newBuilder().setUpdatePlayerStatusMsg(status).build());
+    for (var asset : assets) {
+      pullAsset(asset);
+    }
+
+    scheduleNext(this::drag, options.movesPerSecond());
+    scheduleNext(this::chat, options.chatsPerSecond());
+    scheduleNext(this::pullRandomAsset, options.assetPullsPerSecond());
+  }
+
+  /**
+   * Runs an action after a random delay, so that actions happen at the given average rate but
+   * the clients don't act in lock step.
+   */
+  private void scheduleNext(Runnable action, double perSecond) {
+    if (!running || perSecond <= 0) {
+      return;
+    }
+    double seconds = -Math.log(1 - random.nextDouble()) / perSecond;
+    scheduler.schedule(
+        () -> {
+          if (running) {
+            action.run();
+          }
+        },
+        (long) (seconds * 1000),
+        TimeUnit.MILLISECONDS);
+  }
+
+  private void drag() {
+    int extent = SyntheticMaps.extent(options.rooms());
+    var startTokenMoveMsg =
+        StartTokenMoveMsg.newBuilder()
+            .setPlayerId(name)
+            .setZoneGuid(zoneId.toString())
+            .setKeyTokenId(tokenId.toString())
+            .addSelectedTokens(tokenId.toString());
+    send(Message.newBuilder().setStartTokenMoveMsg(startTokenMoveMsg).build());
+    dragStep(1, token.getX(), token.getY(), random.nextInt(extent), random.nextInt(extent));
+  }
+
+  private void dragStep(int step, int fromX, int fromY, int toX, int toY) {
+    if (!running) {
+      return;
+    }
+    if (step > options.moveSteps()) {
+      drop(toX, toY);
+      scheduleNext(this::drag, options.movesPerSecond());
+      return;
+    }
+
+    int x = fromX + (toX - fromX) * step / options.moveSteps();
+    int y = fromY + (toY - fromY) * step / options.moveSteps();
+    deliveries.sent(moveKey(tokenId.toString(), x, y));
+    var updateTokenMoveMsg =
+        UpdateTokenMoveMsg.newBuilder()
+            .setZoneGuid(zoneId.toString())
+            .setKeyTokenId(tokenId.toString())
+            .setPoint(IntPointDto.newBuilder().setX(x).setY(y));
+    send(Message.newBuilder().setUpdateTokenMoveMsg(updateTokenMoveMsg).build());
+    scheduler.schedule(
+        () -> dragStep(step + 1, fromX, fromY, toX, toY), MOVE_STEP_MILLIS, TimeUnit.MILLISECONDS);
+  }
+
+  /** Ends a drag and sends the new position of the token. */
+  private void drop(int x, int y) {
+    var stopTokenMoveMsg =
+        StopTokenMoveMsg.newBuilder()
+            .setZoneGuid(zoneId.toString())
+            .setKeyTokenId(tokenId.toString());
+    send(Message.newBuilder().setStopTokenMoveMsg(stopTokenMoveMsg).build());
+
+    token = token.toBuilder().setX(x).setY(y).build();
+    var update = tokenDeltaTracker.createUpdate(zoneId, token);
+    if (update != null) {
+      long version =
+          update.hasPutTokenMsg()
+              ? update.getPutTokenMsg().getVersion()
+              : update.getPatchTokenMsg().getVersion();
+      deliveries.sent(updateKey(tokenId.toString(), version));
+      send(update);
+    }
+  }
+
+  private void chat() {
+    var text = name + " says " + chats.incrementAndGet();
+    deliveries.sent(text);
+    var message = new TextMessage(TextMessage.Channel.SAY, null, name, text, List.of());
+    send(
+        Message.newBuilder()
+            .setMessageMsg(MessageMsg.newBuilder().setMessage(message.toDto()))
+            .build());
+    scheduleNext(this::chat, options.chatsPerSecond());
+  }
+
+  private void pullRandomAsset() {
+    if (!assets.isEmpty()) {
+      pullAsset(assets.get(random.nextInt(assets.size())));
+    }
+    scheduleNext(this::pullRandomAsset, options.assetPullsPerSecond());
+  }
+
+  /** Asks the server for an asset, unless it is already being transferred. */
+  private void pullAsset(MD5Key asset) {
+    var id = asset.toString();
+    if (assetRequests.putIfAbsent(id, System.nanoTime()) == null) {
+      send(
+          Message.newBuilder()
+              .setGetAssetMsg(GetAssetMsg.newBuilder().setAssetId(id))
+              .build());
+    }
+  }
+
+  private void assetReceived(String id) {
+    assetRemaining.remove(id);
+    var requestedAt = assetRequests.remove(id);
+    if (requestedAt != null) {
+      ASSET_PULL.recordSince(requestedAt);
+    }
+  }
+
+  private void send(Message msg) {
+    MESSAGES_SENT.increment();
+    connection.sendMessage(msg.toByteArray());
+  }
+
+  private static String moveKey(String tokenId, int x, int y) {
+    return tokenId + "@" + x + "," + y;
+  }
+
+  private static String updateKey(String tokenId, long version) {
+    return tokenId + "#" + version;
+  }
+}
@@ -16,12 +16,16 @@
 
 import java.io.*;
 import java.nio.ByteBuffer;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
 import net.rptools.clientserver.ActivityListener;
 import net.rptools.clientserver.simple.DisconnectHandler;
 import net.rptools.clientserver.simple.MessageHandler;
@@ -33,8 +37,38 @@
 public abstract class AbstractConnection implements Connection {
   private static final Logger log = LogManager.getLogger(AbstractConnection.class);
 
+  /**
+   * Totals for all connections in this process.
+   *
+   * @param queuedMessages the number of messages waiting to be sent.
+   * @param messagesSent the number of messages taken from the queue to be sent.
+   * @param bytesSent the compressed size of the messages sent.
+   * @param messagesReceived the number of messages received.
+   * @param bytesReceived the compressed size of the messages received.
+   * @param meanQueueWaitMillis the mean time messages spent waiting to be sent.
+   * @param maxQueueWaitMillis the longest time a message spent waiting to be sent.
+   */
+  public record Statistics(
+      int queuedMessages,
+      long messagesSent,
+      long bytesSent,
+      long messagesReceived,
+      long bytesReceived,
+      double meanQueueWaitMillis,
+      double maxQueueWaitMillis) {}
+
+  private record QueuedMessage(byte[] data, long queuedAt) {}
+
+  private static final AtomicInteger queuedMessages = new AtomicInteger();
+  private static final LongAdder messagesSent = new LongAdder();
+  private static final LongAdder bytesSent = new LongAdder();
+  private static final LongAdder messagesReceived = new LongAdder();
+  private static final LongAdder bytesReceived = new LongAdder();
+  private static final LongAdder totalQueueWaitNanos = new LongAdder();
+  private static final LongAccumulator maxQueueWaitNanos = new LongAccumulator(Math::max, 0);
+
   private final AtomicBoolean closed = new AtomicBoolean(false);
-  private final BlockingQueue<byte[]> outQueue = new LinkedBlockingQueue<>();
+  private final BlockingQueue<QueuedMessage> outQueue = new LinkedBlockingQueue<>();
 
   private final List<DisconnectHandler> disconnectHandlers = new CopyOnWriteArrayList<>();
   private final List<ActivityListener> listeners = new CopyOnWriteArrayList<>();
@@ -44,9 +78,32 @@ public abstract class AbstractConnection implements Connection {
   public final void close() {
     if (closed.compareAndSet(false, true)) {
       onClose();
+
+      // Messages that were never sent no longer count as queued.
+      var unsent = new ArrayList<QueuedMessage>();
+      outQueue.drainTo(unsent);
+      queuedMessages.addAndGet(-unsent.size());
     }
   }
 
+  /**
+   * Returns the message totals for all connections in this process.
+   *
+   * @return the message totals.
+   */
+  public static Statistics getStatistics() {
+    long sent = messagesSent.sum();
+    double nanosPerMilli = TimeUnit.MILLISECONDS.toNanos(1);
+    return new Statistics(
+        queuedMessages.get(),
+        sent,
+        bytesSent.sum(),
+        messagesReceived.sum(),
+        bytesReceived.sum(),
+        sent == 0 ? 0 : totalQueueWaitNanos.sum() / nanosPerMilli / sent,
+        maxQueueWaitNanos.get() / nanosPerMilli);
+  }
+
   protected final boolean isClosed() {
     return closed.get();
   }
@@ -79,16 +136,29 @@ private byte[] inflate(byte[] compressedMessage) {
   }
 
   protected void addMessage(Object channel, byte[] message) {
-    outQueue.add(compress(message));
+    outQueue.add(new QueuedMessage(compress(message), System.nanoTime()));
+    queuedMessages.incrementAndGet();
   }
 
   protected byte[] nextMessage() {
+    QueuedMessage queued;
     try {
       // Bit paranoid, but don't wait forever for a message - that can perpetually block the thread.
-      return outQueue.poll(10, TimeUnit.MILLISECONDS);
+      queued = outQueue.poll(10, TimeUnit.MILLISECONDS);
     } catch (InterruptedException e) {
       return null;
     }
+    if (queued == null) {
+      return null;
+    }
+
+    long waitNanos = System.nanoTime() - queued.queuedAt();
+    queuedMessages.decrementAndGet();
+    messagesSent.increment();
+    bytesSent.add(queued.data().length);
+    totalQueueWaitNanos.add(waitNanos);
+    maxQueueWaitNanos.accumulate(waitNanos);
+    return queued.data();
   }
 
   public final void addMessageHandler(MessageHandler handler) {
@@ -111,6 +181,8 @@ protected void dispatchMessage(byte[] message) {
   }
 
   protected final void dispatchCompressedMessage(byte[] compressedMessage) {
+    messagesReceived.increment();
+    bytesReceived.add(compressedMessage.length);
     var message = inflate(compressedMessage);
     dispatchMessage(message);
   }
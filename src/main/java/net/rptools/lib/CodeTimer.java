@@ -20,6 +20,7 @@
 import java.util.Map;
 import net.rptools.maptool.client.AppState;
 import net.rptools.maptool.client.MapTool;
+import net.rptools.maptool.util.metrics.MetricsRegistry;
 
 public class CodeTimer {
   private static final ThreadLocal<CodeTimer> ROOT_TIMER =
@@ -32,9 +33,19 @@ public class CodeTimer {
     void call(CodeTimer timer) throws Ex;
   }
 
+  /**
+   * Runs a timed section. The total time of the section is always recorded in the <code>
+   * timer.<i>name</i></code> histogram of {@link MetricsRegistry}, the breakdown of the section is
+   * only reported to the profiling frame when collecting profiling data.
+   *
+   * @param name the name of the section.
+   * @param callback the code to time.
+   * @throws Ex if the callback throws.
+   */
   public static <Ex extends Exception> void using(String name, TimedSection<Ex> callback)
       throws Ex {
     var stack = timerStack.get();
+    long startNanos = System.nanoTime();
 
     var timer = new CodeTimer(name);
     timer.setEnabled(AppState.isCollectProfilingData());
@@ -45,6 +56,7 @@ public static <Ex extends Exception> void using(String name, TimedSection<Ex> ca
       callback.call(timer);
     } finally {
       timer.stop("<root>");
+      MetricsRegistry.histogram("timer." + name).recordSince(startNanos);
 
       final var lastTimer = stack.removeLast();
       assert lastTimer == timer : "Timer stack is corrupted";
@@ -44,6 +44,7 @@
 import net.rptools.maptool.client.ui.token.BarTokenOverlay;
 import net.rptools.maptool.model.AStarCellPointConverter;
 import net.rptools.maptool.model.ShapeType;
+import net.rptools.maptool.model.converters.ExposureMaskConverter;
 import net.rptools.maptool.model.converters.WallTopologyConverter;
 import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.IOUtils;
@@ -486,6 +487,7 @@ public static XStream getConfiguredXStream() {
     xStream.allowTypesByWildcard(new String[] {"net.rptools.**", "java.awt.**", "sun.awt.**"});
     xStream.registerConverter(new AStarCellPointConverter());
     xStream.registerConverter(new WallTopologyConverter(xStream));
+    xStream.registerConverter(new ExposureMaskConverter());
     xStream.addImmutableType(ShapeType.class, true);
     xStream.addImmutableType(BarTokenOverlay.Side.class, true);
     return xStream;
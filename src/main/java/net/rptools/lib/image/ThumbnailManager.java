@@ -18,21 +18,39 @@
 import java.awt.Graphics2D;
 import java.awt.Image;
 import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.IOException;
+import java.util.Iterator;
 import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
 import net.rptools.lib.MD5Key;
 import net.rptools.maptool.client.AppPreferences;
 import net.rptools.maptool.client.swing.SwingUtil;
 import org.apache.commons.io.FileUtils;
-
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Creates thumbnails of image files and caches them in a {@link ThumbnailPack} in the thumbnail
+ * location. Images are decoded at a reduced resolution using the source subsampling of their {@link
+ * ImageReader}, so a large image does not have to be decoded in full just to be scaled down. This
+ * class is thread safe, thumbnails can be created on several threads at once.
+ */
 public class ThumbnailManager {
+  private static final Logger log = LogManager.getLogger(ThumbnailManager.class);
+
   private final File thumbnailLocation;
   private final Dimension thumbnailSize;
+  private final ThumbnailPack thumbnailPack;
 
   public ThumbnailManager(File thumbnailLocation, Dimension thumbnailSize) {
     this.thumbnailLocation = thumbnailLocation;
     this.thumbnailSize = thumbnailSize;
+    this.thumbnailPack =
+        ThumbnailPack.forFile(new File(thumbnailLocation, ThumbnailPack.FILE_NAME));
   }
 
   public File getThumbnailLocation() {
@@ -54,27 +72,70 @@ public Image getThumbnail(File file) throws IOException {
   }
 
   private Image createThumbnail(File file) throws IOException {
-    // Gather info
-    File thumbnailFile = getThumbnailFile(file);
-    if (thumbnailFile.exists()) {
-      return ImageUtil.getImage(thumbnailFile);
-    }
+    try (ImageInputStream in = ImageIO.createImageInputStream(file)) {
+      Iterator<ImageReader> readers = in == null ? null : ImageIO.getImageReaders(in);
+      if (readers == null || !readers.hasNext()) {
+        Image image = ImageUtil.getImage(file);
+        return createThumbnail(file, image, image.getWidth(null), image.getHeight(null));
+      }
 
-    Image image = ImageUtil.getImage(file);
-    Dimension imgSize = new Dimension(image.getWidth(null), image.getHeight(null));
+      ImageReader reader = readers.next();
+      try {
+        reader.setInput(in, true, true);
+        int width = reader.getWidth(0);
+        int height = reader.getHeight(0);
+        if (!needsThumbnail(file, width, height)) {
+          return ImageUtil.getImage(file);
+        }
+
+        // Decode at no less than twice the thumbnail size, so scaling down still looks smooth.
+        double ratio =
+            Math.max(
+                (double) width / thumbnailSize.width, (double) height / thumbnailSize.height);
+        int subsampling = Math.max(1, (int) (ratio / 2));
+        ImageReadParam param = reader.getDefaultReadParam();
+        param.setSourceSubsampling(subsampling, subsampling, 0, 0);
+        return createThumbnail(file, reader.read(0, param), width, height);
+      } finally {
+        reader.dispose();
+      }
+    }
+  }
 
-    // Test if we Should we bother making a thumbnail ?
+  /**
+   * Checks if an image is worth making a thumbnail of.
+   *
+   * @param file the image file.
+   * @param width the width of the image.
+   * @param height the height of the image.
+   * @return {@code true} if the image should be scaled down to a thumbnail.
+   */
+  private boolean needsThumbnail(File file, int width, int height) {
     // Jamz: New size 100k (was 30k) and put in check so we're not creating thumbnails LARGER than
     // the original...
-    if (file.length() < 102400
-        || (imgSize.width <= thumbnailSize.width && imgSize.height <= thumbnailSize.height)) {
+    return file.length() >= 102400
+        && (width > thumbnailSize.width || height > thumbnailSize.height);
+  }
+
+  /**
+   * Scales an image down to a thumbnail and stores it in the thumbnail pack.
+   *
+   * @param file the image file.
+   * @param image the decoded image, which may have been subsampled.
+   * @param width the width of the original image.
+   * @param height the height of the original image.
+   * @return the thumbnail.
+   * @throws IOException if the thumbnail can not be encoded.
+   */
+  private Image createThumbnail(File file, Image image, int width, int height)
+      throws IOException {
+    if (!needsThumbnail(file, width, height)) {
       return image;
     }
     // Transform the image
+    Dimension imgSize = new Dimension(width, height);
     SwingUtil.constrainTo(
-        imgSize,
-        Math.min(image.getWidth(null), thumbnailSize.width),
-        Math.min(image.getHeight(null), thumbnailSize.height));
+        imgSize, Math.min(width, thumbnailSize.width), Math.min(height, thumbnailSize.height));
     BufferedImage thumbnailImage =
         new BufferedImage(imgSize.width, imgSize.height, ImageUtil.pickBestTransparency(image));
 
@@ -84,13 +145,21 @@ private Image createThumbnail(File file) throws IOException {
     g.dispose();
 
     // Use png to preserve transparency
-    FileUtils.writeByteArrayToFile(thumbnailFile, ImageUtil.imageToBytes(thumbnailImage, "png"));
+    try {
+      thumbnailPack.put(
+          getThumbnailKey(file),
+          file.lastModified(),
+          ImageUtil.imageToBytes(thumbnailImage, "png"));
+    } catch (IOException e) {
+      log.warn("Unable to cache thumbnail of {}", file, e);
+    }
 
     return thumbnailImage;
   }
 
   public void clearImageThumbCache() {
     try {
+      thumbnailPack.clear();
       if (thumbnailLocation != null) {
         FileUtils.cleanDirectory(thumbnailLocation);
       }
@@ -101,22 +170,19 @@ public void clearImageThumbCache() {
   }
 
   private BufferedImage getCachedThumbnail(File file) {
-    File thumbnailFile = getThumbnailFile(file);
-
-    if (!thumbnailFile.exists()) {
-      return null;
-    }
     try {
       // Check that it hasn't changed on disk
-      if (file.lastModified() > thumbnailFile.lastModified()) {
+      byte[] data = thumbnailPack.get(getThumbnailKey(file), file.lastModified());
+      if (data == null) {
         return null;
       }
       // Get the thumbnail
-      BufferedImage thumbnail = ImageIO.read(thumbnailFile);
+      BufferedImage thumbnail = ImageIO.read(new ByteArrayInputStream(data));
 
       // Check that we have the size we want
-      if (thumbnail.getWidth() != thumbnailSize.width
-          && thumbnail.getHeight() != thumbnailSize.height) {
+      if (thumbnail == null
+          || (thumbnail.getWidth() != thumbnailSize.width
+              && thumbnail.getHeight() != thumbnailSize.height)) {
         return null;
       }
       return thumbnail;
@@ -125,8 +191,7 @@ private BufferedImage getCachedThumbnail(File file) {
     }
   }
 
-  private File getThumbnailFile(File file) {
-    MD5Key key = new MD5Key(file.getAbsolutePath().getBytes());
-    return new File(thumbnailLocation.getPath(), key.toString());
+  private String getThumbnailKey(File file) {
+    return new MD5Key(file.getAbsolutePath().getBytes()).toString();
   }
 }
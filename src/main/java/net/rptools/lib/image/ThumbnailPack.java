@@ -0,0 +1,312 @@
+/*
+ * This software Copyright by the RPTools.net development team, and
+ * licensed under the Affero GPL Version 3 or, at your option, any later
+ * version.
+ *
+ * MapTool Source Code is distributed in the hope that it will be
+ * useful, but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ *
+ * You should have received a copy of the GNU Affero General Public
+ * License * along with this source Code.  If not, please visit
+ * <http://www.gnu.org/licenses/> and specifically the Affero license
+ * text at <http://www.gnu.org/licenses/agpl.html>.
+ */
+package net.rptools.lib.image;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+import javax.annotation.Nullable;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Stores thumbnails in a single file instead of a file per thumbnail. Thumbnails are appended to
+ * the end of the file and an index of where each thumbnail is kept in memory, the index is rebuilt
+ * by reading the record headers when the pack is opened. A thumbnail that is stored again replaces
+ * the earlier record in the index, the pack is compacted when it is opened if more than half of it
+ * is taken by such replaced records.
+ *
+ * <p>The file starts with {@link #MAGIC} and {@link #VERSION}, followed by records made of the key
+ * length, the key, the modification time of the source, the data length and the data.
+ *
+ * <p>Each pack file is opened once per process, use {@link #forFile(File)} to get the pack of a
+ * file. The file may also be used by other running instances, so it is locked while a thumbnail is
+ * appended and while it is repaired or compacted. This class is thread safe.
+ */
+final class ThumbnailPack {
+
+  private static final Logger log = LogManager.getLogger(ThumbnailPack.class);
+
+  /** The name of the pack file in the thumbnail directory. */
+  static final String FILE_NAME = "thumbnails.pack";
+
+  private static final int MAGIC = 0x4d545450; // "MTTP"
+  private static final int VERSION = 1;
+  private static final int FILE_HEADER_SIZE = 8;
+
+  /** The location of a thumbnail in the pack. */
+  private record Entry(long sourceModified, long position, int length) {}
+
+  /** The packs that have been handed out, keyed by the absolute path of their file. */
+  private static final Map<File, ThumbnailPack> packs = new HashMap<>();
+
+  private final File file;
+  private final Map<String, Entry> index = new HashMap<>();
+  private @Nullable FileChannel channel;
+
+  /** The number of bytes taken by records that have been replaced. */
+  private long wasted;
+
+  /**
+   * Creates a new {@code ThumbnailPack}, the file is opened when it is first used.
+   *
+   * @param file the pack file.
+   */
+  ThumbnailPack(File file) {
+    this.file = file;
+  }
+
+  /**
+   * Returns the pack of a file, all users of the same file share one pack.
+   *
+   * @param file the pack file.
+   * @return the pack.
+   */
+  static synchronized ThumbnailPack forFile(File file) {
+    return packs.computeIfAbsent(file.getAbsoluteFile(), ThumbnailPack::new);
+  }
+
+  /**
+   * Returns the data of a thumbnail.
+   *
+   * @param key the key of the thumbnail.
+   * @param sourceModified the modification time of the source of the thumbnail.
+   * @return the data, or {@code null} if there is no thumbnail or it is older than the source.
+   * @throws IOException if the pack can not be read.
+   */
+  synchronized @Nullable byte[] get(String key, long sourceModified) throws IOException {
+    var channel = open();
+    var entry = index.get(key);
+    if (entry == null || entry.sourceModified() < sourceModified) {
+      return null;
+    }
+    return read(channel, entry);
+  }
+
+  /**
+   * Stores a thumbnail, replacing any earlier thumbnail with the same key.
+   *
+   * @param key the key of the thumbnail.
+   * @param sourceModified the modification time of the source of the thumbnail.
+   * @param data the data of the thumbnail.
+   * @throws IOException if the pack can not be written.
+   */
+  synchronized void put(String key, long sourceModified, byte[] data) throws IOException {
+    var channel = open();
+    var record = record(key, sourceModified, data);
+    long dataPosition;
+    try (var lock = channel.lock()) {
+      long position = channel.size();
+      dataPosition = position + record.remaining() - data.length;
+      write(channel, record, position);
+    }
+    var old = index.put(key, new Entry(sourceModified, dataPosition, data.length));
+    if (old != null) {
+      wasted += recordSize(key, old.length());
+    }
+  }
+
+  /**
+   * Closes the pack and deletes its file.
+   *
+   * @throws IOException if the file can not be deleted.
+   */
+  synchronized void clear() throws IOException {
+    close();
+    Files.deleteIfExists(file.toPath());
+  }
+
+  /**
+   * Closes the pack file, it is opened again when the pack is next used.
+   *
+   * @throws IOException if the file can not be closed.
+   */
+  synchronized void close() throws IOException {
+    if (channel != null) {
+      channel.close();
+      channel = null;
+    }
+    index.clear();
+    wasted = 0;
+  }
+
+  /**
+   * Opens the pack file and reads the index if it is not open yet.
+   *
+   * @return the channel of the pack file.
+   * @throws IOException if the file can not be opened.
+   */
+  private FileChannel open() throws IOException {
+    if (channel != null) {
+      return channel;
+    }
+    file.getParentFile().mkdirs();
+    channel = openChannel();
+    boolean compacted = false;
+    try (var lock = channel.lock()) {
+      readIndex();
+      if (wasted > channel.size() / 2) {
+        compacted = compact();
+      }
+    }
+    if (compacted) {
+      close();
+      channel = openChannel();
+      try (var lock = channel.lock()) {
+        readIndex();
+      }
+    }
+    return channel;
+  }
+
+  private FileChannel openChannel() throws IOException {
+    return FileChannel.open(
+        file.toPath(),
+        StandardOpenOption.CREATE,
+        StandardOpenOption.READ,
+        StandardOpenOption.WRITE);
+  }
+
+  /**
+   * Reads the index from the record headers. A pack with a different header is started again, and
+   * an incomplete record at the end, e.g. from a crash while writing it, is cut off.
+   *
+   * @throws IOException if the file can not be read.
+   */
+  private void readIndex() throws IOException {
+    long size = channel.size();
+    var header = ByteBuffer.allocate(FILE_HEADER_SIZE);
+    if (size < FILE_HEADER_SIZE
+        || channel.read(header, 0) < FILE_HEADER_SIZE
+        || header.getInt(0) != MAGIC
+        || header.getInt(4) != VERSION) {
+      channel.truncate(0);
+      channel.write(ByteBuffer.allocate(FILE_HEADER_SIZE).putInt(MAGIC).putInt(VERSION).flip(), 0);
+      return;
+    }
+
+    long position = FILE_HEADER_SIZE;
+    var intBuffer = ByteBuffer.allocate(4);
+    var recordHeader = ByteBuffer.allocate(12);
+    while (position < size) {
+      intBuffer.clear();
+      if (channel.read(intBuffer, position) < 4) {
+        break;
+      }
+      int keyLength = intBuffer.getInt(0);
+      if (keyLength < 0 || position + 4 + keyLength + 12 > size) {
+        break;
+      }
+      var keyBytes = ByteBuffer.allocate(keyLength);
+      channel.read(keyBytes, position + 4);
+      recordHeader.clear();
+      channel.read(recordHeader, position + 4 + keyLength);
+      long sourceModified = recordHeader.getLong(0);
+      int length = recordHeader.getInt(8);
+      long dataPosition = position + 4 + keyLength + 12;
+      if (length < 0 || dataPosition + length > size) {
+        break;
+      }
+      var key = new String(keyBytes.array(), StandardCharsets.UTF_8);
+      var old = index.put(key, new Entry(sourceModified, dataPosition, length));
+      if (old != null) {
+        wasted += recordSize(key, old.length());
+      }
+      position = dataPosition + length;
+    }
+    if (position < size) {
+      log.warn("Discarding {} bytes of incomplete thumbnails in {}", size - position, file);
+      channel.truncate(position);
+    }
+  }
+
+  /**
+   * Writes the current thumbnails to a new file that then replaces the pack file. Must be called
+   * with the pack file locked, the pack has to be opened again if the file has been replaced.
+   *
+   * @return {@code true} if the pack file has been replaced.
+   * @throws IOException if the pack can not be read.
+   */
+  private boolean compact() throws IOException {
+    var compacted = Files.createTempFile(file.getParentFile().toPath(), FILE_NAME, ".tmp");
+    try {
+      try (var out = FileChannel.open(compacted, StandardOpenOption.WRITE)) {
+        write(out, ByteBuffer.allocate(FILE_HEADER_SIZE).putInt(MAGIC).putInt(VERSION).flip(), 0);
+        for (var e : index.entrySet()) {
+          var data = read(channel, e.getValue());
+          write(out, record(e.getKey(), e.getValue().sourceModified(), data), out.size());
+        }
+      }
+      Files.move(compacted, file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+      return true;
+    } catch (IOException e) {
+      log.warn("Unable to compact {}", file, e);
+      return false;
+    } finally {
+      Files.deleteIfExists(compacted);
+    }
+  }
+
+  /**
+   * Creates the record of a thumbnail.
+   *
+   * @param key the key of the thumbnail.
+   * @param sourceModified the modification time of the source of the thumbnail.
+   * @param data the data of the thumbnail.
+   * @return the record, ready to be written.
+   */
+  private static ByteBuffer record(String key, long sourceModified, byte[] data) {
+    var keyBytes = key.getBytes(StandardCharsets.UTF_8);
+    var record = ByteBuffer.allocate(4 + keyBytes.length + 8 + 4 + data.length);
+    record.putInt(keyBytes.length).put(keyBytes).putLong(sourceModified).putInt(data.length);
+    return record.put(data).flip();
+  }
+
+  private static void write(FileChannel channel, ByteBuffer buffer, long position)
+      throws IOException {
+    while (buffer.hasRemaining()) {
+      channel.write(buffer, position + buffer.position());
+    }
+  }
+
+  /**
+   * Reads the data of a thumbnail.
+   *
+   * @param channel the channel of the pack file.
+   * @param entry the location of the thumbnail.
+   * @return the data.
+   * @throws IOException if the data can not be read.
+   */
+  private byte[] read(FileChannel channel, Entry entry) throws IOException {
+    var data = ByteBuffer.allocate(entry.length());
+    while (data.hasRemaining()) {
+      if (channel.read(data, entry.position() + data.position()) < 0) {
+        throw new IOException("Unexpected end of " + file);
+      }
+    }
+    return data.array();
+  }
+
+  private static long recordSize(String key, int length) {
+    return 4 + key.getBytes(StandardCharsets.UTF_8).length + 12 + length;
+  }
+}
@@ -15,37 +15,45 @@
 package net.rptools.lib.io;
 
 import com.google.common.io.CharStreams;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import com.thoughtworks.xstream.XStream;
 import java.io.BufferedInputStream;
 import java.io.BufferedOutputStream;
 import java.io.BufferedWriter;
 import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.InterruptedIOException;
 import java.io.LineNumberReader;
 import java.io.OutputStream;
 import java.io.OutputStreamWriter;
 import java.io.Reader;
 import java.io.StringReader;
+import java.io.UncheckedIOException;
 import java.net.MalformedURLException;
 import java.net.URL;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
 import java.util.Enumeration;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
 import java.util.stream.Collectors;
 import java.util.zip.Deflater;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipFile;
-import java.util.zip.ZipOutputStream;
 import javax.xml.parsers.DocumentBuilder;
 import javax.xml.parsers.DocumentBuilderFactory;
 import javax.xml.parsers.ParserConfigurationException;
@@ -55,6 +63,10 @@
 import net.rptools.maptool.model.Asset;
 import net.rptools.maptool.model.AssetManager;
 import net.rptools.maptool.model.GUID;
+import org.apache.commons.compress.archivers.zip.DefaultBackingStoreSupplier;
+import org.apache.commons.compress.archivers.zip.ParallelScatterZipCreator;
+import org.apache.commons.compress.archivers.zip.ZipArchiveEntry;
+import org.apache.commons.compress.archivers.zip.ZipArchiveOutputStream;
 import org.apache.commons.io.IOUtils;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
@@ -110,6 +122,30 @@ public class PackedFile implements AutoCloseable {
 
   private static final Logger log = LogManager.getLogger(PackedFile.class);
 
+  /** Extensions of file formats that are already compressed. */
+  private static final Set<String> COMPRESSED_EXTENSIONS =
+      Set.of(
+          "png", "jpg", "jpeg", "gif", "webp", "ogg", "mp3", "m4a", "mp4", "webm", "flac", "zip",
+          "gz", "jar", "mtlib", "rptok", "rpmap", "cmpgn", "mttable");
+
+  /** Magic numbers of file formats that are already compressed. */
+  private static final List<byte[]> COMPRESSED_MAGIC_NUMBERS =
+      List.of(
+          new byte[] {(byte) 0x89, 'P', 'N', 'G'},
+          new byte[] {(byte) 0xFF, (byte) 0xD8, (byte) 0xFF},
+          new byte[] {'G', 'I', 'F', '8'},
+          new byte[] {'O', 'g', 'g', 'S'},
+          new byte[] {'P', 'K', 3, 4},
+          new byte[] {0x1F, (byte) 0x8B});
+
+  /** The number of threads used to compress entries when saving. */
+  private static final int COMPRESSION_THREADS =
+      Math.max(1, Runtime.getRuntime().availableProcessors() - 1);
+
+  /** Thread factory for the threads that compress entries when saving. */
+  private static final ThreadFactory threadFactory =
+      new ThreadFactoryBuilder().setNameFormat("packed-file-compressor-%d").setDaemon(true).build();
+
   private static File tmpDir =
       new File(System.getProperty("java.io.tmpdir")); // Shared temporary directory
 
@@ -293,14 +329,20 @@ public void save() throws IOException {
         saveTimer -> {
           // Create the new file
           File newFile = new File(tmpDir, new GUID() + ".pak");
-          ZipOutputStream zout =
-              new ZipOutputStream(new BufferedOutputStream(new FileOutputStream(newFile)));
-          zout.setLevel(Deflater.BEST_COMPRESSION); // fast compression
+          ZipArchiveOutputStream zout = new ZipArchiveOutputStream(newFile);
+          zout.setLevel(Deflater.BEST_COMPRESSION);
+          // Changed entries are compressed in parallel and gathered into the new file at the end.
+          var executor = Executors.newFixedThreadPool(COMPRESSION_THREADS, threadFactory);
+          var scatter =
+              new ParallelScatterZipCreator(
+                  executor,
+                  new DefaultBackingStoreSupplier(tmpDir.toPath()),
+                  Deflater.BEST_COMPRESSION);
 
           try {
             saveTimer.start(CONTENT_FILE);
-            if (hasFile(CONTENT_FILE)) {
-              saveEntry(zout, CONTENT_FILE);
+            if (addedFileSet.contains(CONTENT_FILE) && hasFile(CONTENT_FILE)) {
+              saveEntry(scatter, CONTENT_FILE);
             }
             saveTimer.stop(CONTENT_FILE);
 
@@ -308,40 +350,39 @@ public void save() throws IOException {
             if (getPropertyMap().isEmpty()) {
               removeFile(PROPERTY_FILE);
             } else {
-              zout.putNextEntry(new ZipEntry(PROPERTY_FILE));
-              xstream.toXML(getPropertyMap(), zout);
-              zout.closeEntry();
+              var properties = new ByteArrayOutputStream();
+              xstream.toXML(getPropertyMap(), properties);
+              var entry = new ZipArchiveEntry(PROPERTY_FILE);
+              entry.setMethod(ZipEntry.DEFLATED);
+              scatter.addArchiveEntry(
+                  entry, () -> new ByteArrayInputStream(properties.toByteArray()));
             }
             saveTimer.stop(PROPERTY_FILE);
 
             // Now put each file
             saveTimer.start("addFiles");
-            addedFileSet.remove(CONTENT_FILE);
             for (String path : addedFileSet) {
-              saveEntry(zout, path);
+              if (!CONTENT_FILE.equals(path)) {
+                saveEntry(scatter, path);
+              }
             }
+            scatter.writeTo(zout);
             saveTimer.stop("addFiles");
 
-            // Copy the rest of the zip entries over
+            // Copy the rest of the zip entries over without decompressing them
             saveTimer.start("copyFiles");
             if (file.exists()) {
-              Enumeration<? extends ZipEntry> entries = zFile.entries();
-              while (entries.hasMoreElements()) {
-                ZipEntry entry = entries.nextElement();
-                if (!entry.isDirectory()
-                    && !addedFileSet.contains(entry.getName())
-                    && !removedFileSet.contains(entry.getName())
-                    && !CONTENT_FILE.equals(entry.getName())
-                    && !PROPERTY_FILE.equals(entry.getName())) {
-                  zout.putNextEntry(entry);
-                  try (InputStream is = getFileAsInputStream(entry.getName())) {
-                    // When copying, always use an InputStream
-                    IOUtils.copy(is, zout);
+              try (var source =
+                  org.apache.commons.compress.archivers.zip.ZipFile.builder().setFile(file).get()) {
+                Enumeration<ZipArchiveEntry> entries = source.getEntries();
+                while (entries.hasMoreElements()) {
+                  ZipArchiveEntry entry = entries.nextElement();
+                  if (entry.isDirectory()
+                      || (!addedFileSet.contains(entry.getName())
+                          && !removedFileSet.contains(entry.getName())
+                          && !PROPERTY_FILE.equals(entry.getName()))) {
+                    zout.addRawArchiveEntry(entry, source.getRawInputStream(entry));
                   }
-                  zout.closeEntry();
-                } else if (entry.isDirectory()) {
-                  zout.putNextEntry(entry);
-                  zout.closeEntry();
                 }
               }
             }
@@ -354,7 +395,7 @@ public void save() throws IOException {
             saveTimer.stop("copyFiles");
 
             saveTimer.start("close");
-            IOUtils.closeQuietly(zout);
+            zout.close();
             zout = null;
             saveTimer.stop("close");
 
@@ -384,27 +425,76 @@ public void save() throws IOException {
             saveTimer.stop("finalize");
 
             dirty = false;
+          } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while compressing " + file);
+          } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException ioe) {
+              throw ioe;
+            }
+            throw new IOException("Unable to compress " + file, e.getCause());
           } finally {
             saveTimer.start("cleanup");
+            executor.shutdownNow();
             try {
               if (zFile != null) zFile.close();
             } catch (IOException e) {
               // ignore close exception
             }
-            if (newFile.exists()) newFile.delete();
             IOUtils.closeQuietly(zout);
+            if (newFile.exists()) newFile.delete();
             saveTimer.stop("cleanup");
           }
         });
   }
 
-  private void saveEntry(ZipOutputStream zout, String path) throws IOException {
-    zout.putNextEntry(new ZipEntry(path));
+  /**
+   * Schedules an added file to be compressed into the new archive. Files in formats that are
+   * already compressed are stored without compression, compressing them again only costs time.
+   *
+   * @param scatter the creator that compresses the entries in parallel.
+   * @param path the path of the file.
+   * @throws IOException If an I/O error occurs
+   */
+  private void saveEntry(ParallelScatterZipCreator scatter, String path) throws IOException {
+    var entry = new ZipArchiveEntry(path);
+    entry.setMethod(isCompressed(path) ? ZipEntry.STORED : ZipEntry.DEFLATED);
+    scatter.addArchiveEntry(
+        entry,
+        () -> {
+          try {
+            return getFileAsInputStream(path);
+          } catch (IOException e) {
+            throw new UncheckedIOException(e);
+          }
+        });
+  }
+
+  /**
+   * Checks if a file is in a format that is already compressed, based on its extension or, if that
+   * is not known, on the first bytes of the file.
+   *
+   * @param path the path of the file.
+   * @return {@code true} if the file is already compressed.
+   * @throws IOException If an I/O error occurs
+   */
+  private boolean isCompressed(String path) throws IOException {
+    int dot = path.lastIndexOf('.');
+    if (dot > path.lastIndexOf('/')
+        && COMPRESSED_EXTENSIONS.contains(path.substring(dot + 1).toLowerCase())) {
+      return true;
+    }
+    byte[] header;
     try (InputStream is = getFileAsInputStream(path)) {
-      // When copying, always use an InputStream
-      IOUtils.copy(is, zout);
+      header = is.readNBytes(4);
+    }
+    for (byte[] magic : COMPRESSED_MAGIC_NUMBERS) {
+      if (header.length >= magic.length
+          && Arrays.equals(header, 0, magic.length, magic, 0, magic.length)) {
+        return true;
+      }
     }
-    zout.closeEntry();
+    return false;
   }
 
   /**
@@ -18,6 +18,7 @@
 import java.awt.*;
 import java.awt.event.ActionEvent;
 import java.awt.event.InputEvent;
+import java.awt.geom.Area;
 import java.awt.image.BufferedImage;
 import java.io.*;
 import java.net.MalformedURLException;
@@ -1404,6 +1405,20 @@ protected void executeAction() {
           MapTool.getLogConsoleNoteFrame().setVisible(AppState.isLoggingToConsole());
         }
       };
+  public static final Action SHOW_METRICS =
+      new DefaultClientAction() {
+        {
+          init("action.showMetrics");
+        }
+
+        @Override
+        protected void executeAction() {
+          var frame = MapTool.getMetricsFrame();
+          frame.setVisible(true);
+          frame.toFront();
+        }
+      };
+
   public static final Action TOGGLE_SHOW_TEXT_LABELS =
       new DefaultClientAction() {
         {
@@ -3003,7 +3018,8 @@ protected void done() {
       try {
         PersistedMap map = get();
         AppPreferences.loadDirectory.set(mapFile.getParentFile());
-        if ((map.zone.getExposedArea() != null && !map.zone.getExposedArea().isEmpty())
+        Area exposedArea = map.zone.getGlobalExposedArea();
+        if ((exposedArea != null && !exposedArea.isEmpty())
             || (map.zone.getExposedAreaMetaData() != null
                 && !map.zone.getExposedAreaMetaData().isEmpty())) {
           boolean ok =
@@ -147,6 +147,10 @@ public class AppPreferences {
 
   public static final Preference<Integer> thumbnailSize = IntegerType.create("thumbnailSize", 500);
 
+  /** The maximum size in MB of the asset data kept in memory. */
+  public static final Preference<Integer> assetMemoryBudget =
+      IntegerType.create("assetMemoryBudgetMB", 512);
+
   public static final Preference<Boolean> showSmilies = BooleanType.create("insertSmilies", true);
 
   public static final Preference<Boolean> showDialogOnNewToken =
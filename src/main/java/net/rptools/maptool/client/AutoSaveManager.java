@@ -18,6 +18,8 @@
 import javax.swing.*;
 import net.rptools.maptool.language.I18N;
 import net.rptools.maptool.model.Campaign;
+import net.rptools.maptool.model.CampaignSnapshot;
+import net.rptools.maptool.model.CampaignSnapshotter;
 import net.rptools.maptool.util.PersistenceUtil;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
@@ -33,6 +35,9 @@ public class AutoSaveManager {
   private Timer autoSaveTimer;
   private long lastAutoSave = -1;
 
+  /** Takes the snapshots of the campaign that are saved, created when auto save starts. */
+  private CampaignSnapshotter snapshotter;
+
   public static final File AUTOSAVE_FILE =
       new File(
           AppUtil.getAppHome("autosave"), // $NON-NLS-1$
@@ -48,6 +53,7 @@ public void start() {
     if (autoSaveTimer == null) {
       autoSaveTimer = new Timer(1000, (Object) -> execute());
       autoSaveTimer.setRepeats(false);
+      snapshotter = new CampaignSnapshotter();
       log.debug("Logging level of 'DEBUG' sets timeout to seconds"); // $NON-NLS-1$
       next(true);
     }
@@ -92,30 +98,33 @@ private boolean executeAndContinue() {
     MapTool.getFrame().setStatusMessage(I18N.getString("AutoSaveManager.status.autoSaving"));
 
     long startCopy = System.currentTimeMillis();
-    // This occurs on the event dispatch thread, so it's ok to mess with the models.  (XXX Is this
-    // true?  What about
-    // updates coming in on the network?)
-    // We need to clone the campaign so that we can save in the background, but
-    // not have concurrency issues with the original model.
-    //
-    // NOTE: This is a cheesy way to clone the campaign, but it makes it so that I
-    // don't have to keep all the various models' clone methods updated on each change.
-    final Campaign campaign = new Campaign(MapTool.getCampaign());
+    // This occurs on the event dispatch thread, so it's ok to mess with the models.
+    // We need a copy of the campaign so that we can save in the background, but not have
+    // concurrency issues with the original model. The snapshot only converts the zones and
+    // tokens that changed since the last auto save, the legacy format still needs a full copy.
+    final SaveWorker worker;
+    if (DeveloperOptions.Toggle.SaveLegacyCampaignFormat.isEnabled()) {
+      worker = new SaveWorker(new Campaign(MapTool.getCampaign()), null);
+    } else {
+      worker = new SaveWorker(null, snapshotter.snapshot(MapTool.getCampaign()));
+    }
     log.info(
         "Time to copy Campaign object (ms): "
             + (System.currentTimeMillis() - startCopy)); // $NON-NLS-1$
 
-    new SaveWorker(campaign).execute();
+    worker.execute();
 
     return false;
   }
 
   private class SaveWorker extends SwingWorker<String, String> {
 
-    private Campaign campaign;
+    private final Campaign campaign;
+    private final CampaignSnapshot snapshot;
 
-    private SaveWorker(Campaign campaign) {
+    private SaveWorker(Campaign campaign, CampaignSnapshot snapshot) {
       this.campaign = campaign;
+      this.snapshot = snapshot;
     }
 
     @Override
@@ -126,7 +135,11 @@ protected String doInBackground() throws Exception {
       try {
         long startSave = System.currentTimeMillis();
         log.info("Starting autosave..."); // $NON-NLS-1$
-        PersistenceUtil.saveCampaign(campaign, AUTOSAVE_FILE);
+        if (snapshot != null) {
+          PersistenceUtil.saveCampaign(snapshot, AUTOSAVE_FILE);
+        } else {
+          PersistenceUtil.saveCampaign(campaign, AUTOSAVE_FILE);
+        }
         String msg =
             I18N.getText(
                 "AutoSaveManager.status.autoSaveComplete", System.currentTimeMillis() - startSave);
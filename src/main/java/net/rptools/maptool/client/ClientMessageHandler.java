@@ -14,6 +14,8 @@
  */
 package net.rptools.maptool.client;
 
+import com.google.protobuf.Descriptors.FieldDescriptor;
+import com.google.protobuf.MessageOrBuilder;
 import java.awt.EventQueue;
 import java.awt.Point;
 import java.awt.geom.Area;
@@ -21,9 +23,16 @@
 import java.text.MessageFormat;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.stream.Collectors;
+import javax.annotation.Nullable;
 import javax.swing.SwingUtilities;
 import net.rptools.clientserver.simple.MessageHandler;
 import net.rptools.lib.MD5Key;
@@ -73,6 +82,7 @@
 import net.rptools.maptool.server.Mapper;
 import net.rptools.maptool.server.ServerMessageHandler;
 import net.rptools.maptool.server.ServerPolicy;
+import net.rptools.maptool.server.TokenDeltaTracker;
 import net.rptools.maptool.server.proto.*;
 import net.rptools.maptool.transfer.AssetConsumer;
 import net.rptools.maptool.transfer.AssetHeader;
@@ -91,10 +101,76 @@ public class ClientMessageHandler implements MessageHandler {
 
   private final MapToolClient client;
 
+  /**
+   * The zones the server has announced but not sent yet, with the messages for them that have
+   * arrived in the meantime. The messages are replayed once the zone arrives, apart from the ones
+   * the zone already includes, see {@link #handle(PutZoneMsg, long)}.
+   */
+  private final Map<String, List<Message>> pendingZones = new ConcurrentHashMap<>();
+
+  /**
+   * The tokens that have been asked for again because a patch could not be applied, with the
+   * patches received since. The patches that follow on from the version the server sends are
+   * applied once the token arrives. Only used on the EDT.
+   */
+  private final Map<GUID, List<PatchTokenMsg>> resyncingTokens = new HashMap<>();
+
+  /** The maximum number of messages applied in one go before the EDT is given back. */
+  private static final int MAX_BATCH_SIZE = 500;
+
+  /** The changes from received messages that are waiting to be applied on the EDT. */
+  private final Queue<Runnable> pendingChanges = new ConcurrentLinkedQueue<>();
+
+  /** Whether {@link #applyPendingChanges()} has been queued on the EDT. */
+  private final AtomicBoolean applyQueued = new AtomicBoolean();
+
   public ClientMessageHandler(MapToolClient client) {
     this.client = client;
   }
 
+  /**
+   * Queues a change from a received message to be applied on the EDT. All the changes that arrive
+   * before the EDT gets to them are applied in one go, see {@link #applyPendingChanges()}.
+   *
+   * @param change the change to apply.
+   */
+  private void invokeLater(Runnable change) {
+    pendingChanges.add(change);
+    if (applyQueued.compareAndSet(false, true)) {
+      EventQueue.invokeLater(this::applyPendingChanges);
+    }
+  }
+
+  /**
+   * Applies the pending changes in the order the messages were received. The events posted by the
+   * changes are batched, so e.g. a macro updating a hundred tokens results in a single {@link
+   * net.rptools.maptool.model.zones.TokensChanged} instead of a hundred, and the renderers only
+   * update once.
+   */
+  private void applyPendingChanges() {
+    // Cleared first so that changes arriving while a change shows a modal dialog are still applied.
+    applyQueued.set(false);
+    new MapToolEventBus()
+        .batchEvents(
+            () -> {
+              for (int i = 0; i < MAX_BATCH_SIZE; i++) {
+                var change = pendingChanges.poll();
+                if (change == null) {
+                  return;
+                }
+                try {
+                  change.run();
+                } catch (Exception e) {
+                  log.error("Error applying message from server", e);
+                }
+              }
+              // Let the EDT paint and handle input before applying the rest.
+              if (!pendingChanges.isEmpty() && applyQueued.compareAndSet(false, true)) {
+                EventQueue.invokeLater(this::applyPendingChanges);
+              }
+            });
+  }
+
   @Override
   public void handleMessage(String id, byte[] message) {
     try {
@@ -102,87 +178,134 @@ public void handleMessage(String id, byte[] message) {
       var msgType = msg.getMessageTypeCase();
       log.debug("{} got: {}", id, msgType);
 
-      switch (msgType) {
-        case UPDATE_MASK_TOPOLOGY_MSG -> handle(msg.getUpdateMaskTopologyMsg());
-        case BOOT_PLAYER_MSG -> handle(msg.getBootPlayerMsg());
-        case CHANGE_ZONE_DISPLAY_NAME_MSG -> handle(msg.getChangeZoneDisplayNameMsg());
-        case CLEAR_ALL_DRAWINGS_MSG -> handle(msg.getClearAllDrawingsMsg());
-        case CLEAR_EXPOSED_AREA_MSG -> handle(msg.getClearExposedAreaMsg());
-        case DRAW_MSG -> handle(msg.getDrawMsg());
-        case EDIT_TOKEN_MSG -> handle(msg.getEditTokenMsg());
-        case PUT_TOKEN_MSG -> handle(msg.getPutTokenMsg());
-        case ENFORCE_NOTIFICATION_MSG -> handle(msg.getEnforceNotificationMsg());
-        case ENFORCE_ZONE_MSG -> handle(msg.getEnforceZoneMsg());
-        case ENFORCE_ZONE_VIEW_MSG -> handle(msg.getEnforceZoneViewMsg());
-        case EXEC_FUNCTION_MSG -> handle(msg.getExecFunctionMsg());
-        case EXEC_LINK_MSG -> handle(msg.getExecLinkMsg());
-        case EXPOSE_FOW_MSG -> handle(msg.getExposeFowMsg());
-        case EXPOSE_PC_AREA_MSG -> handle(msg.getExposePcAreaMsg());
-        case HIDE_FOW_MSG -> handle(msg.getHideFowMsg());
-        case HIDE_POINTER_MSG -> handle(msg.getHidePointerMsg());
-        case MESSAGE_MSG -> handle(msg.getMessageMsg());
-        case MOVE_POINTER_MSG -> handle(msg.getMovePointerMsg());
-        case PLAYER_CONNECTED_MSG -> handle(msg.getPlayerConnectedMsg());
-        case PLAYER_DISCONNECTED_MSG -> handle(msg.getPlayerDisconnectedMsg());
-        case PUT_ASSET_MSG -> handle(msg.getPutAssetMsg());
-        case PUT_LABEL_MSG -> handle(msg.getPutLabelMsg());
-        case PUT_ZONE_MSG -> handle(msg.getPutZoneMsg());
-        case REMOVE_LABEL_MSG -> handle(msg.getRemoveLabelMsg());
-        case REMOVE_TOKEN_MSG -> handle(msg.getRemoveTokenMsg());
-        case REMOVE_TOKENS_MSG -> handle(msg.getRemoveTokensMsg());
-        case REMOVE_ZONE_MSG -> handle(msg.getRemoveZoneMsg());
-        case RENAME_ZONE_MSG -> handle(msg.getRenameZoneMsg());
-        case RESTORE_ZONE_VIEW_MSG -> handle(msg.getRestoreZoneViewMsg());
-        case SET_BOARD_MSG -> handle(msg.getSetBoardMsg());
-        case SET_CAMPAIGN_MSG -> handle(msg.getSetCampaignMsg());
-        case SET_CAMPAIGN_NAME_MSG -> handle(msg.getSetCampaignNameMsg());
-        case SET_CAMPAIGN_LANDING_MAP_MSG -> handle(msg.getSetCampaignLandingMapMsg());
-        case SET_FOW_MSG -> handle(msg.getSetFowMsg());
-        case SET_LIVE_TYPING_LABEL_MSG -> handle(msg.getSetLiveTypingLabelMsg());
-        case SET_TOKEN_LOCATION_MSG -> handle(msg.getSetTokenLocationMsg());
-        case SET_VISION_TYPE_MSG -> handle(msg.getSetVisionTypeMsg());
-        case SET_ZONE_GRID_SIZE_MSG -> handle(msg.getSetZoneGridSizeMsg());
-        case SET_ZONE_HAS_FOW_MSG -> handle(msg.getSetZoneHasFowMsg());
-        case START_ASSET_TRANSFER_MSG -> handle(msg.getStartAssetTransferMsg());
-        case UPDATE_ASSET_TRANSFER_MSG -> handle(msg.getUpdateAssetTransferMsg());
-        case ADD_ADD_ON_LIBRARY_MSG -> handle(msg.getAddAddOnLibraryMsg());
-        case REMOVE_ADD_ON_LIBRARY_MSG -> handle(msg.getRemoveAddOnLibraryMsg());
-        case REMOVE_ALL_ADD_ON_LIBRARIES_MSG -> handle(msg.getRemoveAllAddOnLibrariesMsg());
-        case UPDATE_DATA_STORE_MSG -> handle(msg.getUpdateDataStoreMsg());
-        case UPDATE_DATA_NAMESPACE_MSG -> handle(msg.getUpdateDataNamespaceMsg());
-        case UPDATE_DATA_MSG -> handle(msg.getUpdateDataMsg());
-        case REMOVE_DATA_STORE_MSG -> handle(msg.getRemoveDataStoreMsg());
-        case REMOVE_DATA_NAMESPACE_MSG -> handle(msg.getRemoveDataNamespaceMsg());
-        case REMOVE_DATA_MSG -> handle(msg.getRemoveDataMsg());
-        case UPDATE_TOKEN_PROPERTY_MSG -> handle(msg.getUpdateTokenPropertyMsg());
-        case UPDATE_DRAWING_MSG -> handle(msg.getUpdateDrawingMsg());
-        case UNDO_DRAW_MSG -> handle(msg.getUndoDrawMsg());
-        case SET_ZONE_VISIBILITY_MSG -> handle(msg.getSetZoneVisibilityMsg());
-        case SHOW_POINTER_MSG -> handle(msg.getShowPointerMsg());
-        case START_TOKEN_MOVE_MSG -> handle(msg.getStartTokenMoveMsg());
-        case STOP_TOKEN_MOVE_MSG -> handle(msg.getStopTokenMoveMsg());
-        case TOGGLE_TOKEN_MOVE_WAYPOINT_MSG -> handle(msg.getToggleTokenMoveWaypointMsg());
-        case SET_SERVER_POLICY_MSG -> handle(msg.getSetServerPolicyMsg());
-        case UPDATE_CAMPAIGN_MSG -> handle(msg.getUpdateCampaignMsg());
-        case UPDATE_INITIATIVE_MSG -> handle(msg.getUpdateInitiativeMsg());
-        case UPDATE_TOKEN_INITIATIVE_MSG -> handle(msg.getUpdateTokenInitiativeMsg());
-        case UPDATE_CAMPAIGN_MACROS_MSG -> handle(msg.getUpdateCampaignMacrosMsg());
-        case UPDATE_GM_MACROS_MSG -> handle(msg.getUpdateGmMacrosMsg());
-        case UPDATE_EXPOSED_AREA_META_MSG -> handle(msg.getUpdateExposedAreaMetaMsg());
-        case UPDATE_TOKEN_MOVE_MSG -> handle(msg.getUpdateTokenMoveMsg());
-        case UPDATE_PLAYER_STATUS_MSG -> handle(msg.getUpdatePlayerStatusMsg());
-        case SET_WALL_TOPOLOGY_MSG -> handle(msg.getSetWallTopologyMsg());
-        case UPDATE_WALL_DATA_MSG -> handle(msg.getUpdateWallDataMsg());
-        default -> log.warn(msgType + "not handled.");
+      var pendingZoneId = getPendingZoneId(msg);
+      if (pendingZoneId != null) {
+        if (msgType == Message.MessageTypeCase.REMOVE_ZONE_MSG) {
+          pendingZones.remove(pendingZoneId);
+          log.debug("{} stopped waiting for removed zone {}", id, pendingZoneId);
+        } else {
+          pendingZones.get(pendingZoneId).add(msg);
+          log.debug("{} deferred {} until zone {} has been received", id, msgType, pendingZoneId);
+        }
+        return;
       }
+
+      dispatchMessage(msg);
       log.debug(id + " handled: " + msgType);
     } catch (Exception e) {
       log.error(e);
     }
   }
 
+  /**
+   * Handles a message from the server.
+   *
+   * @param msg the message.
+   */
+  private void dispatchMessage(Message msg) {
+    var msgType = msg.getMessageTypeCase();
+    switch (msgType) {
+      case UPDATE_MASK_TOPOLOGY_MSG -> handle(msg.getUpdateMaskTopologyMsg());
+      case BOOT_PLAYER_MSG -> handle(msg.getBootPlayerMsg());
+      case CHANGE_ZONE_DISPLAY_NAME_MSG -> handle(msg.getChangeZoneDisplayNameMsg());
+      case CLEAR_ALL_DRAWINGS_MSG -> handle(msg.getClearAllDrawingsMsg());
+      case CLEAR_EXPOSED_AREA_MSG -> handle(msg.getClearExposedAreaMsg());
+      case DRAW_MSG -> handle(msg.getDrawMsg());
+      case EDIT_TOKEN_MSG -> handle(msg.getEditTokenMsg());
+      case PUT_TOKEN_MSG -> handle(msg.getPutTokenMsg());
+      case PATCH_TOKEN_MSG -> handle(msg.getPatchTokenMsg());
+      case ENFORCE_NOTIFICATION_MSG -> handle(msg.getEnforceNotificationMsg());
+      case ENFORCE_ZONE_MSG -> handle(msg.getEnforceZoneMsg());
+      case ENFORCE_ZONE_VIEW_MSG -> handle(msg.getEnforceZoneViewMsg());
+      case EXEC_FUNCTION_MSG -> handle(msg.getExecFunctionMsg());
+      case EXEC_LINK_MSG -> handle(msg.getExecLinkMsg());
+      case EXPOSE_FOW_MSG -> handle(msg.getExposeFowMsg());
+      case EXPOSE_PC_AREA_MSG -> handle(msg.getExposePcAreaMsg());
+      case HIDE_FOW_MSG -> handle(msg.getHideFowMsg());
+      case HIDE_POINTER_MSG -> handle(msg.getHidePointerMsg());
+      case MESSAGE_MSG -> handle(msg.getMessageMsg());
+      case MOVE_POINTER_MSG -> handle(msg.getMovePointerMsg());
+      case PLAYER_CONNECTED_MSG -> handle(msg.getPlayerConnectedMsg());
+      case PLAYER_DISCONNECTED_MSG -> handle(msg.getPlayerDisconnectedMsg());
+      case PUT_ASSET_MSG -> handle(msg.getPutAssetMsg());
+      case PUT_LABEL_MSG -> handle(msg.getPutLabelMsg());
+      case PUT_ZONE_MSG -> handle(msg.getPutZoneMsg(), msg.getServerVersion());
+      case REMOVE_LABEL_MSG -> handle(msg.getRemoveLabelMsg());
+      case REMOVE_TOKEN_MSG -> handle(msg.getRemoveTokenMsg());
+      case REMOVE_TOKENS_MSG -> handle(msg.getRemoveTokensMsg());
+      case REMOVE_ZONE_MSG -> handle(msg.getRemoveZoneMsg());
+      case RENAME_ZONE_MSG -> handle(msg.getRenameZoneMsg());
+      case RESTORE_ZONE_VIEW_MSG -> handle(msg.getRestoreZoneViewMsg());
+      case SET_BOARD_MSG -> handle(msg.getSetBoardMsg());
+      case SET_CAMPAIGN_MSG -> handle(msg.getSetCampaignMsg());
+      case SET_CAMPAIGN_NAME_MSG -> handle(msg.getSetCampaignNameMsg());
+      case SET_CAMPAIGN_LANDING_MAP_MSG -> handle(msg.getSetCampaignLandingMapMsg());
+      case SET_FOW_MSG -> handle(msg.getSetFowMsg());
+      case SET_LIVE_TYPING_LABEL_MSG -> handle(msg.getSetLiveTypingLabelMsg());
+      case SET_TOKEN_LOCATION_MSG -> handle(msg.getSetTokenLocationMsg());
+      case SET_VISION_TYPE_MSG -> handle(msg.getSetVisionTypeMsg());
+      case SET_ZONE_GRID_SIZE_MSG -> handle(msg.getSetZoneGridSizeMsg());
+      case SET_ZONE_HAS_FOW_MSG -> handle(msg.getSetZoneHasFowMsg());
+      case START_ASSET_TRANSFER_MSG -> handle(msg.getStartAssetTransferMsg());
+      case UPDATE_ASSET_TRANSFER_MSG -> handle(msg.getUpdateAssetTransferMsg());
+      case ADD_ADD_ON_LIBRARY_MSG -> handle(msg.getAddAddOnLibraryMsg());
+      case REMOVE_ADD_ON_LIBRARY_MSG -> handle(msg.getRemoveAddOnLibraryMsg());
+      case REMOVE_ALL_ADD_ON_LIBRARIES_MSG -> handle(msg.getRemoveAllAddOnLibrariesMsg());
+      case UPDATE_DATA_STORE_MSG -> handle(msg.getUpdateDataStoreMsg());
+      case UPDATE_DATA_NAMESPACE_MSG -> handle(msg.getUpdateDataNamespaceMsg());
+      case UPDATE_DATA_MSG -> handle(msg.getUpdateDataMsg());
+      case REMOVE_DATA_STORE_MSG -> handle(msg.getRemoveDataStoreMsg());
+      case REMOVE_DATA_NAMESPACE_MSG -> handle(msg.getRemoveDataNamespaceMsg());
+      case REMOVE_DATA_MSG -> handle(msg.getRemoveDataMsg());
+      case UPDATE_TOKEN_PROPERTY_MSG -> handle(msg.getUpdateTokenPropertyMsg());
+      case UPDATE_DRAWING_MSG -> handle(msg.getUpdateDrawingMsg());
+      case UNDO_DRAW_MSG -> handle(msg.getUndoDrawMsg());
+      case SET_ZONE_VISIBILITY_MSG -> handle(msg.getSetZoneVisibilityMsg());
+      case SHOW_POINTER_MSG -> handle(msg.getShowPointerMsg());
+      case START_TOKEN_MOVE_MSG -> handle(msg.getStartTokenMoveMsg());
+      case STOP_TOKEN_MOVE_MSG -> handle(msg.getStopTokenMoveMsg());
+      case TOGGLE_TOKEN_MOVE_WAYPOINT_MSG -> handle(msg.getToggleTokenMoveWaypointMsg());
+      case SET_SERVER_POLICY_MSG -> handle(msg.getSetServerPolicyMsg());
+      case UPDATE_CAMPAIGN_MSG -> handle(msg.getUpdateCampaignMsg());
+      case UPDATE_INITIATIVE_MSG -> handle(msg.getUpdateInitiativeMsg());
+      case UPDATE_TOKEN_INITIATIVE_MSG -> handle(msg.getUpdateTokenInitiativeMsg());
+      case UPDATE_CAMPAIGN_MACROS_MSG -> handle(msg.getUpdateCampaignMacrosMsg());
+      case UPDATE_GM_MACROS_MSG -> handle(msg.getUpdateGmMacrosMsg());
+      case UPDATE_EXPOSED_AREA_META_MSG -> handle(msg.getUpdateExposedAreaMetaMsg());
+      case UPDATE_TOKEN_MOVE_MSG -> handle(msg.getUpdateTokenMoveMsg());
+      case UPDATE_PLAYER_STATUS_MSG -> handle(msg.getUpdatePlayerStatusMsg());
+      case SET_WALL_TOPOLOGY_MSG -> handle(msg.getSetWallTopologyMsg());
+      case UPDATE_WALL_DATA_MSG -> handle(msg.getUpdateWallDataMsg());
+      default -> log.warn(msgType + "not handled.");
+    }
+  }
+
+  /**
+   * Returns the zone a message is about if the server has announced the zone but not sent it yet.
+   *
+   * @param msg the message.
+   * @return the guid of the pending zone, or {@code null} if the message is not about one.
+   */
+  private @Nullable String getPendingZoneId(Message msg) {
+    if (pendingZones.isEmpty()) {
+      return null;
+    }
+    for (var body : msg.getAllFields().values()) {
+      if (body instanceof MessageOrBuilder message) {
+        var field = message.getDescriptorForType().findFieldByName("zone_guid");
+        if (field != null
+            && !field.isRepeated()
+            && field.getType() == FieldDescriptor.Type.STRING
+            && pendingZones.containsKey((String) message.getField(field))) {
+          return (String) message.getField(field);
+        }
+      }
+    }
+    return null;
+  }
+
   private void handle(UpdateTokenMoveMsg msg) {
-    EventQueue.invokeLater(
+    invokeLater(
         () -> {
           var zoneGUID = GUID.valueOf(msg.getZoneGuid());
           var keyToken = GUID.valueOf(msg.getKeyTokenId());
@@ -194,7 +317,7 @@ private void handle(UpdateTokenMoveMsg msg) {
   }
 
   private void handle(UpdateExposedAreaMetaMsg msg) {
-    EventQueue.invokeLater(
+    invokeLater(
         () -> {
           var zoneGUID = GUID.valueOf(msg.getZoneGuid());
           var tokenGUID = msg.hasTokenGuid() ? GUID.valueOf(msg.getTokenGuid().getValue()) : null;
@@ -205,7 +328,7 @@ private void handle(UpdateExposedAreaMetaMsg msg) {
   }
 
   private void handle(UpdateGmMacrosMsg msg) {
-    EventQueue.invokeLater(
+    invokeLater(
         () -> {
           var macros =
               msg.getMacrosList().stream()
@@ -217,7 +340,7 @@ private void handle(UpdateGmMacrosMsg msg) {
   }
 
   private void handle(UpdateCampaignMacrosMsg msg) {
-    EventQueue.invokeLater(
+    invokeLater(
         () -> {
           var macros =
               msg.getMacrosList().stream()
@@ -229,7 +352,7 @@ private void handle(UpdateCampaignMacrosMsg msg) {
   }
 
   private void handle(UpdateTokenInitiativeMsg msg) {
-    EventQueue.invokeLater(
+    invokeLater(
         () -> {
           var zoneGUID = GUID.valueOf(msg.getZoneGuid());
           var tokenGUID = GUID.valueOf(msg.getTokenGuid());
@@ -250,7 +373,7 @@ private void handle(UpdateTokenInitiativeMsg msg) {
   }
 
   private void handle(UpdateInitiativeMsg msg) {
-    EventQueue.invokeLater(
+    invokeLater(
         () -> {
           if (msg.hasList()) {
             InitiativeList list = InitiativeList.fromDto(msg.getList());
@@ -266,7 +389,7 @@ private void handle(UpdateInitiativeMsg msg) {
   }
 
   private void handle(UpdateCampaignMsg msg) {
-    EventQueue.invokeLater(
+    invokeLater(
         () -> {
           CampaignProperties properties = CampaignProperties.fromDto(msg.getProperties());
 
@@ -290,7 +413,7 @@ private void handle(UpdateCampaignMsg msg) {
   }
 
   private void handle(SetServerPolicyMsg msg) {
-    EventQueue.invokeLater(
+    invokeLater(
         () -> {
           ServerPolicy policy = ServerPolicy.fromDto(msg.getPolicy());
           client.setServerPolicy(policy);
@@ -299,7 +422,7 @@ private void handle(SetServerPolicyMsg msg) {
   }
 
   private void handle(ToggleTokenMoveWaypointMsg msg) {
-    EventQueue.invokeLater(
+    invokeLater(
         () -> {
           var zoneGUID = GUID.valueOf(msg.getZoneGuid());
           var keyToken = GUID.valueOf(msg.getKeyTokenId());
@@ -311,7 +434,7 @@ private void handle(ToggleTokenMoveWaypointMsg msg) {
   }
 
   private void handle(StopTokenMoveMsg msg) {
-    EventQueue.invokeLater(
+    invokeLater(
         () -> {
           var zoneGUID = GUID.valueOf(msg.getZoneGuid());
           var keyToken = GUID.valueOf(msg.getKeyTokenId());
@@ -322,7 +445,7 @@ private void handle(StopTokenMoveMsg msg) {
   }
 
   private void handle(StartTokenMoveMsg msg) {
-    EventQueue.invokeLater(
+    invokeLater(
         () -> {
           var playerId = msg.getPlayerId();
           var zoneGUID = GUID.valueOf(msg.getZoneGuid());
@@ -336,7 +459,7 @@ private void handle(StartTokenMoveMsg msg) {
   }
 
   private void handle(ShowPointerMsg msg) {
-    EventQueue.invokeLater(
+    invokeLater(
         () -> {
           MapTool.getFrame()
               .getPointerOverlay()
@@ -346,7 +469,7 @@ private void handle(ShowPointerMsg msg) {
   }
 
   private void handle(SetZoneVisibilityMsg msg) {
-    EventQueue.invokeLater(
+    invokeLater(
         () -> {
           var zoneGUID = GUID.valueOf(msg.getZoneGuid());
           boolean visible = msg.getIsVisible();
@@ -375,7 +498,7 @@ private void handle(SetZoneVisibilityMsg msg) {
   }
 
   private void handle(UndoDrawMsg msg) {
-    EventQueue.invokeLater(
+    invokeLater(
         () -> {
           var zoneGUID = GUID.valueOf(msg.getZoneGuid());
           GUID drawableId = GUID.valueOf(msg.getDrawableGuid());
@@ -391,7 +514,7 @@ private void handle(UndoDrawMsg msg) {
   }
 
   private void handle(UpdateDrawingMsg msg) {
-    EventQueue.invokeLater(
+    invokeLater(
         () -> {
           var zoneGUID = GUID.valueOf(msg.getZoneGuid());
           Pen p = Pen.fromDto(msg.getPen());
@@ -404,7 +527,7 @@ private void handle(UpdateDrawingMsg msg) {
   }
 
   private void handle(UpdateTokenPropertyMsg msg) {
-    EventQueue.invokeLater(
+    invokeLater(
         () -> {
           var zoneGUID = GUID.valueOf(msg.getZoneGuid());
           var zone = client.getCampaign().getZone(zoneGUID);
@@ -523,7 +646,7 @@ private void handle(StartAssetTransferMsg msg) {
   }
 
   private void handle(SetZoneHasFowMsg msg) {
-    EventQueue.invokeLater(
+    invokeLater(
         () -> {
           var zoneGUID = GUID.valueOf(msg.getZoneGuid());
           boolean hasFog = msg.getHasFow();
@@ -537,7 +660,7 @@ private void handle(SetZoneHasFowMsg msg) {
   }
 
   private void handle(SetZoneGridSizeMsg msg) {
-    EventQueue.invokeLater(
+    invokeLater(
         () -> {
           var zoneGUID = GUID.valueOf(msg.getZoneGuid());
           int xOffset = msg.getXOffset();
@@ -559,7 +682,7 @@ private void handle(SetZoneGridSizeMsg msg) {
   }
 
   private void handle(SetVisionTypeMsg msg) {
-    EventQueue.invokeLater(
+    invokeLater(
         () -> {
           var zoneGUID = GUID.valueOf(msg.getZoneGuid());
           VisionType visionType = VisionType.valueOf(msg.getVision().name());
@@ -576,7 +699,7 @@ private void handle(SetVisionTypeMsg msg) {
   }
 
   private void handle(SetTokenLocationMsg msg) {
-    EventQueue.invokeLater(
+    invokeLater(
         () -> {
           // Only the table should process this
           if (client.getPlayer().getName().equalsIgnoreCase("Table")) {
@@ -609,7 +732,7 @@ private void handle(SetTokenLocationMsg msg) {
   }
 
   private void handle(SetLiveTypingLabelMsg msg) {
-    EventQueue.invokeLater(
+    invokeLater(
         () -> {
           if (msg.getTyping()) {
             // add a typer
@@ -622,7 +745,7 @@ private void handle(SetLiveTypingLabelMsg msg) {
   }
 
   private void handle(SetFowMsg msg) {
-    EventQueue.invokeLater(
+    invokeLater(
         () -> {
           var zoneGUID = GUID.valueOf(msg.getZoneGuid());
           var area = Mapper.map(msg.getArea());
@@ -636,7 +759,7 @@ private void handle(SetFowMsg msg) {
   }
 
   private void handle(SetCampaignNameMsg msg) {
-    EventQueue.invokeLater(
+    invokeLater(
         () -> {
           client.getCampaign().setName(msg.getName());
           MapTool.getFrame().setTitle();
@@ -644,7 +767,7 @@ private void handle(SetCampaignNameMsg msg) {
   }
 
   private void handle(SetCampaignLandingMapMsg msg) {
-    EventQueue.invokeLater(
+    invokeLater(
         () -> {
           if (msg.hasLandingMapId()) {
             client.getCampaign().setLandingMapId(GUID.valueOf(msg.getLandingMapId()));
@@ -655,8 +778,11 @@ private void handle(SetCampaignLandingMapMsg msg) {
   }
 
   private void handle(SetCampaignMsg msg) {
-    EventQueue.invokeLater(
+    pendingZones.clear();
+    msg.getPendingZoneGuidsList().forEach(id -> pendingZones.put(id, new ArrayList<>()));
+    invokeLater(
         () -> {
+          resyncingTokens.clear();
           Campaign campaign = Campaign.fromDto(msg.getCampaign());
           MapTool.setCampaign(campaign, null);
 
@@ -666,7 +792,7 @@ private void handle(SetCampaignMsg msg) {
   }
 
   private void handle(SetBoardMsg msg) {
-    EventQueue.invokeLater(
+    invokeLater(
         () -> {
           var zoneGUID = GUID.valueOf(msg.getZoneGuid());
           var zone = client.getCampaign().getZone(zoneGUID);
@@ -678,7 +804,7 @@ private void handle(SetBoardMsg msg) {
   }
 
   private void handle(RestoreZoneViewMsg msg) {
-    EventQueue.invokeLater(
+    invokeLater(
         () -> {
           var zoneGUID = GUID.valueOf(msg.getZoneGuid());
           MapTool.getFrame().getZoneRenderer(zoneGUID).restoreView();
@@ -686,7 +812,7 @@ private void handle(RestoreZoneViewMsg msg) {
   }
 
   private void handle(RenameZoneMsg msg) {
-    EventQueue.invokeLater(
+    invokeLater(
         () -> {
           var zoneGUID = GUID.valueOf(msg.getZoneGuid());
           String name = msg.getName();
@@ -700,12 +826,18 @@ private void handle(RenameZoneMsg msg) {
   }
 
   private void handle(RemoveZoneMsg msg) {
-    EventQueue.invokeLater(
+    invokeLater(
         () -> {
           var zoneGUID = GUID.valueOf(msg.getZoneGuid());
           final var renderer = MapTool.getFrame().getZoneRenderer(zoneGUID);
+          if (renderer == null) {
+            return; // Never received, e.g. removed while it was being streamed.
+          }
           final var zone = renderer.getZone();
           client.getCampaign().removeZone(zoneGUID);
+          var tokenGUIDs = zone.getAllTokens().stream().map(Token::getId).toList();
+          client.getTokenDeltaTracker().removeAll(tokenGUIDs);
+          tokenGUIDs.forEach(resyncingTokens::remove);
           MapTool.getFrame().removeZoneRenderer(renderer);
 
           // Now we have fire off adding the tokens in the zone
@@ -717,30 +849,34 @@ private void handle(RemoveZoneMsg msg) {
   }
 
   private void handle(RemoveTokensMsg msg) {
-    EventQueue.invokeLater(
+    invokeLater(
         () -> {
           var zoneGUID = GUID.valueOf(msg.getZoneGuid());
           var zone = client.getCampaign().getZone(zoneGUID);
           var tokenGUIDs =
               msg.getTokenGuidList().stream().map(GUID::valueOf).collect(Collectors.toList());
           zone.removeTokens(tokenGUIDs);
+          client.getTokenDeltaTracker().removeAll(tokenGUIDs);
+          tokenGUIDs.forEach(resyncingTokens::remove);
           MapTool.getFrame().refresh();
         });
   }
 
   private void handle(RemoveTokenMsg msg) {
-    EventQueue.invokeLater(
+    invokeLater(
         () -> {
           var zoneGUID = GUID.valueOf(msg.getZoneGuid());
           var zone = client.getCampaign().getZone(zoneGUID);
           var tokenGUID = GUID.valueOf(msg.getTokenGuid());
           zone.removeToken(tokenGUID);
+          client.getTokenDeltaTracker().remove(tokenGUID);
+          resyncingTokens.remove(tokenGUID);
           MapTool.getFrame().refresh();
         });
   }
 
   private void handle(RemoveLabelMsg msg) {
-    EventQueue.invokeLater(
+    invokeLater(
         () -> {
           var zoneGUID = GUID.valueOf(msg.getZoneGuid());
           var zone = client.getCampaign().getZone(zoneGUID);
@@ -750,8 +886,17 @@ private void handle(RemoveLabelMsg msg) {
         });
   }
 
-  private void handle(PutZoneMsg msg) {
-    EventQueue.invokeLater(
+  /**
+   * Adds a zone sent by the server, then replays the messages for the zone that arrived before it
+   * and are newer than the zone.
+   *
+   * @param msg the message with the zone.
+   * @param serverVersion the version of the campaign the zone was sent at, the zone includes the
+   *     changes of all messages up to this version.
+   */
+  private void handle(PutZoneMsg msg, long serverVersion) {
+    var deferred = pendingZones.remove(msg.getZone().getId());
+    invokeLater(
         () -> {
           Zone zone = Zone.fromDto(msg.getZone());
           client.getCampaign().putZone(zone);
@@ -767,10 +912,25 @@ private void handle(PutZoneMsg msg) {
           // Now we have fire off adding the tokens in the zone
           new MapToolEventBus().getMainEventBus().post(new TokensAdded(zone, zone.getAllTokens()));
         });
+
+    if (deferred != null) {
+      newerMessages(deferred, serverVersion).forEach(this::dispatchMessage);
+    }
+  }
+
+  /**
+   * Returns the deferred messages for a zone that the zone does not include yet.
+   *
+   * @param deferred the messages that arrived before the zone, in the order they arrived.
+   * @param serverVersion the version of the campaign the zone was sent at.
+   * @return the messages with a later version, in the order they arrived.
+   */
+  static List<Message> newerMessages(List<Message> deferred, long serverVersion) {
+    return deferred.stream().filter(msg -> msg.getServerVersion() > serverVersion).toList();
   }
 
   private void handle(PutLabelMsg msg) {
-    EventQueue.invokeLater(
+    invokeLater(
         () -> {
           var zoneGUID = GUID.valueOf(msg.getZoneGuid());
           var zone = client.getCampaign().getZone(zoneGUID);
@@ -782,7 +942,7 @@ private void handle(PutLabelMsg msg) {
 
   private void handle(PutAssetMsg msg) {
     AssetManager.putAsset(Asset.fromDto(msg.getAsset()));
-    EventQueue.invokeLater(
+    invokeLater(
         () -> {
           MapTool.getFrame().getCurrentZoneRenderer().flushDrawableRenderer();
           MapTool.getFrame().refresh();
@@ -790,7 +950,7 @@ private void handle(PutAssetMsg msg) {
   }
 
   private void handle(PlayerDisconnectedMsg msg) {
-    EventQueue.invokeLater(
+    invokeLater(
         () -> {
           var player = Player.fromDto(msg.getPlayer());
           client.removePlayer(player);
@@ -807,7 +967,7 @@ private void handle(PlayerDisconnectedMsg msg) {
   }
 
   private void handle(PlayerConnectedMsg msg) {
-    EventQueue.invokeLater(
+    invokeLater(
         () -> {
           var player = Player.fromDto(msg.getPlayer());
           client.addPlayer(player);
@@ -824,7 +984,7 @@ private void handle(PlayerConnectedMsg msg) {
   }
 
   private void handle(MovePointerMsg msg) {
-    EventQueue.invokeLater(
+    invokeLater(
         () -> {
           Pointer pointer = MapTool.getFrame().getPointerOverlay().getPointer(msg.getPlayer());
           if (pointer == null) {
@@ -838,7 +998,7 @@ private void handle(MovePointerMsg msg) {
   }
 
   private void handle(MessageMsg msg) {
-    EventQueue.invokeLater(
+    invokeLater(
         () -> {
           TextMessage message = TextMessage.fromDto(msg.getMessage());
           MapTool.addServerMessage(message);
@@ -846,7 +1006,7 @@ private void handle(MessageMsg msg) {
   }
 
   private void handle(HidePointerMsg msg) {
-    EventQueue.invokeLater(
+    invokeLater(
         () -> {
           MapTool.getFrame().getPointerOverlay().removePointer(msg.getPlayer());
           MapTool.getFrame().refresh();
@@ -854,7 +1014,7 @@ private void handle(HidePointerMsg msg) {
   }
 
   private void handle(HideFowMsg msg) {
-    EventQueue.invokeLater(
+    invokeLater(
         () -> {
           var zoneGUID = GUID.valueOf(msg.getZoneGuid());
           var area = Mapper.map(msg.getArea());
@@ -868,7 +1028,7 @@ private void handle(HideFowMsg msg) {
   }
 
   private void handle(ExposePcAreaMsg msg) {
-    EventQueue.invokeLater(
+    invokeLater(
         () -> {
           var zoneGuid = GUID.valueOf(msg.getZoneGuid());
           var renderer = MapTool.getFrame().getZoneRenderer(zoneGuid);
@@ -877,7 +1037,7 @@ private void handle(ExposePcAreaMsg msg) {
   }
 
   private void handle(ExposeFowMsg msg) {
-    EventQueue.invokeLater(
+    invokeLater(
         () -> {
           var zoneGUID = GUID.valueOf(msg.getZoneGuid());
           Area area = Mapper.map(msg.getArea());
@@ -890,12 +1050,12 @@ private void handle(ExposeFowMsg msg) {
   }
 
   private void handle(ExecLinkMsg msg) {
-    EventQueue.invokeLater(
+    invokeLater(
         () -> MacroLinkFunction.receiveExecLink(msg.getLink(), msg.getTarget(), msg.getSource()));
   }
 
   private void handle(ExecFunctionMsg msg) {
-    EventQueue.invokeLater(
+    invokeLater(
         () ->
             ExecFunction.receiveExecFunction(
                 msg.getTarget(),
@@ -905,7 +1065,7 @@ private void handle(ExecFunctionMsg msg) {
   }
 
   private void handle(EnforceZoneViewMsg msg) {
-    EventQueue.invokeLater(
+    invokeLater(
         () -> {
           var zoneGUID = GUID.valueOf(msg.getZoneGuid());
           int x = msg.getX();
@@ -928,7 +1088,7 @@ private void handle(EnforceZoneViewMsg msg) {
   }
 
   private void handle(EnforceZoneMsg msg) {
-    EventQueue.invokeLater(
+    invokeLater(
         () -> {
           var zoneGUID = GUID.valueOf(msg.getZoneGuid());
           ZoneRenderer renderer = MapTool.getFrame().getZoneRenderer(zoneGUID);
@@ -942,23 +1102,84 @@ private void handle(EnforceZoneMsg msg) {
   }
 
   private void handle(EnforceNotificationMsg msg) {
-    EventQueue.invokeLater(
+    invokeLater(
         () -> MapTool.getFrame().getCommandPanel().disableNotifyButton(msg.getEnforce()));
   }
 
   private void handle(PutTokenMsg putTokenMsg) {
-    EventQueue.invokeLater(
+    invokeLater(
         () -> {
           var zoneGUID = GUID.valueOf(putTokenMsg.getZoneGuid());
           var zone = client.getCampaign().getZone(zoneGUID);
           var token = Token.fromDto(putTokenMsg.getToken());
           zone.putToken(token);
+          client
+              .getTokenDeltaTracker()
+              .update(token.getId(), putTokenMsg.getVersion(), putTokenMsg.getToken());
+          var patches = resyncingTokens.remove(token.getId());
+          if (patches != null) {
+            for (var patch : patches) {
+              applyPatch(zone, token.getId(), patch);
+            }
+          }
           MapTool.getFrame().refresh();
         });
   }
 
+  private void handle(PatchTokenMsg patchTokenMsg) {
+    invokeLater(
+        () -> {
+          var zoneGUID = GUID.valueOf(patchTokenMsg.getZoneGuid());
+          var zone = client.getCampaign().getZone(zoneGUID);
+          var tokenGUID = GUID.valueOf(patchTokenMsg.getTokenGuid());
+          var current = zone == null ? null : zone.getToken(tokenGUID);
+          if (current == null) {
+            log.debug("Ignoring patch for unknown token {}", tokenGUID);
+            return;
+          }
+          var pending = resyncingTokens.get(tokenGUID);
+          if (pending != null) {
+            pending.add(patchTokenMsg);
+            return;
+          }
+          long version = client.getTokenDeltaTracker().getVersion(tokenGUID);
+          if (version != patchTokenMsg.getBaseVersion()) {
+            // Applying the patch to a different version could leave us with a token no one else
+            // has, so ask for the whole token and hold on to the patches until it arrives.
+            log.info(
+                "Token {} is at version {}, patch is based on {}, asking for the whole token",
+                tokenGUID,
+                version,
+                patchTokenMsg.getBaseVersion());
+            resyncingTokens.put(tokenGUID, new ArrayList<>(List.of(patchTokenMsg)));
+            client.getServerCommand().getToken(zoneGUID, tokenGUID);
+            return;
+          }
+          applyPatch(zone, tokenGUID, patchTokenMsg);
+          MapTool.getFrame().refresh();
+        });
+  }
+
+  /**
+   * Applies a patch to a token if the token is at the version the patch is based on.
+   *
+   * @param zone the zone the token is on.
+   * @param tokenGUID the id of the token.
+   * @param patchTokenMsg the patch.
+   */
+  private void applyPatch(Zone zone, GUID tokenGUID, PatchTokenMsg patchTokenMsg) {
+    var tracker = client.getTokenDeltaTracker();
+    var current = zone.getToken(tokenGUID);
+    if (current == null || tracker.getVersion(tokenGUID) != patchTokenMsg.getBaseVersion()) {
+      return; // Already included in the token, or superseded by a later one.
+    }
+    var dto = TokenDeltaTracker.apply(current.toDto(), patchTokenMsg);
+    zone.putToken(Token.fromDto(dto));
+    tracker.update(tokenGUID, patchTokenMsg.getVersion(), dto);
+  }
+
   private void handle(EditTokenMsg editTokenMsg) {
-    EventQueue.invokeLater(
+    invokeLater(
         () -> {
           var zoneGUID = GUID.valueOf(editTokenMsg.getZoneGuid());
           var zone = client.getCampaign().getZone(zoneGUID);
@@ -969,7 +1190,7 @@ private void handle(EditTokenMsg editTokenMsg) {
   }
 
   private void handle(DrawMsg drawMsg) {
-    EventQueue.invokeLater(
+    invokeLater(
         () -> {
           var zoneGuid = GUID.valueOf(drawMsg.getZoneGuid());
           Pen pen = Pen.fromDto(drawMsg.getPen());
@@ -982,7 +1203,7 @@ private void handle(DrawMsg drawMsg) {
   }
 
   private void handle(ClearExposedAreaMsg clearExposedAreaMsg) {
-    EventQueue.invokeLater(
+    invokeLater(
         () -> {
           var zoneGUID = GUID.valueOf(clearExposedAreaMsg.getZoneGuid());
           var zone = client.getCampaign().getZone(zoneGUID);
@@ -991,7 +1212,7 @@ private void handle(ClearExposedAreaMsg clearExposedAreaMsg) {
   }
 
   private void handle(ClearAllDrawingsMsg clearAllDrawingsMsg) {
-    EventQueue.invokeLater(
+    invokeLater(
         () -> {
           var zoneGUID = GUID.valueOf(clearAllDrawingsMsg.getZoneGuid());
           var layer = Zone.Layer.valueOf(clearAllDrawingsMsg.getLayer());
@@ -1002,7 +1223,7 @@ private void handle(ClearAllDrawingsMsg clearAllDrawingsMsg) {
   }
 
   private void handle(ChangeZoneDisplayNameMsg changeZoneDisplayNameMsg) {
-    EventQueue.invokeLater(
+    invokeLater(
         () -> {
           var zoneGUID = GUID.valueOf(changeZoneDisplayNameMsg.getZoneGuid());
           String displayName = changeZoneDisplayNameMsg.getName();
@@ -1020,7 +1241,7 @@ private void handle(ChangeZoneDisplayNameMsg changeZoneDisplayNameMsg) {
   }
 
   private void handle(UpdateMaskTopologyMsg updateMaskTopologyMsg) {
-    EventQueue.invokeLater(
+    invokeLater(
         () -> {
           var zoneGUID = GUID.valueOf(updateMaskTopologyMsg.getZoneGuid());
           var area = Mapper.map(updateMaskTopologyMsg.getArea());
@@ -1035,7 +1256,7 @@ private void handle(UpdateMaskTopologyMsg updateMaskTopologyMsg) {
   private void handle(BootPlayerMsg bootPlayerMsg) {
     String playerName = bootPlayerMsg.getPlayerName();
     if (client.getPlayer().getName().equals(playerName))
-      EventQueue.invokeLater(
+      invokeLater(
           () -> {
             AppActions.disconnectFromServer();
             MapTool.showInformation("You have been booted from the server.");
@@ -1066,7 +1287,7 @@ private void handle(UpdatePlayerStatusMsg updatePlayerStatusMsg) {
   }
 
   private void handle(SetWallTopologyMsg setWallTopologyMsg) {
-    EventQueue.invokeLater(
+    invokeLater(
         () -> {
           var zoneId = new GUID(setWallTopologyMsg.getZoneGuid());
           var zone = client.getCampaign().getZone(zoneId);
@@ -1081,7 +1302,7 @@ private void handle(SetWallTopologyMsg setWallTopologyMsg) {
   }
 
   private void handle(UpdateWallDataMsg updateWallDataMsg) {
-    EventQueue.invokeLater(
+    invokeLater(
         () -> {
           var zoneId = new GUID(updateWallDataMsg.getZoneGuid());
           var zone = client.getCampaign().getZone(zoneId);
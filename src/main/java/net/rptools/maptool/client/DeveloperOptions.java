@@ -46,7 +46,13 @@ public enum Toggle {
      * When enabled, highlights the important points used during token drags, for example, the drag
      * anchor and starting position of the cursor.
      */
-    DebugTokenDragging("debugTokenDragging");
+    DebugTokenDragging("debugTokenDragging"),
+
+    /**
+     * When enabled, campaigns are saved as XML in the legacy format that older versions of MapTool
+     * can read, instead of the protobuf campaign format.
+     */
+    SaveLegacyCampaignFormat("saveLegacyCampaignFormat");
 
     private final String key;
 
@@ -51,6 +51,7 @@
 import javax.swing.*;
 import javax.swing.plaf.FontUIResource;
 import net.rptools.clientserver.ConnectionFactory;
+import net.rptools.clientserver.simple.connection.AbstractConnection;
 import net.rptools.clientserver.simple.connection.DirectConnection;
 import net.rptools.lib.BackupManager;
 import net.rptools.lib.DebugStream;
@@ -73,6 +74,7 @@
 import net.rptools.maptool.client.ui.OSXAdapter;
 import net.rptools.maptool.client.ui.connecttoserverdialog.ConnectToServerDialogPreferences;
 import net.rptools.maptool.client.ui.logger.LogConsoleFrame;
+import net.rptools.maptool.client.ui.metrics.MetricsFrame;
 import net.rptools.maptool.client.ui.sheet.stats.StatSheetListener;
 import net.rptools.maptool.client.ui.theme.Icons;
 import net.rptools.maptool.client.ui.theme.RessourceManager;
@@ -80,6 +82,7 @@
 import net.rptools.maptool.client.ui.zone.PlayerView;
 import net.rptools.maptool.client.ui.zone.renderer.ZoneRenderer;
 import net.rptools.maptool.client.ui.zone.renderer.ZoneRendererFactory;
+import net.rptools.maptool.client.walker.DistanceFieldCache;
 import net.rptools.maptool.events.MapToolEventBus;
 import net.rptools.maptool.events.TokenHoverListener;
 import net.rptools.maptool.events.ZoneLoadedListener;
@@ -110,6 +113,7 @@
 import net.rptools.maptool.server.ServerPolicy;
 import net.rptools.maptool.transfer.AssetTransferManager;
 import net.rptools.maptool.util.*;
+import net.rptools.maptool.util.metrics.MetricsRegistry;
 import net.rptools.parser.ParserException;
 import org.apache.commons.cli.CommandLine;
 import org.apache.commons.cli.CommandLineParser;
@@ -159,6 +163,7 @@ public class MapTool {
   private static MapToolFrame clientFrame;
   private static NoteFrame profilingNoteFrame;
   private static LogConsoleFrame logConsoleFrame;
+  private static MetricsFrame metricsFrame;
   @Nullable private static MapToolServer server;
   private static MapToolClient client;
 
@@ -655,6 +660,8 @@ private static void initialize() {
     // We'll manage our own images
     ImageIO.setUseCache(false);
 
+    registerMetrics();
+
     try {
       SoundManager.configure(SOUND_PROPERTIES);
       SoundManager.registerSoundEvent(
@@ -700,6 +707,30 @@ private static void initialize() {
     new ServerHeartBeatThread().start();
   }
 
+  /** Registers metrics for the queues and connections that are not owned by code in this module. */
+  private static void registerMetrics() {
+    MetricsRegistry.gauge(
+        "image.decodeQueueDepth", () -> ImageManager.getDecodeStatistics().queueDepth());
+    MetricsRegistry.gauge(
+        "image.activeDecodes", () -> ImageManager.getDecodeStatistics().activeDecodes());
+    MetricsRegistry.gauge(
+        "network.queuedMessages", () -> AbstractConnection.getStatistics().queuedMessages());
+    MetricsRegistry.counter(
+        "network.messagesSent", () -> AbstractConnection.getStatistics().messagesSent());
+    MetricsRegistry.counter(
+        "network.bytesSent", () -> AbstractConnection.getStatistics().bytesSent());
+    MetricsRegistry.counter(
+        "network.messagesReceived", () -> AbstractConnection.getStatistics().messagesReceived());
+    MetricsRegistry.counter(
+        "network.bytesReceived", () -> AbstractConnection.getStatistics().bytesReceived());
+    MetricsRegistry.gauge(
+        "network.meanQueueWaitMillis",
+        () -> AbstractConnection.getStatistics().meanQueueWaitMillis());
+    MetricsRegistry.gauge(
+        "network.maxQueueWaitMillis",
+        () -> AbstractConnection.getStatistics().maxQueueWaitMillis());
+  }
+
   public static NoteFrame getProfilingNoteFrame() {
     if (profilingNoteFrame == null) {
       profilingNoteFrame = new NoteFrame();
@@ -736,6 +767,18 @@ public static JFrame getLogConsoleNoteFrame() {
     return logConsoleFrame;
   }
 
+  public static MetricsFrame getMetricsFrame() {
+    if (metricsFrame == null) {
+      metricsFrame = new MetricsFrame();
+
+      if (clientFrame != null) {
+        SwingUtil.centerOver(metricsFrame, clientFrame);
+      }
+    }
+
+    return metricsFrame;
+  }
+
   public static String getVersion() {
     return version;
   }
@@ -895,6 +938,7 @@ public static void setCampaign(Campaign campaign, @Nullable GUID defaultZoneId)
 
     // Load up the new
     client.setCampaign(campaign);
+    DistanceFieldCache.clear();
 
     clientFrame.clearZoneRendererList();
     clientFrame.getInitiativePanel().setZone(null);
@@ -1214,6 +1258,7 @@ public static boolean isHostingServer() {
 
   public static void disconnect() {
     client.close();
+    AssetManager.clearServerRequests();
     new MapToolEventBus().getMainEventBus().post(new ServerDisconnected());
 
     MapTool.getFrame()
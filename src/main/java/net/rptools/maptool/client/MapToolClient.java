@@ -38,6 +38,7 @@
 import net.rptools.maptool.server.MapToolServer;
 import net.rptools.maptool.server.ServerCommand;
 import net.rptools.maptool.server.ServerPolicy;
+import net.rptools.maptool.server.TokenDeltaTracker;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
@@ -69,6 +70,7 @@ public enum State {
   private Campaign campaign;
   private ServerPolicy serverPolicy;
   private final ServerCommandClientImpl serverCommand;
+  private final TokenDeltaTracker tokenDeltaTracker = new TokenDeltaTracker();
   private State currentState = State.New;
 
   private MapToolClient(
@@ -269,6 +271,17 @@ public Campaign getCampaign() {
 
   public void setCampaign(Campaign campaign) {
     this.campaign = campaign;
+    tokenDeltaTracker.clear();
+  }
+
+  /**
+   * Returns the tracker of the last synchronized state of the tokens, used to send and receive
+   * token changes as patches.
+   *
+   * @return the token delta tracker.
+   */
+  public TokenDeltaTracker getTokenDeltaTracker() {
+    return tokenDeltaTracker;
   }
 
   private void onDisconnect(Connection connection) {
@@ -34,6 +34,8 @@
 import net.rptools.maptool.model.Token;
 import net.rptools.maptool.model.Zone;
 import net.rptools.maptool.model.library.LibraryManager;
+import net.rptools.maptool.util.metrics.LatencyHistogram;
+import net.rptools.maptool.util.metrics.MetricsRegistry;
 import net.rptools.parser.ParserException;
 import net.rptools.parser.function.Function;
 import org.apache.commons.lang.StringUtils;
@@ -45,6 +47,9 @@ public class MapToolLineParser {
   // Logger for this class.
   private static final Logger log = LogManager.getLogger(MapToolLineParser.class);
 
+  /** Time taken to run top level macros, nested macro calls are included in their caller. */
+  private static final LatencyHistogram MACRO_TIME = MetricsRegistry.histogram("macro.execution");
+
   /** Name and Source or macros that come from chat. */
   public static final String CHAT_INPUT = "chat";
 
@@ -245,6 +250,8 @@ public String parseLine(
       return "";
     }
     Stack<Token> contextTokenStack = new Stack<Token>();
+    final boolean topLevel = contextStack.isEmpty();
+    final long startNanos = System.nanoTime();
     context = enterContext(context);
     MapToolVariableResolver resolver = null;
     boolean resolverInitialized = false;
@@ -1009,6 +1016,9 @@ public String parseLine(
           "lineParser.errorBodyRoll", opts == null ? "" : opts, roll == null ? line : roll);
     } finally {
       exitContext();
+      if (topLevel) {
+        MACRO_TIME.recordSince(startNanos);
+      }
       if (resolverInitialized) {
         // This is the top level call, time to clean up
         resolver.flush();
@@ -93,6 +93,28 @@ public class MapToolVariableResolver implements VariableResolver {
           GM_PANEL);
   private final Map<String, Object> variables = new CaseInsensitiveHashMap<>();
 
+  /**
+   * The arrays that no variable other than their own holds and that have not been read since they
+   * were stored, except by the expression being evaluated. Keyed by identity, as equal arrays can
+   * be held by different variables.
+   */
+  private final Map<JsonArray, OwnedArray> ownedArrays = new IdentityHashMap<>();
+
+  /** A new array made by json.append that nothing else has seen yet, see {@link #offerArray}. */
+  private JsonArray offeredArray;
+
+  /** The variable that holds an array and the length the variable sees. */
+  private static final class OwnedArray {
+    private final String name;
+    private int length;
+    private boolean read;
+
+    private OwnedArray(String name, int length) {
+      this.name = name;
+      this.length = length;
+    }
+  }
+
   private List<Runnable> delayedActionList;
 
   private Token tokenInContext;
@@ -265,7 +287,7 @@ public Object getVariable(String name, VariableModifiers mods) throws ParserExce
 
     // Default
     if (result == null) {
-      result = variables.get(name);
+      result = readVariable(name);
     }
 
     // Prompt
@@ -405,7 +427,94 @@ public void setVariable(String varname, VariableModifiers modifiers, Object valu
       InitiativeRoundFunction.setInitiativeRound(value);
       return;
     }
-    variables.put(varname, value);
+    storeVariable(varname, value);
+  }
+
+  /**
+   * Returns the value of a variable. An array only held by the variable stays owned by it for one
+   * read, so that json.append can append to it in place, it is released when read again.
+   */
+  private Object readVariable(String name) {
+    Object value = variables.get(name);
+    if (value instanceof JsonArray array) {
+      OwnedArray owned = ownedArrays.get(array);
+      if (owned != null) {
+        if (owned.read || array.size() != owned.length) {
+          releaseArray(array);
+          return variables.get(name);
+        }
+        owned.read = true;
+      }
+    }
+    return value;
+  }
+
+  /** Stores the value of a variable, taking ownership of an array offered by json.append. */
+  private void storeVariable(String name, Object value) {
+    JsonArray offered = offeredArray;
+    offeredArray = null;
+    if (value instanceof JsonArray array) {
+      OwnedArray owned = ownedArrays.get(array);
+      if (owned != null && owned.name.equalsIgnoreCase(name)) {
+        // Appended to in place and stored back.
+        owned.length = array.size();
+        owned.read = false;
+        return;
+      }
+      releaseArray(array);
+    }
+    Object old = variables.put(name, value);
+    if (old instanceof JsonArray oldArray && old != value) {
+      ownedArrays.remove(oldArray);
+    }
+    if (value == offered) {
+      ownedArrays.put(offered, new OwnedArray(name, offered.size()));
+    }
+  }
+
+  /**
+   * Returns if an array passed to json.append can be appended to in place, which is the case if
+   * only the variable it was read from holds it and nothing else read it. The variable keeps seeing
+   * the array as it was, unless the result is stored back into it.
+   *
+   * @param array the array to append to.
+   * @return {@code true} if the array can be changed.
+   */
+  public boolean claimArray(JsonArray array) {
+    OwnedArray owned = ownedArrays.get(array);
+    if (owned == null || !owned.read || array.size() != owned.length) {
+      return false;
+    }
+    owned.read = false;
+    return true;
+  }
+
+  /**
+   * Offers a new array made by json.append, if it is stored in a variable before anything else
+   * sees it the variable owns it and it can be appended to in place.
+   *
+   * @param array the new array.
+   */
+  public void offerArray(JsonArray array) {
+    offeredArray = array;
+  }
+
+  /**
+   * Stops an array from being appended to in place. If it was appended to without being stored
+   * back, its variable gets a copy of the elements it had.
+   */
+  private void releaseArray(JsonArray array) {
+    if (array == offeredArray) {
+      offeredArray = null;
+    }
+    OwnedArray owned = ownedArrays.remove(array);
+    if (owned != null && array.size() != owned.length) {
+      JsonArray copy = new JsonArray(owned.length);
+      for (int i = 0; i < owned.length; i++) {
+        copy.add(array.get(i));
+      }
+      variables.put(owned.name, copy);
+    }
   }
 
   /**
@@ -0,0 +1,204 @@
+/*
+ * This software Copyright by the RPTools.net development team, and
+ * licensed under the Affero GPL Version 3 or, at your option, any later
+ * version.
+ *
+ * MapTool Source Code is distributed in the hope that it will be
+ * useful, but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ *
+ * You should have received a copy of the GNU Affero General Public
+ * License * along with this source Code.  If not, please visit
+ * <http://www.gnu.org/licenses/> and specifically the Affero license
+ * text at <http://www.gnu.org/licenses/agpl.html>.
+ */
+package net.rptools.maptool.client;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import net.rptools.maptool.server.proto.Message;
+import net.rptools.maptool.server.proto.Message.MessageTypeCase;
+
+/**
+ * Schedules messages sent from the client to the server so that high frequency messages can be
+ * coalesced. A scheduled message is held back for up to one flush interval, if another message
+ * with the same type and key is scheduled for the same target before it is sent the earlier
+ * message is replaced.
+ *
+ * <p>Messages that are sent immediately act as ordering barriers, all held back messages are sent
+ * before them. A scheduled message only replaces an earlier one if no other message for the same
+ * target has been scheduled in between, so the messages for a target are always received in the
+ * order they were sent.
+ *
+ * <p>This class is thread safe.
+ */
+public class OutboundMessageScheduler {
+
+  /** Thread factory for the thread that sends the held back messages. */
+  private static final ThreadFactory threadFactory =
+      (new com.google.common.util.concurrent.ThreadFactoryBuilder())
+          .setNameFormat("outbound-message-scheduler-%d")
+          .setDaemon(true)
+          .build();
+
+  /**
+   * Statistics for a type of message.
+   *
+   * @param scheduled the number of messages that were scheduled to be sent later.
+   * @param superseded the number of scheduled messages replaced by a later message.
+   * @param sent the number of messages actually sent.
+   * @param sentPerSecond the average number of messages sent per second.
+   */
+  public record TypeStatistics(long scheduled, long superseded, long sent, double sentPerSecond) {}
+
+  /** A held back message. */
+  private record Pending(String target, String key, Supplier<Message> message) {}
+
+  /** The counters for a type of message. */
+  private static class Counters {
+    private long scheduled;
+    private long superseded;
+    private long sent;
+  }
+
+  /** Sends a message to the server. */
+  private final Consumer<Message> sender;
+
+  /** The time in milliseconds between sending held back messages. */
+  private final long flushInterval;
+
+  /** The held back messages in the order they were scheduled. */
+  private final List<Pending> pending = new ArrayList<>();
+
+  /** The counters for each type of message. */
+  private final Map<MessageTypeCase, Counters> counters = new EnumMap<>(MessageTypeCase.class);
+
+  /** The time the statistics were started. */
+  private long statisticsStart = System.nanoTime();
+
+  /** The executor that sends the held back messages, {@code null} if not started. */
+  private ScheduledExecutorService executor;
+
+  /**
+   * Creates a new {@code OutboundMessageScheduler}.
+   *
+   * @param sender sends the message to the server.
+   * @param flushInterval the time in milliseconds between sending held back messages.
+   */
+  public OutboundMessageScheduler(Consumer<Message> sender, long flushInterval) {
+    this.sender = sender;
+    this.flushInterval = flushInterval;
+  }
+
+  /** Starts sending held back messages every flush interval. */
+  public synchronized void start() {
+    if (executor != null) {
+      throw new IllegalStateException("OutboundMessageScheduler was already started");
+    }
+    executor = Executors.newSingleThreadScheduledExecutor(threadFactory);
+    executor.scheduleWithFixedDelay(
+        this::flush, flushInterval, flushInterval, TimeUnit.MILLISECONDS);
+  }
+
+  /** Sends any held back messages and stops the scheduler. */
+  public synchronized void stop() {
+    flush();
+    if (executor != null) {
+      executor.shutdownNow();
+      executor = null;
+    }
+  }
+
+  /**
+   * Sends a message immediately. Any held back messages are sent first.
+   *
+   * @param message the message to send.
+   */
+  public synchronized void send(Message message) {
+    flush();
+    counters(message.getMessageTypeCase()).sent++;
+    sender.accept(message);
+  }
+
+  /**
+   * Schedules a message to be sent with the next flush. The message replaces an earlier scheduled
+   * message with the same type, target and key if there is no other message for the target
+   * scheduled after it.
+   *
+   * @param type the type of the message.
+   * @param target what the message is about, e.g. a token or player.
+   * @param key distinguishes messages of the same type for the same target that do not replace
+   *     each other.
+   * @param message supplies the message to send when it is flushed, if it supplies {@code null}
+   *     nothing is sent.
+   */
+  public synchronized void schedule(
+      MessageTypeCase type, String target, String key, Supplier<Message> message) {
+    var fullKey = type.name() + ':' + key;
+    counters(type).scheduled++;
+    for (int i = pending.size() - 1; i >= 0; i--) {
+      var earlier = pending.get(i);
+      if (!earlier.target().equals(target)) {
+        continue;
+      }
+      if (earlier.key().equals(fullKey)) {
+        pending.set(i, new Pending(target, fullKey, message));
+        counters(type).superseded++;
+        return;
+      }
+      // A different message for the same target, the new message must be sent after it.
+      break;
+    }
+    pending.add(new Pending(target, fullKey, message));
+  }
+
+  /** Sends all held back messages. */
+  public synchronized void flush() {
+    if (pending.isEmpty()) {
+      return;
+    }
+    var messages = new ArrayList<>(pending);
+    pending.clear();
+    for (var p : messages) {
+      var message = p.message().get();
+      if (message != null) {
+        counters(message.getMessageTypeCase()).sent++;
+        sender.accept(message);
+      }
+    }
+  }
+
+  /**
+   * Returns the statistics for each type of message sent since the statistics were last reset.
+   *
+   * @return the statistics for each type of message.
+   */
+  public synchronized Map<MessageTypeCase, TypeStatistics> getStatistics() {
+    double seconds = Math.max(1e-3, (System.nanoTime() - statisticsStart) / 1e9);
+    var statistics = new EnumMap<MessageTypeCase, TypeStatistics>(MessageTypeCase.class);
+    counters.forEach(
+        (type, c) ->
+            statistics.put(
+                type, new TypeStatistics(c.scheduled, c.superseded, c.sent, c.sent / seconds)));
+    return Collections.unmodifiableMap(statistics);
+  }
+
+  /** Resets the statistics. */
+  public synchronized void resetStatistics() {
+    counters.clear();
+    statisticsStart = System.nanoTime();
+  }
+
+  private Counters counters(MessageTypeCase type) {
+    return counters.computeIfAbsent(type, t -> new Counters());
+  }
+}
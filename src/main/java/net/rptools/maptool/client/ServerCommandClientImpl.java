@@ -19,9 +19,12 @@
 import java.awt.geom.Area;
 import java.math.BigDecimal;
 import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
-import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.stream.Collectors;
 import javax.annotation.Nullable;
 import net.rptools.lib.MD5Key;
@@ -56,8 +59,49 @@
 public class ServerCommandClientImpl implements ServerCommand {
   private static final Logger log = LogManager.getLogger(ServerCommandClientImpl.class);
 
+  /**
+   * The {@link Token.Update}s that set the whole of a value, a later update of the same kind for
+   * the same token replaces an earlier one that has not been sent yet.
+   */
+  private static final Set<Token.Update> REPLACEABLE_UPDATES =
+      EnumSet.of(
+          Token.Update.setState,
+          Token.Update.setProperty,
+          Token.Update.setZOrder,
+          Token.Update.setFacing,
+          Token.Update.setScaleX,
+          Token.Update.setScaleY,
+          Token.Update.setScaleXY,
+          Token.Update.setNotes,
+          Token.Update.setGMNotes,
+          Token.Update.setX,
+          Token.Update.setY,
+          Token.Update.setXY,
+          Token.Update.setHaloColor,
+          Token.Update.setLabel,
+          Token.Update.setName,
+          Token.Update.setGMName,
+          Token.Update.setVisible,
+          Token.Update.setVisibleOnlyToOwner,
+          Token.Update.setIsAlwaysVisible,
+          Token.Update.setTokenOpacity,
+          Token.Update.setTerrainModifier,
+          Token.Update.setSpeechName);
+
+  /** The {@link Token.Update}s where the first parameter is the name of the value being set. */
+  private static final Set<Token.Update> NAMED_UPDATES =
+      EnumSet.of(Token.Update.setState, Token.Update.setProperty);
+
+  /** The property type and namespace of game data. */
+  private record DataNamespaceKey(String type, String namespace) {}
+
   private final MapToolClient client;
-  private final TimedEventQueue movementUpdateQueue = new TimedEventQueue(100);
+  private final OutboundMessageScheduler outboundScheduler =
+      new OutboundMessageScheduler(this::sendMessage, 100);
+
+  /** The game data updates waiting to be sent, by namespace and then name. */
+  private final Map<DataNamespaceKey, Map<String, GameDataValueDto>> pendingDataUpdates =
+      new HashMap<>();
 
   public ServerCommandClientImpl(MapToolClient client) {
     this.client = client;
@@ -65,14 +109,24 @@ public ServerCommandClientImpl(MapToolClient client) {
 
   public void start() {
     try {
-      movementUpdateQueue.start();
-    } catch (IllegalThreadStateException e) {
+      outboundScheduler.start();
+    } catch (IllegalStateException e) {
       log.error("ServerCommand was already started", e);
     }
   }
 
   public void stop() {
-    movementUpdateQueue.stopRunning();
+    outboundScheduler.stop();
+  }
+
+  /**
+   * Returns the statistics of the messages sent to the server.
+   *
+   * @return the statistics for each type of message.
+   */
+  public Map<Message.MessageTypeCase, OutboundMessageScheduler.TypeStatistics>
+      getOutboundStatistics() {
+    return outboundScheduler.getStatistics();
   }
 
   public void heartbeat(String data) {
@@ -82,7 +136,9 @@ public void heartbeat(String data) {
 
   public void movePointer(String player, int x, int y) {
     var msg = MovePointerMsg.newBuilder().setPlayer(player).setX(x).setY(y);
-    makeServerCall(Message.newBuilder().setMovePointerMsg(msg).build());
+    var message = Message.newBuilder().setMovePointerMsg(msg).build();
+    outboundScheduler.schedule(
+        Message.MessageTypeCase.MOVE_POINTER_MSG, "player:" + player, "", () -> message);
   }
 
   public void bootPlayer(String player) {
@@ -141,6 +197,11 @@ public void putZone(Zone zone) {
   }
 
   public void removeZone(GUID zoneGUID) {
+    var zone = client.getCampaign().getZone(zoneGUID);
+    if (zone != null) {
+      var tokenGUIDs = zone.getAllTokens().stream().map(Token::getId).toList();
+      client.getTokenDeltaTracker().removeAll(tokenGUIDs);
+    }
     var msg = RemoveZoneMsg.newBuilder().setZoneGuid(zoneGUID.toString());
     makeServerCall(Message.newBuilder().setRemoveZoneMsg(msg).build());
   }
@@ -199,14 +260,30 @@ public void putToken(GUID zoneGUID, Token token) {
     // after changing the token. But they don't tell the zone about it so classes
     // waiting for the zone change event don't get it.
     client.getCampaign().getZone(zoneGUID).putToken(token);
-    var msg = PutTokenMsg.newBuilder().setZoneGuid(zoneGUID.toString()).setToken(token.toDto());
-    makeServerCall(Message.newBuilder().setPutTokenMsg(msg).build());
+    // Only send the fields that changed since the token was last sent or received. The patch is
+    // calculated when the message is sent, so repeated puts of the token are merged.
+    var dto = token.toDto();
+    outboundScheduler.schedule(
+        Message.MessageTypeCase.PUT_TOKEN_MSG,
+        "token:" + token.getId(),
+        "",
+        () -> client.getTokenDeltaTracker().createUpdate(zoneGUID, dto));
+  }
+
+  @Override
+  public void getToken(GUID zoneGUID, GUID tokenGUID) {
+    var msg =
+        GetTokenMsg.newBuilder()
+            .setZoneGuid(zoneGUID.toString())
+            .setTokenGuid(tokenGUID.toString());
+    makeServerCall(Message.newBuilder().setGetTokenMsg(msg).build());
   }
 
   @Override
   public void removeToken(GUID zoneGUID, GUID tokenGUID) {
     // delete local token immediately
     client.getCampaign().getZone(zoneGUID).removeToken(tokenGUID);
+    client.getTokenDeltaTracker().remove(tokenGUID);
     var msg =
         RemoveTokenMsg.newBuilder()
             .setZoneGuid(zoneGUID.toString())
@@ -218,6 +295,7 @@ public void removeToken(GUID zoneGUID, GUID tokenGUID) {
   public void removeTokens(GUID zoneGUID, List<GUID> tokenGUIDs) {
     // delete local tokens immediately
     client.getCampaign().getZone(zoneGUID).removeTokens(tokenGUIDs);
+    client.getTokenDeltaTracker().removeAll(tokenGUIDs);
     var msg = RemoveTokensMsg.newBuilder().setZoneGuid(zoneGUID.toString());
     msg.addAllTokenGuid(tokenGUIDs.stream().map(t -> t.toString()).collect(Collectors.toList()));
     makeServerCall(Message.newBuilder().setRemoveTokensMsg(msg).build());
@@ -240,7 +318,20 @@ public void updateTokenProperty(
             .setZoneGuid(zoneGUID.toString())
             .setProperty(TokenUpdateDto.valueOf(update.name()))
             .addAllValues(parameters);
-    makeServerCall(Message.newBuilder().setUpdateTokenPropertyMsg(msg).build());
+    var message = Message.newBuilder().setUpdateTokenPropertyMsg(msg).build();
+    if (REPLACEABLE_UPDATES.contains(update)) {
+      var key = update.name();
+      if (NAMED_UPDATES.contains(update)) {
+        key += ':' + parameters.get(0).getStringValue();
+      }
+      outboundScheduler.schedule(
+          Message.MessageTypeCase.UPDATE_TOKEN_PROPERTY_MSG,
+          "token:" + tokenGUID,
+          key,
+          () -> message);
+    } else {
+      makeServerCall(message);
+    }
   }
 
   /**
@@ -369,7 +460,9 @@ public void hidePointer(String player) {
 
   public void setLiveTypingLabel(String label, boolean show) {
     var msg = SetLiveTypingLabelMsg.newBuilder().setPlayerName(label).setTyping(show);
-    makeServerCall(Message.newBuilder().setSetLiveTypingLabelMsg(msg).build());
+    var message = Message.newBuilder().setSetLiveTypingLabelMsg(msg).build();
+    outboundScheduler.schedule(
+        Message.MessageTypeCase.SET_LIVE_TYPING_LABEL_MSG, "player:" + label, "", () -> message);
   }
 
   public void enforceNotification(Boolean enforce) {
@@ -389,7 +482,6 @@ public void startTokenMove(String playerId, GUID zoneGUID, GUID tokenGUID, Set<G
   }
 
   public void stopTokenMove(GUID zoneGUID, GUID tokenGUID) {
-    movementUpdateQueue.flush();
     var msg =
         StopTokenMoveMsg.newBuilder()
             .setZoneGuid(zoneGUID.toString())
@@ -403,11 +495,12 @@ public void updateTokenMove(GUID zoneGUID, GUID tokenGUID, int x, int y) {
             .setZoneGuid(zoneGUID.toString())
             .setKeyTokenId(tokenGUID.toString())
             .setPoint(IntPointDto.newBuilder().setX(x).setY(y).build());
-    movementUpdateQueue.enqueue(Message.newBuilder().setUpdateTokenMoveMsg(msg).build());
+    var message = Message.newBuilder().setUpdateTokenMoveMsg(msg).build();
+    outboundScheduler.schedule(
+        Message.MessageTypeCase.UPDATE_TOKEN_MOVE_MSG, "token:" + tokenGUID, "", () -> message);
   }
 
   public void toggleTokenMoveWaypoint(GUID zoneGUID, GUID tokenGUID, ZonePoint cp) {
-    movementUpdateQueue.flush();
     var msg =
         ToggleTokenMoveWaypointMsg.newBuilder()
             .setZoneGuid(zoneGUID.toString())
@@ -554,7 +647,17 @@ public void clearExposedArea(GUID zoneGUID, boolean globalOnly) {
     makeServerCall(Message.newBuilder().setClearExposedAreaMsg(msg).build());
   }
 
+  /**
+   * Sends the message to the server immediately, after any messages that are being held back to be
+   * coalesced.
+   *
+   * @param msg the message to send.
+   */
   private void makeServerCall(Message msg) {
+    outboundScheduler.send(msg);
+  }
+
+  private void sendMessage(Message msg) {
     log.debug(
         "{} making server call {}; state is {}",
         client.getPlayer().getName(),
@@ -636,10 +739,61 @@ public void updateDataNamespace(GameDataDto gameData) {
     makeServerCall(Message.newBuilder().setUpdateDataNamespaceMsg(msg).build());
   }
 
+  /**
+   * Sends updates to game data values. The updates for a namespace are held back until the next
+   * flush of the scheduler, only the latest value for each name is sent and if more than one value
+   * changed they are all sent together as a namespace update, which merges them into the namespace
+   * on the receiving end.
+   *
+   * @param type the property type of the namespace.
+   * @param namespace the namespace of the value.
+   * @param gameData the new value.
+   */
   @Override
   public void updateData(String type, String namespace, GameDataValueDto gameData) {
-    var msg = UpdateDataMsg.newBuilder().setType(type).setNamespace(namespace).setValue(gameData);
-    makeServerCall(Message.newBuilder().setUpdateDataMsg(msg).build());
+    var key = new DataNamespaceKey(type, namespace);
+    synchronized (pendingDataUpdates) {
+      pendingDataUpdates
+          .computeIfAbsent(key, k -> new LinkedHashMap<>())
+          .put(gameData.getName(), gameData);
+    }
+    outboundScheduler.schedule(
+        Message.MessageTypeCase.UPDATE_DATA_MSG,
+        "data:" + type + ':' + namespace,
+        "",
+        () -> takeDataUpdates(key));
+  }
+
+  /**
+   * Removes the held back updates for a namespace and returns the message to send them.
+   *
+   * @param key the property type and namespace.
+   * @return the message, or {@code null} if the updates were already sent.
+   */
+  @Nullable
+  private Message takeDataUpdates(DataNamespaceKey key) {
+    Map<String, GameDataValueDto> values;
+    synchronized (pendingDataUpdates) {
+      values = pendingDataUpdates.remove(key);
+    }
+    if (values == null || values.isEmpty()) {
+      return null;
+    }
+    if (values.size() == 1) {
+      var msg =
+          UpdateDataMsg.newBuilder()
+              .setType(key.type())
+              .setNamespace(key.namespace())
+              .setValue(values.values().iterator().next());
+      return Message.newBuilder().setUpdateDataMsg(msg).build();
+    }
+    var gameData =
+        GameDataDto.newBuilder()
+            .setType(key.type())
+            .setNamespace(key.namespace())
+            .addAllValues(values.values());
+    var msg = UpdateDataNamespaceMsg.newBuilder().setData(gameData);
+    return Message.newBuilder().setUpdateDataNamespaceMsg(msg).build();
   }
 
   @Override
@@ -840,54 +994,4 @@ public void updatePlayerStatus(Player player) {
             .setLoaded(player.getLoaded());
     makeServerCall(Message.newBuilder().setUpdatePlayerStatusMsg(msg).build());
   }
-
-  /**
-   * Some events become obsolete very quickly, such as dragging a token around. This queue always
-   * has exactly one element, the more current version of the event. The event is then dispatched at
-   * some time interval. If a new event arrives before the time interval elapses, it is replaced. In
-   * this way, only the most current version of the event is released.
-   */
-  private class TimedEventQueue extends Thread {
-    private final AtomicBoolean done = new AtomicBoolean(false);
-    private final long delay;
-    private Message msg;
-
-    public TimedEventQueue(long millidelay) {
-      setName("ServerCommandClientImpl.TimedEventQueue");
-      delay = millidelay;
-    }
-
-    public void stopRunning() {
-      done.set(true);
-      try {
-        interrupt();
-        join();
-      } catch (InterruptedException e) {
-        log.error("Interrupted thread join. Thread may not be done running.", e);
-      }
-    }
-
-    public void enqueue(Message message) {
-      msg = message;
-    }
-
-    public synchronized void flush() {
-      if (msg != null) {
-        makeServerCall(msg);
-        msg = null;
-      }
-    }
-
-    @Override
-    public void run() {
-      while (!done.get()) {
-        flush();
-        try {
-          Thread.sleep(delay);
-        } catch (InterruptedException ie) {
-          // nothing to do
-        }
-      }
-    }
-  }
 }
@@ -558,9 +558,9 @@ private static Object getTokenList(
       }
     }
 
-    // Loop through and compare ranges if we have them
+    // The range and area are checked last, planned to use the token index of the zone
+    List<TokenQueryPlanner.Condition> conditions = new ArrayList<>(2);
     if (range != null) {
-      TokenLocationFunctions instance = TokenLocationFunctions.getInstance();
       Token token;
       if (range.has("token")) {
         token = findToken(range.get("token").getAsString(), mapName);
@@ -598,17 +598,12 @@ private static Object getTokenList(
       if (range.has("metric")) {
         metric = range.get("metric").getAsString();
       }
-      List<Token> inrange = new LinkedList<Token>();
-      for (Token targetToken : tokenList) {
-        double distance = instance.getDistance(token, targetToken, useDistancePerCell, metric);
-        if (distance <= upto && distance >= from && token != targetToken) {
-          inrange.add(targetToken);
-        }
+      if (!tokenList.isEmpty()) {
+        conditions.add(
+            TokenQueryPlanner.range(zone, token, from, upto, useDistancePerCell, metric));
       }
-      tokenList.retainAll(inrange);
     }
 
-    // Loop through and compare the area if we have it
     if (area != null) {
       TokenLocationFunctions instance = TokenLocationFunctions.getInstance();
       Token token;
@@ -657,13 +652,9 @@ private static Object getTokenList(
         points[ip] = new Point(joff.get("x").getAsInt() + cp.x, joff.get("y").getAsInt() + cp.y);
         ip += 1;
       }
-      Set<Token> matching = new HashSet<Token>();
-      for (Token targetToken : tokenList) {
-        if (TokenLocationFunctions.isTokenAtXY(targetToken, zone, points))
-          matching.add(targetToken);
-      }
-      tokenList.retainAll(matching);
+      conditions.add(TokenQueryPlanner.area(zone, points));
     }
+    tokenList = TokenQueryPlanner.filter(zone, tokenList, conditions);
 
     ArrayList<String> values = new ArrayList<String>();
     for (Token token : tokenList) {
@@ -65,7 +65,9 @@ private MapFunctions() {
         "getMapName",
         "setMapSelectButton",
         "getMapVision",
-        "setMapVision");
+        "setMapVision",
+        "getMapFogResolution",
+        "setMapFogResolution");
   }
 
   public static MapFunctions getInstance() {
@@ -417,6 +419,29 @@ public Object childEvaluate(
       FunctionUtil.checkNumberParam(functionName, parameters, 0, 0);
       ZoneRenderer currentZR = MapTool.getFrame().getCurrentZoneRenderer();
       return currentZR.getZone().getVisionType().toString();
+    } else if ("getMapFogResolution".equalsIgnoreCase(functionName)) {
+      FunctionUtil.checkNumberParam(functionName, parameters, 0, 0);
+      ZoneRenderer currentZR = MapTool.getFrame().getCurrentZoneRenderer();
+      if (currentZR == null) {
+        throw new ParserException(I18N.getText("macro.function.map.none", functionName));
+      }
+      return BigDecimal.valueOf(currentZR.getZone().getExposureMaskResolution());
+    } else if ("setMapFogResolution".equalsIgnoreCase(functionName)) {
+      FunctionUtil.blockUntrustedMacro(functionName);
+      FunctionUtil.checkNumberParam(functionName, parameters, 1, 1);
+      ZoneRenderer currentZR = MapTool.getFrame().getCurrentZoneRenderer();
+      if (currentZR == null) {
+        throw new ParserException(I18N.getText("macro.function.map.none", functionName));
+      }
+      int resolution = FunctionUtil.paramAsInteger(functionName, parameters, 0, false);
+      if (resolution < 0) {
+        throw new ParserException(
+            I18N.getText("macro.function.general.argumentTypeInvalid", functionName));
+      }
+      Zone zone = currentZR.getZone();
+      zone.setExposureMaskResolution(resolution);
+      MapTool.serverCommand().putZone(zone);
+      return BigDecimal.valueOf(zone.getExposureMaskResolution());
     }
 
     throw new ParserException(I18N.getText("macro.function.general.unknownFunction", functionName));
@@ -14,18 +14,24 @@
  */
 package net.rptools.maptool.client.functions;
 
+import com.google.gson.JsonArray;
 import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
 import java.awt.*;
 import java.awt.geom.Point2D;
 import java.math.BigDecimal;
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
 import java.util.stream.Stream;
+import javax.annotation.Nullable;
 import net.rptools.maptool.client.AppPreferences;
 import net.rptools.maptool.client.MapTool;
 import net.rptools.maptool.client.functions.json.JSONMacroFunctions;
 import net.rptools.maptool.client.ui.zone.renderer.ZoneRenderer;
+import net.rptools.maptool.client.walker.DistanceField;
+import net.rptools.maptool.client.walker.DistanceFieldCache;
 import net.rptools.maptool.client.walker.WalkerMetric;
 import net.rptools.maptool.client.walker.ZoneWalker;
 import net.rptools.maptool.client.walker.astar.AStarSquareEuclideanWalker;
@@ -53,7 +59,7 @@ private static class TokenLocation {
   }
 
   /** Ignore grid for movement metric in distance methods. */
-  private static final String NO_GRID = "NO_GRID";
+  static final String NO_GRID = "NO_GRID";
 
   /** Singleton for class/ */
   private static final TokenLocationFunctions instance = new TokenLocationFunctions();
@@ -71,6 +77,7 @@ private TokenLocationFunctions() {
         "moveToken",
         "goto",
         "getDistanceToXY",
+        "getMovementDistances",
         "setTokenDrawOrder",
         "moveTokenToMap",
         "moveTokenFromMap");
@@ -134,6 +141,10 @@ public Object childEvaluate(
       FunctionUtil.checkNumberParam(functionName, parameters, 2, 6);
       return getDistanceToXY(resolver, parameters);
     }
+    if (functionName.equalsIgnoreCase("getMovementDistances")) {
+      FunctionUtil.checkNumberParam(functionName, parameters, 1, 5);
+      return getMovementDistances(resolver, parameters);
+    }
     if (functionName.equalsIgnoreCase("goto")) {
       FunctionUtil.checkNumberParam(functionName, parameters, 1, 2);
       return gotoLoc(resolver, parameters);
@@ -283,8 +294,24 @@ private Point getTokenPixelLocationOffset(Token token) {
    */
   public double getDistance(Token source, Token target, boolean units, String metric)
       throws ParserException {
+    return getDistance(source.getZoneRenderer().getZone(), source, target, units, metric);
+  }
+
+  /**
+   * Gets the distance between two tokens on a zone following map movement rules.
+   *
+   * @param zone the zone the tokens are on.
+   * @param source The token to get the distance from.
+   * @param target The token to calculate the distance to.
+   * @param units get the distance in the units specified for the map.
+   * @param metric The metric used.
+   * @return the distance.
+   * @throws ParserException when an error occurs
+   * @see #getDistance(Token, Token, boolean, String)
+   */
+  public static double getDistance(
+      Zone zone, Token source, Token target, boolean units, String metric) throws ParserException {
     boolean closedForm = true; // VBL & terrain ignored, so closedForm always work
-    Zone zone = source.getZoneRenderer().getZone();
     Grid grid = zone.getGrid();
     double distance;
 
@@ -292,23 +319,11 @@ public double getDistance(Token source, Token target, boolean units, String metr
       Set<CellPoint> sourceCells = source.getOccupiedCells(grid);
       Set<CellPoint> targetCells = target.getOccupiedCells(grid);
 
-      WalkerMetric wmetric = null;
-      if (metric != null && grid.useMetric()) {
-        try {
-          wmetric = WalkerMetric.valueOf(metric);
-        } catch (IllegalArgumentException e) {
-          throw new ParserException(
-              I18N.getText("macro.function.getDistance.invalidMetric", metric));
-        }
-      }
+      WalkerMetric wmetric = getWalkerMetric(grid, metric, false);
 
       distance = Double.MAX_VALUE;
       if (closedForm) {
-        if (wmetric == null && grid.useMetric())
-          wmetric =
-              MapTool.isPersonalServer()
-                  ? AppPreferences.movementMetric.get()
-                  : MapTool.getServerPolicy().getMovementMetric();
+        if (wmetric == null) wmetric = getWalkerMetric(grid, metric, true);
         // explicitly find difference without walkers
         double curDist;
         for (CellPoint scell : sourceCells) {
@@ -352,6 +367,36 @@ public double getDistance(Token source, Token target, boolean units, String metr
     return distance;
   }
 
+  /**
+   * Returns the walker metric a distance is measured with on a grid. Grids that do not use
+   * metrics have none.
+   *
+   * @param grid the grid.
+   * @param metric the name of the metric, or {@code null} for none.
+   * @param useDefault if the movement metric of the server is used when there is no metric.
+   * @return the walker metric, or {@code null} if there is none.
+   * @throws ParserException if the metric is not a valid metric.
+   */
+  static WalkerMetric getWalkerMetric(Grid grid, String metric, boolean useDefault)
+      throws ParserException {
+    WalkerMetric wmetric = null;
+    if (metric != null && grid.useMetric()) {
+      try {
+        wmetric = WalkerMetric.valueOf(metric);
+      } catch (IllegalArgumentException e) {
+        throw new ParserException(
+            I18N.getText("macro.function.getDistance.invalidMetric", metric));
+      }
+    }
+    if (wmetric == null && useDefault && grid.useMetric()) {
+      wmetric =
+          MapTool.isPersonalServer()
+              ? AppPreferences.movementMetric.get()
+              : MapTool.getServerPolicy().getMovementMetric();
+    }
+    return wmetric;
+  }
+
   /**
    * Gets the distance to a target x,y co-ordinate following map movement rules.
    *
@@ -485,6 +530,102 @@ private BigDecimal getDistance(VariableResolver resolver, List<Object> args)
     }
   }
 
+  /**
+   * Gets the movement distance from a token to each of a list of tokens, following the movement
+   * rules of the map: movement blocking topology, terrain modifiers and fog of war all apply. All
+   * the distances come from a single {@link DistanceField}, which is kept until the topology or
+   * terrain changes.
+   *
+   * @param args arguments to the function.
+   * @return a json object with the distance to each target by its id, {@code -1} if it can not be
+   *     reached.
+   * @throws ParserException if an error occurs.
+   */
+  private JsonObject getMovementDistances(VariableResolver resolver, List<Object> args)
+      throws ParserException {
+    final String fName = "getMovementDistances";
+
+    JsonArray targetIds = FunctionUtil.paramAsJsonArray(fName, args, 0);
+    boolean useDistancePerCell =
+        args.size() > 1 ? FunctionUtil.paramAsBoolean(fName, args, 1, true) : true;
+    Token source = FunctionUtil.getTokenFromParam(resolver, fName, args, 2, -1);
+    double maxDistance = args.size() > 3 ? FunctionUtil.paramAsDouble(fName, args, 3, true) : -1;
+    String metric = args.size() > 4 ? args.get(4).toString() : null;
+
+    Zone zone = source.getZoneRenderer().getZone();
+    List<Token> targets = new ArrayList<>(targetIds.size());
+    for (JsonElement id : targetIds) {
+      Token target = zone.resolveToken(id.getAsString());
+      if (target == null) {
+        throw new ParserException(
+            I18N.getText("macro.function.general.unknownToken", fName, id.getAsString()));
+      }
+      targets.add(target);
+    }
+    return getMovementDistances(zone, source, targets, useDistancePerCell, maxDistance, metric);
+  }
+
+  /**
+   * Gets the movement distance from a token to each of a list of tokens on a zone.
+   *
+   * @param zone the zone the tokens are on.
+   * @param source the token to measure from.
+   * @param targets the tokens to measure to.
+   * @param useDistancePerCell get the distances in the units specified for the map.
+   * @param maxDistance the largest distance to measure, targets further away are {@code -1}. A
+   *     negative value for no limit.
+   * @param metric the name of the metric, or {@code null} for the default.
+   * @return a json object with the distance to each target by its id, {@code -1} if it can not be
+   *     reached.
+   * @throws ParserException if the grid of the zone has no cells, or the metric is not valid.
+   * @see #getMovementDistances(VariableResolver, List)
+   */
+  public static JsonObject getMovementDistances(
+      Zone zone,
+      Token source,
+      List<Token> targets,
+      boolean useDistancePerCell,
+      double maxDistance,
+      @Nullable String metric)
+      throws ParserException {
+    Grid grid = zone.getGrid();
+    if (!grid.getCapabilities().isPathingSupported()) {
+      throw new ParserException(
+          I18N.getText("macro.function.getMovementDistances.noGrid", "getMovementDistances"));
+    }
+    Set<CellPoint> targetCells = new HashSet<>();
+    for (Token target : targets) {
+      targetCells.addAll(target.getOccupiedCells(grid));
+    }
+
+    // One spare cell covers distances that round down to the maximum.
+    double unitsPerCell = zone.getUnitsPerCell();
+    double maxCost =
+        maxDistance < 0
+            ? Double.POSITIVE_INFINITY
+            : (useDistancePerCell ? maxDistance / unitsPerCell : maxDistance) + 1;
+    DistanceField field =
+        DistanceFieldCache.getDistanceField(
+            zone, source, getWalkerMetric(grid, metric, true), targetCells, maxCost);
+
+    JsonObject result = new JsonObject();
+    for (Token target : targets) {
+      double distance = field.getDistance(target);
+      if (distance >= 0 && !useDistancePerCell) {
+        distance /= unitsPerCell;
+      }
+      if (maxDistance >= 0 && distance > maxDistance) {
+        distance = -1;
+      }
+      if (distance == Math.floor(distance)) {
+        result.addProperty(target.getId().toString(), BigDecimal.valueOf((long) distance));
+      } else {
+        result.addProperty(target.getId().toString(), BigDecimal.valueOf(distance));
+      }
+    }
+    return result;
+  }
+
   /**
    * Gets the distance to an x,y location.
    *
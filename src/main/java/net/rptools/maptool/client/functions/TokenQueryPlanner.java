@@ -0,0 +1,265 @@
+/*
+ * This software Copyright by the RPTools.net development team, and
+ * licensed under the Affero GPL Version 3 or, at your option, any later
+ * version.
+ *
+ * MapTool Source Code is distributed in the hope that it will be
+ * useful, but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ *
+ * You should have received a copy of the GNU Affero General Public
+ * License * along with this source Code.  If not, please visit
+ * <http://www.gnu.org/licenses/> and specifically the Affero license
+ * text at <http://www.gnu.org/licenses/agpl.html>.
+ */
+package net.rptools.maptool.client.functions;
+
+import java.awt.Point;
+import java.awt.Rectangle;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+import javax.annotation.Nullable;
+import net.rptools.maptool.client.walker.WalkerMetric;
+import net.rptools.maptool.model.CellPoint;
+import net.rptools.maptool.model.Grid;
+import net.rptools.maptool.model.HexGrid;
+import net.rptools.maptool.model.IsometricGrid;
+import net.rptools.maptool.model.SquareGrid;
+import net.rptools.maptool.model.Token;
+import net.rptools.maptool.model.TokenCellIndex;
+import net.rptools.maptool.model.Zone;
+import net.rptools.parser.ParserException;
+
+/**
+ * Applies the range and area conditions of {@code getTokens()} and {@code getTokenNames()}. Each
+ * condition is asked which tokens it could match using the {@link TokenCellIndex} of the zone,
+ * then the conditions are applied most selective first and only their candidates get the exact
+ * test. The result has the same tokens in the same order as testing every token with every
+ * condition, which is what {@link #scan(List, List)} does.
+ */
+public final class TokenQueryPlanner {
+
+  /** Below this many tokens testing all of them is cheaper than going through the index. */
+  static final int INDEX_THRESHOLD = 32;
+
+  /** Conditions reaching further than this many cells are not worth looking up in the index. */
+  private static final double MAX_INDEXED_REACH = 1 << 16;
+
+  /** A condition of a token query. */
+  public interface Condition {
+    /**
+     * Returns the tokens that can match the condition. Every token that matches must be in the
+     * returned set, but not every token in the set has to match.
+     *
+     * @param index the index of the tokens on the zone.
+     * @return the candidates, or {@code null} if the condition can match any token.
+     */
+    @Nullable
+    Set<Token> getCandidates(TokenCellIndex index);
+
+    /**
+     * Tests a token against the condition.
+     *
+     * @param token the token.
+     * @return {@code true} if the token matches.
+     * @throws ParserException if the condition can not be evaluated.
+     */
+    boolean test(Token token) throws ParserException;
+  }
+
+  private TokenQueryPlanner() {}
+
+  /**
+   * Returns a condition matching the tokens within a distance of a source token, as measured by
+   * {@link TokenLocationFunctions#getDistance(Zone, Token, Token, boolean, String)}. The source
+   * token never matches.
+   *
+   * @param zone the zone the tokens are on.
+   * @param source the token to measure from.
+   * @param from the smallest distance.
+   * @param upto the largest distance.
+   * @param units if the distance is in the units of the map rather than cells.
+   * @param metric the name of the metric, or {@code null} for the default.
+   * @return the condition.
+   * @throws ParserException if the metric is not a valid metric.
+   */
+  public static Condition range(
+      Zone zone, Token source, int from, int upto, boolean units, @Nullable String metric)
+      throws ParserException {
+    Grid grid = zone.getGrid();
+    boolean cellDistance =
+        grid.getCapabilities().isPathingSupported()
+            && !TokenLocationFunctions.NO_GRID.equals(metric);
+    WalkerMetric wmetric =
+        cellDistance ? TokenLocationFunctions.getWalkerMetric(grid, metric, true) : null;
+
+    return new Condition() {
+      @Override
+      public Set<Token> getCandidates(TokenCellIndex index) {
+        double reach = upto;
+        if (units) {
+          double unitsPerCell = zone.getUnitsPerCell();
+          if (!(unitsPerCell > 0)) {
+            return null;
+          }
+          reach /= unitsPerCell;
+        }
+        if (!(reach < MAX_INDEXED_REACH)) {
+          return null;
+        }
+        // One spare cell covers rounding when the distance was scaled by the units per cell.
+        int cells = Math.max(0, (int) Math.ceil(reach) + 1);
+
+        if (cellDistance) {
+          // Every metric of a square grid measures at least the larger of the x and y distance,
+          // the offset coordinates of a hex grid differ by at most twice the hex distance.
+          if (grid instanceof HexGrid) {
+            cells *= 2;
+          } else if (wmetric == null
+              || !(grid instanceof SquareGrid || grid instanceof IsometricGrid)) {
+            return null;
+          }
+          Rectangle occupied = null;
+          for (CellPoint cell : source.getOccupiedCells(grid)) {
+            if (occupied == null) {
+              occupied = new Rectangle(cell.x, cell.y, 0, 0);
+            } else {
+              occupied.add(cell.x, cell.y);
+            }
+          }
+          if (occupied == null) {
+            return null;
+          }
+          return index.getTokensInCells(
+              occupied.x - cells,
+              occupied.y - cells,
+              occupied.x + occupied.width + cells,
+              occupied.y + occupied.height + cells);
+        } else {
+          if (grid.getSize() <= 0) {
+            return null;
+          }
+          // The centres are compared after truncating their difference to whole pixels.
+          Rectangle bounds = source.getBounds(zone);
+          double centerX = bounds.x + bounds.width / 2.0;
+          double centerY = bounds.y + bounds.height / 2.0;
+          double pixels = cells * (double) grid.getSize() + 2;
+          return index.getTokensInBounds(
+              (int) Math.floor(centerX - pixels),
+              (int) Math.floor(centerY - pixels),
+              (int) Math.ceil(centerX + pixels),
+              (int) Math.ceil(centerY + pixels));
+        }
+      }
+
+      @Override
+      public boolean test(Token token) throws ParserException {
+        double distance = TokenLocationFunctions.getDistance(zone, source, token, units, metric);
+        return distance <= upto && distance >= from && source != token;
+      }
+    };
+  }
+
+  /**
+   * Returns a condition matching the tokens at any of the given points, as decided by {@link
+   * TokenLocationFunctions#isTokenAtXY(Token, Zone, Point[])}.
+   *
+   * @param zone the zone the tokens are on.
+   * @param points the cells, or pixels on a map without a grid.
+   * @return the condition.
+   */
+  public static Condition area(Zone zone, Point[] points) {
+    return new Condition() {
+      @Override
+      public Set<Token> getCandidates(TokenCellIndex index) {
+        if (points.length == 0) {
+          return Collections.emptySet();
+        }
+        var extent = new Rectangle(points[0]);
+        for (Point point : points) {
+          extent.add(point);
+        }
+        int maxX = extent.x + extent.width;
+        int maxY = extent.y + extent.height;
+        if (zone.getGrid().getCapabilities().isPathingSupported()) {
+          return index.getTokensInCells(extent.x, extent.y, maxX, maxY);
+        } else {
+          return index.getTokensInBounds(extent.x, extent.y, maxX, maxY);
+        }
+      }
+
+      @Override
+      public boolean test(Token token) {
+        return TokenLocationFunctions.isTokenAtXY(token, zone, points);
+      }
+    };
+  }
+
+  /**
+   * Returns the tokens matching all the conditions, in the order they are given.
+   *
+   * @param zone the zone the tokens are on.
+   * @param tokens the tokens.
+   * @param conditions the conditions.
+   * @return the matching tokens.
+   * @throws ParserException if a condition can not be evaluated.
+   */
+  public static List<Token> filter(Zone zone, List<Token> tokens, List<Condition> conditions)
+      throws ParserException {
+    if (tokens.size() < INDEX_THRESHOLD || conditions.isEmpty()) {
+      return scan(tokens, conditions);
+    }
+
+    record Step(Condition condition, @Nullable Set<Token> candidates) {
+      int estimate(int count) {
+        return candidates == null ? count : Math.min(count, candidates.size());
+      }
+    }
+    TokenCellIndex index = zone.getTokenIndex();
+    List<Step> steps = new ArrayList<>(conditions.size());
+    for (Condition condition : conditions) {
+      steps.add(new Step(condition, condition.getCandidates(index)));
+    }
+    steps.sort(Comparator.comparingInt(step -> step.estimate(tokens.size())));
+
+    List<Token> result = tokens;
+    for (Step step : steps) {
+      List<Token> matching = new ArrayList<>(step.estimate(result.size()));
+      for (Token token : result) {
+        if ((step.candidates() == null || step.candidates().contains(token))
+            && step.condition().test(token)) {
+          matching.add(token);
+        }
+      }
+      result = matching;
+    }
+    return result;
+  }
+
+  /**
+   * Returns the tokens matching all the conditions, in the order they are given, by testing every
+   * token with every condition.
+   *
+   * @param tokens the tokens.
+   * @param conditions the conditions.
+   * @return the matching tokens.
+   * @throws ParserException if a condition can not be evaluated.
+   */
+  public static List<Token> scan(List<Token> tokens, List<Condition> conditions)
+      throws ParserException {
+    List<Token> result = tokens;
+    for (Condition condition : conditions) {
+      List<Token> matching = new ArrayList<>();
+      for (Token token : result) {
+        if (condition.test(token)) {
+          matching.add(token);
+        }
+      }
+      result = matching;
+    }
+    return result;
+  }
+}
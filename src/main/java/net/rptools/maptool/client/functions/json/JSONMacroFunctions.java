@@ -16,14 +16,17 @@
 
 import com.google.gson.*;
 import com.jayway.jsonpath.Configuration;
-import com.jayway.jsonpath.JsonPath;
 import com.jayway.jsonpath.Option;
 import com.jayway.jsonpath.PathNotFoundException;
 import com.jayway.jsonpath.spi.json.GsonJsonProvider;
 import com.jayway.jsonpath.spi.mapper.GsonMappingProvider;
 import java.math.BigDecimal;
 import java.util.ArrayList;
+import java.util.EnumSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import net.rptools.dicelib.expression.ExpressionParser;
 import net.rptools.dicelib.expression.Result;
 import net.rptools.maptool.client.MapToolVariableResolver;
@@ -78,6 +81,9 @@ public static JSONMacroFunctions getInstance() {
   /** Configuration object for JSONPath. */
   private static final Configuration jaywayConfig;
 
+  /** The JSONPath configurations for each set of options passed to json.path.read. */
+  private static final Map<Set<Option>, Configuration> configCache = new ConcurrentHashMap<>();
+
   static {
     jaywayConfig =
         Configuration.builder()
@@ -248,12 +254,15 @@ public Object childEvaluate(
           } else {
             jsonElement = FunctionUtil.paramAsJson(functionName, args, 0);
           }
+          // A value parsed from a string for this call is not seen by anything else, only values
+          // passed as json have to be copied before they are changed.
+          boolean shared = args.get(0) instanceof JsonElement;
           if (jsonElement.isJsonArray()) {
             return jsonArrayFunctions.set(
-                jsonElement.getAsJsonArray(), args.subList(1, args.size()));
+                jsonElement.getAsJsonArray(), args.subList(1, args.size()), shared);
           } else {
             return jsonObjectFunctions.set(
-                jsonElement.getAsJsonObject(), args.subList(1, args.size()));
+                jsonElement.getAsJsonObject(), args.subList(1, args.size()), shared);
           }
         }
       case "json.get":
@@ -296,7 +305,18 @@ public Object childEvaluate(
           } else {
             jsonArray = jsonArrayFunctions.coerceToJsonArray(args.get(0));
           }
-          return jsonArrayFunctions.concatenate(jsonArray, args.subList(1, args.size()));
+          // An array passed as json is copied unless only the variable it was read from holds
+          // it, so that appending to a variable in a loop does not copy the array every time.
+          MapToolVariableResolver variables =
+              resolver instanceof MapToolVariableResolver mtResolver ? mtResolver : null;
+          boolean shared =
+              arg instanceof JsonArray && (variables == null || !variables.claimArray(jsonArray));
+          JsonArray result =
+              jsonArrayFunctions.concatenate(jsonArray, args.subList(1, args.size()), shared);
+          if (result != arg && variables != null) {
+            variables.offerArray(result);
+          }
+          return result;
         }
       case "json.remove":
         {
@@ -849,23 +869,6 @@ private Object handleJsonPathFunctions(String functionName, List<Object> paramet
     }
   }
 
-  /**
-   * Returns a shallow copy of the passed in {@link JsonElement}. If the value is immutable then
-   * this method may just return the value itself without making a copy.
-   *
-   * @param jsonElement The {@link JsonElement} to copy.
-   * @return The resulting json data.
-   */
-  private JsonElement shallowCopy(JsonElement jsonElement) {
-    if (jsonElement.isJsonObject()) {
-      return jsonObjectFunctions.shallowCopy(jsonElement.getAsJsonObject());
-    } else if (jsonElement.isJsonArray()) {
-      return jsonArrayFunctions.shallowCopy(jsonElement.getAsJsonArray());
-    } else {
-      return jsonElement; // Is immutable so no need to return copy,
-    }
-  }
-
   /**
    * Returns a copy of the passed in json with the specified path removed.
    *
@@ -875,7 +878,7 @@ private JsonElement shallowCopy(JsonElement jsonElement) {
    */
   private JsonElement jsonPathDelete(JsonElement json, String path) {
     try {
-      return JsonPath.using(jaywayConfig).parse(shallowCopy(json)).delete(path).json();
+      return JsonPathCopier.delete(jaywayConfig, json, JsonPathCache.get(path));
     } catch (PathNotFoundException ex) {
       // Return original json, this is to preserve backwards compatability pre library update
       return json;
@@ -892,10 +895,10 @@ private JsonElement jsonPathDelete(JsonElement json, String path) {
    * @return The resulting json data.
    */
   private JsonElement jsonPathPut(JsonElement json, String path, String key, Object info) {
-    Object value = asJsonElement(info);
+    JsonElement value = asJsonElement(info);
 
     try {
-      return JsonPath.using(jaywayConfig).parse(shallowCopy(json)).put(path, key, value).json();
+      return JsonPathCopier.put(jaywayConfig, json, JsonPathCache.get(path), key, value);
     } catch (PathNotFoundException ex) {
       // Return original json, this is to preserve backwards compatability pre library update
       return json;
@@ -911,10 +914,10 @@ private JsonElement jsonPathPut(JsonElement json, String path, String key, Objec
    * @return The resulting json data.
    */
   private JsonElement jsonPathSet(JsonElement json, String path, Object info) {
-    Object value = asJsonElement(info);
+    JsonElement value = asJsonElement(info);
 
     try {
-      return JsonPath.using(jaywayConfig).parse(shallowCopy(json)).set(path, value).json();
+      return JsonPathCopier.set(jaywayConfig, json, JsonPathCache.get(path), value);
     } catch (PathNotFoundException ex) {
       // Return original json, this is to preserve backwards compatability pre library update
       return json;
@@ -931,10 +934,8 @@ private JsonElement jsonPathSet(JsonElement json, String path, Object info) {
    */
   private JsonElement jsonPathAdd(JsonElement json, String path, Object info)
       throws ParserException {
-    JsonElement jsonElement = typeConversion.asClonedJsonElement(json);
-    Object value = asJsonElement(info);
-
-    return JsonPath.using(jaywayConfig).parse(jsonElement).add(path, value).json();
+    JsonElement value = asJsonElement(info);
+    return JsonPathCopier.add(jaywayConfig, json, JsonPathCache.get(path), value);
   }
 
   /**
@@ -946,7 +947,7 @@ private JsonElement jsonPathAdd(JsonElement json, String path, Object info)
    */
   private Object jsonPathRead(JsonElement json, String path, Configuration config) {
     JsonElement jsonElement = asJsonElement(json);
-    return typeConversion.asScriptType(JsonPath.using(config).parse(jsonElement).read(path));
+    return typeConversion.asScriptType(JsonPathCache.read(config, jsonElement, path));
   }
 
   /**
@@ -1004,27 +1005,31 @@ public String jsonToScriptString(JsonElement element) {
    * @return the Jayway Configuration
    */
   private static Configuration getConfig(String strConf) {
-    Configuration config = jaywayConfig;
     if (strConf == null) {
-      return config;
+      return jaywayConfig;
     }
     strConf = strConf.toUpperCase();
+    Set<Option> options = EnumSet.noneOf(Option.class);
     if (strConf.contains("AS_PATH_LIST")) {
-      config = config.addOptions(Option.AS_PATH_LIST);
+      options.add(Option.AS_PATH_LIST);
     }
     if (strConf.contains("DEFAULT_PATH_LEAF_TO_NULL")) {
-      config = config.addOptions(Option.DEFAULT_PATH_LEAF_TO_NULL);
+      options.add(Option.DEFAULT_PATH_LEAF_TO_NULL);
     }
     if (strConf.contains("SUPPRESS_EXCEPTIONS")) {
-      config = config.addOptions(Option.SUPPRESS_EXCEPTIONS);
+      options.add(Option.SUPPRESS_EXCEPTIONS);
     }
     if (strConf.contains("ALWAYS_RETURN_LIST")) {
-      config = config.addOptions(Option.ALWAYS_RETURN_LIST);
+      options.add(Option.ALWAYS_RETURN_LIST);
     }
     if (strConf.contains("REQUIRE_PROPERTIES")) {
-      config = config.addOptions(Option.REQUIRE_PROPERTIES);
+      options.add(Option.REQUIRE_PROPERTIES);
+    }
+    if (options.isEmpty()) {
+      return jaywayConfig;
     }
-    return config;
+    return configCache.computeIfAbsent(
+        options, o -> jaywayConfig.addOptions(o.toArray(new Option[0])));
   }
 
   /**
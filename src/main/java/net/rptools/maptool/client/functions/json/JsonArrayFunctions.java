@@ -183,8 +183,24 @@ public JsonArray concatenate(List<JsonArray> arrays) {
    * @return a new {@link JsonArray} containing the concatenated arguments.
    */
   public JsonArray concatenate(JsonArray array, List<?> values) {
-    JsonArray array2 = new JsonArray();
-    array2.addAll(array);
+    return concatenate(array, values, true);
+  }
+
+  /**
+   * Appends values to a {@link JsonArray}. The array is only copied if it is shared, an array that
+   * is not referenced anywhere else is appended to in place.
+   *
+   * @param array The {@link JsonArray} to append to.
+   * @param values the values to append to the end of the array.
+   * @param shared if the array may be referenced elsewhere and must not be changed.
+   * @return the array with the values appended, a new {@link JsonArray} if it was shared.
+   */
+  public JsonArray concatenate(JsonArray array, List<?> values, boolean shared) {
+    JsonArray array2 = array;
+    if (shared) {
+      array2 = new JsonArray(array.size() + values.size());
+      array2.addAll(array);
+    }
     for (Object value : values) {
       array2.add(typeConversion.asJsonElement(value));
     }
@@ -199,8 +215,7 @@ public JsonArray concatenate(JsonArray array, List<?> values) {
    * @return a new {@link JsonArray} without the specified index.
    */
   public JsonArray remove(JsonArray jsonArray, int index) {
-    JsonArray result = new JsonArray();
-    result.addAll(jsonArray);
+    JsonArray result = shallowCopy(jsonArray);
     result.remove(index);
     return result;
   }
@@ -762,7 +777,20 @@ public List<String> jsonArrayToListOfStrings(JsonArray jsonArray) {
    * @return the new JsonArray.
    */
   public JsonArray set(JsonArray jsonArray, List<Object> list) {
-    JsonArray newArray = shallowCopy(jsonArray);
+    return set(jsonArray, list, true);
+  }
+
+  /**
+   * Sets the values of the specified indexes in a Json Array. The array is only copied if it is
+   * shared, an array that is not referenced anywhere else is changed in place.
+   *
+   * @param jsonArray the Json array to set values of.
+   * @param list The list of indexes and values passed from the script.
+   * @param shared if the array may be referenced elsewhere and must not be changed.
+   * @return the array with the values set, a new JsonArray if it was shared.
+   */
+  public JsonArray set(JsonArray jsonArray, List<Object> list, boolean shared) {
+    JsonArray newArray = shared ? shallowCopy(jsonArray) : jsonArray;
     for (int i = 0; i < list.size(); i += 2) {
       BigDecimal index = (BigDecimal) list.get(i);
       Object value = list.get(i + 1);
@@ -783,7 +811,7 @@ public JsonArray set(JsonArray jsonArray, List<Object> list) {
    * @return the copy of the array.
    */
   JsonArray shallowCopy(JsonArray jsonArray) {
-    JsonArray result = new JsonArray();
+    JsonArray result = new JsonArray(jsonArray.size());
     result.addAll(jsonArray);
     return result;
   }
@@ -185,10 +185,25 @@ JsonObject shallowCopy(JsonObject jsonObject) {
    * @throws ParserException if an error occurs.
    */
   public JsonObject set(JsonObject jsonObject, List<Object> list) throws ParserException {
+    return set(jsonObject, list, true);
+  }
+
+  /**
+   * Sets values in a JsonObject. The object is only copied if it is shared, an object that is not
+   * referenced anywhere else is changed in place.
+   *
+   * @param jsonObject The object to add to.
+   * @param list the list of arguments from the script command.
+   * @param shared if the object may be referenced elsewhere and must not be changed.
+   * @return The json object with the values set, a new one if it was shared.
+   * @throws ParserException if an error occurs.
+   */
+  public JsonObject set(JsonObject jsonObject, List<Object> list, boolean shared)
+      throws ParserException {
     if ((list.size() & 1) != 0) {
       throw new ParserException(I18N.getText("macro.function.json.setNoMatchingValue", "json.set"));
     }
-    JsonObject newJsonObject = jsonObject.deepCopy();
+    JsonObject newJsonObject = shared ? shallowCopy(jsonObject) : jsonObject;
 
     for (int i = 0; i < list.size(); i += 2) {
       Object value = list.get(i + 1);
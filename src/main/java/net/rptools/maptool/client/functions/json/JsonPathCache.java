@@ -0,0 +1,221 @@
+/*
+ * This software Copyright by the RPTools.net development team, and
+ * licensed under the Affero GPL Version 3 or, at your option, any later
+ * version.
+ *
+ * MapTool Source Code is distributed in the hope that it will be
+ * useful, but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ *
+ * You should have received a copy of the GNU Affero General Public
+ * License * along with this source Code.  If not, please visit
+ * <http://www.gnu.org/licenses/> and specifically the Affero license
+ * text at <http://www.gnu.org/licenses/agpl.html>.
+ */
+package net.rptools.maptool.client.functions.json;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.jayway.jsonpath.Configuration;
+import com.jayway.jsonpath.JsonPath;
+import com.jayway.jsonpath.spi.json.JsonProvider;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import javax.annotation.Nullable;
+
+/**
+ * Cache of compiled JSONPath expressions used by the json.path.* functions.
+ *
+ * <p>Macros tend to use the same few paths over and over, so each expression is compiled once.
+ * Paths that only consist of plain property names and array indexes, such as <code>$.a.b[2].c
+ * </code> or <code>$['a'][0]</code>, are also recorded as a list of steps so they can be read
+ * straight from the Gson tree without evaluating the path.
+ */
+final class JsonPathCache {
+
+  /** Returned by {@link #readSimple} when the path does not exist. */
+  static final Object NOT_FOUND = new Object();
+
+  /** The maximum number of paths to keep compiled. */
+  private static final int MAX_PATHS = 512;
+
+  /**
+   * A compiled path.
+   *
+   * @param path the compiled path.
+   * @param steps the property names (<code>String</code>) and array indexes (<code>Integer</code>)
+   *     of a simple path, or <code>null</code> if the path has to be evaluated.
+   */
+  record CachedPath(JsonPath path, @Nullable List<Object> steps) {}
+
+  /** The compiled paths, in least recently used order. */
+  private static final Map<String, CachedPath> paths =
+      new LinkedHashMap<>(MAX_PATHS, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, CachedPath> eldest) {
+          return size() > MAX_PATHS;
+        }
+      };
+
+  private JsonPathCache() {}
+
+  /**
+   * Returns the compiled version of a path.
+   *
+   * @param path the JSONPath expression.
+   * @return the compiled path.
+   * @throws com.jayway.jsonpath.InvalidPathException if the path is not valid.
+   */
+  static CachedPath get(String path) {
+    synchronized (paths) {
+      CachedPath cached = paths.get(path);
+      if (cached != null) {
+        return cached;
+      }
+    }
+
+    CachedPath cached = new CachedPath(JsonPath.compile(path), parseSimplePath(path));
+    synchronized (paths) {
+      paths.put(path, cached);
+    }
+    return cached;
+  }
+
+  /**
+   * Reads the value at a path. Simple paths are read directly when no options are set, otherwise
+   * the compiled path is evaluated.
+   *
+   * @param config the JSONPath configuration to read with.
+   * @param json the json value to read.
+   * @param path the JSONPath expression.
+   * @return the value read, as returned by JSONPath.
+   */
+  @Nullable
+  static Object read(Configuration config, JsonElement json, String path) {
+    if (path.isEmpty()) {
+      // Let JSONPath report the error.
+      return JsonPath.using(config).parse(json).read(path);
+    }
+
+    CachedPath cached = get(path);
+    if (cached.steps() != null && config.getOptions().isEmpty()) {
+      Object value = readSimple(config.jsonProvider(), json, cached.steps());
+      if (value != NOT_FOUND) {
+        return value;
+      }
+    }
+    return JsonPath.using(config).parse(json).read(cached.path());
+  }
+
+  /**
+   * Reads the value at a simple path the same way as the JSONPath evaluation would, fetching each
+   * step through the provider so that values are unwrapped identically.
+   *
+   * @param provider the json provider of the configuration used to read the path.
+   * @param json the json value to read.
+   * @param steps the steps of the simple path.
+   * @return the value, or {@link #NOT_FOUND} if the path does not exist in which case the path has
+   *     to be evaluated so that the same error is reported.
+   */
+  @Nullable
+  static Object readSimple(JsonProvider provider, JsonElement json, List<Object> steps) {
+    Object current = json;
+    for (Object step : steps) {
+      if (step instanceof String key
+          && current instanceof JsonObject jsonObject
+          && jsonObject.has(key)) {
+        current = provider.getMapValue(jsonObject, key);
+      } else if (step instanceof Integer index
+          && current instanceof JsonArray jsonArray
+          && index < jsonArray.size()) {
+        current = provider.getArrayIndex(jsonArray, index);
+      } else {
+        return NOT_FOUND;
+      }
+    }
+    return current;
+  }
+
+  /**
+   * Parses a path consisting of only property names and non negative array indexes. Property names
+   * are only accepted as letters, digits and underscores in dot notation or between single quotes
+   * in bracket notation so nothing that needs special handling can get through.
+   *
+   * @param path the JSONPath expression.
+   * @return the steps of the path, or <code>null</code> if it is not a simple path.
+   */
+  @Nullable
+  static List<Object> parseSimplePath(String path) {
+    if (!path.startsWith("$")) {
+      return null;
+    }
+
+    List<Object> steps = new ArrayList<>();
+    int pos = 1;
+    int length = path.length();
+    while (pos < length) {
+      char c = path.charAt(pos);
+      if (c == '.') {
+        int end = skipNameChars(path, pos + 1);
+        if (end == pos + 1) {
+          return null;
+        }
+        steps.add(path.substring(pos + 1, end));
+        pos = end;
+      } else if (c == '[' && pos + 1 < length && path.charAt(pos + 1) == '\'') {
+        int end = skipNameChars(path, pos + 2);
+        if (end == pos + 2 || !path.startsWith("']", end)) {
+          return null;
+        }
+        steps.add(path.substring(pos + 2, end));
+        pos = end + 2;
+      } else if (c == '[') {
+        int end = pos + 1;
+        while (end < length && isDigit(path.charAt(end))) {
+          end++;
+        }
+        if (end == pos + 1 || end - pos > 9 || end >= length || path.charAt(end) != ']') {
+          return null;
+        }
+        steps.add(Integer.parseInt(path.substring(pos + 1, end)));
+        pos = end + 1;
+      } else {
+        return null;
+      }
+    }
+    return steps;
+  }
+
+  /**
+   * Returns the position after the property name characters starting at the given position.
+   *
+   * @param path the path to scan.
+   * @param start the position to start at.
+   * @return the position of the first character that is not part of the name.
+   */
+  private static int skipNameChars(String path, int start) {
+    int pos = start;
+    while (pos < path.length()) {
+      char c = path.charAt(pos);
+      boolean letter = (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z');
+      if (!letter && !isDigit(c) && c != '_') {
+        break;
+      }
+      pos++;
+    }
+    return pos;
+  }
+
+  /**
+   * Returns if the character is an ASCII digit.
+   *
+   * @param c the character to check.
+   * @return <code>true</code> if it is between 0 and 9.
+   */
+  private static boolean isDigit(char c) {
+    return c >= '0' && c <= '9';
+  }
+}
@@ -0,0 +1,395 @@
+/*
+ * This software Copyright by the RPTools.net development team, and
+ * licensed under the Affero GPL Version 3 or, at your option, any later
+ * version.
+ *
+ * MapTool Source Code is distributed in the hope that it will be
+ * useful, but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ *
+ * You should have received a copy of the GNU Affero General Public
+ * License * along with this source Code.  If not, please visit
+ * <http://www.gnu.org/licenses/> and specifically the Affero license
+ * text at <http://www.gnu.org/licenses/agpl.html>.
+ */
+package net.rptools.maptool.client.functions.json;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.jayway.jsonpath.Configuration;
+import com.jayway.jsonpath.DocumentContext;
+import com.jayway.jsonpath.JsonPath;
+import com.jayway.jsonpath.Option;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+import javax.annotation.Nullable;
+import net.rptools.maptool.client.functions.json.JsonPathCache.CachedPath;
+
+/**
+ * Applies JSONPath updates to a copy of a json value, copying only the parts of the value that the
+ * update modifies while the untouched parts of the tree are shared with the original.
+ *
+ * <p>Json values in MT Script are never modified in place once created (functions such as <code>
+ * json.get</code> already hand out nested values without copying them) so only the containers on
+ * the modified paths need to be copied, rather than the whole tree.
+ *
+ * <p>The path is evaluated once, to find the locations it matches. Simple paths are not evaluated
+ * at all as their steps are the location. The containers from the root down to each location are
+ * copied and the update is applied at the locations directly. Paths whose locations can not be
+ * found, and updates that JSONPath would reject or skip at a location, are handed to JSONPath on a
+ * copy so they fail or do nothing in the same way as before.
+ */
+final class JsonPathCopier {
+
+  /**
+   * A location matched by a path in the copy.
+   *
+   * @param parent the copied container holding the matched value.
+   * @param step the key (<code>String</code>) or non negative index (<code>Integer</code>) of the
+   *     matched value in the parent.
+   */
+  private record Location(JsonElement parent, Object step) {
+    JsonElement get() {
+      if (parent.isJsonObject()) {
+        return parent.getAsJsonObject().get((String) step);
+      } else {
+        return parent.getAsJsonArray().get((Integer) step);
+      }
+    }
+
+    void set(JsonElement value) {
+      if (parent.isJsonObject()) {
+        parent.getAsJsonObject().add((String) step, value);
+      } else {
+        parent.getAsJsonArray().set((Integer) step, value);
+      }
+    }
+
+    void remove() {
+      if (parent.isJsonObject()) {
+        parent.getAsJsonObject().remove((String) step);
+      } else {
+        parent.getAsJsonArray().remove((int) (Integer) step);
+      }
+    }
+  }
+
+  /**
+   * A copy of a json value and the locations an update applies to in it.
+   *
+   * @param root the copied root.
+   * @param locations the locations matched by the path.
+   */
+  private record Copy(JsonElement root, List<Location> locations) {}
+
+  private JsonPathCopier() {}
+
+  /**
+   * Returns a copy of the json value with the values matched by the path replaced.
+   *
+   * @param config the JSONPath configuration used for the update.
+   * @param json the json value to update.
+   * @param path the path to set the values of.
+   * @param value the new value.
+   * @return the updated copy.
+   */
+  static JsonElement set(
+      Configuration config, JsonElement json, CachedPath path, JsonElement value) {
+    Copy copy = copy(config, json, path, false);
+    if (copy == null) {
+      return parse(config, json, null).set(path.path(), value).json();
+    }
+    for (Location location : copy.locations()) {
+      location.set(value);
+    }
+    return copy.root();
+  }
+
+  /**
+   * Returns a copy of the json value with a key added to each object matched by the path.
+   *
+   * @param config the JSONPath configuration used for the update.
+   * @param json the json value to update.
+   * @param path the path of the objects to add the key to.
+   * @param key the key to add.
+   * @param value the value of the key.
+   * @return the updated copy.
+   */
+  static JsonElement put(
+      Configuration config, JsonElement json, CachedPath path, String key, JsonElement value) {
+    Copy copy = copy(config, json, path, true);
+    if (copy == null || !copy.locations().stream().allMatch(l -> l.get().isJsonObject())) {
+      return parse(config, json, copy).put(path.path(), key, value).json();
+    }
+    for (Location location : copy.locations()) {
+      location.get().getAsJsonObject().add(key, value);
+    }
+    return copy.root();
+  }
+
+  /**
+   * Returns a copy of the json value with a value added to the end of each array matched by the
+   * path.
+   *
+   * @param config the JSONPath configuration used for the update.
+   * @param json the json value to update.
+   * @param path the path of the arrays to add to.
+   * @param value the value to add.
+   * @return the updated copy.
+   */
+  static JsonElement add(
+      Configuration config, JsonElement json, CachedPath path, JsonElement value) {
+    Copy copy = copy(config, json, path, true);
+    if (copy == null || !copy.locations().stream().allMatch(l -> l.get().isJsonArray())) {
+      return parse(config, json, copy).add(path.path(), value).json();
+    }
+    for (Location location : copy.locations()) {
+      location.get().getAsJsonArray().add(value);
+    }
+    return copy.root();
+  }
+
+  /**
+   * Returns a copy of the json value with the values matched by the path removed.
+   *
+   * @param config the JSONPath configuration used for the update.
+   * @param json the json value to update.
+   * @param path the path of the values to remove.
+   * @return the updated copy.
+   */
+  static JsonElement delete(Configuration config, JsonElement json, CachedPath path) {
+    Copy copy = copy(config, json, path, false);
+    if (copy == null) {
+      return parse(config, json, null).delete(path.path()).json();
+    }
+    // Remove the highest indexes first so the lower ones still point at the same elements.
+    List<Location> locations = new ArrayList<>(copy.locations());
+    locations.sort(Comparator.comparingInt(l -> l.step() instanceof Integer index ? -index : 1));
+    for (Location location : locations) {
+      location.remove();
+    }
+    return copy.root();
+  }
+
+  /**
+   * Parses the copy for JSONPath to update, or a deep copy of the json value if the locations of
+   * the path could not be found.
+   *
+   * @param config the JSONPath configuration used for the update.
+   * @param json the json value to update.
+   * @param copy the copy, or <code>null</code> if there is none.
+   * @return the document to update.
+   */
+  private static DocumentContext parse(
+      Configuration config, JsonElement json, @Nullable Copy copy) {
+    return JsonPath.using(config).parse(copy != null ? copy.root() : json.deepCopy());
+  }
+
+  /**
+   * Finds the locations matched by a path and copies the containers down to them.
+   *
+   * @param config the JSONPath configuration used for the update.
+   * @param json the json value to copy.
+   * @param path the path that will be updated.
+   * @param includeMatched if the matched values will be modified in place by the update (i.e. put
+   *     and add) rather than replaced or removed in their parent (i.e. set and delete).
+   * @return the copy, or <code>null</code> if the locations could not be found.
+   */
+  @Nullable
+  private static Copy copy(
+      Configuration config, JsonElement json, CachedPath path, boolean includeMatched) {
+    if (!json.isJsonObject() && !json.isJsonArray()) {
+      return null; // Primitives and null are immutable
+    }
+    if (path.steps() != null) {
+      Copy copy = copyPaths(json, List.of(path.steps()), includeMatched);
+      if (copy != null) {
+        return copy;
+      }
+    }
+
+    Object matched;
+    try {
+      matched =
+          JsonPath.using(config.addOptions(Option.AS_PATH_LIST, Option.SUPPRESS_EXCEPTIONS))
+              .parse(json)
+              .read(path.path());
+    } catch (RuntimeException e) {
+      return null;
+    }
+    if (!(matched instanceof JsonArray pathArray)) {
+      return null;
+    }
+    // The Gson provider returns the path list as a JsonArray of strings.
+    List<List<Object>> paths = new ArrayList<>(pathArray.size());
+    for (JsonElement element : pathArray) {
+      List<Object> steps = parsePath(element.getAsString());
+      if (steps == null) {
+        return null;
+      }
+      paths.add(steps);
+    }
+    return copyPaths(json, paths, includeMatched);
+  }
+
+  /**
+   * Returns a copy of the root with all containers along the paths copied, and the locations at
+   * the end of the paths.
+   *
+   * @param root the root json object or array.
+   * @param paths the steps of each path, as returned by {@link #parsePath(String)}.
+   * @param includeMatched if the values at the end of the paths should also be copied.
+   * @return the copy, or <code>null</code> if there are no paths or any of them could not be
+   *     followed.
+   */
+  @Nullable
+  private static Copy copyPaths(
+      JsonElement root, List<List<Object>> paths, boolean includeMatched) {
+    if (paths.isEmpty()) {
+      return null; // Nothing matched, so we can't tell what an update would do.
+    }
+
+    Set<JsonElement> copied = Collections.newSetFromMap(new IdentityHashMap<>());
+    JsonElement rootCopy = shallowCopy(root);
+    copied.add(rootCopy);
+
+    List<Location> locations = new ArrayList<>(paths.size());
+    for (List<Object> steps : paths) {
+      if (steps.isEmpty()) {
+        return null; // The root has no parent to be updated in.
+      }
+      JsonElement parent = rootCopy;
+      for (int i = 0; i < steps.size() - 1 && parent != null; i++) {
+        parent = copyChild(parent, steps.get(i), copied);
+      }
+      Object step = parent == null ? null : findChild(parent, steps.get(steps.size() - 1));
+      if (step == null) {
+        return null;
+      }
+      if (includeMatched) {
+        copyChild(parent, step, copied);
+      }
+      locations.add(new Location(parent, step));
+    }
+    return new Copy(rootCopy, locations);
+  }
+
+  /**
+   * Returns the step to a child of a container in the form {@link Location} uses, negative array
+   * indexes count from the end of the array.
+   *
+   * @param parent the container.
+   * @param step the key (<code>String</code>) or index (<code>Integer</code>) of the child.
+   * @return the key or non negative index, or <code>null</code> if there is no such child.
+   */
+  @Nullable
+  private static Object findChild(JsonElement parent, Object step) {
+    if (step instanceof String key && parent.isJsonObject()) {
+      return parent.getAsJsonObject().has(key) ? key : null;
+    } else if (step instanceof Integer index && parent.isJsonArray()) {
+      int size = parent.getAsJsonArray().size();
+      int effective = index < 0 ? size + index : index;
+      return effective >= 0 && effective < size ? effective : null;
+    }
+    return null;
+  }
+
+  /**
+   * Replaces the child of an already copied container with a copy of itself, unless it has already
+   * been copied.
+   *
+   * @param parent the copied container.
+   * @param step the key (<code>String</code>) or index (<code>Integer</code>) of the child.
+   * @param copied the containers that have already been copied.
+   * @return the copied child, or <code>null</code> if it does not exist. Primitive children are
+   *     returned as is.
+   */
+  @Nullable
+  private static JsonElement copyChild(JsonElement parent, Object step, Set<JsonElement> copied) {
+    Object found = findChild(parent, step);
+    if (found == null) {
+      return null;
+    }
+    var location = new Location(parent, found);
+    JsonElement child = location.get();
+    if (copied.contains(child) || (!child.isJsonObject() && !child.isJsonArray())) {
+      return child;
+    }
+
+    JsonElement childCopy = shallowCopy(child);
+    copied.add(childCopy);
+    location.set(childCopy);
+    return childCopy;
+  }
+
+  /**
+   * Parses a normalized JSONPath as returned with {@link Option#AS_PATH_LIST}.
+   *
+   * @param path the normalized path.
+   * @return the steps, <code>String</code> keys and <code>Integer</code> indexes, or <code>null
+   *     </code> if the path is not in normalized form.
+   */
+  @Nullable
+  static List<Object> parsePath(String path) {
+    if (!path.startsWith("$")) {
+      return null;
+    }
+    List<Object> steps = new ArrayList<>();
+    int pos = 1;
+    while (pos < path.length()) {
+      if (path.charAt(pos) != '[' || pos + 1 >= path.length()) {
+        return null;
+      }
+      if (path.charAt(pos + 1) == '\'') {
+        int end = path.indexOf("']", pos + 2);
+        if (end < 0) {
+          return null;
+        }
+        String key = path.substring(pos + 2, end);
+        if (key.contains("'")) {
+          return null; // Several properties, such as ['a','b'].
+        }
+        steps.add(key);
+        pos = end + 2;
+      } else {
+        int end = path.indexOf(']', pos + 1);
+        if (end < 0) {
+          return null;
+        }
+        try {
+          steps.add(Integer.parseInt(path.substring(pos + 1, end)));
+        } catch (NumberFormatException e) {
+          return null;
+        }
+        pos = end + 1;
+      }
+    }
+    return steps;
+  }
+
+  /**
+   * Returns a copy of a json object or array that shares its children with the original.
+   *
+   * @param json the object or array to copy.
+   * @return the copy.
+   */
+  static JsonElement shallowCopy(JsonElement json) {
+    if (json.isJsonObject()) {
+      JsonObject copy = new JsonObject();
+      for (var entry : json.getAsJsonObject().entrySet()) {
+        copy.add(entry.getKey(), entry.getValue());
+      }
+      return copy;
+    } else {
+      JsonArray array = json.getAsJsonArray();
+      JsonArray copy = new JsonArray(array.size());
+      copy.addAll(array);
+      return copy;
+    }
+  }
+}
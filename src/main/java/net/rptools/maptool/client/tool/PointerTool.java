@@ -2009,7 +2009,7 @@ private boolean validateMove(
       Zone zone = renderer.getZone();
       if (zone.hasFog()) {
         // Check that the new position for each token is within the exposed area
-        Area zoneFog = zone.getExposedArea();
+        Area zoneFog = zone.getGlobalExposedArea();
         if (zoneFog == null) zoneFog = new Area();
         boolean useTokenExposedArea =
             MapTool.getServerPolicy().isUseIndividualFOW()
@@ -2062,7 +2062,7 @@ private boolean validateMove_legacy(Token leadToken, Set<GUID> tokenSet, ZonePoi
       boolean isVisible = true;
       if (zone.hasFog()) {
         // Check that the new position for each token is within the exposed area
-        Area fow = zone.getExposedArea();
+        Area fow = zone.getGlobalExposedArea();
         if (fow == null) {
           return true;
         }
@@ -194,6 +194,7 @@ protected JMenu createToolsMenu() {
 
     menu.add(new RPCheckBoxMenuItem(AppActions.TOGGLE_COLLECT_PROFILING_DATA, menu));
     menu.add(new RPCheckBoxMenuItem(AppActions.TOGGLE_LOG_CONSOLE, menu));
+    menu.add(new JMenuItem(AppActions.SHOW_METRICS));
 
     return menu;
   }
@@ -1619,6 +1619,8 @@ public void setCurrentZoneRenderer(ZoneRenderer renderer) {
       zoneRendererPanel.doLayout();
     }
     currentRenderer = renderer;
+    // Decode the images of the new map first, and drop the queued ones of the old map.
+    ImageManager.setPriorityObserver(renderer);
     initiativePanel.update();
     toolbox.setTargetRenderer(renderer);
 
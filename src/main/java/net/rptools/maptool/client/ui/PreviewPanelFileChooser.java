@@ -35,10 +35,12 @@
  */
 public class PreviewPanelFileChooser extends JFileChooser {
 
+  /** Shared by all the choosers, so the thumbnail pack is only opened once. */
+  private static final ThumbnailManager thumbnailManager =
+      new ThumbnailManager(AppUtil.getAppHome("previewPanelThumbs"), new Dimension(150, 150));
+
   private JPanel previewWrapperPanel;
   private ImagePreviewPanel browsePreviewPanel;
-  private ThumbnailManager thumbnailManager =
-      new ThumbnailManager(AppUtil.getAppHome("previewPanelThumbs"), new Dimension(150, 150));
 
   public PreviewPanelFileChooser() {
     this.setCurrentDirectory(AppPreferences.loadDirectory.get());
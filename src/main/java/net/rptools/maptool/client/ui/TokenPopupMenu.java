@@ -308,7 +308,7 @@ public AddGlobalExposedAreaAction() {
     @Override
     public void actionPerformed(ActionEvent e) {
       Zone zone = getRenderer().getZone();
-      Area area = zone.getExposedArea();
+      Area area = zone.getGlobalExposedArea();
       for (GUID tok : selectedTokenSet) {
         Token token = zone.getToken(tok);
         ExposedAreaMetaData meta = zone.getExposedAreaMetaData(token.getExposedAreaGUID());
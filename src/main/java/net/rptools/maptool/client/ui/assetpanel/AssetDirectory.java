@@ -14,6 +14,7 @@
  */
 package net.rptools.maptool.client.ui.assetpanel;
 
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import java.awt.Image;
 import java.awt.Transparency;
 import java.awt.image.BufferedImage;
@@ -25,9 +26,12 @@
 import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 import java.util.concurrent.FutureTask;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 import net.rptools.maptool.client.MapTool;
 import net.rptools.maptool.client.ui.theme.Icons;
 import net.rptools.maptool.client.ui.theme.RessourceManager;
@@ -46,8 +50,29 @@ public class AssetDirectory extends Directory {
 
   private static final Image INVALID_IMAGE = new BufferedImage(1, 1, Transparency.OPAQUE);
 
-  private static ExecutorService largeImageLoaderService = Executors.newFixedThreadPool(1);
-  private static ExecutorService smallImageLoaderService = Executors.newFixedThreadPool(2);
+  /**
+   * Loads the thumbnails on a bounded pool. The most recently requested thumbnails are loaded
+   * first, as those are the ones of the cells currently in view.
+   */
+  private static final ExecutorService imageLoaderService;
+
+  static {
+    int threads = Math.max(2, Math.min(4, Runtime.getRuntime().availableProcessors() - 1));
+    imageLoaderService =
+        new ThreadPoolExecutor(
+            threads,
+            threads,
+            0L,
+            TimeUnit.MILLISECONDS,
+            new PriorityBlockingQueue<>(),
+            new ThreadFactoryBuilder()
+                .setNameFormat("asset-thumbnail-loader-%d")
+                .setDaemon(true)
+                .build());
+  }
+
+  /** The number of thumbnails requested, used to load the most recently requested first. */
+  private static final AtomicLong requestCount = new AtomicLong();
 
   private AtomicBoolean continueProcessing = new AtomicBoolean(true);
 
@@ -94,25 +119,34 @@ public Image getImageFor(File imageFile) {
       return null;
     }
     // load the asset in the background
-    future =
-        new FutureTask<Image>(new ImageLoader(imageFile)) {
-          @Override
-          protected void done() {
-            firePropertyChangeEvent(
-                new PropertyChangeEvent(AssetDirectory.this, PROPERTY_IMAGE_LOADED, false, true));
-          }
-        };
     if (imageFile != null) {
-      if (imageFile.length() < 30 * 1024) {
-        smallImageLoaderService.execute(future);
-      } else {
-        largeImageLoaderService.execute(future);
-      }
+      future = new ImageLoadTask(new ImageLoader(imageFile));
+      imageLoaderService.execute(future);
       imageMap.put(imageFile, future);
     }
     return null;
   }
 
+  /** Loads a thumbnail, ordered so that the most recently requested is run first. */
+  private class ImageLoadTask extends FutureTask<Image> implements Comparable<ImageLoadTask> {
+    private final long request = requestCount.incrementAndGet();
+
+    private ImageLoadTask(ImageLoader loader) {
+      super(loader);
+    }
+
+    @Override
+    protected void done() {
+      firePropertyChangeEvent(
+          new PropertyChangeEvent(AssetDirectory.this, PROPERTY_IMAGE_LOADED, false, true));
+    }
+
+    @Override
+    public int compareTo(ImageLoadTask other) {
+      return Long.compare(other.request, request);
+    }
+  }
+
   @Override
   protected Directory newDirectory(File directory, FilenameFilter fileFilter) {
     return new AssetDirectory(directory, fileFilter);
@@ -0,0 +1,204 @@
+/*
+ * This software Copyright by the RPTools.net development team, and
+ * licensed under the Affero GPL Version 3 or, at your option, any later
+ * version.
+ *
+ * MapTool Source Code is distributed in the hope that it will be
+ * useful, but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ *
+ * You should have received a copy of the GNU Affero General Public
+ * License * along with this source Code.  If not, please visit
+ * <http://www.gnu.org/licenses/> and specifically the Affero license
+ * text at <http://www.gnu.org/licenses/agpl.html>.
+ */
+package net.rptools.maptool.client.ui.commandpanel;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Append only log of the formatted HTML of every chat message. The chat panel only keeps a window
+ * of recent messages in its document, the rest are read back from this log when the user scrolls
+ * to them or the transcript is saved.
+ *
+ * <p>Messages are stored in a temporary file, if the file can not be created the messages are kept
+ * in memory instead. This class is thread safe.
+ *
+ * <p>Each time the log is cleared a new epoch starts. Messages are formatted on another thread
+ * before they are appended, so they carry the epoch they were sent in and messages sent before the
+ * last clear are dropped instead of coming back after it.
+ */
+class ChatTranscriptLog {
+
+  /** Logger instance for this class. */
+  private static final Logger log = LogManager.getLogger(ChatTranscriptLog.class);
+
+  /** The file the messages are written to, {@code null} if messages are kept in memory. */
+  private RandomAccessFile file;
+
+  /** The file offset of the start of each message. */
+  private long[] offsets = new long[1024];
+
+  /** Messages kept in memory if the log file could not be created. */
+  private final List<String> memoryLog = new ArrayList<>();
+
+  /** The number of bytes of complete messages in the log file. */
+  private long length = 0;
+
+  /** The number of messages in the log. */
+  private int size = 0;
+
+  /** The number of times the log has been cleared. */
+  private int epoch = 0;
+
+  /** Creates a new {@code ChatTranscriptLog} backed by a temporary file. */
+  ChatTranscriptLog() {
+    try {
+      File tempFile = File.createTempFile("chat", ".log");
+      tempFile.deleteOnExit();
+      file = new RandomAccessFile(tempFile, "rw");
+    } catch (IOException e) {
+      log.warn("Unable to create chat transcript log, keeping chat history in memory.", e);
+      file = null;
+    }
+  }
+
+  /**
+   * Returns the current epoch, messages sent now should be appended with this epoch.
+   *
+   * @return the number of times the log has been cleared.
+   */
+  synchronized int getEpoch() {
+    return epoch;
+  }
+
+  /**
+   * Appends a message to the log.
+   *
+   * @param html the formatted html of the message.
+   * @return the index of the message in the log.
+   */
+  synchronized int append(String html) {
+    return append(html, epoch);
+  }
+
+  /**
+   * Appends a message to the log unless the log has been cleared since the message was sent.
+   *
+   * @param html the formatted html of the message.
+   * @param sentEpoch the epoch when the message was sent, from {@link #getEpoch()}.
+   * @return the index of the message in the log, or -1 if the message was dropped.
+   */
+  synchronized int append(String html, int sentEpoch) {
+    if (sentEpoch != epoch) {
+      return -1;
+    }
+    if (file != null) {
+      try {
+        byte[] bytes = html.getBytes(StandardCharsets.UTF_8);
+        file.seek(length);
+        file.write(bytes);
+        if (size == offsets.length) {
+          offsets = Arrays.copyOf(offsets, offsets.length * 2);
+        }
+        offsets[size] = length;
+        length += bytes.length;
+        return size++;
+      } catch (IOException e) {
+        log.error("Unable to write to chat transcript log, keeping chat history in memory.", e);
+        switchToMemory();
+      }
+    }
+    memoryLog.add(html);
+    return size++;
+  }
+
+  /**
+   * Returns the message at the specified index.
+   *
+   * @param index the index of the message.
+   * @return the formatted html of the message.
+   */
+  synchronized String get(int index) {
+    if (index < 0 || index >= size) {
+      throw new IndexOutOfBoundsException(index);
+    }
+    if (file == null) {
+      return memoryLog.get(index);
+    }
+    try {
+      long end = index + 1 < size ? offsets[index + 1] : length;
+      byte[] bytes = new byte[(int) (end - offsets[index])];
+      file.seek(offsets[index]);
+      file.readFully(bytes);
+      return new String(bytes, StandardCharsets.UTF_8);
+    } catch (IOException e) {
+      log.error("Unable to read chat transcript log.", e);
+      return "";
+    }
+  }
+
+  /**
+   * Returns the messages between the specified indexes.
+   *
+   * @param from the index of the first message (inclusive).
+   * @param to the index of the last message (exclusive).
+   * @return the formatted html of the messages.
+   */
+  synchronized List<String> get(int from, int to) {
+    var messages = new ArrayList<String>(Math.max(0, to - from));
+    for (int i = Math.max(0, from); i < Math.min(to, size); i++) {
+      messages.add(get(i));
+    }
+    return messages;
+  }
+
+  /**
+   * Returns the number of messages in the log.
+   *
+   * @return the number of messages in the log.
+   */
+  synchronized int size() {
+    return size;
+  }
+
+  /** Removes all messages from the log and starts a new epoch. */
+  synchronized void clear() {
+    epoch++;
+    size = 0;
+    length = 0;
+    memoryLog.clear();
+    if (file != null) {
+      try {
+        file.setLength(0);
+      } catch (IOException e) {
+        log.error("Unable to clear chat transcript log.", e);
+      }
+    }
+  }
+
+  /**
+   * Moves all the messages written to the log file into memory, this is used if writing to the log
+   * file fails.
+   */
+  private void switchToMemory() {
+    var oldFile = file;
+    var messages = get(0, size);
+    file = null;
+    memoryLog.clear();
+    memoryLog.addAll(messages);
+    try {
+      oldFile.close();
+    } catch (IOException e) {
+      // Nothing we can do about it.
+    }
+  }
+}
@@ -18,6 +18,7 @@
 import java.awt.*;
 import java.awt.event.*;
 import java.awt.image.BufferedImage;
+import java.io.IOException;
 import java.util.*;
 import java.util.List;
 import java.util.regex.Pattern;
@@ -561,7 +562,7 @@ private JComponent createTextPropertiesPanel() {
     return panel;
   }
 
-  public String getMessageHistory() {
+  public String getMessageHistory() throws IOException {
     return messagePanel.getMessagesText();
   }
 
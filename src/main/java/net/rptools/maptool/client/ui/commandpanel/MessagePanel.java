@@ -15,21 +15,33 @@
 package net.rptools.maptool.client.ui.commandpanel;
 
 import com.google.common.eventbus.Subscribe;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import java.awt.Color;
 import java.awt.EventQueue;
 import java.awt.GridLayout;
 import java.awt.Rectangle;
+import java.awt.event.AdjustmentEvent;
 import java.awt.event.ComponentEvent;
 import java.awt.event.ComponentListener;
 import java.awt.event.MouseEvent;
 import java.awt.event.MouseMotionAdapter;
 import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.lang.reflect.InvocationTargetException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Deque;
 import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import javax.swing.JEditorPane;
 import javax.swing.JPanel;
+import javax.swing.JScrollBar;
 import javax.swing.JScrollPane;
 import javax.swing.SwingUtilities;
 import javax.swing.ToolTipManager;
@@ -48,9 +60,62 @@
 import net.rptools.maptool.events.MapToolEventBus;
 import net.rptools.maptool.model.TextMessage;
 import net.rptools.maptool.util.MessageUtil;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
 
 public class MessagePanel extends JPanel {
 
+  private static final Logger log = LogManager.getLogger(MessagePanel.class);
+
+  /** The maximum number of messages kept as elements in the chat document. */
+  private static final int MAX_LIVE_MESSAGES = 300;
+
+  /** The number of messages read back from the transcript at a time when the user scrolls. */
+  private static final int PAGE_SIZE = 50;
+
+  /** Executor used to format messages so that the regular expressions do not run on the EDT. */
+  private static final ExecutorService formatExecutor =
+      Executors.newSingleThreadExecutor(
+          new ThreadFactoryBuilder()
+              .setNameFormat("chat-message-formatter-%d")
+              .setDaemon(true)
+              .build());
+
+  /** Matches {HTTP|HTTPS} URLs for auto inline expansion. */
+  private static final Pattern HTTP_URL_PATTERN =
+      Pattern.compile("(^|\\s|>|\002)(https?://[^<>\002\003\\s]+)");
+
+  /** Matches the macro links in a message. */
+  // TODO change this so 'macro' is case-insensitive
+  private static final Pattern MACRO_LINK_PATTERN =
+      Pattern.compile(
+          "href=([\"'])\\s*(macro://(?:[^/]*)/(?:[^?]*)(?:\\?(?:.*?))?)\\1\\s*",
+          Pattern.CASE_INSENSITIVE);
+
+  /** Matches messages that are empty because none of the rolls are visible to this user. */
+  // TODO The leading and trailing '.*' are probably not needed -- test this before removing them
+  private static final Pattern EMPTY_MESSAGE_PATTERN = Pattern.compile(".*\002\\s*\003.*");
+
+  /** Matches the roll start and end markers. */
+  private static final Pattern ROLL_MARKER_PATTERN = Pattern.compile("\002|\003");
+
+  /** Matches the opening body tag of the document text. */
+  private static final Pattern BODY_START_PATTERN =
+      Pattern.compile("<body[^>]*>", Pattern.CASE_INSENSITIVE);
+
+  /** Matches the closing body tag of the document text. */
+  private static final Pattern BODY_END_PATTERN =
+      Pattern.compile("</body>", Pattern.CASE_INSENSITIVE);
+
+  /** The formatted html of all the messages, including those no longer in the document. */
+  private final ChatTranscriptLog transcript = new ChatTranscriptLog();
+
+  /** The document elements for each of the messages in the document, oldest first. */
+  private final Deque<List<Element>> liveMessages = new ArrayDeque<>();
+
+  /** The index in the transcript of the first message in the document. */
+  private int windowStart = 0;
+
   private final JScrollPane scrollPane;
   private final HTMLDocument document;
   private final JEditorPane textPane;
@@ -136,6 +201,7 @@ public void mouseDragged(MouseEvent e) {
                 MapTool.getFrame().getCommandPanel().getScrollLockButton().setSelected(lock);
               }
             });
+    scrollPane.getVerticalScrollBar().addAdjustmentListener(this::scrollBarAdjusted);
 
     add(scrollPane);
     clearMessages();
@@ -194,19 +260,176 @@ public void setTrustedMacroPrefixColors(Color foreground, Color background) {
     repaint();
   }
 
-  public String getMessagesText() {
+  /**
+   * Returns the html of all the messages, including those that are only held in the transcript.
+   * The messages are only changed on the EDT, so if this is called from another thread, such as
+   * the chat auto save, the text is built on the EDT.
+   *
+   * @return the html of all the messages.
+   * @throws IOException if the thread is interrupted while waiting for the EDT, or building the
+   *     text fails.
+   */
+  public String getMessagesText() throws IOException {
+    if (EventQueue.isDispatchThread()) {
+      return buildMessagesText();
+    }
+    var text = new AtomicReference<String>();
+    try {
+      EventQueue.invokeAndWait(() -> text.set(buildMessagesText()));
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Interrupted while reading the messages");
+    } catch (InvocationTargetException e) {
+      throw new IOException("Unable to read the messages", e.getCause());
+    }
+    return text.get();
+  }
+
+  private String buildMessagesText() {
+    String text = textPane.getText();
+    int start = windowStart;
+    int end = windowStart + liveMessages.size();
+    if (start == 0 && end >= transcript.size()) {
+      return text;
+    }
 
-    return textPane.getText();
+    Matcher bodyStart = BODY_START_PATTERN.matcher(text);
+    Matcher bodyEnd = BODY_END_PATTERN.matcher(text);
+    if (!bodyStart.find() || !bodyEnd.find(bodyStart.end())) {
+      return text;
+    }
+    var sb = new StringBuilder(text.substring(0, bodyStart.end()));
+    transcript.get(0, start).forEach(sb::append);
+    sb.append(text, bodyStart.end(), bodyEnd.start());
+    transcript.get(end, transcript.size()).forEach(sb::append);
+    sb.append(text.substring(bodyEnd.start()));
+    return sb.toString();
   }
 
   public void clearMessages() {
+    // Clear the transcript straight away so messages still being formatted are dropped.
+    transcript.clear();
     EventQueue.invokeLater(
         () -> {
           textPane.setText("<html><body id=\"body\"></body></html>");
           ((MessagePanelEditorKit) textPane.getEditorKit()).flush();
+          liveMessages.clear();
+          windowStart = 0;
         });
   }
 
+  /**
+   * Returns if the last message in the transcript is in the document.
+   *
+   * @return {@code true} if the document ends with the newest message.
+   */
+  private boolean isWindowAtEnd() {
+    return windowStart + liveMessages.size() >= transcript.size();
+  }
+
+  /**
+   * Inserts the html of a message at the start or the end of the document.
+   *
+   * @param html the html of the message.
+   * @param atEnd if {@code true} the message is added after the other messages, otherwise it is
+   *     added before them.
+   */
+  private void insertMessage(String html, boolean atEnd) {
+    try {
+      Element body = document.getElement("body");
+      int before = body.getElementCount();
+      if (atEnd) {
+        document.insertBeforeEnd(body, html);
+      } else {
+        document.insertAfterStart(body, html);
+      }
+      int added = body.getElementCount() - before;
+      int first = atEnd ? body.getElementCount() - added : 0;
+      var elements = new ArrayList<Element>(added);
+      for (int i = first; i < first + added; i++) {
+        elements.add(body.getElement(i));
+      }
+      if (atEnd) {
+        liveMessages.addLast(elements);
+      } else {
+        liveMessages.addFirst(elements);
+      }
+    } catch (IOException | BadLocationException e) {
+      log.error("Unable to add message to chat.", e);
+    }
+  }
+
+  /**
+   * Removes the document elements for a message. The message is still available from the
+   * transcript.
+   *
+   * @param elements the elements of the message.
+   */
+  private void removeMessage(List<Element> elements) {
+    for (Element element : elements) {
+      document.removeElement(element);
+    }
+  }
+
+  /** Removes the oldest messages from the document until it is back within the limit. */
+  private void trimOldestMessages() {
+    while (liveMessages.size() > MAX_LIVE_MESSAGES) {
+      removeMessage(liveMessages.removeFirst());
+      windowStart++;
+    }
+  }
+
+  /** Removes the newest messages from the document until it is back within the limit. */
+  private void trimNewestMessages() {
+    while (liveMessages.size() > MAX_LIVE_MESSAGES) {
+      removeMessage(liveMessages.removeLast());
+    }
+  }
+
+  /** Replaces the messages in the document with the newest messages from the transcript. */
+  private void showNewestMessages() {
+    textPane.setText("<html><body id=\"body\"></body></html>");
+    liveMessages.clear();
+    windowStart = Math.max(0, transcript.size() - MAX_LIVE_MESSAGES);
+    int end = transcript.size();
+    for (String html : transcript.get(windowStart, end)) {
+      insertMessage(html, true);
+    }
+  }
+
+  /**
+   * Reads messages back from the transcript into the document when the user scrolls to the top or
+   * bottom of the messages that are in the document.
+   *
+   * @param e the scroll bar event.
+   */
+  private void scrollBarAdjusted(AdjustmentEvent e) {
+    JScrollBar scrollBar = scrollPane.getVerticalScrollBar();
+    if (liveMessages.isEmpty()) {
+      return;
+    }
+    if (e.getValue() == scrollBar.getMinimum() && windowStart > 0) {
+      int oldMaximum = scrollBar.getMaximum();
+      int from = Math.max(0, windowStart - PAGE_SIZE);
+      List<String> older = transcript.get(from, windowStart);
+      for (int i = older.size() - 1; i >= 0; i--) {
+        insertMessage(older.get(i), false);
+      }
+      windowStart = from;
+      trimNewestMessages();
+      // Keep the message the user was looking at in the same place once the layout is updated.
+      SwingUtilities.invokeLater(
+          () -> scrollBar.setValue(Math.max(0, scrollBar.getMaximum() - oldMaximum)));
+    } else if (e.getValue() + scrollBar.getVisibleAmount() >= scrollBar.getMaximum()
+        && !isWindowAtEnd()) {
+      int start = windowStart + liveMessages.size();
+      for (String html : transcript.get(start, start + PAGE_SIZE)) {
+        insertMessage(html, true);
+      }
+      trimOldestMessages();
+    }
+  }
+
   /*
    * We use ASCII control characters to mark off the rolls so that there's no limitation on what (printable) characters the output can include Rolls look like "\036roll output\036" or
    * "\036tooltip\037roll output\036" or "\036\001format info\002roll output\036" or "\036\001format info\002tooltip\037roll output\036"
@@ -215,88 +438,117 @@ public void clearMessages() {
       Pattern.compile("\036(?:\001([^\002]*)\002)?([^\036\037]*)(?:\037([^\036]*))?\036");
 
   public void addMessage(final TextMessage message) {
-    EventQueue.invokeLater(
+    int epoch = transcript.getEpoch();
+    formatExecutor.execute(
         () -> {
-          String output;
-
-          {
-            StringBuffer text = new StringBuffer();
-            Matcher m = roll_pattern.matcher(message.getMessage());
-            while (m.find()) {
-              HashSet<String> options = new HashSet<String>();
-              if (m.group(1) != null) {
-                options.addAll(Arrays.asList(m.group(1).split(",")));
-
-                if (!options.contains("w") && !options.contains("g") && !options.contains("s"))
-                  ; // visible for everyone
-                else if (options.contains("w:" + MapTool.getPlayer().getName().toLowerCase()))
-                  ; // visible for this player
-                else if (options.contains("g") && MapTool.getPlayer().isGM())
-                  ; // visible for GMs
-                else if (options.contains("s")
-                    && message.getSource().equals(MapTool.getPlayer().getName()))
-                  ; // visible to the player who sent it
-                else {
-                  m.appendReplacement(text, ""); // not visible for this player
-                  continue;
-                }
-              }
-              String replacement = null;
-              if (m.group(3) != null) {
-                if (!options.contains("st") && !options.contains("gt")
-                    || options.contains("st")
-                        && message.getSource().equals(MapTool.getPlayer().getName())
-                    || options.contains("gt") && MapTool.getPlayer().isGM())
-                  replacement = "<span class='roll' title='&#171; $2 &#187;'>$3</span>";
-                else replacement = "$3";
-              } else if (options.contains("u")) replacement = "&#171; $2 &#187;";
-              else if (options.contains("r")) replacement = "$2";
-              else
-                replacement =
-                    "&#171;<span class='roll' style='color:blue'>&nbsp;$2&nbsp;</span>&#187;";
-              m.appendReplacement(text, replacement);
-            }
-            m.appendTail(text);
-            output = text.toString();
-          }
-          // Auto inline expansion for {HTTP|HTTPS} URLs
-          // output = output.replaceAll("(^|\\s|>|\002)(https?://[\\w.%-/~?&+#=]+)", "$1<a
-          // href='$2'>$2</a>");
-          output =
-              output.replaceAll(
-                  "(^|\\s|>|\002)(https?://[^<>\002\003\\s]+)", "$1<a href='$2'>$2</a>");
-
+          String output = formatMessage(message);
+          List<String> macroLinks = new ArrayList<>();
           if (!message.getSource().equals(MapTool.getPlayer().getName())) {
-            // TODO change this so 'macro' is case-insensitive
-            Matcher m =
-                Pattern.compile(
-                        "href=([\"'])\\s*(macro://(?:[^/]*)/(?:[^?]*)(?:\\?(?:.*?))?)\\1\\s*",
-                        Pattern.CASE_INSENSITIVE)
-                    .matcher(output);
+            Matcher m = MACRO_LINK_PATTERN.matcher(output);
             while (m.find()) {
-              MacroLinkFunction.getInstance().processMacroLink(m.group(2));
+              macroLinks.add(m.group(2));
             }
           }
           // if rolls not being visible to this user result in an empty message, display nothing
-          // TODO The leading and trailing '.*' are probably not needed -- test this before
-          // removing them
-          if (!output.matches(".*\002\\s*\003.*")) {
-            output = output.replaceAll("\002|\003", "");
-
-            try {
-              Element element = document.getElement("body");
-              if (!output.toLowerCase().startsWith("<div") || !output.endsWith("</div>")) {
-                document.insertBeforeEnd(element, "<div>" + output + "</div>");
-              } else {
-                document.insertBeforeEnd(element, output);
-              }
-              if (!message.getSource().equals(MapTool.getPlayer().getName())) {
-                MapTool.playSound(SND_MESSAGE_RECEIVED);
-              }
-            } catch (IOException | BadLocationException ioe) {
-              ioe.printStackTrace();
+          final String html;
+          if (EMPTY_MESSAGE_PATTERN.matcher(output).matches()) {
+            html = null;
+          } else {
+            output = ROLL_MARKER_PATTERN.matcher(output).replaceAll("");
+            if (!output.toLowerCase().startsWith("<div") || !output.endsWith("</div>")) {
+              html = "<div>" + output + "</div>";
+            } else {
+              html = output;
             }
           }
+          EventQueue.invokeLater(() -> showMessage(message, html, macroLinks, epoch));
         });
   }
+
+  /**
+   * Adds the formatted message to the transcript and the document. This must be called on the EDT.
+   *
+   * @param message the message being shown.
+   * @param html the formatted html of the message, or {@code null} if it should not be shown.
+   * @param macroLinks the macro links in the message.
+   * @param epoch the epoch of the transcript when the message was sent.
+   */
+  private void showMessage(TextMessage message, String html, List<String> macroLinks, int epoch) {
+    for (String link : macroLinks) {
+      MacroLinkFunction.getInstance().processMacroLink(link);
+    }
+    if (html == null) {
+      return;
+    }
+
+    boolean wasAtEnd = isWindowAtEnd();
+    if (transcript.append(html, epoch) < 0) {
+      return; // The chat was cleared after the message was sent.
+    }
+    if (wasAtEnd) {
+      insertMessage(html, true);
+      if (!MapTool.getFrame().getCommandPanel().getScrollLockButton().isSelected()
+          || liveMessages.size() > MAX_LIVE_MESSAGES * 2) {
+        trimOldestMessages();
+      }
+    } else if (!MapTool.getFrame().getCommandPanel().getScrollLockButton().isSelected()) {
+      showNewestMessages();
+    }
+
+    if (!message.getSource().equals(MapTool.getPlayer().getName())) {
+      MapTool.playSound(SND_MESSAGE_RECEIVED);
+    }
+  }
+
+  /**
+   * Expands the rolls and URLs in the message. This is thread safe and does not need to run on the
+   * EDT.
+   *
+   * @param message the message to format.
+   * @return the message with the rolls and URLs expanded.
+   */
+  private static String formatMessage(TextMessage message) {
+    String output;
+
+    {
+      StringBuffer text = new StringBuffer();
+      Matcher m = roll_pattern.matcher(message.getMessage());
+      while (m.find()) {
+        HashSet<String> options = new HashSet<String>();
+        if (m.group(1) != null) {
+          options.addAll(Arrays.asList(m.group(1).split(",")));
+
+          if (!options.contains("w") && !options.contains("g") && !options.contains("s"))
+            ; // visible for everyone
+          else if (options.contains("w:" + MapTool.getPlayer().getName().toLowerCase()))
+            ; // visible for this player
+          else if (options.contains("g") && MapTool.getPlayer().isGM())
+            ; // visible for GMs
+          else if (options.contains("s")
+              && message.getSource().equals(MapTool.getPlayer().getName()))
+            ; // visible to the player who sent it
+          else {
+            m.appendReplacement(text, ""); // not visible for this player
+            continue;
+          }
+        }
+        String replacement = null;
+        if (m.group(3) != null) {
+          if (!options.contains("st") && !options.contains("gt")
+              || options.contains("st") && message.getSource().equals(MapTool.getPlayer().getName())
+              || options.contains("gt") && MapTool.getPlayer().isGM())
+            replacement = "<span class='roll' title='&#171; $2 &#187;'>$3</span>";
+          else replacement = "$3";
+        } else if (options.contains("u")) replacement = "&#171; $2 &#187;";
+        else if (options.contains("r")) replacement = "$2";
+        else
+          replacement = "&#171;<span class='roll' style='color:blue'>&nbsp;$2&nbsp;</span>&#187;";
+        m.appendReplacement(text, replacement);
+      }
+      m.appendTail(text);
+      output = text.toString();
+    }
+    // Auto inline expansion for {HTTP|HTTPS} URLs
+    return HTTP_URL_PATTERN.matcher(output).replaceAll("$1<a href='$2'>$2</a>");
+  }
 }
@@ -24,9 +24,13 @@
 import java.awt.event.KeyEvent;
 import java.awt.image.BufferedImage;
 import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.nio.file.Files;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
@@ -45,6 +49,8 @@
 import net.rptools.maptool.client.ui.Scale;
 import net.rptools.maptool.client.ui.ZoneImageGenerator;
 import net.rptools.maptool.client.ui.zone.PlayerView;
+import net.rptools.maptool.client.ui.zone.renderer.PngTileWriter;
+import net.rptools.maptool.client.ui.zone.renderer.ZoneRasterizer;
 import net.rptools.maptool.client.ui.zone.renderer.ZoneRenderer;
 import net.rptools.maptool.language.I18N;
 import net.rptools.maptool.model.Token;
@@ -635,45 +641,26 @@ public void screenCapture() throws Exception {
                   .setStatusMessage(I18N.getString("dialog.screenshot.msg.screenshotSaved"));
             }
           } else if (interactPanel.getRadioButton("METHOD_BACKGROUND").isSelected()) {
-            // We must call preScreenshot before creating the ZoneImageGenerator, because
-            // ZoneImageGenerator uses the ZoneRenderer's bounds to set itself up
-
-            MapTool.showError("This doesn't work! Try one of the other methods.", null);
-            if (false) {
-              //
-              // Note: this implementation is the obvious way, which doesn't work, since
-              // ZoneRenderer is part of the Swing component chain, and the threads get deadlocked.
-              //
-              // The suggested implementation by
-              // "Reiger" at http://ubuntuforums.org/archive/index.php/t-1455270.html
-              // might work... except that it would have to be part of ZoneRenderer
-              //
-              // The only way to make this really work is to pull the renderZone function
-              // out of ZoneRenderer into a new class: call it ZoneRasterizer. Then make
-              // ZoneRenderer create an instance of it, and patch up the code to make it
-              // compatible. Then we can create an instance of ZoneRasterizer, and run it
-              // in a separate thread, since it won't lock in any of the functions that
-              // Swing uses.
-              //
-              class backscreenRender implements Runnable {
-                public void run() {
-                  try {
-                    PlayerView view = preScreenshot();
-                    final ZoneImageGenerator zoneImageGenerator =
-                        new ZoneImageGenerator(renderer, view);
-                    final ImageWriter pngWriter = ImageIO.getImageWritersByFormatName("png").next();
-                    exportLocation.putContent(pngWriter, zoneImageGenerator);
-                    // postScreenshot is called by the callback imageComplete()
-                  } catch (Exception e) {
-                    assert false
-                        : "Unhandled Exception in renderOffScreen: '" + e.getMessage() + "'";
-                  }
+            // The ZoneRasterizer does not use the renderer, so it can render the map in tiles on
+            // background threads and stream it out without holding the whole image in memory.
+            ZoneRasterizer rasterizer;
+            Rectangle extents;
+            setupZoneLayers();
+            try {
+              boolean viewAsPlayer = ExportRadioButtons.VIEW_PLAYER.isChecked();
+              Player.Role viewRole = viewAsPlayer ? Player.Role.PLAYER : Player.Role.GM;
+              PlayerView view = renderer.getPlayerView(viewRole, false);
+              extents = exportExtents(view, viewAsPlayer);
+              rasterizer = new ZoneRasterizer(renderer.getZone(), view);
+              for (ExportLayers exportLayer : ExportLayers.values()) {
+                if (exportLayer.associatedZoneLayer != null && !exportLayer.isChecked()) {
+                  rasterizer.disableLayer(exportLayer.associatedZoneLayer);
                 }
               }
-              backscreenRender p = new backscreenRender();
-              new Thread(p).start();
-              repaint();
+            } finally {
+              restoreZoneLayers();
             }
+            backgroundExport(rasterizer, extents, renderer.getScale(), exportLocation);
           } else {
             throw new Exception("Unknown rendering method!");
           }
@@ -686,6 +673,48 @@ public void run() {
     }
   }
 
+  /**
+   * Renders the map with a {@link ZoneRasterizer} on a background thread and saves it to the
+   * location. The image is streamed to a temporary file first, as the location needs the complete
+   * content.
+   *
+   * @param rasterizer the rasterizer set up for the map.
+   * @param extents the extents of the map in zone coordinates.
+   * @param scale the scale to render the map at.
+   * @param location the location to save the image to.
+   */
+  private static void backgroundExport(
+      ZoneRasterizer rasterizer, Rectangle extents, double scale, Location location) {
+    Runnable export =
+        () -> {
+          try {
+            File file = File.createTempFile("maptool-export", ".png");
+            try {
+              try (var out = new BufferedOutputStream(new FileOutputStream(file))) {
+                rasterizer.rasterize(extents, scale, new PngTileWriter(out));
+              }
+              try (var in = new BufferedInputStream(new FileInputStream(file))) {
+                location.putContent(in);
+              }
+            } finally {
+              Files.deleteIfExists(file.toPath());
+            }
+            SwingUtilities.invokeLater(
+                () ->
+                    MapTool.getFrame()
+                        .setStatusMessage(
+                            I18N.getString("dialog.screenshot.msg.screenshotSaved")));
+          } catch (Exception e) {
+            log.error("Unable to export the map", e);
+            SwingUtilities.invokeLater(
+                () ->
+                    MapTool.showError(
+                        I18N.getString("dialog.screenshot.error.failedExportingImage"), e));
+          }
+        };
+    new Thread(export, "map-export").start();
+  }
+
   public Map<String, Boolean> getExportSettings() {
     Map<String, Boolean> settings = new HashMap<>(16);
     for (var component : interactPanel.getAllComponents()) {
@@ -793,13 +822,42 @@ private PlayerView preScreenshot() throws Exception, OutOfMemoryError {
 
     setupZoneLayers();
     boolean viewAsPlayer = ExportRadioButtons.VIEW_PLAYER.isChecked();
+    Player.Role viewRole = viewAsPlayer ? Player.Role.PLAYER : Player.Role.GM;
+    PlayerView view = renderer.getPlayerView(viewRole, false);
+    Rectangle extents = exportExtents(view, viewAsPlayer);
+
+    // Rescale the bounds to match the view scale
+    double scale = renderer.getScale();
+    extents.setLocation((int) (extents.x * scale), (int) (extents.y * scale));
+    extents.setSize((int) (extents.width * scale), (int) (extents.height * scale));
 
+    // Setup the renderer to use the new extents
+    Scale s = new Scale();
+    s.setOffset(-extents.x, -extents.y);
+    s.setScale(scale);
+    renderer.setZoneScale(s);
+    renderer.setBounds(extents);
+
+    waitingForPostScreenshot = true;
+    return view;
+  }
+
+  /**
+   * Finds the extents of the map to export, in zone coordinates. For players the extents are
+   * limited to the revealed fog-of-war, and if the board is exported the upper-left corner is moved
+   * to the background texture so the image can be re-imported. The zone layers must have been set
+   * up by {@link #setupZoneLayers()}.
+   *
+   * @param view the view being exported.
+   * @param viewAsPlayer whether the map is exported as seen by players.
+   * @return the extents of the map.
+   * @throws Exception if there is nothing to export.
+   */
+  private Rectangle exportExtents(PlayerView view, boolean viewAsPlayer) throws Exception {
     // First, figure out the 'extents' of the canvas
     // This will be later modified by the fog (for players),
     // and by the tiling texture (for re-importing)
     //
-    Player.Role viewRole = viewAsPlayer ? Player.Role.PLAYER : Player.Role.GM;
-    PlayerView view = renderer.getPlayerView(viewRole, false);
     Rectangle extents = zoneExtents(view);
     try {
       // Clip to what the players know about (if applicable).
@@ -851,24 +909,11 @@ private PlayerView preScreenshot() throws Exception, OutOfMemoryError {
       }
     }
 
-    // Rescale the bounds to match the view scale
-    double scale = renderer.getScale();
-    extents.setLocation((int) (extents.x * scale), (int) (extents.y * scale));
-    extents.setSize((int) (extents.width * scale), (int) (extents.height * scale));
-
-    // Setup the renderer to use the new extents
-    Scale s = new Scale();
-    s.setOffset(-extents.x, -extents.y);
-    s.setScale(scale);
-    renderer.setZoneScale(s);
-    renderer.setBounds(extents);
-
-    waitingForPostScreenshot = true;
-    return view;
+    return extents;
   }
 
   public Rectangle fogExtents() {
-    return zone.getExposedArea().getBounds();
+    return zone.getGlobalExposedArea().getBounds();
   }
 
   /**
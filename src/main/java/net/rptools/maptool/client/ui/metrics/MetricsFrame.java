@@ -0,0 +1,180 @@
+/*
+ * This software Copyright by the RPTools.net development team, and
+ * licensed under the Affero GPL Version 3 or, at your option, any later
+ * version.
+ *
+ * MapTool Source Code is distributed in the hope that it will be
+ * useful, but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ *
+ * You should have received a copy of the GNU Affero General Public
+ * License * along with this source Code.  If not, please visit
+ * <http://www.gnu.org/licenses/> and specifically the Affero license
+ * text at <http://www.gnu.org/licenses/agpl.html>.
+ */
+package net.rptools.maptool.client.ui.metrics;
+
+import java.awt.BorderLayout;
+import java.awt.FlowLayout;
+import java.awt.event.ComponentAdapter;
+import java.awt.event.ComponentEvent;
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import javax.swing.BorderFactory;
+import javax.swing.JButton;
+import javax.swing.JFileChooser;
+import javax.swing.JFrame;
+import javax.swing.JPanel;
+import javax.swing.JScrollPane;
+import javax.swing.JTable;
+import javax.swing.Timer;
+import javax.swing.table.AbstractTableModel;
+import net.rptools.maptool.client.MapTool;
+import net.rptools.maptool.language.I18N;
+import net.rptools.maptool.util.metrics.MetricsRegistry;
+import net.rptools.maptool.util.metrics.MetricsRegistry.Sample;
+
+/** Frame showing the current values of the metrics in {@link MetricsRegistry}. */
+@SuppressWarnings("serial")
+public class MetricsFrame extends JFrame {
+
+  /** How often the table is refreshed while the frame is showing. */
+  private static final int REFRESH_MILLIS = 1000;
+
+  private final MetricsTableModel model = new MetricsTableModel();
+  private final Timer refreshTimer = new Timer(REFRESH_MILLIS, e -> model.refresh());
+
+  public MetricsFrame() {
+    setTitle(I18N.getText("action.showMetrics.title"));
+    setSize(800, 500);
+    setDefaultCloseOperation(JFrame.HIDE_ON_CLOSE);
+    setLayout(new BorderLayout());
+
+    var table = new JTable(model);
+    table.getColumnModel().getColumn(0).setPreferredWidth(250);
+
+    add(BorderLayout.CENTER, new JScrollPane(table));
+    add(BorderLayout.SOUTH, createButtonBar());
+
+    // Only refresh while the frame is showing.
+    addComponentListener(
+        new ComponentAdapter() {
+          @Override
+          public void componentShown(ComponentEvent e) {
+            model.refresh();
+            refreshTimer.start();
+          }
+
+          @Override
+          public void componentHidden(ComponentEvent e) {
+            refreshTimer.stop();
+          }
+        });
+  }
+
+  private JPanel createButtonBar() {
+    var panel = new JPanel(new BorderLayout());
+    panel.setBorder(BorderFactory.createEmptyBorder(5, 5, 5, 5));
+
+    var resetButton = new JButton(I18N.getText("Button.clear"));
+    resetButton.addActionListener(
+        e -> {
+          MetricsRegistry.reset();
+          model.refresh();
+        });
+
+    var exportButton = new JButton(I18N.getText("Button.export"));
+    exportButton.addActionListener(e -> export());
+
+    var closeButton = new JButton(I18N.getText("Button.close"));
+    closeButton.addActionListener(e -> setVisible(false));
+
+    var left = new JPanel(new FlowLayout(FlowLayout.LEFT, 5, 0));
+    left.add(resetButton);
+    left.add(exportButton);
+    panel.add(BorderLayout.WEST, left);
+    panel.add(BorderLayout.EAST, closeButton);
+    return panel;
+  }
+
+  private void export() {
+    var chooser = new JFileChooser();
+    chooser.setSelectedFile(new File("maptool-metrics.json"));
+    if (chooser.showSaveDialog(this) != JFileChooser.APPROVE_OPTION) {
+      return;
+    }
+    try {
+      MetricsRegistry.writeSnapshot(chooser.getSelectedFile().toPath());
+    } catch (IOException ioe) {
+      MapTool.showError("msg.error.failedExportingMetrics", ioe);
+    }
+  }
+
+  /** Table model showing one row for each metric. */
+  private static class MetricsTableModel extends AbstractTableModel {
+    private static final String[] COLUMNS = {
+      "metricsTable.column.name",
+      "metricsTable.column.count",
+      "metricsTable.column.value",
+      "metricsTable.column.mean",
+      "metricsTable.column.p50",
+      "metricsTable.column.p90",
+      "metricsTable.column.p99",
+      "metricsTable.column.max"
+    };
+
+    private List<Sample> samples = List.of();
+
+    void refresh() {
+      var previousSize = samples.size();
+      samples = MetricsRegistry.snapshot();
+      if (previousSize > 0 && samples.size() == previousSize) {
+        fireTableRowsUpdated(0, previousSize - 1);
+      } else {
+        fireTableDataChanged();
+      }
+    }
+
+    @Override
+    public int getRowCount() {
+      return samples.size();
+    }
+
+    @Override
+    public int getColumnCount() {
+      return COLUMNS.length;
+    }
+
+    @Override
+    public String getColumnName(int column) {
+      return I18N.getText(COLUMNS[column]);
+    }
+
+    @Override
+    public Class<?> getColumnClass(int column) {
+      return column == 0 ? String.class : Object.class;
+    }
+
+    @Override
+    public Object getValueAt(int row, int column) {
+      var sample = samples.get(row);
+      var latency = sample.latency();
+      return switch (column) {
+        case 0 -> sample.name();
+        case 1 -> sample.kind() == MetricsRegistry.Kind.GAUGE ? "" : sample.count();
+        case 2 -> sample.kind() == MetricsRegistry.Kind.GAUGE ? format(sample.value()) : "";
+        case 3 -> latency == null ? "" : format(latency.meanMillis());
+        case 4 -> latency == null ? "" : format(latency.p50Millis());
+        case 5 -> latency == null ? "" : format(latency.p90Millis());
+        case 6 -> latency == null ? "" : format(latency.p99Millis());
+        case 7 -> latency == null ? "" : format(latency.maxMillis());
+        default -> "";
+      };
+    }
+
+    private static String format(double value) {
+      return String.format("%.2f", value);
+    }
+  }
+}
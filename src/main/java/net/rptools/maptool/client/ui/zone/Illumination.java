@@ -283,26 +283,58 @@ public Optional<LumensLevel> getDisjointObscuredLumensLevel(int lumensStrength)
 
     for (final var extraLitArea : extraLights) {
       final var isDarkness = extraLitArea.lumens() < 0;
-      final var lumensStrength = Math.abs(extraLitArea.lumens());
-      final var area = extraLitArea.area();
-
-      final var index =
-          Collections.binarySearch(
-              Lists.transform(newLevels, LumensLevel::lumensStrength),
-              lumensStrength,
-              Collections.reverseOrder(Integer::compare));
-      final LumensLevel level;
-      if (index >= 0) {
-        // Already a lumens level. Add onto it.
-        level = newLevels.get(index);
-      } else {
-        final var insertionPoint = -index - 1;
-        level = new LumensLevel(lumensStrength);
-        newLevels.add(insertionPoint, level);
-      }
-      (isDarkness ? level.darknessArea() : level.lightArea()).add(area);
+      final var level = findOrInsertLevel(newLevels, Math.abs(extraLitArea.lumens()));
+      (isDarkness ? level.darknessArea() : level.lightArea()).add(extraLitArea.area());
     }
 
     return new Illumination(newLevels);
   }
+
+  /**
+   * Creates a new {@code Illumination} that contains the lumens levels of both {@code this} and
+   * {@code other}.
+   *
+   * <p>The result is the same as if every lit area behind {@code other} had been added to the
+   * illuminator that produced {@code this}. This allows independently cached illuminations, e.g.,
+   * static and dynamic lights, to be composited without recalculating either of them.
+   *
+   * @param other The illumination to combine with this one.
+   * @return An {@code Illumination} containing the lumens levels of {@code this} and {@code
+   *     other}.
+   */
+  public @Nonnull Illumination combinedWith(Illumination other) {
+    final var newLevels = new ArrayList<>(Lists.transform(this.lumensLevels, LumensLevel::copy));
+
+    for (final var otherLevel : other.lumensLevels) {
+      final var level = findOrInsertLevel(newLevels, otherLevel.lumensStrength());
+      level.lightArea().add(otherLevel.lightArea());
+      level.darknessArea().add(otherLevel.darknessArea());
+    }
+
+    return new Illumination(newLevels);
+  }
+
+  /**
+   * Finds the level of the given strength in {@code levels}, creating an empty one if needed.
+   *
+   * @param levels The levels to search, ordered from strong to weak lumens.
+   * @param lumensStrength The strength of the level to find.
+   * @return The existing or newly inserted level of strength {@code lumensStrength}.
+   */
+  private static LumensLevel findOrInsertLevel(List<LumensLevel> levels, int lumensStrength) {
+    final var index =
+        Collections.binarySearch(
+            Lists.transform(levels, LumensLevel::lumensStrength),
+            lumensStrength,
+            Collections.reverseOrder(Integer::compare));
+    if (index >= 0) {
+      // Already a lumens level. Add onto it.
+      return levels.get(index);
+    }
+
+    final var insertionPoint = -index - 1;
+    final var level = new LumensLevel(lumensStrength);
+    levels.add(insertionPoint, level);
+    return level;
+  }
 }
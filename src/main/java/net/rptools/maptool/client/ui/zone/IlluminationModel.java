@@ -14,6 +14,7 @@
  */
 package net.rptools.maptool.client.ui.zone;
 
+import java.awt.geom.Rectangle2D;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
@@ -32,7 +33,9 @@
  * <p>This needs to be kept in sync with the associated {@code Zone} in order for the results to
  * make sense
  *
- * <p>No caching is done here, this is purely a data structure.
+ * <p>Lights are split between dynamic lights and baked lights. Baked lights belong to tokens that
+ * rarely move, and their combined illumination is kept across changes to dynamic lights. The only
+ * caching done here is of the combined illumination, otherwise this is purely a data structure.
  */
 public class IlluminationModel {
   /**
@@ -58,9 +61,19 @@ public record LightInfo(LightSource lightSource, Light light) {}
   /**
    * The data structure for calculating lit areas according to lumens. Lit areas can be added and
    * removed from this structure.
+   *
+   * <p>This only holds dynamic lights, i.e., those that are expected to change often.
    */
   private final Illuminator illuminator = new Illuminator();
 
+  /**
+   * The data structure for static lights, i.e., lights that will rarely move.
+   *
+   * <p>Keeping these separate means that their union is only recalculated when a static light
+   * changes, regardless of how often dynamic lights move.
+   */
+  private final Illuminator bakedIlluminator = new Illuminator();
+
   /**
    * The list of all non-personal lights contributing to the the illuminator.
    *
@@ -70,14 +83,26 @@ public record LightInfo(LightSource lightSource, Light light) {}
    */
   private final Map<GUID, List<ContributedLight>> contributedLightsByToken = new HashMap<>();
 
+  /**
+   * The bounds that each baked token's lights could reach if nothing blocked them.
+   *
+   * <p>A baked token only needs to be recalculated if topology changes within these bounds.
+   */
+  private final Map<GUID, Rectangle2D> bakedTokenReach = new HashMap<>();
+
+  /** The combination of both illuminators, or null if either has changed since. */
+  private Illumination illumination = null;
+
   public void removeToken(GUID tokenId) {
     final var contributions =
         Objects.requireNonNullElse(
             contributedLightsByToken.remove(tokenId), Collections.<ContributedLight>emptyList());
+    final var target = bakedTokenReach.remove(tokenId) != null ? bakedIlluminator : illuminator;
     // Remove each contribution from the illuminator as well.
     for (final var contributedLight : contributions) {
-      illuminator.remove(contributedLight.litArea());
+      target.remove(contributedLight.litArea());
     }
+    illumination = null;
   }
 
   public boolean hasToken(GUID tokenId) {
@@ -85,10 +110,62 @@ public boolean hasToken(GUID tokenId) {
   }
 
   public void addToken(GUID tokenId, List<ContributedLight> contributions) {
+    addToken(tokenId, contributions, illuminator);
+  }
+
+  /**
+   * Adds the lights of a static token.
+   *
+   * <p>Baked lights are kept until the token is removed, or until topology changes within {@code
+   * reach}. See {@link #removeBakedTokens(Rectangle2D)}.
+   *
+   * @param tokenId The token that the lights belong to.
+   * @param contributions The lights of the token.
+   * @param reach The bounds that the lights could reach in the absence of topology.
+   */
+  public void addBakedToken(GUID tokenId, List<ContributedLight> contributions, Rectangle2D reach) {
+    bakedTokenReach.put(tokenId, reach);
+    addToken(tokenId, contributions, bakedIlluminator);
+  }
+
+  private void addToken(GUID tokenId, List<ContributedLight> contributions, Illuminator target) {
     for (final var contribution : contributions) {
-      illuminator.add(contribution.litArea());
+      target.add(contribution.litArea());
       contributedLightsByToken.computeIfAbsent(tokenId, id -> new ArrayList<>()).add(contribution);
     }
+    illumination = null;
+  }
+
+  /** Removes all tokens that were not added as baked tokens. */
+  public void removeDynamicTokens() {
+    final var dynamicTokens = new ArrayList<>(contributedLightsByToken.keySet());
+    dynamicTokens.removeAll(bakedTokenReach.keySet());
+    dynamicTokens.forEach(this::removeToken);
+  }
+
+  /**
+   * Removes all baked tokens whose reach intersects {@code region}.
+   *
+   * @param region The region that has changed.
+   */
+  public void removeBakedTokens(Rectangle2D region) {
+    final var affectedTokens =
+        bakedTokenReach.entrySet().stream()
+            .filter(entry -> overlaps(entry.getValue(), region))
+            .map(Map.Entry::getKey)
+            .toList();
+    affectedTokens.forEach(this::removeToken);
+  }
+
+  /**
+   * Like {@link Rectangle2D#intersects(Rectangle2D)}, but also true for rectangles that touch or
+   * have no area, e.g., the bounds of a horizontal wall.
+   */
+  private static boolean overlaps(Rectangle2D a, Rectangle2D b) {
+    return a.getMinX() <= b.getMaxX()
+        && b.getMinX() <= a.getMaxX()
+        && a.getMinY() <= b.getMaxY()
+        && b.getMinY() <= a.getMaxY();
   }
 
   public Stream<ContributedLight> getContributions() {
@@ -96,6 +173,9 @@ public Stream<ContributedLight> getContributions() {
   }
 
   public Illumination getIllumination() {
-    return illuminator.getIllumination();
+    if (illumination == null) {
+      illumination = bakedIlluminator.getIllumination().combinedWith(illuminator.getIllumination());
+    }
+    return illumination;
   }
 }
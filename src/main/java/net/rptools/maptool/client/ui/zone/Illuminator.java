@@ -41,6 +41,9 @@ public record LitArea(int lumens, Area area) {}
   /** Nodes are ordered from low lumens strength to high lumens strength. */
   private final ArrayList<IlluminationNode> nodes = new ArrayList<>();
 
+  /** The result of the last {@link #getIllumination()}, or null if a lit area changed since. */
+  private Illumination illumination = null;
+
   public void add(LitArea litArea) {
     final var lumens = litArea.lumens();
     final var lumensStrength = Math.abs(lumens);
@@ -60,6 +63,7 @@ public void add(LitArea litArea) {
     }
 
     node.contributingLitAreas.add(litArea);
+    illumination = null;
 
     if (node.isValidated) {
       // We can easily keep it validated, so do so.
@@ -77,7 +81,9 @@ public void remove(LitArea litArea) {
     if (index >= 0) {
       // Node exists, so modify it as needed.
       final var node = nodes.get(index);
-      node.contributingLitAreas.remove(litArea);
+      if (node.contributingLitAreas.remove(litArea)) {
+        illumination = null;
+      }
 
       node.isValidated = false;
     }
@@ -119,7 +125,22 @@ private void revalidateAggregations() {
     }
   }
 
+  /**
+   * Gets the illumination for the lit areas currently in the illuminator.
+   *
+   * <p>The result is cached until the next time a lit area is added or removed, so repeated calls
+   * are cheap.
+   *
+   * @return The illumination of all lit areas.
+   */
   public Illumination getIllumination() {
+    if (illumination == null) {
+      illumination = buildIllumination();
+    }
+    return illumination;
+  }
+
+  private Illumination buildIllumination() {
     // Lumens will be sorted from weak to strong, with darkness coming after equal lights. Note
     // that the order is the same as {@link #nodes}.
     final var lumensLevels = new ArrayList<LumensLevel>();
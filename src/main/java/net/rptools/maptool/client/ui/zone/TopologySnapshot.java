@@ -0,0 +1,122 @@
+/*
+ * This software Copyright by the RPTools.net development team, and
+ * licensed under the Affero GPL Version 3 or, at your option, any later
+ * version.
+ *
+ * MapTool Source Code is distributed in the hope that it will be
+ * useful, but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ *
+ * You should have received a copy of the GNU Affero General Public
+ * License * along with this source Code.  If not, please visit
+ * <http://www.gnu.org/licenses/> and specifically the Affero license
+ * text at <http://www.gnu.org/licenses/agpl.html>.
+ */
+package net.rptools.maptool.client.ui.zone;
+
+import java.awt.geom.Area;
+import java.awt.geom.Rectangle2D;
+import java.util.EnumMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Collectors;
+import net.rptools.maptool.model.Zone;
+import net.rptools.maptool.model.topology.Wall;
+import org.locationtech.jts.geom.LineSegment;
+
+/**
+ * A copy of the topology of a zone at some point in time, used to find where the topology changed.
+ *
+ * <p>Topology events only report that something changed, not what changed. Comparing snapshots
+ * lets {@link ZoneView} keep any baked lights that are too far away from the change to be affected.
+ */
+final class TopologySnapshot {
+  /**
+   * A wall, reduced to the parts of it that affect vision and lighting.
+   *
+   * @param segment The position of the wall.
+   * @param zIndex The z-index of the wall.
+   * @param data The wall's data.
+   */
+  private record WallSegment(LineSegment segment, int zIndex, Wall.Data data) {}
+
+  private final Set<WallSegment> walls;
+
+  /** The union of the zone's masks and token masks for each type. */
+  private final Map<Zone.TopologyType, Area> masks;
+
+  private TopologySnapshot(Set<WallSegment> walls, Map<Zone.TopologyType, Area> masks) {
+    this.walls = walls;
+    this.masks = masks;
+  }
+
+  /**
+   * Copies the current topology of {@code zone}.
+   *
+   * @param zone The zone to copy topology from.
+   * @return The snapshot.
+   */
+  public static TopologySnapshot of(Zone zone) {
+    final var wallTopology = zone.getWalls();
+    final var walls =
+        wallTopology
+            .getWalls()
+            .map(
+                wall ->
+                    new WallSegment(
+                        wallTopology.asLineSegment(wall),
+                        wallTopology.getZIndex(wall),
+                        wall.data()))
+            .collect(Collectors.toSet());
+
+    final var masks = new EnumMap<Zone.TopologyType, Area>(Zone.TopologyType.class);
+    for (final var type : Zone.TopologyType.values()) {
+      final var mask = new Area(zone.getMaskTopology(type));
+      mask.add(zone.getTokenMaskTopology(type, null));
+      masks.put(type, mask);
+    }
+
+    return new TopologySnapshot(walls, masks);
+  }
+
+  /**
+   * Finds the region in which {@code other} differs from this snapshot.
+   *
+   * @param other The snapshot to compare with.
+   * @return The bounds of all differences, or empty if the snapshots have the same topology.
+   */
+  public Optional<Rectangle2D> changedRegion(TopologySnapshot other) {
+    Rectangle2D region = null;
+
+    // Walls that were removed, added, or modified in any way.
+    final var changedWalls = new HashSet<WallSegment>();
+    walls.stream().filter(wall -> !other.walls.contains(wall)).forEach(changedWalls::add);
+    other.walls.stream().filter(wall -> !walls.contains(wall)).forEach(changedWalls::add);
+    for (final var wall : changedWalls) {
+      final var segment = wall.segment();
+      final var bounds = new Rectangle2D.Double(segment.p0.x, segment.p0.y, 0, 0);
+      bounds.add(segment.p1.x, segment.p1.y);
+      region = union(region, bounds);
+    }
+
+    for (final var entry : masks.entrySet()) {
+      final var difference = new Area(entry.getValue());
+      difference.exclusiveOr(other.masks.get(entry.getKey()));
+      if (!difference.isEmpty()) {
+        region = union(region, difference.getBounds2D());
+      }
+    }
+
+    return Optional.ofNullable(region);
+  }
+
+  private static Rectangle2D union(Rectangle2D region, Rectangle2D bounds) {
+    if (region == null) {
+      return bounds;
+    }
+    region.add(bounds);
+    return region;
+  }
+}
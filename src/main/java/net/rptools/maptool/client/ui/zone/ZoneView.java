@@ -19,6 +19,7 @@
 import java.awt.*;
 import java.awt.geom.AffineTransform;
 import java.awt.geom.Area;
+import java.awt.geom.Rectangle2D;
 import java.util.*;
 import java.util.List;
 import java.util.function.Function;
@@ -41,6 +42,9 @@
 import net.rptools.maptool.model.zones.TokensRemoved;
 import net.rptools.maptool.model.zones.WallTopologyChanged;
 import net.rptools.maptool.model.zones.ZoneLightingChanged;
+import net.rptools.maptool.util.metrics.Counter;
+import net.rptools.maptool.util.metrics.LatencyHistogram;
+import net.rptools.maptool.util.metrics.MetricsRegistry;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
@@ -57,6 +61,15 @@ private record IlluminationKey(Player.Role role, double multiplier) {}
 
   private static final Logger log = LogManager.getLogger(ZoneView.class);
 
+  private static final LatencyHistogram VISIBLE_AREA_TIME =
+      MetricsRegistry.histogram("vision.visibleArea");
+  private static final LatencyHistogram TOKEN_VISIBLE_AREA_TIME =
+      MetricsRegistry.histogram("vision.tokenVisibleArea");
+  private static final Counter TOKEN_VISION_CACHE_HITS =
+      MetricsRegistry.counter("vision.tokenVisionCache.hits");
+  private static final Counter TOKEN_VISION_CACHE_MISSES =
+      MetricsRegistry.counter("vision.tokenVisionCache.misses");
+
   /** The zone of the ZoneView. */
   private final Zone zone;
 
@@ -121,6 +134,12 @@ private void addLightSourceToken(Token token, Set<Player.Role> roles) {
 
   private final Map<IlluminationKey, IlluminationModel> illuminationModels = new HashMap<>();
 
+  /**
+   * The topology that the baked lights in {@link #illuminationModels} were calculated against, or
+   * null if nothing has been baked yet.
+   */
+  private TopologySnapshot topologySnapshot = null;
+
   // endregion
 
   // region These fields cache information that is specific to the current PlayerView. They need to
@@ -210,10 +229,12 @@ public Area getExposedArea(PlayerView view) {
     return visibleAreaMap.computeIfAbsent(
         view,
         view2 -> {
+          long startNanos = System.nanoTime();
           final var visibleArea = new Area();
           getTokensForView(view2)
               .map(token -> this.getVisibleArea(token, view2))
               .forEach(visibleArea::add);
+          VISIBLE_AREA_TIME.recordSince(startNanos);
           return visibleArea;
         });
   }
@@ -247,12 +268,66 @@ private IlluminationModel getIlluminationModel(IlluminationKey illuminationKey)
     // For each light source, extract all normal and darkness lights, adding them to the model.
     for (final var lightSourceToken : lightSourceTokens) {
       final var contributions = calculateLitAreas(lightSourceToken, illuminationKey.multiplier());
-      illuminationModel.addToken(lightSourceToken.getId(), contributions);
+      if (isStaticLight(lightSourceToken)) {
+        if (topologySnapshot == null) {
+          topologySnapshot = TopologySnapshot.of(zone);
+        }
+        illuminationModel.addBakedToken(
+            lightSourceToken.getId(),
+            contributions,
+            calculateLightReach(lightSourceToken, illuminationKey.multiplier()));
+      } else {
+        illuminationModel.addToken(lightSourceToken.getId(), contributions);
+      }
     }
 
     return illuminationModel;
   }
 
+  /**
+   * Checks whether the lights of a token should be baked.
+   *
+   * <p>Tokens on the object and background layers are map furniture such as torches and braziers.
+   * Only the GM can move them and they rarely do, so their lights are kept across changes to other
+   * tokens, and are only recalculated when topology near them changes.
+   *
+   * @param token The light source token.
+   * @return true if the token's lights should be baked.
+   */
+  private boolean isStaticLight(Token token) {
+    return token.getLayer().isStampLayer();
+  }
+
+  /**
+   * Calculates the bounds that the lights of {@code lightSourceToken} could reach if no topology
+   * were in the way.
+   *
+   * <p>Topology outside these bounds cannot affect the token's lights.
+   *
+   * @param lightSourceToken The light source token.
+   * @param multiplier The sight multiplier to apply to the lights.
+   * @return The reach of the token's lights.
+   */
+  private Rectangle2D calculateLightReach(Token lightSourceToken, double multiplier) {
+    final var p = FogUtil.calculateVisionCenter(lightSourceToken, zone);
+    final var reach = new Rectangle2D.Double(p.x, p.y, 0, 0);
+
+    for (final var attachedLightSource : lightSourceToken.getLightSources()) {
+      LightSource lightSource =
+          attachedLightSource.resolve(lightSourceToken, MapTool.getCampaign());
+      if (lightSource == null || lightSource.getType() != LightSource.Type.NORMAL) {
+        continue;
+      }
+
+      final var bounds = lightSource.getArea(lightSourceToken, zone, multiplier).getBounds2D();
+      reach.add(
+          new Rectangle2D.Double(
+              bounds.getX() + p.x, bounds.getY() + p.y, bounds.getWidth(), bounds.getHeight()));
+    }
+
+    return reach;
+  }
+
   private List<ContributedLight> calculateLitAreas(Token lightSourceToken, double multiplier) {
     final var result = new ArrayList<ContributedLight>();
 
@@ -550,10 +625,13 @@ public Area getVisibleArea(@Nonnull Token token, PlayerView view) {
         tokenVisionCachePerView.computeIfAbsent(view, v -> new HashMap<>());
     Area tokenVisibleArea = tokenVisionCache.get(token.getId());
     if (tokenVisibleArea != null) {
+      TOKEN_VISION_CACHE_HITS.increment();
       return tokenVisibleArea;
     }
+    TOKEN_VISION_CACHE_MISSES.increment();
 
     // Not cached, so need to calculate the area.
+    long startNanos = System.nanoTime();
     tokenVisibleArea = getTokenVisibleArea(token);
 
     // Very important that we don't use the general view, but only the view from the token's
@@ -564,8 +642,7 @@ public Area getVisibleArea(@Nonnull Token token, PlayerView view) {
     litArea.intersect(tokenVisibleArea);
 
     tokenVisionCache.put(token.getId(), litArea);
-
-    // log.info("getVisibleArea: \t\t" + stopwatch);
+    TOKEN_VISIBLE_AREA_TIME.recordSince(startNanos);
 
     return litArea;
   }
@@ -722,7 +799,17 @@ public Collection<DrawableLight> getDrawableLights(PlayerView view) {
   public void flush() {
     // Recalculate everything.
     illuminationModels.clear();
+    topologySnapshot = null;
 
+    flushVision();
+  }
+
+  /**
+   * Clear everything that {@link #flush()} does, except for {@link #illuminationModels}.
+   *
+   * <p>The caller is responsible for bringing the illumination models up-to-date.
+   */
+  private void flushVision() {
     contributedPersonalLightsByToken.clear();
     tokenVisibleAreaCache.clear();
 
@@ -790,8 +877,28 @@ public void flush(Token token) {
     }
   }
 
+  /**
+   * Flush everything that depends on topology.
+   *
+   * <p>Baked lights are only recalculated if the topology changed within their reach. All other
+   * lights and vision are recalculated.
+   */
   private void onTopologyChanged() {
-    flush();
+    if (topologySnapshot == null) {
+      // Nothing has been baked, so there is nothing to keep.
+      flush();
+      return;
+    }
+
+    final var newSnapshot = TopologySnapshot.of(zone);
+    final var changedRegion = topologySnapshot.changedRegion(newSnapshot);
+    topologySnapshot = newSnapshot;
+
+    for (final var illuminationModel : illuminationModels.values()) {
+      illuminationModel.removeDynamicTokens();
+      changedRegion.ifPresent(illuminationModel::removeBakedTokens);
+    }
+    flushVision();
   }
 
   @Subscribe
@@ -858,8 +965,13 @@ private void onTokensRemoved(TokensRemoved event) {
       flushLights();
     }
 
+    // Nor should they contribute any light that has been baked.
+    for (var token : event.tokens()) {
+      illuminationModels.values().forEach(model -> model.removeToken(token.getId()));
+    }
+
     if (event.tokens().stream().anyMatch(Token::hasAnyMaskTopology)) {
-      flush();
+      onTopologyChanged();
     }
   }
 
@@ -888,7 +1000,7 @@ private void processTokenAddChangeEvent(List<Token> tokens) {
     }
 
     if (tokens.stream().anyMatch(Token::hasAnyMaskTopology)) {
-      flush();
+      onTopologyChanged();
     }
   }
 
@@ -0,0 +1,163 @@
+/*
+ * This software Copyright by the RPTools.net development team, and
+ * licensed under the Affero GPL Version 3 or, at your option, any later
+ * version.
+ *
+ * MapTool Source Code is distributed in the hope that it will be
+ * useful, but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ *
+ * You should have received a copy of the GNU Affero General Public
+ * License * along with this source Code.  If not, please visit
+ * <http://www.gnu.org/licenses/> and specifically the Affero license
+ * text at <http://www.gnu.org/licenses/agpl.html>.
+ */
+package net.rptools.maptool.client.ui.zone.renderer;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+
+/**
+ * Writes the tiles of a {@link ZoneRasterizer} as a single PNG image. The image is encoded one row
+ * of tiles at a time as it arrives, so only the scanlines of one row are ever held in memory
+ * however large the image is, which {@link javax.imageio.ImageIO} can not do.
+ *
+ * <p>The image is written as 8 bit RGB with the "sub" filter on every scanline, which compresses
+ * maps well for little cost. The output stream is not closed.
+ */
+public class PngTileWriter implements ZoneRasterizer.TileWriter {
+
+  private static final byte[] SIGNATURE = {(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1a, '\n'};
+
+  /** The maximum size of the data in an IDAT chunk. */
+  private static final int MAX_CHUNK_SIZE = 64 * 1024;
+
+  private static final int COLOR_TYPE_RGB = 2;
+  private static final int FILTER_SUB = 1;
+
+  private final DataOutputStream out;
+  private DeflaterOutputStream imageData;
+  private Deflater deflater;
+  private int width;
+  private int[] pixels;
+  private byte[] scanline;
+
+  /**
+   * Creates a writer.
+   *
+   * @param out the stream to write the PNG image to.
+   */
+  public PngTileWriter(OutputStream out) {
+    this.out = new DataOutputStream(out);
+  }
+
+  @Override
+  public void begin(int width, int height, int tileSize) throws IOException {
+    this.width = width;
+    pixels = new int[width];
+    scanline = new byte[1 + width * 3];
+
+    out.write(SIGNATURE);
+    var header = new ByteArrayOutputStream(13);
+    var headerOut = new DataOutputStream(header);
+    headerOut.writeInt(width);
+    headerOut.writeInt(height);
+    headerOut.writeByte(8); // bit depth
+    headerOut.writeByte(COLOR_TYPE_RGB);
+    headerOut.writeByte(0); // compression: deflate
+    headerOut.writeByte(0); // filter method: adaptive
+    headerOut.writeByte(0); // interlace: none
+    writeChunk("IHDR", header.toByteArray(), header.size());
+
+    deflater = new Deflater(Deflater.DEFAULT_COMPRESSION);
+    imageData = new DeflaterOutputStream(new ImageDataOutputStream(), deflater, 64 * 1024);
+  }
+
+  @Override
+  public void writeRow(int row, List<BufferedImage> tiles) throws IOException {
+    int height = tiles.get(0).getHeight();
+    for (int y = 0; y < height; y++) {
+      int x = 0;
+      for (BufferedImage tile : tiles) {
+        tile.getRGB(0, y, tile.getWidth(), 1, pixels, x, width);
+        x += tile.getWidth();
+      }
+      scanline[0] = FILTER_SUB;
+      int previous = 0;
+      for (int i = 0; i < width; i++) {
+        int rgb = pixels[i];
+        int offset = 1 + i * 3;
+        scanline[offset] = (byte) ((rgb >> 16) - (previous >> 16));
+        scanline[offset + 1] = (byte) ((rgb >> 8) - (previous >> 8));
+        scanline[offset + 2] = (byte) (rgb - previous);
+        previous = rgb;
+      }
+      imageData.write(scanline);
+    }
+  }
+
+  @Override
+  public void finish() throws IOException {
+    imageData.finish();
+    imageData.flush();
+    deflater.end();
+    writeChunk("IEND", new byte[0], 0);
+    out.flush();
+  }
+
+  /** Writes a chunk with its length and checksum. */
+  private void writeChunk(String type, byte[] data, int length) throws IOException {
+    byte[] typeBytes = type.getBytes(StandardCharsets.US_ASCII);
+    var crc = new CRC32();
+    crc.update(typeBytes);
+    crc.update(data, 0, length);
+    out.writeInt(length);
+    out.write(typeBytes);
+    out.write(data, 0, length);
+    out.writeInt((int) crc.getValue());
+  }
+
+  /** Splits the compressed image data into IDAT chunks. */
+  private class ImageDataOutputStream extends OutputStream {
+    private final byte[] buffer = new byte[MAX_CHUNK_SIZE];
+    private int count;
+
+    @Override
+    public void write(int b) throws IOException {
+      if (count == buffer.length) {
+        flush();
+      }
+      buffer[count++] = (byte) b;
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+      while (len > 0) {
+        if (count == buffer.length) {
+          flush();
+        }
+        int n = Math.min(len, buffer.length - count);
+        System.arraycopy(b, off, buffer, count, n);
+        count += n;
+        off += n;
+        len -= n;
+      }
+    }
+
+    @Override
+    public void flush() throws IOException {
+      if (count > 0) {
+        writeChunk("IDAT", buffer, count);
+        count = 0;
+      }
+    }
+  }
+}
@@ -0,0 +1,152 @@
+/*
+ * This software Copyright by the RPTools.net development team, and
+ * licensed under the Affero GPL Version 3 or, at your option, any later
+ * version.
+ *
+ * MapTool Source Code is distributed in the hope that it will be
+ * useful, but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ *
+ * You should have received a copy of the GNU Affero General Public
+ * License * along with this source Code.  If not, please visit
+ * <http://www.gnu.org/licenses/> and specifically the Affero license
+ * text at <http://www.gnu.org/licenses/agpl.html>.
+ */
+package net.rptools.maptool.client.ui.zone.renderer;
+
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import javax.imageio.ImageIO;
+
+/**
+ * Writes the tiles of a {@link ZoneRasterizer} as a tile pyramid of PNG files, for viewers that
+ * show huge maps by only loading the tiles they display. Level 0 holds the tiles at full
+ * resolution and each following level is half the size of the one before, down to a level that
+ * fits in a single tile. A tile is written to {@code <directory>/<level>/<column>_<row>.png}.
+ *
+ * <p>The smaller levels are built from the tiles as they arrive, so no more than two rows of tiles
+ * per level are held in memory.
+ */
+public class TilePyramidWriter implements ZoneRasterizer.TileWriter {
+
+  /** The tiles of a level and the row of tiles of the next level being built from them. */
+  private static class Level {
+    private final int width;
+    private final int height;
+    private final int columns;
+    private final int rows;
+
+    /** The row of tiles of the next level, {@code null} until it is started. */
+    private BufferedImage[] nextRow;
+
+    private Level(int width, int height, int tileSize) {
+      this.width = width;
+      this.height = height;
+      this.columns = (width + tileSize - 1) / tileSize;
+      this.rows = (height + tileSize - 1) / tileSize;
+    }
+  }
+
+  private final Path directory;
+  private final List<Level> levels = new ArrayList<>();
+  private int tileSize;
+
+  /**
+   * Creates a writer.
+   *
+   * @param directory the directory to write the pyramid to, it is created if needed.
+   */
+  public TilePyramidWriter(Path directory) {
+    this.directory = directory;
+  }
+
+  /**
+   * Returns the number of levels of the pyramid, available after {@link #begin}.
+   *
+   * @return the number of levels.
+   */
+  public int getLevelCount() {
+    return levels.size();
+  }
+
+  @Override
+  public void begin(int width, int height, int tileSize) throws IOException {
+    if (tileSize % 2 != 0) {
+      throw new IllegalArgumentException("Tile size must be even: " + tileSize);
+    }
+    this.tileSize = tileSize;
+    levels.clear();
+    var level = new Level(width, height, tileSize);
+    levels.add(level);
+    while (level.columns > 1 || level.rows > 1) {
+      level = new Level((level.width + 1) / 2, (level.height + 1) / 2, tileSize);
+      levels.add(level);
+    }
+    for (int i = 0; i < levels.size(); i++) {
+      Files.createDirectories(directory.resolve(Integer.toString(i)));
+    }
+  }
+
+  @Override
+  public void writeRow(int row, List<BufferedImage> tiles) throws IOException {
+    writeRow(0, row, tiles);
+  }
+
+  @Override
+  public void finish() throws IOException {
+    // Every row of every level has been written by now, as the last row completes each level.
+  }
+
+  /** Writes a row of tiles of a level and adds it, at half size, to the row of the next level. */
+  private void writeRow(int levelIndex, int row, List<BufferedImage> tiles) throws IOException {
+    Path levelDirectory = directory.resolve(Integer.toString(levelIndex));
+    for (int column = 0; column < tiles.size(); column++) {
+      Path file = levelDirectory.resolve(column + "_" + row + ".png");
+      ImageIO.write(tiles.get(column), "png", file.toFile());
+    }
+    if (levelIndex + 1 == levels.size()) {
+      return;
+    }
+
+    Level level = levels.get(levelIndex);
+    Level next = levels.get(levelIndex + 1);
+    if (level.nextRow == null) {
+      level.nextRow = new BufferedImage[next.columns];
+      int y = row / 2 * tileSize;
+      for (int column = 0; column < next.columns; column++) {
+        level.nextRow[column] =
+            new BufferedImage(
+                Math.min(tileSize, next.width - column * tileSize),
+                Math.min(tileSize, next.height - y),
+                BufferedImage.TYPE_INT_RGB);
+      }
+    }
+    int half = tileSize / 2;
+    for (int column = 0; column < tiles.size(); column++) {
+      BufferedImage tile = tiles.get(column);
+      Graphics2D g = level.nextRow[column / 2].createGraphics();
+      g.setRenderingHint(
+          RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+      g.drawImage(
+          tile,
+          column % 2 * half,
+          row % 2 * half,
+          (tile.getWidth() + 1) / 2,
+          (tile.getHeight() + 1) / 2,
+          null);
+      g.dispose();
+    }
+    if (row % 2 == 1 || row == level.rows - 1) {
+      List<BufferedImage> nextTiles = Arrays.asList(level.nextRow);
+      level.nextRow = null;
+      writeRow(levelIndex + 1, row / 2, nextTiles);
+    }
+  }
+}
@@ -0,0 +1,684 @@
+/*
+ * This software Copyright by the RPTools.net development team, and
+ * licensed under the Affero GPL Version 3 or, at your option, any later
+ * version.
+ *
+ * MapTool Source Code is distributed in the hope that it will be
+ * useful, but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ *
+ * You should have received a copy of the GNU Affero General Public
+ * License * along with this source Code.  If not, please visit
+ * <http://www.gnu.org/licenses/> and specifically the Affero license
+ * text at <http://www.gnu.org/licenses/agpl.html>.
+ */
+package net.rptools.maptool.client.ui.zone.renderer;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import java.awt.AlphaComposite;
+import java.awt.BasicStroke;
+import java.awt.Color;
+import java.awt.Dimension;
+import java.awt.Graphics2D;
+import java.awt.Point;
+import java.awt.Rectangle;
+import java.awt.RenderingHints;
+import java.awt.Shape;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.Area;
+import java.awt.geom.Rectangle2D;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Function;
+import javax.annotation.Nullable;
+import net.rptools.lib.MD5Key;
+import net.rptools.maptool.client.AppState;
+import net.rptools.maptool.client.swing.SwingUtil;
+import net.rptools.maptool.client.ui.zone.PlayerView;
+import net.rptools.maptool.model.CellPoint;
+import net.rptools.maptool.model.Grid;
+import net.rptools.maptool.model.GridlessGrid;
+import net.rptools.maptool.model.Token;
+import net.rptools.maptool.model.Zone;
+import net.rptools.maptool.model.Zone.Layer;
+import net.rptools.maptool.model.ZonePoint;
+import net.rptools.maptool.model.drawing.DrawablePaint;
+import net.rptools.maptool.model.drawing.DrawablesGroup;
+import net.rptools.maptool.model.drawing.DrawnElement;
+import net.rptools.maptool.model.drawing.DrawableTexturePaint;
+import net.rptools.maptool.util.ImageManager;
+
+/**
+ * Renders a region of a zone into fixed size tiles, without a {@link ZoneRenderer} or any other
+ * Swing component, so that it can run on any thread and without a display. The tiles are rendered
+ * in parallel on worker threads and handed to a {@link TileWriter} one row at a time, top to
+ * bottom. At most two rows of tiles are held in memory, so the memory used depends on the width of
+ * the region and not its height.
+ *
+ * <p>The rasterizer draws the static parts of the zone: the board, the drawables and tokens of each
+ * layer, the grid and the fog of war. Anything that depends on the state of a renderer, such as
+ * lights, vision, halos, labels and selections, is not drawn.
+ *
+ * <p>Everything that is drawn, i.e. the board, the grid, the drawables, the tokens and the exposed
+ * area of the fog, is copied from the zone when the rasterizer is created, which must be done on
+ * the thread that modifies the zone, i.e. the event dispatch thread. {@link #rasterize} can then be
+ * called on any thread, the tiles are rendered without reading the zone or its tokens.
+ */
+public class ZoneRasterizer {
+
+  /** The default width and height of a tile. */
+  public static final int DEFAULT_TILE_SIZE = 512;
+
+  /** Receives the rendered tiles of a region. */
+  public interface TileWriter {
+
+    /**
+     * Called before the first row of tiles.
+     *
+     * @param width the width of the image in pixels.
+     * @param height the height of the image in pixels.
+     * @param tileSize the width and height of the tiles, the last column and row may be smaller.
+     * @throws IOException if the image can not be written.
+     */
+    void begin(int width, int height, int tileSize) throws IOException;
+
+    /**
+     * Called for each row of tiles, in order from top to bottom.
+     *
+     * @param row the index of the row.
+     * @param tiles the tiles of the row from left to right.
+     * @throws IOException if the tiles can not be written.
+     */
+    void writeRow(int row, List<BufferedImage> tiles) throws IOException;
+
+    /**
+     * Called after the last row of tiles.
+     *
+     * @throws IOException if the image can not be written.
+     */
+    void finish() throws IOException;
+  }
+
+  /** Thread factory for the threads that render the tiles. */
+  private static final ThreadFactoryBuilder threadFactory =
+      new ThreadFactoryBuilder().setNameFormat("zone-rasterizer-%d").setDaemon(true);
+
+  /**
+   * What is needed to draw a token.
+   *
+   * @param imageAssetId the image of the token.
+   * @param footprint the bounds of the token in zone coordinates.
+   * @param figure whether the token has the figure shape.
+   * @param width the width of the token image.
+   * @param height the height of the token image.
+   * @param snapToScale whether the token is sized to the grid.
+   * @param rotated whether the image is rotated to face the facing of the token.
+   * @param facing the facing of the token in degrees.
+   * @param anchor the anchor of the token.
+   * @param flippedX whether the image is flipped horizontally.
+   * @param flippedY whether the image is flipped vertically.
+   * @param opacity the opacity of the token.
+   */
+  private record TokenSnapshot(
+      MD5Key imageAssetId,
+      Rectangle footprint,
+      boolean figure,
+      int width,
+      int height,
+      boolean snapToScale,
+      boolean rotated,
+      int facing,
+      Point anchor,
+      boolean flippedX,
+      boolean flippedY,
+      float opacity) {
+
+    private static TokenSnapshot of(Zone zone, Token token) {
+      var shape = token.getShape();
+      return new TokenSnapshot(
+          token.getImageAssetId(),
+          token.getBounds(zone),
+          shape == Token.TokenShape.FIGURE,
+          token.getWidth(),
+          token.getHeight(),
+          token.isSnapToScale(),
+          token.hasFacing() && shape == Token.TokenShape.TOP_DOWN,
+          token.getFacingInDegrees(),
+          token.getAnchor(),
+          token.isFlippedX(),
+          token.isFlippedY(),
+          token.getTokenOpacity());
+    }
+  }
+
+  /**
+   * A zone holding a copy of the grid of the zone being rendered, the drawables and the grid are
+   * drawn with it so that changes to the grid do not affect tiles that are being rendered.
+   */
+  private final Zone gridZone = new Zone();
+
+  private final PlayerView view;
+  private final boolean drawBoard;
+  private final @Nullable DrawablePaint backgroundPaint;
+  private final @Nullable MD5Key mapAssetId;
+  private final int boardX;
+  private final int boardY;
+  private final float imageScaleX;
+  private final float imageScaleY;
+  private final Color gridColor;
+  private final float gridLineWidth = AppState.getGridSize();
+  private final @Nullable DrawablePaint fogPaint;
+  private final Area exposedArea;
+  private final Map<Layer, List<DrawnElement>> drawables = new EnumMap<>(Layer.class);
+  private final Map<Layer, List<TokenSnapshot>> tokens = new EnumMap<>(Layer.class);
+  private final Set<Layer> disabledLayers = EnumSet.noneOf(Layer.class);
+
+  /** Loads the images with the given ids, waiting for those that still have to be downloaded. */
+  private final Function<Set<MD5Key>, Map<MD5Key, BufferedImage>> imageLoader;
+
+  /** The images of the board and the tokens, loaded before the tiles are rendered. */
+  private Map<MD5Key, BufferedImage> images = Map.of();
+
+  private boolean drawGrid = AppState.isShowGrid();
+  private int tileSize = DEFAULT_TILE_SIZE;
+  private int threads = Runtime.getRuntime().availableProcessors();
+
+  /**
+   * Creates a rasterizer for a zone as it is now.
+   *
+   * @param zone the zone to render.
+   * @param view the view to render the zone for, a player view hides what players can not see.
+   */
+  public ZoneRasterizer(Zone zone, PlayerView view) {
+    this(zone, view, ZoneRasterizer::loadImages);
+  }
+
+  /**
+   * Creates a rasterizer for a zone as it is now, that loads the images with the given loader.
+   *
+   * @param zone the zone to render.
+   * @param view the view to render the zone for.
+   * @param imageLoader returns the images for a set of asset ids.
+   */
+  ZoneRasterizer(
+      Zone zone,
+      PlayerView view,
+      Function<Set<MD5Key>, Map<MD5Key, BufferedImage>> imageLoader) {
+    this.view = view;
+    this.imageLoader = imageLoader;
+    if (zone.getGrid() != null) {
+      try {
+        gridZone.setGrid((Grid) zone.getGrid().clone());
+      } catch (CloneNotSupportedException e) {
+        throw new IllegalStateException("Unable to copy the grid of " + zone.getName(), e);
+      }
+    }
+    this.drawBoard = zone.drawBoard();
+    this.backgroundPaint = zone.getBackgroundPaint();
+    this.mapAssetId = zone.getMapAssetId();
+    this.boardX = zone.getBoardX();
+    this.boardY = zone.getBoardY();
+    this.imageScaleX = zone.getImageScaleX();
+    this.imageScaleY = zone.getImageScaleY();
+    this.gridColor = new Color(zone.getGridColor());
+    this.fogPaint = zone.getFogPaint();
+    this.exposedArea = zone.hasFog() ? zone.getExposedArea(view) : null;
+    for (Layer layer : Layer.values()) {
+      // The pen of a drawn element is replaced when the drawing is updated, keep the current one.
+      drawables.put(
+          layer,
+          zone.getDrawnElements(layer).stream()
+              .map(element -> new DrawnElement(element.getDrawable(), element.getPen()))
+              .toList());
+      tokens.put(
+          layer,
+          zone.getTokensOnLayer(layer, false).stream()
+              .filter(this::isTokenVisible)
+              .map(token -> TokenSnapshot.of(zone, token))
+              .toList());
+    }
+  }
+
+  /** Returns if a token is visible in the view, players can not see hidden tokens. */
+  private boolean isTokenVisible(Token token) {
+    return view.isGMView()
+        || (token.isVisible()
+            && token.getLayer().isVisibleToPlayers()
+            && !token.isVisibleOnlyToOwner());
+  }
+
+  /**
+   * Stops a layer from being drawn.
+   *
+   * @param layer the layer not to draw.
+   */
+  public void disableLayer(Layer layer) {
+    disabledLayers.add(layer);
+  }
+
+  /**
+   * Sets whether the grid is drawn, by default it is drawn if it is shown in the client.
+   *
+   * @param drawGrid {@code true} to draw the grid.
+   */
+  public void setDrawGrid(boolean drawGrid) {
+    this.drawGrid = drawGrid;
+  }
+
+  /**
+   * Sets the width and height of the tiles.
+   *
+   * @param tileSize the size of the tiles in pixels.
+   */
+  public void setTileSize(int tileSize) {
+    if (tileSize <= 0) {
+      throw new IllegalArgumentException("Tile size must be positive: " + tileSize);
+    }
+    this.tileSize = tileSize;
+  }
+
+  /**
+   * Sets the number of threads that render tiles, by default one per core.
+   *
+   * @param threads the number of threads.
+   */
+  public void setThreads(int threads) {
+    this.threads = Math.max(1, threads);
+  }
+
+  /**
+   * Renders a region of the zone and writes it as tiles. The images used by the zone are loaded
+   * first, so this waits for assets that still have to be downloaded.
+   *
+   * @param region the region of the zone to render in zone coordinates.
+   * @param scale the number of pixels per zone unit.
+   * @param writer the writer to send the tiles to.
+   * @throws IOException if the writer fails or a tile can not be rendered.
+   * @throws InterruptedException if the thread is interrupted while waiting for the tiles.
+   */
+  public void rasterize(Rectangle region, double scale, TileWriter writer)
+      throws IOException, InterruptedException {
+    int width = (int) Math.ceil(region.width * scale);
+    int height = (int) Math.ceil(region.height * scale);
+    if (width <= 0 || height <= 0) {
+      throw new IllegalArgumentException("Nothing to render in " + region);
+    }
+    int rows = (height + tileSize - 1) / tileSize;
+    int columns = (width + tileSize - 1) / tileSize;
+
+    images = imageLoader.apply(getImageAssetIds());
+    ExecutorService executor = Executors.newFixedThreadPool(threads, threadFactory.build());
+    try {
+      writer.begin(width, height, tileSize);
+      // Render the next row while the current one is written.
+      List<Future<BufferedImage>> next =
+          submitRow(executor, region, scale, 0, columns, width, height);
+      for (int row = 0; row < rows; row++) {
+        List<Future<BufferedImage>> current = next;
+        if (row + 1 < rows) {
+          next = submitRow(executor, region, scale, row + 1, columns, width, height);
+        }
+        List<BufferedImage> tiles = new ArrayList<>(columns);
+        for (Future<BufferedImage> tile : current) {
+          tiles.add(tile.get());
+        }
+        writer.writeRow(row, tiles);
+      }
+      writer.finish();
+    } catch (ExecutionException e) {
+      throw new IOException("Unable to render tile", e.getCause());
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  /**
+   * Queues the tiles of a row to be rendered.
+   *
+   * @return the futures of the tiles from left to right.
+   */
+  private List<Future<BufferedImage>> submitRow(
+      ExecutorService executor,
+      Rectangle region,
+      double scale,
+      int row,
+      int columns,
+      int width,
+      int height) {
+    List<Future<BufferedImage>> tiles = new ArrayList<>(columns);
+    int y = row * tileSize;
+    for (int column = 0; column < columns; column++) {
+      var tile =
+          new Rectangle(
+              column * tileSize,
+              y,
+              Math.min(tileSize, width - column * tileSize),
+              Math.min(tileSize, height - y));
+      tiles.add(executor.submit(() -> renderTile(region, scale, tile)));
+    }
+    return tiles;
+  }
+
+  /** Returns the ids of all the images used by the zone. */
+  private Set<MD5Key> getImageAssetIds() {
+    Set<MD5Key> assetIds = new LinkedHashSet<>();
+    if (drawBoard) {
+      addPaintAsset(assetIds, backgroundPaint);
+      if (mapAssetId != null) {
+        assetIds.add(mapAssetId);
+      }
+    }
+    if (exposedArea != null) {
+      addPaintAsset(assetIds, fogPaint);
+    }
+    for (Layer layer : Layer.values()) {
+      if (shouldRenderLayer(layer)) {
+        for (TokenSnapshot token : tokens.get(layer)) {
+          assetIds.add(token.imageAssetId());
+        }
+      }
+    }
+    return assetIds;
+  }
+
+  /**
+   * Loads images with the {@link ImageManager}, so the tiles neither render placeholders nor read
+   * the image cache of the client while they are rendered.
+   */
+  private static Map<MD5Key, BufferedImage> loadImages(Set<MD5Key> assetIds) {
+    // Request them all first so they are decoded in parallel.
+    assetIds.forEach(ImageManager::getImage);
+    Map<MD5Key, BufferedImage> images = new HashMap<>();
+    for (MD5Key assetId : assetIds) {
+      images.put(assetId, ImageManager.getImageAndWait(assetId));
+    }
+    return images;
+  }
+
+  private static void addPaintAsset(Set<MD5Key> assetIds, @Nullable DrawablePaint paint) {
+    if (paint instanceof DrawableTexturePaint texturePaint) {
+      assetIds.add(texturePaint.getAssetId());
+    }
+  }
+
+  private boolean shouldRenderLayer(Layer layer) {
+    return !disabledLayers.contains(layer) && (layer.isVisibleToPlayers() || view.isGMView());
+  }
+
+  /**
+   * Renders a tile.
+   *
+   * @param region the region of the zone being rendered.
+   * @param scale the number of pixels per zone unit.
+   * @param tile the bounds of the tile in pixels relative to the region.
+   * @return the tile.
+   */
+  private BufferedImage renderTile(Rectangle region, double scale, Rectangle tile) {
+    var image = new BufferedImage(tile.width, tile.height, BufferedImage.TYPE_INT_RGB);
+    var transform = new AffineTransform();
+    transform.translate(-tile.x, -tile.y);
+    transform.scale(scale, scale);
+    transform.translate(-region.x, -region.y);
+
+    // The part of the zone covered by the tile, in zone coordinates.
+    Rectangle2D bounds =
+        new Rectangle2D.Double(
+            region.x + tile.x / scale,
+            region.y + tile.y / scale,
+            tile.width / scale,
+            tile.height / scale);
+
+    Graphics2D g = image.createGraphics();
+    try {
+      g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+      g.setRenderingHint(
+          RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+      g.setTransform(transform);
+
+      if (drawBoard) {
+        renderBoard(g, bounds);
+      }
+      if (shouldRenderLayer(Layer.BACKGROUND)) {
+        renderDrawables(g, transform, tile, bounds, drawables.get(Layer.BACKGROUND));
+        renderTokens(g, bounds, tokens.get(Layer.BACKGROUND));
+      }
+      if (shouldRenderLayer(Layer.OBJECT)) {
+        renderDrawables(g, transform, tile, bounds, drawables.get(Layer.OBJECT));
+      }
+      if (drawGrid) {
+        renderGrid(g, bounds, scale);
+      }
+      if (shouldRenderLayer(Layer.OBJECT)) {
+        renderTokens(g, bounds, tokens.get(Layer.OBJECT));
+      }
+      if (shouldRenderLayer(Layer.TOKEN)) {
+        renderDrawables(g, transform, tile, bounds, drawables.get(Layer.TOKEN));
+        if (shouldRenderLayer(Layer.GM)) {
+          renderDrawables(g, transform, tile, bounds, drawables.get(Layer.GM));
+          renderTokens(g, bounds, tokens.get(Layer.GM));
+        }
+        renderTokens(g, bounds, tokens.get(Layer.TOKEN));
+      }
+      if (exposedArea != null) {
+        renderFog(g, bounds);
+      }
+    } finally {
+      g.dispose();
+    }
+    return image;
+  }
+
+  private void renderBoard(Graphics2D g, Rectangle2D bounds) {
+    if (backgroundPaint != null) {
+      g.setPaint(backgroundPaint.getPaint());
+      g.fill(bounds);
+    }
+
+    if (mapAssetId != null) {
+      BufferedImage mapImage = images.get(mapAssetId);
+      g.drawImage(
+          mapImage,
+          boardX,
+          boardY,
+          (int) (mapImage.getWidth() * imageScaleX),
+          (int) (mapImage.getHeight() * imageScaleY),
+          null);
+    }
+  }
+
+  /**
+   * Renders the drawables of a layer. The drawables are drawn on a transparent image first, so
+   * that eraser pens only erase other drawables of the layer, as in {@link
+   * net.rptools.maptool.client.ui.zone.PartitionedDrawableRenderer}.
+   */
+  private void renderDrawables(
+      Graphics2D g,
+      AffineTransform transform,
+      Rectangle tile,
+      Rectangle2D bounds,
+      List<DrawnElement> elements) {
+    BufferedImage layer = null;
+    Graphics2D layerG = null;
+    for (DrawnElement element : elements) {
+      if (!intersects(element, bounds)) {
+        continue;
+      }
+      if (layer == null) {
+        layer = new BufferedImage(tile.width, tile.height, BufferedImage.TYPE_INT_ARGB);
+        layerG = layer.createGraphics();
+        layerG.setRenderingHint(
+            RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+        layerG.setTransform(transform);
+      }
+      renderDrawable(layerG, element);
+    }
+    if (layer != null) {
+      layerG.dispose();
+      var oldTransform = g.getTransform();
+      g.setTransform(new AffineTransform());
+      g.drawImage(layer, 0, 0, null);
+      g.setTransform(oldTransform);
+    }
+  }
+
+  private void renderDrawable(Graphics2D g, DrawnElement element) {
+    if (element.getDrawable() instanceof DrawablesGroup group) {
+      for (DrawnElement child : group.getDrawableList()) {
+        renderDrawable(g, child);
+      }
+    } else {
+      element.getDrawable().draw(gridZone, g, element.getPen());
+    }
+  }
+
+  private boolean intersects(DrawnElement element, Rectangle2D bounds) {
+    var drawnBounds = new Rectangle(element.getDrawable().getBounds(gridZone));
+    int penSize = (int) Math.ceil(element.getPen().getThickness() / 2 + 1);
+    drawnBounds.grow(penSize, penSize);
+    return drawnBounds.intersects(bounds);
+  }
+
+  /** Renders the grid by outlining the cells that cover the tile. */
+  private void renderGrid(Graphics2D g, Rectangle2D bounds, double scale) {
+    Grid grid = gridZone.getGrid();
+    Shape cellShape = grid.getCellShape();
+    if (grid instanceof GridlessGrid
+        || cellShape == null
+        || grid.getSize() * scale < ZoneRendererConstants.MIN_GRID_SIZE) {
+      return;
+    }
+    int minX = Integer.MAX_VALUE, minY = Integer.MAX_VALUE;
+    int maxX = Integer.MIN_VALUE, maxY = Integer.MIN_VALUE;
+    for (double x : new double[] {bounds.getMinX(), bounds.getMaxX()}) {
+      for (double y : new double[] {bounds.getMinY(), bounds.getMaxY()}) {
+        CellPoint cp = grid.convert(new ZonePoint((int) x, (int) y));
+        minX = Math.min(minX, cp.x);
+        minY = Math.min(minY, cp.y);
+        maxX = Math.max(maxX, cp.x);
+        maxY = Math.max(maxY, cp.y);
+      }
+    }
+
+    g = (Graphics2D) g.create();
+    g.setColor(gridColor);
+    // Keep the lines as wide as the client draws them, whatever the scale.
+    g.setStroke(new BasicStroke((float) (gridLineWidth / scale)));
+    var cellOrigin = cellShape.getBounds();
+    for (int y = minY - 1; y <= maxY + 1; y++) {
+      for (int x = minX - 1; x <= maxX + 1; x++) {
+        Rectangle cell = grid.getBounds(new CellPoint(x, y));
+        var at = AffineTransform.getTranslateInstance(cell.x - cellOrigin.x, cell.y - cellOrigin.y);
+        g.draw(at.createTransformedShape(cellShape));
+      }
+    }
+    g.dispose();
+  }
+
+  /**
+   * Renders the tokens of a layer. The image of a token is placed, rotated and flipped in the same
+   * way as in {@link ZoneRenderer}, but image tables and isometric flipping are not applied.
+   */
+  private void renderTokens(Graphics2D g, Rectangle2D bounds, List<TokenSnapshot> tokenList) {
+    for (TokenSnapshot token : tokenList) {
+      Rectangle footprint = token.footprint();
+      // Allow for the token being rotated.
+      int slop = Math.max(footprint.width, footprint.height) / 2;
+      var maxBounds = new Rectangle(footprint);
+      maxBounds.grow(slop, slop);
+      if (!maxBounds.intersects(bounds)) {
+        continue;
+      }
+
+      BufferedImage image = images.get(token.imageAssetId());
+      renderToken(g, token, footprint, image);
+    }
+  }
+
+  private void renderToken(
+      Graphics2D g, TokenSnapshot token, Rectangle footprint, BufferedImage image) {
+    double x = footprint.x;
+    double y = footprint.y;
+    double width = footprint.width;
+    double height = footprint.height;
+
+    // Figures stand on the bottom of their footprint.
+    double figureOffset = 0;
+    Rectangle imageBounds = footprint;
+    if (token.figure()) {
+      double th = token.height() * width / token.width();
+      figureOffset = height - th;
+      imageBounds =
+          new Rectangle(footprint.x, footprint.y - (int) figureOffset, footprint.width, (int) th);
+    }
+    var imgSize = new Dimension(image.getWidth(), image.getHeight());
+    SwingUtil.constrainTo(imgSize, imageBounds.width, imageBounds.height);
+
+    double offsetX = 0;
+    double offsetY = 0;
+    if (token.snapToScale()) {
+      offsetX = imgSize.width < imageBounds.width ? (imageBounds.width - imgSize.width) / 2 : 0;
+      offsetY = imgSize.height < imageBounds.height ? (imageBounds.height - imgSize.height) / 2 : 0;
+    }
+
+    var at = new AffineTransform();
+    at.translate(x + offsetX, y + offsetY + figureOffset);
+    if (token.rotated()) {
+      at.rotate(
+          Math.toRadians(token.facing()),
+          width / 2 - token.anchor().x - offsetX,
+          height / 2 - token.anchor().y - offsetY);
+    }
+    if (token.snapToScale()) {
+      at.scale(
+          (double) imgSize.width / image.getWidth(), (double) imgSize.height / image.getHeight());
+    } else if (token.figure()) {
+      at.scale(width / image.getWidth(), width / image.getWidth());
+    } else {
+      at.scale(width / image.getWidth(), height / image.getHeight());
+    }
+    if (token.flippedX()) {
+      at.translate(image.getWidth(), 0);
+      at.scale(-1, 1);
+    }
+    if (token.flippedY()) {
+      at.translate(0, image.getHeight());
+      at.scale(1, -1);
+    }
+
+    var tokenG = (Graphics2D) g.create();
+    float opacity = token.opacity();
+    if (opacity < 1.0f) {
+      tokenG.setComposite(AlphaComposite.getInstance(AlphaComposite.SRC_OVER, opacity));
+    }
+    tokenG.drawImage(image, at, null);
+    tokenG.dispose();
+  }
+
+  /** Covers what has not been exposed with the fog, GMs can see through it as in the client. */
+  private void renderFog(Graphics2D g, Rectangle2D bounds) {
+    var fog = new Area(bounds);
+    fog.subtract(exposedArea);
+    if (fog.isEmpty()) {
+      return;
+    }
+    var fogG = (Graphics2D) g.create();
+    fogG.setPaint(fogPaint != null ? fogPaint.getPaint() : Color.black);
+    if (view.isGMView()) {
+      fogG.setComposite(AlphaComposite.getInstance(AlphaComposite.SRC_OVER, .6f));
+    }
+    fogG.fill(fog);
+    fogG.dispose();
+  }
+}
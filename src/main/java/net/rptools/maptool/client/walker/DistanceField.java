@@ -0,0 +1,117 @@
+/*
+ * This software Copyright by the RPTools.net development team, and
+ * licensed under the Affero GPL Version 3 or, at your option, any later
+ * version.
+ *
+ * MapTool Source Code is distributed in the hope that it will be
+ * useful, but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ *
+ * You should have received a copy of the GNU Affero General Public
+ * License * along with this source Code.  If not, please visit
+ * <http://www.gnu.org/licenses/> and specifically the Affero license
+ * text at <http://www.gnu.org/licenses/agpl.html>.
+ */
+package net.rptools.maptool.client.walker;
+
+import java.awt.geom.Rectangle2D;
+import java.util.Map;
+import net.rptools.maptool.model.CellPoint;
+import net.rptools.maptool.model.Grid;
+import net.rptools.maptool.model.Token;
+import net.rptools.maptool.model.Zone;
+
+/**
+ * The cost of moving from a set of source cells to every cell reachable from them, found in a
+ * single flood fill by {@link
+ * net.rptools.maptool.client.walker.astar.AbstractAStarWalker#calculateDistanceField}. Each cell
+ * holds the cost from the nearest source, so one field answers the distance to any number of
+ * targets.
+ */
+public class DistanceField {
+  private final Zone zone;
+
+  /** The reached cells, holding the distance travelled to them. */
+  private final Map<CellPoint, CellPoint> cells;
+
+  /** The part of the zone that was searched. */
+  private final Rectangle2D bounds;
+
+  /** The largest cost that was searched to, in cells. */
+  private final double maxCost;
+
+  /**
+   * Creates a new {@code DistanceField}.
+   *
+   * @param zone the zone that was searched.
+   * @param cells the reached cells, holding the distance travelled to them.
+   * @param bounds the part of the zone that was searched.
+   * @param maxCost the largest cost that was searched to, in cells.
+   */
+  public DistanceField(
+      Zone zone, Map<CellPoint, CellPoint> cells, Rectangle2D bounds, double maxCost) {
+    this.zone = zone;
+    this.cells = cells;
+    this.bounds = bounds;
+    this.maxCost = maxCost;
+  }
+
+  /**
+   * Returns the distance to a cell, rounded and scaled to map units in the same way as a path.
+   *
+   * @param cell the cell.
+   * @return the distance, or {@code -1} if the cell can not be reached.
+   */
+  public double getDistance(CellPoint cell) {
+    CellPoint reached = cells.get(cell);
+    return reached == null ? -1 : reached.getDistanceTraveled(zone);
+  }
+
+  /**
+   * Returns the distance to the nearest cell occupied by a token.
+   *
+   * @param token the token.
+   * @return the distance in map units, or {@code -1} if the token can not be reached.
+   */
+  public double getDistance(Token token) {
+    double distance = -1;
+    for (CellPoint cell : token.getOccupiedCells(zone.getGrid())) {
+      double cellDistance = getDistance(cell);
+      if (cellDistance >= 0 && (distance < 0 || cellDistance < distance)) {
+        distance = cellDistance;
+      }
+    }
+    return distance;
+  }
+
+  /**
+   * Returns whether the field answers for a cell, that is the cell was inside the searched part of
+   * the zone.
+   *
+   * @param cell the cell.
+   * @return {@code true} if the cell was searched.
+   */
+  public boolean covers(CellPoint cell) {
+    Grid grid = zone.getGrid();
+    return grid.getBounds(cell).intersects(bounds);
+  }
+
+  /**
+   * Returns the largest cost that was searched to. Cells further away than this are not reached
+   * even if there is a path to them.
+   *
+   * @return the cost, in cells.
+   */
+  public double getMaxCost() {
+    return maxCost;
+  }
+
+  /**
+   * Returns the number of reached cells.
+   *
+   * @return the number of cells.
+   */
+  public int size() {
+    return cells.size();
+  }
+}
@@ -0,0 +1,224 @@
+/*
+ * This software Copyright by the RPTools.net development team, and
+ * licensed under the Affero GPL Version 3 or, at your option, any later
+ * version.
+ *
+ * MapTool Source Code is distributed in the hope that it will be
+ * useful, but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ *
+ * You should have received a copy of the GNU Affero General Public
+ * License * along with this source Code.  If not, please visit
+ * <http://www.gnu.org/licenses/> and specifically the Affero license
+ * text at <http://www.gnu.org/licenses/agpl.html>.
+ */
+package net.rptools.maptool.client.walker;
+
+import com.google.common.eventbus.Subscribe;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import javax.annotation.Nullable;
+import net.rptools.maptool.client.MapTool;
+import net.rptools.maptool.client.ui.zone.PlayerView;
+import net.rptools.maptool.client.walker.astar.AStarSquareEuclideanWalker;
+import net.rptools.maptool.client.walker.astar.AbstractAStarWalker;
+import net.rptools.maptool.events.MapToolEventBus;
+import net.rptools.maptool.model.CellPoint;
+import net.rptools.maptool.model.GUID;
+import net.rptools.maptool.model.Grid;
+import net.rptools.maptool.model.Token;
+import net.rptools.maptool.model.Token.TerrainModifierOperation;
+import net.rptools.maptool.model.Zone;
+import net.rptools.maptool.model.zones.ZoneRemoved;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Keeps the {@link DistanceField}s of the tokens that were measured from, so that repeated
+ * distance and reach queries from the same cells only flood the map once. A field is used until
+ * the topology of the zone, the tokens that carry topology or terrain modifiers, the grid or, for
+ * players, the fog of war change. The fields of a zone are dropped in the background when the
+ * zone is removed, and all fields when the campaign is replaced.
+ */
+public final class DistanceFieldCache {
+  private static final Logger log = LogManager.getLogger(DistanceFieldCache.class);
+
+  /** The number of fields kept for each zone. */
+  private static final int FIELDS_PER_ZONE = 16;
+
+  /** The fields of each zone, by what they were calculated from. */
+  private static final Map<GUID, Map<Key, DistanceField>> fields = new HashMap<>();
+
+  /**
+   * Everything a distance field depends on.
+   *
+   * @param zone the zone.
+   * @param sources the cells the field starts from.
+   * @param metric the walker metric, {@code null} on grids without one.
+   * @param keyToken the id of the moving token, if any.
+   * @param terrainModifiersIgnored the terrain modifiers that do not apply.
+   * @param grid the grid of the zone.
+   * @param gridSize the size of the grid.
+   * @param unitsPerCell the units per cell of the zone, which scale terrain modifiers.
+   * @param topology the topology modification count of the zone.
+   * @param obstacles a hash of the tokens with topology or terrain modifiers.
+   * @param view the view the fog of war was seen through, if it applies.
+   * @param fog the modification count of the zone if the fog of war applies.
+   */
+  private record Key(
+      Zone zone,
+      Set<CellPoint> sources,
+      @Nullable WalkerMetric metric,
+      @Nullable GUID keyToken,
+      Set<TerrainModifierOperation> terrainModifiersIgnored,
+      Grid grid,
+      int gridSize,
+      double unitsPerCell,
+      long topology,
+      long obstacles,
+      @Nullable PlayerView view,
+      long fog) {}
+
+  static {
+    new MapToolEventBus().registerBackground(new ZoneListener());
+  }
+
+  private DistanceFieldCache() {}
+
+  /** Drops the fields of all zones, for when the campaign is replaced. */
+  public static void clear() {
+    synchronized (fields) {
+      fields.clear();
+    }
+  }
+
+  /**
+   * Drops the fields of zones that are removed, they can not be asked for again. Called on a
+   * background thread.
+   */
+  private static final class ZoneListener {
+    @Subscribe
+    private void onZoneRemoved(ZoneRemoved event) {
+      synchronized (fields) {
+        fields.remove(event.zone().getId());
+      }
+    }
+  }
+
+  /**
+   * Returns the distance field of the cells occupied by a token, following the movement rules of
+   * the token: its own topology does not block it and the terrain modifiers it ignores do not
+   * apply.
+   *
+   * @param zone the zone the token is on.
+   * @param token the token to measure from.
+   * @param metric the walker metric to use on grids with metrics.
+   * @param targets the cells that must be covered by the field.
+   * @param maxCost the largest cost that must be covered by the field, in cells.
+   * @return the distance field.
+   * @throws IllegalArgumentException if the grid of the zone does not support pathing.
+   */
+  public static DistanceField getDistanceField(
+      Zone zone,
+      Token token,
+      @Nullable WalkerMetric metric,
+      Collection<CellPoint> targets,
+      double maxCost) {
+    Grid grid = zone.getGrid();
+    if (!grid.getCapabilities().isPathingSupported()) {
+      throw new IllegalArgumentException("The grid of zone " + zone.getName() + " has no cells");
+    }
+    Set<CellPoint> sources = new HashSet<>(token.getOccupiedCells(grid));
+    Set<TerrainModifierOperation> ignored = Set.copyOf(token.getTerrainModifiersIgnored());
+
+    // There is no frame when running headless.
+    var frame = MapTool.getFrame();
+    var renderer = frame == null ? null : frame.getZoneRenderer(zone);
+    PlayerView view = renderer == null ? null : renderer.getPlayerView();
+    boolean fogApplies = view != null && zone.hasFog() && !view.isGMView();
+    var key =
+        new Key(
+            zone,
+            sources,
+            grid.useMetric() ? metric : null,
+            token.getId(),
+            ignored,
+            grid,
+            grid.getSize(),
+            zone.getUnitsPerCell(),
+            zone.getTopologyModificationCount(),
+            getObstacleHash(zone),
+            fogApplies ? view : null,
+            fogApplies ? zone.getModificationCount() : 0);
+
+    synchronized (fields) {
+      DistanceField field = fields.getOrDefault(zone.getId(), Map.of()).get(key);
+      if (field != null
+          && field.getMaxCost() >= maxCost
+          && targets.stream().allMatch(field::covers)) {
+        return field;
+      }
+    }
+
+    AbstractAStarWalker walker;
+    if (grid.useMetric() && metric != null) {
+      walker = new AStarSquareEuclideanWalker(zone, metric);
+    } else {
+      ZoneWalker gridWalker = grid.createZoneWalker();
+      if (!(gridWalker instanceof AbstractAStarWalker)) {
+        gridWalker.close();
+        throw new IllegalArgumentException("The grid of zone " + zone.getName() + " has no walker");
+      }
+      walker = (AbstractAStarWalker) gridWalker;
+    }
+
+    long start = System.nanoTime();
+    DistanceField field;
+    try (walker) {
+      field = walker.calculateDistanceField(sources, targets, maxCost, ignored, token);
+    }
+    log.debug(
+        "Distance field of {} cells for {} took {} ms",
+        field.size(),
+        token.getName(),
+        (System.nanoTime() - start) / 1_000_000);
+
+    synchronized (fields) {
+      fields
+          .computeIfAbsent(
+              zone.getId(),
+              z ->
+                  new LinkedHashMap<>(16, 0.75f, true) {
+                    @Override
+                    protected boolean removeEldestEntry(Map.Entry<Key, DistanceField> eldest) {
+                      return size() > FIELDS_PER_ZONE;
+                    }
+                  })
+          .put(key, field);
+    }
+    return field;
+  }
+
+  /**
+   * Returns a hash of the tokens that can change movement: those with topology or terrain
+   * modifiers. The hash changes when one of them is modified, added or removed.
+   *
+   * @param zone the zone.
+   * @return the hash.
+   */
+  private static long getObstacleHash(Zone zone) {
+    long hash = 1;
+    for (Token token : zone.getAllTokens()) {
+      if (token.hasAnyMaskTopology()
+          || token.getTerrainModifierOperation() != TerrainModifierOperation.NONE) {
+        hash = 31 * hash + token.getId().hashCode();
+        hash = 31 * hash + token.getModificationCount();
+      }
+    }
+    return hash;
+  }
+}
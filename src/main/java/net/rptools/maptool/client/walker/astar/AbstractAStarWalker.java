@@ -22,6 +22,7 @@
 import java.awt.geom.Rectangle2D;
 import java.text.DecimalFormat;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.EnumSet;
@@ -38,11 +39,13 @@
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.stream.Collectors;
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 import net.rptools.lib.GeometryUtil;
 import net.rptools.maptool.client.DeveloperOptions;
 import net.rptools.maptool.client.MapTool;
 import net.rptools.maptool.client.ui.zone.vbl.MovementBlockingTopology;
 import net.rptools.maptool.client.walker.AbstractZoneWalker;
+import net.rptools.maptool.client.walker.DistanceField;
 import net.rptools.maptool.events.MapToolEventBus;
 import net.rptools.maptool.model.CellPoint;
 import net.rptools.maptool.model.GUID;
@@ -215,51 +218,7 @@ protected List<CellPoint> calculatePath(CellPoint start, CellPoint goal) {
 
     AStarCellPoint currentNode = null;
 
-    // Get current VBL for map...
-    // Using JTS because AWT Area can only intersect with Area and we want to use simple lines here.
-    // Render VBL to Geometry class once and store.
-    // Note: zoneRenderer will be null if map is not visible to players.
-    Area newFowExposedArea = new Area();
-    final var zoneRenderer = MapTool.getFrame().getZoneRenderer(zone);
-    if (zoneRenderer != null) {
-      final var zoneView = zoneRenderer.getZoneView();
-
-      if (invalidatedTopology.compareAndSet(true, false)) {
-        // The move cache may no longer accurately reflect the VBL limitations.
-        this.vblBlockedMovesByGoal.clear();
-
-        var topologyTypes =
-            MapTool.getServerPolicy().getVblBlocksMove()
-                ? EnumSet.allOf(Zone.TopologyType.class)
-                : EnumSet.of(Zone.TopologyType.MBL);
-        this.preparedTopology =
-            new MovementBlockingTopology(
-                zone.getWalls(),
-                zone.getMasks(topologyTypes, keyToken == null ? null : keyToken.getId()));
-      }
-
-      var view = zoneRenderer.getPlayerView();
-      newFowExposedArea =
-          zone.hasFog() && !view.isGMView() ? zoneView.getExposedArea(view) : new Area();
-    }
-
-    if (!Objects.equals(newFowExposedArea, fowExposedArea)) {
-      // The move cache may no longer accurately reflect the FOW limitations.
-      this.fowBlockedMovesByGoal.clear();
-
-      fowExposedArea = newFowExposedArea;
-      // FoW has changed. Let's update the JTS geometry to match.
-      if (fowExposedArea.isEmpty()) {
-        this.fowExposedAreaGeometry = null;
-      } else {
-        try {
-          this.fowExposedAreaGeometry =
-              PreparedGeometryFactory.prepare(GeometryUtil.toJts(fowExposedArea));
-        } catch (Exception e) {
-          log.info("FoW Geometry oh oh: ", e);
-        }
-      }
-    }
+    prepareTopology(false);
 
     // Erase previous debug labels.
     EventQueue.invokeLater(
@@ -368,6 +327,148 @@ protected List<CellPoint> calculatePath(CellPoint start, CellPoint goal) {
     return returnedCellPointList;
   }
 
+  /**
+   * Calculates the cost of moving to every cell reachable from the nearest of the source cells,
+   * in a single Dijkstra flood fill. The same rules apply as for {@link #calculatePath(CellPoint,
+   * CellPoint)}: movement blocking topology, fog of war and terrain modifiers are all honoured.
+   *
+   * <p>The search covers the same area a path would, the topology, terrain and exposed area plus
+   * some room around them, extended to include the source and target cells.
+   *
+   * @param sources the cells to start from.
+   * @param targets the cells that must be inside the searched area.
+   * @param maxCost the largest cost to search to, in cells.
+   * @param terrainModifiersIgnored the terrain modifiers that do not apply.
+   * @param keyToken the token that is moving, whose own topology does not block it.
+   * @return the distance field.
+   */
+  public DistanceField calculateDistanceField(
+      Collection<CellPoint> sources,
+      Collection<CellPoint> targets,
+      double maxCost,
+      Set<Token.TerrainModifierOperation> terrainModifiersIgnored,
+      @Nullable Token keyToken) {
+    this.restrictMovement = true;
+    this.terrainModifiersIgnored = terrainModifiersIgnored;
+    this.keyToken = keyToken;
+    invalidatedTopology.set(true);
+    prepareTopology(true);
+
+    List<CellPoint> searched = new ArrayList<>(sources);
+    searched.addAll(targets);
+    Rectangle2D bounds = getPathfindingBounds(searched);
+
+    // Nodes are not moved within the queue when a cheaper way is found, the cheaper copy is added
+    // and the old one skipped when it comes up.
+    Queue<AStarCellPoint> openList =
+        new PriorityQueue<>(Comparator.comparingDouble(node -> node.g));
+    Map<AStarCellPoint, AStarCellPoint> openSet = new HashMap<>();
+    Set<AStarCellPoint> closedSet = new HashSet<>();
+    Map<CellPoint, CellPoint> reached = new HashMap<>();
+
+    for (CellPoint source : sources) {
+      var node = new AStarCellPoint(source.x, source.y, false);
+      if (openSet.putIfAbsent(node, node) == null) {
+        openList.add(node);
+      }
+    }
+
+    while (!openList.isEmpty()) {
+      AStarCellPoint node = openList.remove();
+      if (openSet.get(node) != node) {
+        continue;
+      }
+      if (node.g > maxCost) {
+        break;
+      }
+      openSet.remove(node);
+      closedSet.add(node);
+      // The first state of a cell to come up is the cheapest way to it.
+      reached.putIfAbsent(node.position, node.position);
+
+      for (AStarCellPoint neighbor : getNeighbors(node, closedSet, bounds)) {
+        AStarCellPoint open = openSet.get(neighbor);
+        if (open == null || neighbor.g < open.g) {
+          openSet.put(neighbor, neighbor);
+          openList.add(neighbor);
+        }
+      }
+
+      if (Thread.currentThread().isInterrupted()) {
+        log.debug("Distance field cancelled");
+        break;
+      }
+    }
+
+    return new DistanceField(zone, reached, bounds, maxCost);
+  }
+
+  /**
+   * Prepares the movement blocking topology now, even if the map is not shown. Paths only prepare
+   * the topology themselves when the map has a renderer, so without one, e.g. when running
+   * headless, this has to be called for paths to avoid the topology, and again after it changes.
+   */
+  public void prepareTopology() {
+    invalidatedTopology.set(true);
+    prepareTopology(true);
+  }
+
+  /**
+   * Brings the movement blocking topology and the exposed area of the fog of war up to date.
+   *
+   * @param withoutRenderer if the topology should be prepared even if the map is not shown.
+   */
+  private void prepareTopology(boolean withoutRenderer) {
+    // Get current VBL for map...
+    // Using JTS because AWT Area can only intersect with Area and we want to use simple lines here.
+    // Render VBL to Geometry class once and store.
+    // Note: zoneRenderer will be null if map is not visible to players, and there is no frame when
+    // running headless.
+    Area newFowExposedArea = new Area();
+    final var frame = MapTool.getFrame();
+    final var zoneRenderer = frame == null ? null : frame.getZoneRenderer(zone);
+    if ((zoneRenderer != null || withoutRenderer)
+        && invalidatedTopology.compareAndSet(true, false)) {
+      // The move cache may no longer accurately reflect the VBL limitations.
+      this.vblBlockedMovesByGoal.clear();
+
+      var topologyTypes =
+          MapTool.getServerPolicy().getVblBlocksMove()
+              ? EnumSet.allOf(Zone.TopologyType.class)
+              : EnumSet.of(Zone.TopologyType.MBL);
+      this.preparedTopology =
+          new MovementBlockingTopology(
+              zone.getWalls(),
+              zone.getMasks(topologyTypes, keyToken == null ? null : keyToken.getId()));
+    }
+
+    if (zoneRenderer != null) {
+      final var zoneView = zoneRenderer.getZoneView();
+
+      var view = zoneRenderer.getPlayerView();
+      newFowExposedArea =
+          zone.hasFog() && !view.isGMView() ? zoneView.getExposedArea(view) : new Area();
+    }
+
+    if (!Objects.equals(newFowExposedArea, fowExposedArea)) {
+      // The move cache may no longer accurately reflect the FOW limitations.
+      this.fowBlockedMovesByGoal.clear();
+
+      fowExposedArea = newFowExposedArea;
+      // FoW has changed. Let's update the JTS geometry to match.
+      if (fowExposedArea.isEmpty()) {
+        this.fowExposedAreaGeometry = null;
+      } else {
+        try {
+          this.fowExposedAreaGeometry =
+              PreparedGeometryFactory.prepare(GeometryUtil.toJts(fowExposedArea));
+        } catch (Exception e) {
+          log.info("FoW Geometry oh oh: ", e);
+        }
+      }
+    }
+  }
+
   /**
    * Find a suitable bounding box in which A* can look for paths.
    *
@@ -387,6 +488,17 @@ protected List<CellPoint> calculatePath(CellPoint start, CellPoint goal) {
    * @return A bounding box suitable for constraining the A* search space.
    */
   protected Rectangle2D getPathfindingBounds(CellPoint start, CellPoint goal) {
+    return getPathfindingBounds(List.of(start, goal));
+  }
+
+  /**
+   * Find a suitable bounding box in which to look for paths between any of the given cells.
+   *
+   * @param cells the cells that must be inside the bounding box.
+   * @return A bounding box suitable for constraining the search space.
+   * @see #getPathfindingBounds(CellPoint, CellPoint)
+   */
+  protected Rectangle2D getPathfindingBounds(Collection<CellPoint> cells) {
     // Bounding box must contain all VBL/MBL ...
     var vblEnvelope = preparedTopology.getEnvelope();
 
@@ -402,10 +514,10 @@ protected Rectangle2D getPathfindingBounds(CellPoint start, CellPoint goal) {
     for (var cellPoint : terrainCells.keySet()) {
       pathfindingBounds = pathfindingBounds.createUnion(zone.getGrid().getBounds(cellPoint));
     }
-    // ... and the original token position ...
-    pathfindingBounds = pathfindingBounds.createUnion(zone.getGrid().getBounds(start));
-    // ... and the target token position ...
-    pathfindingBounds = pathfindingBounds.createUnion(zone.getGrid().getBounds(goal));
+    // ... and the original and target token positions ...
+    for (var cellPoint : cells) {
+      pathfindingBounds = pathfindingBounds.createUnion(zone.getGrid().getBounds(cellPoint));
+    }
     // ... and have ample room for the token to go anywhere around the outside if necessary.
     var tokenBounds = footprint.getBounds(zone.getGrid());
     // Expand by twice the token size to ensure plenty of room.
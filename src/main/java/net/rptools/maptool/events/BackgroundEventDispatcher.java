@@ -0,0 +1,185 @@
+/*
+ * This software Copyright by the RPTools.net development team, and
+ * licensed under the Affero GPL Version 3 or, at your option, any later
+ * version.
+ *
+ * MapTool Source Code is distributed in the hope that it will be
+ * useful, but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ *
+ * You should have received a copy of the GNU Affero General Public
+ * License * along with this source Code.  If not, please visit
+ * <http://www.gnu.org/licenses/> and specifically the Affero license
+ * text at <http://www.gnu.org/licenses/agpl.html>.
+ */
+package net.rptools.maptool.events;
+
+import com.google.common.eventbus.EventBus;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import javax.annotation.Nullable;
+
+/**
+ * Dispatches events to subscribers that do not need to run on the thread that posted the event,
+ * e.g. subscribers that only invalidate thread safe caches. Such subscribers would otherwise add to
+ * the time the event dispatch thread spends on every change to a zone.
+ *
+ * <p>Each subscriber is assigned to one of a few lanes, a lane has its own thread and delivers the
+ * events to its subscribers in the order they were posted. Events that are still waiting in a lane
+ * are combined with a following {@link CoalescableEvent} the same way {@link BatchingEventBus}
+ * does. Subscribers must be thread safe and must not wait for the event dispatch thread.
+ */
+public class BackgroundEventDispatcher {
+
+  /** Thread factory for the threads of the lanes. */
+  private static final ThreadFactory threadFactory =
+      (new com.google.common.util.concurrent.ThreadFactoryBuilder())
+          .setNameFormat("background-event-dispatcher-%d")
+          .setDaemon(true)
+          .build();
+
+  /** The number of lanes. */
+  private static final int LANE_COUNT =
+      Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors() / 2));
+
+  /** An event waiting in a lane. */
+  private record Pending(Object event, long postedAt) {}
+
+  /** Delivers events to its subscribers on its own thread. */
+  private class Lane {
+    private final EventBus eventBus = new EventBus();
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(threadFactory);
+    private final Deque<Pending> pending = new ArrayDeque<>();
+    private int subscriberCount;
+    private boolean draining;
+
+    private synchronized void post(Object event, long postedAt) {
+      if (subscriberCount == 0) {
+        return;
+      }
+      var last = pending.peekLast();
+      if (last != null && last.event() instanceof CoalescableEvent previous) {
+        var combined = previous.coalesce(event);
+        if (combined != null) {
+          pending.pollLast();
+          pending.add(new Pending(combined, last.postedAt()));
+          statistics.coalesced(event);
+          return;
+        }
+      }
+      pending.add(new Pending(event, postedAt));
+      if (!draining) {
+        draining = true;
+        executor.execute(this::drain);
+      }
+    }
+
+    private void drain() {
+      while (true) {
+        Pending next;
+        synchronized (this) {
+          next = pending.poll();
+          if (next == null) {
+            draining = false;
+            return;
+          }
+        }
+        eventBus.post(next.event());
+        statistics.dispatched(next.event(), next.postedAt());
+      }
+    }
+  }
+
+  private final Lane[] lanes = new Lane[LANE_COUNT];
+
+  /** The lane of each registered subscriber. */
+  private final Map<Object, Lane> subscribers = new IdentityHashMap<>();
+
+  private final EventDispatchStatistics statistics;
+
+  private int nextLane = 0;
+
+  /** Creates a new {@code BackgroundEventDispatcher}. */
+  public BackgroundEventDispatcher() {
+    this(null);
+  }
+
+  /**
+   * Creates a new {@code BackgroundEventDispatcher}.
+   *
+   * @param metricName the name to publish the dispatch statistics as, or {@code null} for none.
+   * @see EventDispatchStatistics#EventDispatchStatistics(String)
+   */
+  public BackgroundEventDispatcher(@Nullable String metricName) {
+    statistics = new EventDispatchStatistics(metricName);
+    for (int i = 0; i < lanes.length; i++) {
+      lanes[i] = new Lane();
+    }
+  }
+
+  /**
+   * Registers a subscriber, the events are delivered to its {@link
+   * com.google.common.eventbus.Subscribe} methods on a background thread.
+   *
+   * @param subscriber the subscriber.
+   */
+  public void register(Object subscriber) {
+    Lane lane;
+    synchronized (subscribers) {
+      if (subscribers.containsKey(subscriber)) {
+        return;
+      }
+      lane = lanes[nextLane];
+      nextLane = (nextLane + 1) % lanes.length;
+      subscribers.put(subscriber, lane);
+    }
+    lane.eventBus.register(subscriber);
+    synchronized (lane) {
+      lane.subscriberCount++;
+    }
+  }
+
+  /**
+   * Unregisters a subscriber.
+   *
+   * @param subscriber the subscriber.
+   */
+  public void unregister(Object subscriber) {
+    Lane lane;
+    synchronized (subscribers) {
+      lane = subscribers.remove(subscriber);
+    }
+    if (lane != null) {
+      lane.eventBus.unregister(subscriber);
+      synchronized (lane) {
+        lane.subscriberCount--;
+      }
+    }
+  }
+
+  /**
+   * Posts an event to the background subscribers.
+   *
+   * @param event the event.
+   * @param postedAt the {@link System#nanoTime()} the event was posted at.
+   */
+  public void post(Object event, long postedAt) {
+    for (var lane : lanes) {
+      lane.post(event, postedAt);
+    }
+  }
+
+  /**
+   * Returns the dispatch statistics of the background subscribers.
+   *
+   * @return the dispatch statistics.
+   */
+  public EventDispatchStatistics getStatistics() {
+    return statistics;
+  }
+}
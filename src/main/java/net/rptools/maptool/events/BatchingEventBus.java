@@ -0,0 +1,162 @@
+/*
+ * This software Copyright by the RPTools.net development team, and
+ * licensed under the Affero GPL Version 3 or, at your option, any later
+ * version.
+ *
+ * MapTool Source Code is distributed in the hope that it will be
+ * useful, but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ *
+ * You should have received a copy of the GNU Affero General Public
+ * License * along with this source Code.  If not, please visit
+ * <http://www.gnu.org/licenses/> and specifically the Affero license
+ * text at <http://www.gnu.org/licenses/agpl.html>.
+ */
+package net.rptools.maptool.events;
+
+import com.google.common.eventbus.DeadEvent;
+import com.google.common.eventbus.EventBus;
+import java.util.ArrayList;
+import java.util.List;
+import javax.annotation.Nullable;
+
+/**
+ * An {@link EventBus} that can hold back the events posted while a task runs and post them once the
+ * task has finished. Consecutive {@link CoalescableEvent}s posted during the task are combined, so
+ * e.g. a hundred token updates are handled as one change of a hundred tokens.
+ *
+ * <p>Only {@link CoalescableEvent}s are held back. Posting any other event first posts the events
+ * held back so far, so subscribers still see the events in the order they were posted. Batching is
+ * per thread, events posted on other threads are posted as usual.
+ *
+ * <p>Events are also passed on to the {@link BackgroundEventDispatcher}, if there is one, and the
+ * time each event takes to be dispatched is recorded in the {@link EventDispatchStatistics}.
+ */
+public class BatchingEventBus extends EventBus {
+
+  /** An event that has been held back. */
+  private record Pending(Object event, long postedAt) {}
+
+  /** The events held back on each thread, {@code null} if the thread is not batching. */
+  private final ThreadLocal<List<Pending>> batch = new ThreadLocal<>();
+
+  /** The dispatcher for the subscribers that run on background threads. */
+  private final @Nullable BackgroundEventDispatcher background;
+
+  private final EventDispatchStatistics statistics;
+
+  /** Creates a new {@code BatchingEventBus} without background subscribers. */
+  public BatchingEventBus() {
+    this(null, null);
+  }
+
+  /**
+   * Creates a new {@code BatchingEventBus}.
+   *
+   * @param background the dispatcher to pass the events on to, or {@code null} for none.
+   * @param metricName the name to publish the dispatch statistics as, or {@code null} for none.
+   * @see EventDispatchStatistics#EventDispatchStatistics(String)
+   */
+  public BatchingEventBus(
+      @Nullable BackgroundEventDispatcher background, @Nullable String metricName) {
+    this.background = background;
+    this.statistics = new EventDispatchStatistics(metricName);
+  }
+
+  /**
+   * Runs a task, holding back and combining the events it posts until it has finished. If a batch
+   * is already running on this thread its events are posted first, so that a nested batch, e.g. one
+   * run while a modal dialog is showing, does not delay them.
+   *
+   * @param task the task to run.
+   */
+  public void batch(Runnable task) {
+    var outer = batch.get();
+    if (outer != null) {
+      flush(outer);
+    }
+    var events = new ArrayList<Pending>();
+    batch.set(events);
+    try {
+      task.run();
+    } finally {
+      flush(events);
+      batch.set(outer);
+    }
+  }
+
+  @Override
+  public void post(Object event) {
+    if (event instanceof DeadEvent) {
+      // Posted by the superclass for events without subscribers, these have been dispatched.
+      super.post(event);
+      return;
+    }
+    long postedAt = System.nanoTime();
+    var events = batch.get();
+    if (events == null) {
+      dispatch(event, postedAt);
+    } else if (event instanceof CoalescableEvent) {
+      int last = events.size() - 1;
+      if (last >= 0 && events.get(last).event() instanceof CoalescableEvent previous) {
+        var combined = previous.coalesce(event);
+        if (combined != null) {
+          events.set(last, new Pending(combined, events.get(last).postedAt()));
+          statistics.coalesced(event);
+          return;
+        }
+      }
+      events.add(new Pending(event, postedAt));
+    } else {
+      flush(events);
+      dispatch(event, postedAt);
+    }
+  }
+
+  /**
+   * Returns the dispatch statistics of the subscribers of this event bus.
+   *
+   * @return the dispatch statistics.
+   */
+  public EventDispatchStatistics getStatistics() {
+    return statistics;
+  }
+
+  /**
+   * Delivers an event to the subscribers.
+   *
+   * @param event the event.
+   * @param postedAt the {@link System#nanoTime()} the event was posted at.
+   */
+  private void dispatch(Object event, long postedAt) {
+    if (background != null) {
+      background.post(event, postedAt);
+    }
+    super.post(event);
+    statistics.dispatched(event, postedAt);
+  }
+
+  /**
+   * Posts the events that have been held back.
+   *
+   * @param events the events held back.
+   */
+  private void flush(List<Pending> events) {
+    if (events.isEmpty()) {
+      return;
+    }
+    var pending = List.copyOf(events);
+    events.clear();
+
+    // Events posted by the subscribers are delivered straight away.
+    var current = batch.get();
+    batch.remove();
+    try {
+      for (var p : pending) {
+        dispatch(p.event(), p.postedAt());
+      }
+    } finally {
+      batch.set(current);
+    }
+  }
+}
@@ -0,0 +1,36 @@
+/*
+ * This software Copyright by the RPTools.net development team, and
+ * licensed under the Affero GPL Version 3 or, at your option, any later
+ * version.
+ *
+ * MapTool Source Code is distributed in the hope that it will be
+ * useful, but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ *
+ * You should have received a copy of the GNU Affero General Public
+ * License * along with this source Code.  If not, please visit
+ * <http://www.gnu.org/licenses/> and specifically the Affero license
+ * text at <http://www.gnu.org/licenses/agpl.html>.
+ */
+package net.rptools.maptool.events;
+
+import javax.annotation.Nullable;
+
+/**
+ * An event that can be combined with the event posted after it while events are batched by {@link
+ * BatchingEventBus#batch(Runnable)}, so that subscribers handle one event instead of many.
+ */
+public interface CoalescableEvent {
+
+  /**
+   * Combines this event with the next event that was posted. The default implementation drops the
+   * next event if it is equal to this one, which suits events that only say what has changed.
+   *
+   * @param next the next event.
+   * @return the combined event, or {@code null} if the events can not be combined.
+   */
+  @Nullable
+  default Object coalesce(Object next) {
+    return equals(next) ? this : null;
+  }
+}
@@ -0,0 +1,141 @@
+/*
+ * This software Copyright by the RPTools.net development team, and
+ * licensed under the Affero GPL Version 3 or, at your option, any later
+ * version.
+ *
+ * MapTool Source Code is distributed in the hope that it will be
+ * useful, but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ *
+ * You should have received a copy of the GNU Affero General Public
+ * License * along with this source Code.  If not, please visit
+ * <http://www.gnu.org/licenses/> and specifically the Affero license
+ * text at <http://www.gnu.org/licenses/agpl.html>.
+ */
+package net.rptools.maptool.events;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import javax.annotation.Nullable;
+import net.rptools.maptool.util.metrics.Counter;
+import net.rptools.maptool.util.metrics.LatencyHistogram;
+import net.rptools.maptool.util.metrics.MetricsRegistry;
+
+/**
+ * Collects the dispatch latency of each type of event, i.e. the time from an event being posted
+ * until all its subscribers have handled it. If given a metric name the latencies are also
+ * published in the {@link MetricsRegistry}, as a histogram <code>name.EventType</code> and a
+ * counter <code>name.EventType.coalesced</code> for each type of event. This class is thread safe.
+ */
+public class EventDispatchStatistics {
+
+  /**
+   * Statistics for a type of event.
+   *
+   * @param dispatched the number of events dispatched to the subscribers.
+   * @param coalesced the number of events combined with another event instead of being dispatched.
+   * @param meanMillis the mean latency in milliseconds.
+   * @param maxMillis the maximum latency in milliseconds.
+   */
+  public record TypeStatistics(
+      long dispatched, long coalesced, double meanMillis, double maxMillis) {}
+
+  /** The counters for a type of event. */
+  private static class Counters {
+    private long dispatched;
+    private long coalesced;
+    private long totalNanos;
+    private long maxNanos;
+    private @Nullable LatencyHistogram latencyMetric;
+    private @Nullable Counter coalescedMetric;
+  }
+
+  private final Map<Class<?>, Counters> counters = new HashMap<>();
+
+  /** The prefix of the names of the published metrics, {@code null} if they are not published. */
+  private final @Nullable String metricName;
+
+  /** Creates a new {@code EventDispatchStatistics} that is not published as metrics. */
+  public EventDispatchStatistics() {
+    this(null);
+  }
+
+  /**
+   * Creates a new {@code EventDispatchStatistics}.
+   *
+   * @param metricName the prefix of the names of the metrics to publish the statistics as, or
+   *     {@code null} to not publish them.
+   */
+  public EventDispatchStatistics(@Nullable String metricName) {
+    this.metricName = metricName;
+  }
+
+  /**
+   * Records the dispatch of an event.
+   *
+   * @param event the event.
+   * @param postedAt the {@link System#nanoTime()} the event was posted at.
+   */
+  public synchronized void dispatched(Object event, long postedAt) {
+    long nanos = System.nanoTime() - postedAt;
+    var c = counters(event.getClass());
+    c.dispatched++;
+    c.totalNanos += nanos;
+    c.maxNanos = Math.max(c.maxNanos, nanos);
+    if (c.latencyMetric != null) {
+      c.latencyMetric.record(nanos);
+    }
+  }
+
+  /**
+   * Records that an event was combined with another event.
+   *
+   * @param event the event.
+   */
+  public synchronized void coalesced(Object event) {
+    var c = counters(event.getClass());
+    c.coalesced++;
+    if (c.coalescedMetric != null) {
+      c.coalescedMetric.increment();
+    }
+  }
+
+  /**
+   * Returns the statistics for each type of event since the statistics were last reset.
+   *
+   * @return the statistics keyed by the simple name of the event class.
+   */
+  public synchronized Map<String, TypeStatistics> getStatistics() {
+    var statistics = new HashMap<String, TypeStatistics>();
+    counters.forEach(
+        (type, c) ->
+            statistics.put(
+                type.getSimpleName(),
+                new TypeStatistics(
+                    c.dispatched,
+                    c.coalesced,
+                    c.dispatched == 0 ? 0 : c.totalNanos / 1e6 / c.dispatched,
+                    c.maxNanos / 1e6)));
+    return Collections.unmodifiableMap(statistics);
+  }
+
+  /** Resets the statistics. */
+  public synchronized void resetStatistics() {
+    counters.clear();
+  }
+
+  private Counters counters(Class<?> type) {
+    return counters.computeIfAbsent(
+        type,
+        t -> {
+          var c = new Counters();
+          if (metricName != null) {
+            var name = metricName + "." + t.getSimpleName();
+            c.latencyMetric = MetricsRegistry.histogram(name);
+            c.coalescedMetric = MetricsRegistry.counter(name + ".coalesced");
+          }
+          return c;
+        });
+  }
+}
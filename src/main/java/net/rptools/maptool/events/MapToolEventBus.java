@@ -19,8 +19,19 @@
 /** Class to handle the MapTool event bus. */
 public class MapToolEventBus {
 
-  /** The main MapTool event bus. */
-  private static final EventBus mainEventBus = new EventBus();
+  /**
+   * The dispatcher for the subscribers of the main event bus that run in the background, its
+   * dispatch latencies are published as the <code>event.backgroundDispatch</code> metrics.
+   */
+  private static final BackgroundEventDispatcher backgroundDispatcher =
+      new BackgroundEventDispatcher("event.backgroundDispatch");
+
+  /**
+   * The main MapTool event bus, its dispatch latencies are published as the <code>event.dispatch
+   * </code> metrics.
+   */
+  private static final BatchingEventBus mainEventBus =
+      new BatchingEventBus(backgroundDispatcher, "event.dispatch");
 
   /**
    * Returns the main MapTool {@link EventBus}.
@@ -30,4 +41,37 @@ public class MapToolEventBus {
   public EventBus getMainEventBus() {
     return mainEventBus;
   }
+
+  /**
+   * Runs a task, posting the events it posts on the main event bus once it has finished and
+   * combining consecutive {@link CoalescableEvent}s.
+   *
+   * @param task the task to run.
+   * @see BatchingEventBus#batch(Runnable)
+   */
+  public void batchEvents(Runnable task) {
+    mainEventBus.batch(task);
+  }
+
+  /**
+   * Registers a subscriber for the events posted on the main event bus that is called on a
+   * background thread instead of the thread that posted the event. Only thread safe subscribers
+   * that do not need the event dispatch thread, e.g. to invalidate a thread safe cache, should be
+   * registered this way.
+   *
+   * @param subscriber the subscriber.
+   * @see BackgroundEventDispatcher
+   */
+  public void registerBackground(Object subscriber) {
+    backgroundDispatcher.register(subscriber);
+  }
+
+  /**
+   * Unregisters a subscriber registered with {@link #registerBackground(Object)}.
+   *
+   * @param subscriber the subscriber.
+   */
+  public void unregisterBackground(Object subscriber) {
+    backgroundDispatcher.unregister(subscriber);
+  }
 }
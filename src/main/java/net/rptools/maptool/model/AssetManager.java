@@ -27,7 +27,6 @@
 import java.nio.file.Files;
 import java.nio.file.StandardCopyOption;
 import java.util.ArrayList;
-import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.LinkedList;
@@ -35,15 +34,20 @@
 import java.util.Map;
 import java.util.Properties;
 import java.util.Set;
+import java.util.concurrent.Callable;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import net.rptools.lib.FileUtil;
 import net.rptools.lib.MD5Key;
+import net.rptools.maptool.client.AppPreferences;
 import net.rptools.maptool.client.AppUtil;
 import net.rptools.maptool.client.MapTool;
 import net.rptools.maptool.language.I18N;
+import net.rptools.maptool.util.metrics.Counter;
+import net.rptools.maptool.util.metrics.LatencyHistogram;
+import net.rptools.maptool.util.metrics.MetricsRegistry;
 import org.apache.commons.io.FileUtils;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
@@ -64,9 +68,32 @@ public class AssetManager {
 
   private static final Logger log = LogManager.getLogger(AssetManager.class);
 
-  /** Assets are associated with the MD5 sum of their raw data */
-  private static final Map<MD5Key, Asset> assetMap =
-      Collections.synchronizedMap(new HashMap<MD5Key, Asset>());
+  /**
+   * Assets are associated with the MD5 sum of their raw data. Only the recently used assets are
+   * kept in memory, the others are read from the persistent cache again when they are requested.
+   */
+  private static final AssetStore assetStore =
+      new AssetStore(AppPreferences.assetMemoryBudget.get() * 1024L * 1024L);
+
+  /**
+   * Sources for assets whose data has not been read yet. The asset is created from the source and
+   * moved into {@link #assetStore} the first time it is requested.
+   */
+  private static final Map<MD5Key, Callable<Asset>> deferredAssetMap = new ConcurrentHashMap<>();
+
+  /** Time between requesting an asset from the server and receiving it. */
+  private static final LatencyHistogram SERVER_REQUEST_TIME =
+      MetricsRegistry.histogram("asset.serverRequest");
+
+  /** Time taken to read an asset from the persistent cache. */
+  private static final LatencyHistogram DISK_LOAD_TIME =
+      MetricsRegistry.histogram("asset.diskLoad");
+
+  /** Number of assets requested from the server. */
+  private static final Counter SERVER_REQUESTS = MetricsRegistry.counter("asset.serverRequests");
+
+  /** When each outstanding server request was made, in {@link System#nanoTime()} units. */
+  private static final Map<MD5Key, Long> serverRequestTimes = new ConcurrentHashMap<>();
 
   /** Location of the cache on the filesystem */
   private static File cacheDir;
@@ -96,24 +123,47 @@ public class AssetManager {
   static {
     cacheDir = AppUtil.getAppHome("assetcache");
     usePersistentCache = true;
+    AppPreferences.assetMemoryBudget.onChange(
+        budget -> assetStore.setBudget(budget * 1024L * 1024L));
   }
 
   /**
    * Brute force clear asset cache... TODO: Create preferences and filter to clear cache
    * automatically by age of asset
    *
+   * <p>The files of the assets that have been dropped from memory are kept, as they can only be
+   * read from there. The cache is cleared on the writer thread, so an asset that is being written
+   * can not be dropped from memory after its file has been deleted.
+   *
    * @author Jamz
    * @since 1.4.0.1
    */
   public static void clearCache() {
-    try {
-      if (cacheDir != null) {
-        FileUtils.cleanDirectory(cacheDir);
-      }
-    } catch (IOException e) {
-      // TODO Auto-generated catch block
-      e.printStackTrace();
+    clearServerRequests();
+    if (cacheDir == null) {
+      return;
     }
+    assetWriterThreadPool.submit(
+        () -> {
+          var keep = new HashSet<String>();
+          for (MD5Key key : assetStore.clearPersistedInMemory()) {
+            keep.add(getAssetCacheFile(key).getName());
+            keep.add(getAssetInfoFile(key).getName());
+          }
+          File[] files = cacheDir.listFiles();
+          if (files == null) {
+            return;
+          }
+          for (File file : files) {
+            if (!keep.contains(file.getName())) {
+              try {
+                FileUtils.forceDelete(file);
+              } catch (IOException e) {
+                log.error("Could not delete {} from the asset cache", file, e);
+              }
+            }
+          }
+        });
   }
 
   /**
@@ -212,11 +262,65 @@ public static boolean hasAsset(Asset asset) {
    * @return true if the asset manager has the key
    */
   public static boolean hasAsset(MD5Key key) {
-    return assetMap.containsKey(key)
+    return assetStore.contains(key)
+        || deferredAssetMap.containsKey(key)
         || assetIsInPersistentCache(key)
         || assetHasLocalReference(key);
   }
 
+  /**
+   * Registers a source that can create the asset with the given key on demand. This allows large
+   * sets of assets (such as the content of add-on libraries) to be made available without reading
+   * their data until it is needed. If the asset is already in memory the source is ignored,
+   * otherwise it replaces any existing source for the asset.
+   *
+   * @param key the {@link MD5Key} of the asset the source creates.
+   * @param source the source used to create the asset.
+   */
+  public static void putDeferredAsset(MD5Key key, Callable<Asset> source) {
+    if (!assetStore.contains(key)) {
+      deferredAssetMap.put(key, source);
+    }
+  }
+
+  /**
+   * Removes a source previously registered with {@link #putDeferredAsset(MD5Key, Callable)}. If a
+   * different source has been registered for the key it is not removed.
+   *
+   * @param key the {@link MD5Key} of the asset.
+   * @param source the source to remove.
+   */
+  public static void removeDeferredAsset(MD5Key key, Callable<Asset> source) {
+    deferredAssetMap.remove(key, source);
+  }
+
+  /**
+   * Creates the asset from its deferred source, if there is one, and adds it to the asset cache.
+   *
+   * @param key the {@link MD5Key} of the asset.
+   * @return the asset, or {@code null} if there is no deferred source or it fails.
+   */
+  private static Asset materializeDeferredAsset(MD5Key key) {
+    Callable<Asset> source = deferredAssetMap.get(key);
+    if (source == null) {
+      return null;
+    }
+    try {
+      Asset asset = source.call();
+      if (asset == null || !asset.getMD5Key().equals(key)) {
+        log.error("Deferred asset {} did not match the requested asset", key);
+        return null;
+      }
+      putAsset(asset);
+      return asset;
+    } catch (Exception e) {
+      log.error("Error reading deferred asset {}", key, e);
+      return null;
+    } finally {
+      deferredAssetMap.remove(key, source);
+    }
+  }
+
   /**
    * Determines if the asset data is in memory.
    *
@@ -224,7 +328,7 @@ public static boolean hasAsset(MD5Key key) {
    * @return True if the asset is loaded, false otherwise
    */
   public static boolean hasAssetInMemory(MD5Key key) {
-    return assetMap.containsKey(key);
+    return assetStore.contains(key);
   }
 
   /**
@@ -249,11 +353,11 @@ public static void putAsset(Asset asset) {
       }
     }
 
-    synchronized (assetMap) {
-      var oldAsset = assetMap.get(asset.getMD5Key());
-      if (oldAsset == null || oldAsset.getData() == null || oldAsset.getData().length == 0) {
-        assetMap.put(asset.getMD5Key(), asset);
-      }
+    assetStore.add(asset, canReload(asset.getMD5Key()));
+
+    Long requestedAt = serverRequestTimes.remove(asset.getMD5Key());
+    if (requestedAt != null) {
+      SERVER_REQUEST_TIME.recordSince(requestedAt);
     }
 
     // Invalid images are represented by empty assets.
@@ -327,7 +431,11 @@ public static Asset getAsset(MD5Key id) {
       log.error(I18N.getText("msg.error.errorResolvingCacheDir", id, e));
     }
 
-    Asset asset = assetMap.get(assetId);
+    Asset asset = assetId == null ? null : assetStore.get(assetId);
+
+    if (asset == null && assetId != null) {
+      asset = materializeDeferredAsset(assetId);
+    }
 
     if (asset == null && usePersistentCache && assetIsInPersistentCache(assetId)) {
       // Guaranteed that asset is in the cache.
@@ -393,7 +501,7 @@ private static MD5Key sanitizeAssetId(MD5Key md5Key) throws IOException {
    */
   public static void removeAsset(MD5Key id) {
     if (!REQUIRED_ASSETS.contains(id)) {
-      assetMap.remove(id);
+      assetStore.remove(id);
     }
   }
 
@@ -408,6 +516,20 @@ public static void setUsePersistentCache(boolean enable) {
     }
 
     usePersistentCache = enable;
+    if (!enable) {
+      assetStore.clearPersisted();
+    }
+  }
+
+  /**
+   * Returns if the data of an asset can be read from the persistent cache again once it has been
+   * dropped from memory.
+   *
+   * @param id MD5 of the asset
+   * @return {@code true} if the asset can be read again.
+   */
+  private static boolean canReload(MD5Key id) {
+    return usePersistentCache && !REQUIRED_ASSETS.contains(id) && assetIsInPersistentCache(id);
   }
 
   /**
@@ -419,6 +541,7 @@ private static void requestAssetFromServer(MD5Key id, AssetAvailableListener...
 
     if (id != null) {
       addAssetListener(id, listeners);
+      recordServerRequest(id);
       assetLoader.requestAsset(id);
     }
   }
@@ -433,6 +556,7 @@ private static void requestAssetFromServer(MD5Key id, AssetAvailableListener...
   public static Asset requestAssetFromServer(MD5Key id) {
 
     if (id != null) {
+      recordServerRequest(id);
       assetLoader.requestAsset(id);
       return getAsset(id);
     }
@@ -440,6 +564,25 @@ public static Asset requestAssetFromServer(MD5Key id) {
     return null;
   }
 
+  /**
+   * Records when an asset was requested from the server so the time taken to receive it can be
+   * measured. Repeated requests for the same asset are timed from the first request.
+   *
+   * @param id MD5 of the asset requested from the server
+   */
+  private static void recordServerRequest(MD5Key id) {
+    SERVER_REQUESTS.increment();
+    serverRequestTimes.putIfAbsent(id, System.nanoTime());
+  }
+
+  /**
+   * Forgets the assets requested from the server that have not been received yet, so they are not
+   * timed if they arrive from another server later. Called when disconnecting from the server.
+   */
+  public static void clearServerRequests() {
+    serverRequestTimes.clear();
+  }
+
   /**
    * Retrieve the asset from the persistent cache. If the asset is not in the cache, or loading from
    * the cache failed then this function returns null.
@@ -459,6 +602,7 @@ private static Asset getFromPersistentCache(MD5Key id) {
 
     File assetFile = getAssetCacheFile(id);
 
+    long startNanos = System.nanoTime();
     try {
       byte[] data = FileUtils.readFileToByteArray(assetFile);
       Properties props = getAssetInfo(id);
@@ -480,12 +624,8 @@ private static Asset getFromPersistentCache(MD5Key id) {
         return null;
       }
 
-      synchronized (assetMap) {
-        var oldAsset = assetMap.get(id);
-        if (oldAsset == null || oldAsset.getData() == null || oldAsset.getData().length == 0) {
-          assetMap.put(id, asset);
-        }
-      }
+      assetStore.add(asset, canReload(id));
+      DISK_LOAD_TIME.recordSince(startNanos);
 
       return asset;
     } catch (IOException ioe) {
@@ -580,6 +720,10 @@ private static void putInPersistentCache(final Asset asset) {
 
               // Now that the data is in a file, we move it to its final resting place.
               operation.commit();
+              // The data can now be read again, so it no longer has to be kept in memory.
+              if (!REQUIRED_ASSETS.contains(asset.getMD5Key())) {
+                assetStore.setPersisted(asset.getMD5Key());
+              }
             } catch (IOException ioe) {
               log.error("Could not persist asset while writing image data", ioe);
             } catch (NullPointerException npe) {
@@ -882,18 +1026,23 @@ public static Map<MD5Key, Asset> findAllAssetsNotInRepositories(List<String> rep
     }
 
     /*
-     * The 'aggregate' now holds the sum total of all asset keys that are in repositories. Now we go through the 'assetMap' and copy over <K,V> pairs that are NOT in 'aggregate' to our 'missing'
+     * The 'aggregate' now holds the sum total of all asset keys that are in repositories. Now we go through the 'assetStore' and copy over <K,V> pairs that are NOT in 'aggregate' to our 'missing'
      * Map.
      *
      * Unfortunately, the repository is a Map<String, String> while the return value is going to be a Map<MD5Key, Asset>, which means each individual entry needs to be checked and references
      * copied. If both were the same data type, converting both to Set<String> would allow for an addAll() and removeAll() and be done with it!
      */
-    Map<MD5Key, Asset> missing =
-        new HashMap<MD5Key, Asset>(Math.min(assetMap.size(), aggregate.size()));
-
-    for (var entry : assetMap.entrySet()) {
-      if (aggregate.contains(entry.getKey()) == false) // Not in any repository so add it.
-      missing.put(entry.getKey(), entry.getValue());
+    Set<MD5Key> keys = assetStore.keys();
+    Map<MD5Key, Asset> missing = new HashMap<>(Math.min(keys.size(), aggregate.size()));
+
+    for (var key : keys) {
+      if (aggregate.contains(key) == false) { // Not in any repository so add it.
+        // Assets that were dropped from memory are read from the persistent cache again.
+        Asset asset = getAsset(key);
+        if (asset != null) {
+          missing.put(key, asset);
+        }
+      }
     }
     return missing;
   }
@@ -0,0 +1,197 @@
+/*
+ * This software Copyright by the RPTools.net development team, and
+ * licensed under the Affero GPL Version 3 or, at your option, any later
+ * version.
+ *
+ * MapTool Source Code is distributed in the hope that it will be
+ * useful, but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ *
+ * You should have received a copy of the GNU Affero General Public
+ * License * along with this source Code.  If not, please visit
+ * <http://www.gnu.org/licenses/> and specifically the Affero license
+ * text at <http://www.gnu.org/licenses/agpl.html>.
+ */
+package net.rptools.maptool.model;
+
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import javax.annotation.Nullable;
+import net.rptools.lib.MD5Key;
+
+/**
+ * The assets held in memory by the {@link AssetManager}. The data of the assets is kept within a
+ * byte budget, once the budget is exceeded the least recently used assets whose data can be read
+ * again, i.e. that are in the persistent asset cache, are dropped from memory. Assets that can not
+ * be read again are never dropped, so the budget can be exceeded by them. Whether an asset is in
+ * the persistent cache is recorded when it is added or written to the cache, so that trimming does
+ * not have to check the file system.
+ *
+ * <p>This class is thread safe.
+ */
+final class AssetStore {
+
+  /** The assets in memory, in least recently used order. */
+  private final LinkedHashMap<MD5Key, Asset> assets = new LinkedHashMap<>(16, 0.75f, true);
+
+  /** The keys of the assets that were dropped from memory. */
+  private final Set<MD5Key> evicted = new HashSet<>();
+
+  /** The keys of the assets whose data can be read again once it is dropped. */
+  private final Set<MD5Key> persisted = new HashSet<>();
+
+  /** The maximum number of bytes of asset data to keep in memory. */
+  private long budget;
+
+  /** The number of bytes of asset data in memory. */
+  private long size;
+
+  /**
+   * Creates a new {@code AssetStore}.
+   *
+   * @param budget the maximum number of bytes of asset data to keep in memory.
+   */
+  AssetStore(long budget) {
+    this.budget = budget;
+  }
+
+  /**
+   * Returns an asset, if it is in memory.
+   *
+   * @param key the key of the asset.
+   * @return the asset, or {@code null} if it is not in memory.
+   */
+  synchronized @Nullable Asset get(MD5Key key) {
+    return assets.get(key);
+  }
+
+  /**
+   * Returns if an asset is in memory.
+   *
+   * @param key the key of the asset.
+   * @return {@code true} if the asset is in memory.
+   */
+  synchronized boolean contains(MD5Key key) {
+    return assets.containsKey(key);
+  }
+
+  /**
+   * Adds an asset, unless the asset is already in memory with data.
+   *
+   * @param asset the asset.
+   * @param persisted whether the data of the asset can be read again once it is dropped.
+   */
+  synchronized void add(Asset asset, boolean persisted) {
+    var key = asset.getMD5Key();
+    if (persisted) {
+      this.persisted.add(key);
+    }
+    var old = assets.get(key);
+    if (old != null && old.getData() != null && old.getData().length > 0) {
+      return;
+    }
+    if (old != null) {
+      size -= old.getData() == null ? 0 : old.getData().length;
+    }
+    assets.put(key, asset);
+    evicted.remove(key);
+    size += asset.getData().length;
+    trim();
+  }
+
+  /**
+   * Removes an asset.
+   *
+   * @param key the key of the asset.
+   */
+  synchronized void remove(MD5Key key) {
+    var old = assets.remove(key);
+    if (old != null && old.getData() != null) {
+      size -= old.getData().length;
+    }
+    evicted.remove(key);
+    persisted.remove(key);
+  }
+
+  /**
+   * Records that the data of an asset can be read again, e.g. because it has been written to the
+   * persistent cache, and drops assets from memory if over budget.
+   *
+   * @param key the key of the asset.
+   */
+  synchronized void setPersisted(MD5Key key) {
+    persisted.add(key);
+    trim();
+  }
+
+  /**
+   * Records that the data of no asset can be read again, e.g. because the persistent cache has
+   * been cleared or disabled. Assets that have already been dropped from memory stay dropped.
+   */
+  synchronized void clearPersisted() {
+    persisted.clear();
+  }
+
+  /**
+   * Records that the data of the assets in memory can not be read again, e.g. because their files
+   * are deleted from the persistent cache. The assets that have been dropped from memory can only
+   * be read from the persistent cache, so they can still be read again and their files must be
+   * kept.
+   *
+   * @return the keys of the assets that have been dropped from memory.
+   */
+  synchronized Set<MD5Key> clearPersistedInMemory() {
+    persisted.retainAll(evicted);
+    return Set.copyOf(evicted);
+  }
+
+  /**
+   * Returns the keys of all the assets that have been added and not removed, including those that
+   * have been dropped from memory.
+   *
+   * @return the keys of the assets.
+   */
+  synchronized Set<MD5Key> keys() {
+    var keys = new HashSet<>(assets.keySet());
+    keys.addAll(evicted);
+    return keys;
+  }
+
+  /**
+   * Sets the maximum number of bytes of asset data to keep in memory.
+   *
+   * @param budget the budget in bytes.
+   */
+  synchronized void setBudget(long budget) {
+    this.budget = budget;
+    trim();
+  }
+
+  /**
+   * Returns the number of bytes of asset data in memory.
+   *
+   * @return the number of bytes.
+   */
+  synchronized long getSize() {
+    return size;
+  }
+
+  /**
+   * Drops the least recently used assets that can be read again until the data in memory is within
+   * the budget.
+   */
+  synchronized void trim() {
+    var iterator = assets.entrySet().iterator();
+    while (size > budget && iterator.hasNext()) {
+      Map.Entry<MD5Key, Asset> entry = iterator.next();
+      if (!persisted.contains(entry.getKey())) {
+        continue;
+      }
+      iterator.remove();
+      evicted.add(entry.getKey());
+      size -= entry.getValue().getData().length;
+    }
+  }
+}
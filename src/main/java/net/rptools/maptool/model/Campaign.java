@@ -768,6 +768,19 @@ public static Campaign fromDto(CampaignDto dto) {
   }
 
   public CampaignDto toDto() {
+    return toDtoWithoutZones()
+        .toBuilder()
+        .addAllZones(zones.values().stream().map(Zone::toDto).collect(Collectors.toList()))
+        .build();
+  }
+
+  /**
+   * Returns the campaign as a DTO that does not contain any of the zones, this is used when the
+   * zones are serialized separately.
+   *
+   * @return the campaign without the zones.
+   */
+  public CampaignDto toDtoWithoutZones() {
     var dto = CampaignDto.newBuilder();
     dto.setId(id.toString());
     dto.setName(name);
@@ -788,7 +801,6 @@ public CampaignDto toDto() {
         macroButtonProperties.stream()
             .map(MacroButtonProperties::toDto)
             .collect(Collectors.toList()));
-    dto.addAllZones(zones.values().stream().map(Zone::toDto).collect(Collectors.toList()));
     // gmMacroButtonProperties is null if you are loading an old campaign file < 1.5.6
     if (gmMacroButtonProperties != null) {
       dto.addAllGmMacroButtonProperties(
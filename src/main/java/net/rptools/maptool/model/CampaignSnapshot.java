@@ -0,0 +1,39 @@
+/*
+ * This software Copyright by the RPTools.net development team, and
+ * licensed under the Affero GPL Version 3 or, at your option, any later
+ * version.
+ *
+ * MapTool Source Code is distributed in the hope that it will be
+ * useful, but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ *
+ * You should have received a copy of the GNU Affero General Public
+ * License * along with this source Code.  If not, please visit
+ * <http://www.gnu.org/licenses/> and specifically the Affero license
+ * text at <http://www.gnu.org/licenses/agpl.html>.
+ */
+package net.rptools.maptool.model;
+
+import java.util.List;
+import java.util.Set;
+import net.rptools.lib.MD5Key;
+import net.rptools.maptool.server.proto.CampaignDto;
+import net.rptools.maptool.server.proto.ZoneDto;
+
+/**
+ * An immutable snapshot of a {@link Campaign} that can be saved on a background thread while the
+ * live campaign keeps changing. The snapshot is made of protobuf DTOs, which are immutable, so the
+ * DTOs of zones and tokens that did not change are shared between snapshots.
+ *
+ * @param campaign the campaign without its zones.
+ * @param zones the zones of the campaign.
+ * @param assetIds the ids of all the assets used by the campaign.
+ * @see CampaignSnapshotter
+ */
+public record CampaignSnapshot(CampaignDto campaign, List<ZoneDto> zones, Set<MD5Key> assetIds) {
+
+  public CampaignSnapshot {
+    zones = List.copyOf(zones);
+    assetIds = Set.copyOf(assetIds);
+  }
+}
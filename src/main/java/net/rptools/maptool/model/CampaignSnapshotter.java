@@ -0,0 +1,134 @@
+/*
+ * This software Copyright by the RPTools.net development team, and
+ * licensed under the Affero GPL Version 3 or, at your option, any later
+ * version.
+ *
+ * MapTool Source Code is distributed in the hope that it will be
+ * useful, but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ *
+ * You should have received a copy of the GNU Affero General Public
+ * License * along with this source Code.  If not, please visit
+ * <http://www.gnu.org/licenses/> and specifically the Affero license
+ * text at <http://www.gnu.org/licenses/agpl.html>.
+ */
+package net.rptools.maptool.model;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.Set;
+import net.rptools.maptool.server.proto.InitiativeListDto;
+import net.rptools.maptool.server.proto.TokenDto;
+import net.rptools.maptool.server.proto.ZoneDto;
+
+/**
+ * Takes {@link CampaignSnapshot}s of a campaign. The DTOs of the zones and tokens from the last
+ * snapshot are kept together with the {@link Zone#getModificationCount()} and {@link
+ * Token#getModificationCount()} they were made at, so taking a snapshot only converts the zones and
+ * tokens that changed instead of copying the whole campaign. A zone where neither the zone, its
+ * initiative list nor any of its tokens changed is reused as the same {@link ZoneDto}.
+ *
+ * <p>The initiative list is not covered by the zone modification count, so it is always converted
+ * and compared with the one of the last snapshot. Snapshots must be taken on the thread that
+ * modifies the campaign, i.e. the event dispatch thread.
+ */
+public class CampaignSnapshotter {
+
+  /** The DTO of a token and the modification count it was made at. */
+  private record TokenState(Token token, long modificationCount, TokenDto dto) {}
+
+  /** The DTOs of a zone and its tokens from the last snapshot. */
+  private static class ZoneState {
+    /** The zone without its tokens and initiative list, {@code null} until first converted. */
+    private ZoneDto zoneDto;
+
+    /** The modification count of the zone when {@link #zoneDto} was made. */
+    private long modificationCount;
+
+    /** The tokens from the last snapshot. */
+    private Map<GUID, TokenState> tokens = new HashMap<>();
+
+    /** The initiative list from the last snapshot. */
+    private InitiativeListDto initiative;
+
+    /** The whole zone from the last snapshot, {@code null} until first converted. */
+    private ZoneDto snapshot;
+  }
+
+  /** The state of each zone, keyed by identity as a zone can be replaced by a copy with its id. */
+  private final Map<Zone, ZoneState> zoneStates = new IdentityHashMap<>();
+
+  /**
+   * Takes a snapshot of the campaign.
+   *
+   * @param campaign the campaign to take the snapshot of.
+   * @return the snapshot.
+   */
+  public synchronized CampaignSnapshot snapshot(Campaign campaign) {
+    var zones = campaign.getZones();
+    zoneStates.keySet().retainAll(Set.copyOf(zones));
+
+    var zoneDtos = new ArrayList<ZoneDto>(zones.size());
+    for (Zone zone : zones) {
+      zoneDtos.add(snapshot(zone, zoneStates.computeIfAbsent(zone, z -> new ZoneState())));
+    }
+    return new CampaignSnapshot(campaign.toDtoWithoutZones(), zoneDtos, campaign.getAllAssetIds());
+  }
+
+  /** Converts the whole campaign again in the next snapshot. */
+  public synchronized void invalidate() {
+    zoneStates.clear();
+  }
+
+  /**
+   * Takes a snapshot of a zone, reusing the DTOs that have not changed.
+   *
+   * @param zone the zone.
+   * @param state the DTOs from the last snapshot of the zone.
+   * @return the snapshot of the zone.
+   */
+  private ZoneDto snapshot(Zone zone, ZoneState state) {
+    boolean changed = state.snapshot == null;
+    long modificationCount = zone.getModificationCount();
+    if (state.zoneDto == null || state.modificationCount != modificationCount) {
+      state.zoneDto = zone.toDtoWithoutTokens().toBuilder().clearInitiative().build();
+      state.modificationCount = modificationCount;
+      changed = true;
+    }
+
+    var initiative = zone.getInitiativeList().toDto();
+    if (!initiative.equals(state.initiative)) {
+      state.initiative = initiative;
+      changed = true;
+    }
+
+    var allTokens = zone.getAllTokens();
+    var tokens = new HashMap<GUID, TokenState>();
+    for (Token token : allTokens) {
+      var tokenState = state.tokens.get(token.getId());
+      long tokenModificationCount = token.getModificationCount();
+      if (tokenState == null
+          || tokenState.token() != token
+          || tokenState.modificationCount() != tokenModificationCount) {
+        tokenState = new TokenState(token, tokenModificationCount, token.toDto());
+        changed = true;
+      }
+      tokens.put(token.getId(), tokenState);
+    }
+    // If no token was added, the same number of tokens means that none was removed either.
+    changed |= tokens.size() != state.tokens.size();
+    state.tokens = tokens;
+    if (!changed) {
+      return state.snapshot;
+    }
+
+    var dto = state.zoneDto.toBuilder().setInitiative(initiative);
+    for (Token token : allTokens) {
+      dto.addTokens(tokens.get(token.getId()).dto());
+    }
+    state.snapshot = dto.build();
+    return state.snapshot;
+  }
+}
@@ -16,11 +16,20 @@
 
 import java.awt.geom.Area;
 
-/** Stores the exposed area of a token. */
+/**
+ * Stores the exposed area of a token. The exposed area is either stored as an {@link Area} or, if
+ * the zone stores its fog of war as tiles, as an {@link ExposureMask}.
+ */
 public class ExposedAreaMetaData {
-  /** Area exposed so far. */
+  /** Area exposed so far, only used if the exposure is not stored as a mask. */
   private Area exposedAreaHistory;
 
+  /** The exposure stored as a mask, {@code null} if it is stored as an {@link Area}. */
+  private ExposureMask exposureMask;
+
+  /** The {@link Area} built from {@link #exposureMask}, {@code null} if it needs rebuilding. */
+  private transient Area exposureMaskArea;
+
   public ExposedAreaMetaData() {
     exposedAreaHistory = new Area();
   }
@@ -29,26 +38,106 @@ public ExposedAreaMetaData(Area area) {
     exposedAreaHistory = new Area(area);
   }
 
+  /**
+   * Creates a new {@code ExposedAreaMetaData} that stores its exposure as a mask.
+   *
+   * @param mask the mask holding the exposure.
+   */
+  public ExposedAreaMetaData(ExposureMask mask) {
+    exposedAreaHistory = new Area();
+    exposureMask = mask;
+  }
+
+  /**
+   * Creates a new, empty, {@code ExposedAreaMetaData} that stores the exposure as an {@link Area}
+   * or as an {@link ExposureMask}.
+   *
+   * @param maskResolution the resolution of the {@link ExposureMask}, or 0 to store the exposure as
+   *     an {@link Area}.
+   * @return the new {@code ExposedAreaMetaData}.
+   */
+  public static ExposedAreaMetaData create(int maskResolution) {
+    if (maskResolution > 0) {
+      return new ExposedAreaMetaData(new ExposureMask(maskResolution));
+    } else {
+      return new ExposedAreaMetaData();
+    }
+  }
+
   public Area getExposedAreaHistory() {
+    if (exposureMask != null) {
+      if (exposureMaskArea == null) {
+        exposureMaskArea = exposureMask.toArea();
+      }
+      return exposureMaskArea;
+    }
     // if (exposedAreaHistory == null) {
     // exposedAreaHistory = new Area();
     // }
     return exposedAreaHistory;
   }
 
+  /**
+   * Returns the mask holding the exposure.
+   *
+   * @return the mask holding the exposure, or {@code null} if it is stored as an {@link Area}.
+   */
+  public ExposureMask getExposureMask() {
+    return exposureMask;
+  }
+
+  /**
+   * Returns the resolution of the mask holding the exposure.
+   *
+   * @return the resolution of the mask, or 0 if the exposure is stored as an {@link Area}.
+   */
+  public int getExposureMaskResolution() {
+    return exposureMask == null ? 0 : exposureMask.getResolution();
+  }
+
+  /**
+   * Returns this {@code ExposedAreaMetaData} if it already uses the requested storage, otherwise a
+   * new {@code ExposedAreaMetaData} with the same exposure converted to the requested storage.
+   *
+   * @param maskResolution the resolution of the {@link ExposureMask}, or 0 for an {@link Area}.
+   * @return an {@code ExposedAreaMetaData} that uses the requested storage.
+   */
+  public ExposedAreaMetaData withExposureMaskResolution(int maskResolution) {
+    if (getExposureMaskResolution() == maskResolution) {
+      return this;
+    }
+    var meta = create(maskResolution);
+    meta.addToExposedAreaHistory(getExposedAreaHistory());
+    return meta;
+  }
+
   public void addToExposedAreaHistory(Area newArea) {
     if (newArea != null && !newArea.isEmpty()) {
-      exposedAreaHistory.add(newArea);
+      if (exposureMask != null) {
+        exposureMask.add(newArea);
+        exposureMaskArea = null;
+      } else {
+        exposedAreaHistory.add(newArea);
+      }
     }
   }
 
   public void removeExposedAreaHistory(Area newArea) {
     if (newArea != null && !newArea.isEmpty()) {
-      exposedAreaHistory.subtract(newArea);
+      if (exposureMask != null) {
+        exposureMask.subtract(newArea);
+        exposureMaskArea = null;
+      } else {
+        exposedAreaHistory.subtract(newArea);
+      }
     }
   }
 
   public void clearExposedAreaHistory() {
     exposedAreaHistory = new Area();
+    if (exposureMask != null) {
+      exposureMask = new ExposureMask(exposureMask.getResolution());
+      exposureMaskArea = null;
+    }
   }
 }
@@ -0,0 +1,491 @@
+/*
+ * This software Copyright by the RPTools.net development team, and
+ * licensed under the Affero GPL Version 3 or, at your option, any later
+ * version.
+ *
+ * MapTool Source Code is distributed in the hope that it will be
+ * useful, but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ *
+ * You should have received a copy of the GNU Affero General Public
+ * License * along with this source Code.  If not, please visit
+ * <http://www.gnu.org/licenses/> and specifically the Affero license
+ * text at <http://www.gnu.org/licenses/agpl.html>.
+ */
+package net.rptools.maptool.model;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.RenderingHints;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.Area;
+import java.awt.geom.Path2D;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferByte;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Stores exposed fog of war as a sparse set of tiles of bits rather than as an {@link Area}. Each
+ * bit represents a square cell of {@link #getResolution()} zone units, and each tile holds {@value
+ * #TILE_CELLS} by {@value #TILE_CELLS} cells with one {@code long} per row of the tile.
+ *
+ * <p>Unlike {@link Area}, whose cost grows with every shape that is added to it, the cost of the
+ * operations on an {@code ExposureMask} only depends on the number of tiles involved. A cell is
+ * exposed if the center of the cell is inside an exposed shape, so the resolution determines how
+ * closely the mask follows the edges of the exposed shapes.
+ *
+ * <p>This class is not thread safe.
+ */
+public class ExposureMask {
+
+  /** The number of cells along each side of a tile. */
+  public static final int TILE_CELLS = Long.SIZE;
+
+  /** The version of the serialized format. */
+  private static final byte FORMAT_VERSION = 1;
+
+  /** The size of a cell in zone units. */
+  private final int resolution;
+
+  /** The tiles that have at least one exposed cell, keyed by {@link #tileKey(int, int)}. */
+  private final Map<Long, long[]> tiles = new HashMap<>();
+
+  /** Image used to rasterize shapes a tile at a time, created on demand. */
+  private transient BufferedImage rasterTile;
+
+  /** Incremented on every change, so results computed from the mask can be cached. */
+  private transient long modificationCount;
+
+  /**
+   * Creates a new empty {@code ExposureMask}.
+   *
+   * @param resolution the size of a cell in zone units.
+   */
+  public ExposureMask(int resolution) {
+    if (resolution <= 0) {
+      throw new IllegalArgumentException("Exposure mask resolution must be positive");
+    }
+    this.resolution = resolution;
+  }
+
+  /**
+   * Creates a copy of an {@code ExposureMask}.
+   *
+   * @param other the mask to copy.
+   */
+  public ExposureMask(ExposureMask other) {
+    this.resolution = other.resolution;
+    other.tiles.forEach((key, rows) -> tiles.put(key, rows.clone()));
+  }
+
+  /**
+   * Returns the size of a cell in zone units.
+   *
+   * @return the size of a cell in zone units.
+   */
+  public int getResolution() {
+    return resolution;
+  }
+
+  /**
+   * Returns the number of tiles that have at least one exposed cell.
+   *
+   * @return the number of tiles.
+   */
+  public int getTileCount() {
+    return tiles.size();
+  }
+
+  /**
+   * Returns if no cells are exposed.
+   *
+   * @return {@code true} if no cells are exposed.
+   */
+  public boolean isEmpty() {
+    return tiles.isEmpty();
+  }
+
+  /**
+   * Returns a count that changes whenever the exposed cells may have changed.
+   *
+   * @return the modification count.
+   */
+  public long getModificationCount() {
+    return modificationCount;
+  }
+
+  /** Removes all the exposed cells. */
+  public void clear() {
+    modificationCount++;
+    tiles.clear();
+  }
+
+  /**
+   * Exposes all the cells whose center lies within the area.
+   *
+   * @param area the area to expose.
+   */
+  public void add(Area area) {
+    rasterize(area, true);
+  }
+
+  /**
+   * Hides all the cells whose center lies within the area.
+   *
+   * @param area the area to hide.
+   */
+  public void subtract(Area area) {
+    rasterize(area, false);
+  }
+
+  /**
+   * Exposes all the cells exposed in another mask.
+   *
+   * @param other the mask to add, it must have the same resolution as this mask.
+   */
+  public void add(ExposureMask other) {
+    checkResolution(other);
+    modificationCount++;
+    for (var entry : other.tiles.entrySet()) {
+      long[] rows = tiles.get(entry.getKey());
+      if (rows == null) {
+        tiles.put(entry.getKey(), entry.getValue().clone());
+      } else {
+        long[] otherRows = entry.getValue();
+        for (int i = 0; i < TILE_CELLS; i++) {
+          rows[i] |= otherRows[i];
+        }
+      }
+    }
+  }
+
+  /**
+   * Hides all the cells exposed in another mask.
+   *
+   * @param other the mask to subtract, it must have the same resolution as this mask.
+   */
+  public void subtract(ExposureMask other) {
+    checkResolution(other);
+    modificationCount++;
+    for (var entry : other.tiles.entrySet()) {
+      long[] rows = tiles.get(entry.getKey());
+      if (rows != null) {
+        long[] otherRows = entry.getValue();
+        for (int i = 0; i < TILE_CELLS; i++) {
+          rows[i] &= ~otherRows[i];
+        }
+        if (isEmpty(rows)) {
+          tiles.remove(entry.getKey());
+        }
+      }
+    }
+  }
+
+  /**
+   * Returns if the cell containing the point is exposed.
+   *
+   * @param x the x co-ordinate of the point in zone units.
+   * @param y the y co-ordinate of the point in zone units.
+   * @return {@code true} if the cell containing the point is exposed.
+   */
+  public boolean contains(double x, double y) {
+    int cellX = (int) Math.floor(x / resolution);
+    int cellY = (int) Math.floor(y / resolution);
+    long[] rows =
+        tiles.get(tileKey(Math.floorDiv(cellX, TILE_CELLS), Math.floorDiv(cellY, TILE_CELLS)));
+    if (rows == null) {
+      return false;
+    }
+    long row = rows[Math.floorMod(cellY, TILE_CELLS)];
+    return (row & bit(Math.floorMod(cellX, TILE_CELLS))) != 0;
+  }
+
+  /**
+   * Returns the exposed cells as an {@link Area}. Runs of exposed cells are merged into rectangles
+   * within each tile and the rectangles are combined into the area in a single pass, which is much
+   * cheaper than adding them to the area one at a time.
+   *
+   * @return the exposed cells as an {@link Area}.
+   */
+  public Area toArea() {
+    if (tiles.isEmpty()) {
+      return new Area();
+    }
+    Path2D.Double path = new Path2D.Double(Path2D.WIND_NON_ZERO);
+    for (var entry : tiles.entrySet()) {
+      long key = entry.getKey();
+      long originX = (long) tileX(key) * TILE_CELLS;
+      long originY = (long) tileY(key) * TILE_CELLS;
+      long[] rows = entry.getValue();
+      int row = 0;
+      while (row < TILE_CELLS) {
+        long bits = rows[row];
+        if (bits == 0) {
+          row++;
+          continue;
+        }
+        // Merge the following rows that have the same cells exposed.
+        int height = 1;
+        while (row + height < TILE_CELLS && rows[row + height] == bits) {
+          height++;
+        }
+        int col = 0;
+        while (col < TILE_CELLS) {
+          long remaining = bits << col;
+          if (remaining == 0) {
+            break;
+          }
+          col += Long.numberOfLeadingZeros(remaining);
+          int width = Long.numberOfLeadingZeros(~(bits << col));
+          appendRect(path, originX + col, originY + row, width, height);
+          col += width;
+        }
+        row += height;
+      }
+    }
+    return new Area(path);
+  }
+
+  /**
+   * Returns the bounds of the tiles that contain exposed cells in zone units. This is cheaper than
+   * calculating the bounds of {@link #toArea()} and always contains them.
+   *
+   * @return the bounds of the exposed tiles, an empty rectangle if there are none.
+   */
+  public Rectangle getBounds() {
+    Rectangle bounds = null;
+    for (long key : tiles.keySet()) {
+      var tileBounds =
+          new Rectangle(
+              tileX(key) * TILE_CELLS * resolution,
+              tileY(key) * TILE_CELLS * resolution,
+              TILE_CELLS * resolution,
+              TILE_CELLS * resolution);
+      if (bounds == null) {
+        bounds = tileBounds;
+      } else {
+        bounds.add(tileBounds);
+      }
+    }
+    return bounds == null ? new Rectangle() : bounds;
+  }
+
+  /**
+   * Serializes the mask. Only the rows of each tile that have exposed cells are written.
+   *
+   * @return the serialized mask.
+   */
+  public byte[] toBytes() {
+    var bytes = new ByteArrayOutputStream();
+    try (var out = new DataOutputStream(bytes)) {
+      out.writeByte(FORMAT_VERSION);
+      out.writeInt(resolution);
+      out.writeInt(tiles.size());
+      for (var entry : tiles.entrySet()) {
+        long key = entry.getKey();
+        long[] rows = entry.getValue();
+        out.writeInt(tileX(key));
+        out.writeInt(tileY(key));
+        long present = 0;
+        for (int i = 0; i < TILE_CELLS; i++) {
+          if (rows[i] != 0) {
+            present |= bit(i);
+          }
+        }
+        out.writeLong(present);
+        for (int i = 0; i < TILE_CELLS; i++) {
+          if (rows[i] != 0) {
+            out.writeLong(rows[i]);
+          }
+        }
+      }
+    } catch (IOException e) {
+      throw new AssertionError(e); // Can't happen writing to a byte array
+    }
+    return bytes.toByteArray();
+  }
+
+  /**
+   * Creates an {@code ExposureMask} from the output of {@link #toBytes()}.
+   *
+   * @param bytes the serialized mask.
+   * @return the mask.
+   * @throws IOException if the bytes are not a valid serialized mask.
+   */
+  public static ExposureMask fromBytes(byte[] bytes) throws IOException {
+    try (var in = new DataInputStream(new ByteArrayInputStream(bytes))) {
+      byte version = in.readByte();
+      if (version != FORMAT_VERSION) {
+        throw new IOException("Unsupported exposure mask version " + version);
+      }
+      var mask = new ExposureMask(in.readInt());
+      int tileCount = in.readInt();
+      for (int t = 0; t < tileCount; t++) {
+        int tileX = in.readInt();
+        int tileY = in.readInt();
+        long present = in.readLong();
+        long[] rows = new long[TILE_CELLS];
+        for (int i = 0; i < TILE_CELLS; i++) {
+          if ((present & bit(i)) != 0) {
+            rows[i] = in.readLong();
+          }
+        }
+        if (!isEmpty(rows)) {
+          mask.tiles.put(tileKey(tileX, tileY), rows);
+        }
+      }
+      return mask;
+    } catch (IllegalArgumentException e) {
+      throw new IOException(e);
+    }
+  }
+
+  /**
+   * Sets or clears the cells whose center lies within the area. The area is rasterized one tile at
+   * a time using Java2D which is much faster than testing each cell against the area.
+   *
+   * @param area the area to rasterize.
+   * @param expose {@code true} to set the cells, {@code false} to clear them.
+   */
+  private void rasterize(Area area, boolean expose) {
+    if (area == null || area.isEmpty()) {
+      return;
+    }
+    modificationCount++;
+    var bounds = area.getBounds2D();
+    int minTileX = Math.floorDiv((int) Math.floor(bounds.getMinX() / resolution), TILE_CELLS);
+    int minTileY = Math.floorDiv((int) Math.floor(bounds.getMinY() / resolution), TILE_CELLS);
+    int maxTileX = Math.floorDiv((int) Math.floor(bounds.getMaxX() / resolution), TILE_CELLS);
+    int maxTileY = Math.floorDiv((int) Math.floor(bounds.getMaxY() / resolution), TILE_CELLS);
+
+    if (rasterTile == null) {
+      rasterTile = new BufferedImage(TILE_CELLS, TILE_CELLS, BufferedImage.TYPE_BYTE_BINARY);
+    }
+    byte[] pixels = ((DataBufferByte) rasterTile.getRaster().getDataBuffer()).getData();
+    int stride = TILE_CELLS / Byte.SIZE;
+
+    for (int tileY = minTileY; tileY <= maxTileY; tileY++) {
+      for (int tileX = minTileX; tileX <= maxTileX; tileX++) {
+        long key = tileKey(tileX, tileY);
+        long[] rows = tiles.get(key);
+        if (!expose && rows == null) {
+          continue;
+        }
+
+        Graphics2D g = rasterTile.createGraphics();
+        try {
+          g.setColor(Color.BLACK);
+          g.fillRect(0, 0, TILE_CELLS, TILE_CELLS);
+          g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_OFF);
+          g.setRenderingHint(RenderingHints.KEY_STROKE_CONTROL, RenderingHints.VALUE_STROKE_PURE);
+          var transform = AffineTransform.getScaleInstance(1.0 / resolution, 1.0 / resolution);
+          transform.translate(
+              -(double) tileX * TILE_CELLS * resolution, -(double) tileY * TILE_CELLS * resolution);
+          g.setTransform(transform);
+          g.setColor(Color.WHITE);
+          g.fill(area);
+        } finally {
+          g.dispose();
+        }
+
+        boolean changed = false;
+        for (int i = 0; i < TILE_CELLS; i++) {
+          long bits = 0;
+          for (int b = 0; b < stride; b++) {
+            bits = (bits << Byte.SIZE) | (pixels[i * stride + b] & 0xFF);
+          }
+          if (bits == 0) {
+            continue;
+          }
+          if (rows == null) {
+            rows = new long[TILE_CELLS];
+            tiles.put(key, rows);
+          }
+          rows[i] = expose ? rows[i] | bits : rows[i] & ~bits;
+          changed = true;
+        }
+        if (changed && !expose && isEmpty(rows)) {
+          tiles.remove(key);
+        }
+      }
+    }
+  }
+
+  /**
+   * Throws an exception if the other mask does not have the same resolution as this one.
+   *
+   * @param other the other mask.
+   */
+  private void checkResolution(ExposureMask other) {
+    if (other.resolution != resolution) {
+      throw new IllegalArgumentException(
+          "Exposure mask resolution " + other.resolution + " does not match " + resolution);
+    }
+  }
+
+  /**
+   * Appends a rectangle of cells to the path.
+   *
+   * @param path the path to append to.
+   * @param cellX the x co-ordinate of the first cell.
+   * @param cellY the y co-ordinate of the first cell.
+   * @param width the width in cells.
+   * @param height the height in cells.
+   */
+  private void appendRect(Path2D path, long cellX, long cellY, int width, int height) {
+    double x1 = (double) cellX * resolution;
+    double y1 = (double) cellY * resolution;
+    double x2 = x1 + (double) width * resolution;
+    double y2 = y1 + (double) height * resolution;
+    path.moveTo(x1, y1);
+    path.lineTo(x2, y1);
+    path.lineTo(x2, y2);
+    path.lineTo(x1, y2);
+    path.closePath();
+  }
+
+  /**
+   * Returns the bit for the cell at the column within a row of a tile. The first column is the most
+   * significant bit, which matches the layout of a row of packed pixels.
+   *
+   * @param column the column within the tile.
+   * @return the bit for the cell.
+   */
+  private static long bit(int column) {
+    return 1L << (TILE_CELLS - 1 - column);
+  }
+
+  /**
+   * Returns if none of the cells in the rows are exposed.
+   *
+   * @param rows the rows of the tile.
+   * @return {@code true} if no cells are exposed.
+   */
+  private static boolean isEmpty(long[] rows) {
+    for (long row : rows) {
+      if (row != 0) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static long tileKey(int tileX, int tileY) {
+    return ((long) tileX << 32) | (tileY & 0xFFFFFFFFL);
+  }
+
+  private static int tileX(long key) {
+    return (int) (key >> 32);
+  }
+
+  private static int tileY(long key) {
+    return (int) key;
+  }
+}
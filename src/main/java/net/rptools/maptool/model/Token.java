@@ -107,12 +107,14 @@ public class Token implements Cloneable {
 
   public boolean getAllowURIAccess() {
     if (allowURIAccess && !isLibToken()) {
+      modified();
       allowURIAccess = false;
     }
     return allowURIAccess;
   }
 
   public void setAllowURIAccess(boolean allowURIAccess) {
+    modified();
     if (isLibToken()) {
       this.allowURIAccess = allowURIAccess;
     } else {
@@ -303,6 +305,9 @@ public enum Update {
   // Jamz: allow token alpha channel modification
   private @Nonnull Float tokenOpacity = 1.0f;
 
+  /** The number of times the token has been modified, used to detect out of date copies. */
+  private transient volatile long modificationCount;
+
   private String speechName = "";
 
   /** Terrain Modifier Operations */
@@ -533,6 +538,21 @@ public Token(String name, MD5Key assetId) {
     propertyType = MapTool.getCampaign().getCampaignProperties().getDefaultTokenPropertyType();
   }
 
+  /**
+   * Returns the number of times the token has been modified. A cached copy of the token made when
+   * the count was the same is still up to date.
+   *
+   * @return the modification count.
+   */
+  public long getModificationCount() {
+    return modificationCount;
+  }
+
+  /** Records that the token has been modified. */
+  void modified() {
+    modificationCount++;
+  }
+
   /**
    * This token object has just been imported on a map and needs to have most of its internal data
    * wiped clean. This prevents a token from being imported that makes use of the wrong property
@@ -544,6 +564,7 @@ public Token(String name, MD5Key assetId) {
    * token/map was imported.
    */
   public void imported() {
+    modified();
     // anchorX, anchorY?
     beingImpersonated = false;
     // hasSight?
@@ -582,18 +603,22 @@ public void imported() {
   }
 
   public void setHasSight(boolean hasSight) {
+    modified();
     this.hasSight = hasSight;
   }
 
   public void setHasImageTable(boolean hasImageTable) {
+    modified();
     this.hasImageTable = hasImageTable;
   }
 
   public void setImageTableName(String imageTableName) {
+    modified();
     this.imageTableName = imageTableName;
   }
 
   public void setWidth(int width) {
+    modified();
     if (isFlippedIso()) {
       isoWidth = width;
     } else {
@@ -602,6 +627,7 @@ public void setWidth(int width) {
   }
 
   public void setHeight(int height) {
+    modified();
     if (isFlippedIso()) {
       isoHeight = height;
     } else {
@@ -635,6 +661,7 @@ public String getPropertyType() {
   }
 
   public void setPropertyType(String propertyType) {
+    modified();
     this.propertyType = propertyType;
   }
 
@@ -647,6 +674,7 @@ public String getGMNotes() {
   }
 
   public void setGMNotes(String notes) {
+    modified();
     gmNotes = notes;
   }
 
@@ -655,6 +683,7 @@ public String getGmNotesType() {
   }
 
   public void setGmNotesType(String type) {
+    modified();
     gmNotesType = type;
   }
 
@@ -667,6 +696,7 @@ public String getGMName() {
   }
 
   public void setGMName(String name) {
+    modified();
     gmName = name;
   }
 
@@ -679,10 +709,12 @@ public String getLabel() {
   }
 
   public void setLabel(String label) {
+    modified();
     this.label = label;
   }
 
   public void setHaloColor(Color color) {
+    modified();
     if (color != null) {
       haloColorValue = color.getRGB();
     } else {
@@ -711,6 +743,7 @@ public float getTokenOpacity() {
    * @param alpha the float of the opacity.
    */
   public void setTokenOpacity(float alpha) {
+    modified();
     if (alpha > 1.0f) {
       alpha = 1.0f;
     }
@@ -736,6 +769,7 @@ public String getSpeechName() {
    * @param name the name to be displayed.
    */
   public void setSpeechName(String name) {
+    modified();
     speechName = name;
   }
 
@@ -744,6 +778,7 @@ public double getTerrainModifier() {
   }
 
   public double setTerrainModifier(double modifier) {
+    modified();
     terrainModifier = modifier;
     return terrainModifier;
   }
@@ -752,6 +787,7 @@ public TerrainModifierOperation getTerrainModifierOperation() {
     // This should only happen on existing campaigns. For those tokens,
     // the default was a multiplier of 1.0f so we will set those to 0 and operation NONE
     if (terrainModifierOperation == null) {
+      modified();
       if (terrainModifier != 1) {
         terrainModifierOperation = TerrainModifierOperation.MULTIPLY;
       } else {
@@ -764,11 +800,13 @@ public TerrainModifierOperation getTerrainModifierOperation() {
   }
 
   public void setTerrainModifierOperation(TerrainModifierOperation terrainModifierOperation) {
+    modified();
     this.terrainModifierOperation = terrainModifierOperation;
   }
 
   public Set<TerrainModifierOperation> getTerrainModifiersIgnored() {
     if (terrainModifiersIgnored.isEmpty()) {
+      modified();
       terrainModifiersIgnored.add(TerrainModifierOperation.NONE);
     }
 
@@ -776,6 +814,7 @@ public Set<TerrainModifierOperation> getTerrainModifiersIgnored() {
   }
 
   public void setTerrainModifiersIgnored(Set<TerrainModifierOperation> terrainModifiersIgnored) {
+    modified();
     this.terrainModifiersIgnored.clear();
     this.terrainModifiersIgnored.addAll(terrainModifiersIgnored);
 
@@ -789,12 +828,14 @@ public TokenShape getShape() {
     try {
       return TokenShape.valueOf(tokenShape);
     } catch (IllegalArgumentException iae) {
+      modified();
       tokenShape = TokenShape.SQUARE.name();
       return TokenShape.SQUARE;
     }
   }
 
   public void setShape(TokenShape type) {
+    modified();
     this.tokenShape = type.name();
   }
 
@@ -819,6 +860,7 @@ public Type getType() {
     try {
       return Type.valueOf(tokenType);
     } catch (IllegalArgumentException iae) {
+      modified();
       tokenType = Type.NPC.name();
       return Type.NPC;
     }
@@ -830,6 +872,7 @@ public Type getType() {
    * @param type The new type
    */
   public void setType(Type type) {
+    modified();
     tokenType = type.name();
     if (type == Type.PC) {
       hasSight = true;
@@ -848,6 +891,7 @@ public Zone.Layer getLayer() {
   }
 
   public void setLayer(Zone.Layer layer) {
+    modified();
     this.layer = layer.name();
     actualLayer = layer;
   }
@@ -857,6 +901,7 @@ public boolean hasFacing() {
   }
 
   public void setFacing(int facing) {
+    modified();
     while (facing > 180 || facing < -179) {
       facing += facing > 180 ? -360 : 0;
       facing += facing < -179 ? 360 : 0;
@@ -865,6 +910,7 @@ public void setFacing(int facing) {
   }
 
   public void removeFacing() {
+    modified();
     this.facing = null;
   }
 
@@ -917,18 +963,22 @@ public String getImageTableName() {
   }
 
   public void addUniqueLightSource(LightSource source) {
+    modified();
     uniqueLightSources.put(source.getId(), source);
   }
 
   public void removeUniqueLightSource(GUID lightSourceId) {
+    modified();
     uniqueLightSources.remove(lightSourceId);
   }
 
   public void removeAllUniqueLightsources() {
+    modified();
     uniqueLightSources.clear();
   }
 
   public void addLightSource(GUID lightSourceId) {
+    modified();
     if (lightSourceList.stream().anyMatch(source -> source.matches(lightSourceId))) {
       // Avoid duplicates.
       return;
@@ -937,6 +987,7 @@ public void addLightSource(GUID lightSourceId) {
   }
 
   public void removeLightSourceType(LightSource.Type lightType) {
+    modified();
     for (ListIterator<AttachedLightSource> i = lightSourceList.listIterator(); i.hasNext(); ) {
       AttachedLightSource als = i.next();
       LightSource lightSource = als.resolve(this, MapTool.getCampaign());
@@ -947,6 +998,7 @@ public void removeLightSourceType(LightSource.Type lightType) {
   }
 
   public void removeGMAuras() {
+    modified();
     for (ListIterator<AttachedLightSource> i = lightSourceList.listIterator(); i.hasNext(); ) {
       AttachedLightSource als = i.next();
       LightSource lightSource = als.resolve(this, MapTool.getCampaign());
@@ -962,6 +1014,7 @@ public void removeGMAuras() {
   }
 
   public void removeOwnerOnlyAuras() {
+    modified();
     for (ListIterator<AttachedLightSource> i = lightSourceList.listIterator(); i.hasNext(); ) {
       AttachedLightSource als = i.next();
       LightSource lightSource = als.resolve(this, MapTool.getCampaign());
@@ -1017,11 +1070,13 @@ public boolean hasLightSourceType(LightSource.Type lightType) {
   }
 
   public void removeLightSource(GUID lightSourceId) {
+    modified();
     lightSourceList.removeIf(als -> als.matches(lightSourceId));
   }
 
   /** Clear the lightSourceList */
   public void clearLightSources() {
+    modified();
     lightSourceList.clear();
   }
 
@@ -1051,6 +1106,7 @@ public List<AttachedLightSource> getLightSources() {
   }
 
   public synchronized void addOwner(String playerId) {
+    modified();
     ownerType = OWNER_TYPE_LIST;
     ownerList.add(playerId);
   }
@@ -1063,11 +1119,13 @@ public synchronized boolean hasOwners() {
   }
 
   public synchronized void removeOwner(String playerId) {
+    modified();
     ownerType = OWNER_TYPE_LIST;
     ownerList.remove(playerId);
   }
 
   public synchronized void setOwnedByAll(boolean ownedByAll) {
+    modified();
     if (ownedByAll) {
       ownerType = OWNER_TYPE_ALL;
       ownerList.clear();
@@ -1088,6 +1146,7 @@ public boolean isOwnedByAll() {
   }
 
   public synchronized void clearAllOwners() {
+    modified();
     ownerList.clear();
   }
 
@@ -1146,6 +1205,7 @@ public boolean equals(Object o) {
   }
 
   public void setZOrder(int z) {
+    modified();
     this.z = z;
   }
 
@@ -1159,6 +1219,7 @@ public int getZOrder() {
    * @param name the new name of the token
    */
   public void setName(String name) {
+    modified();
     this.name = name;
   }
 
@@ -1201,6 +1262,7 @@ public MD5Key getImageAssetId() {
    * @param assetId the asset MD5Key.
    */
   public void setImageAsset(String name, MD5Key assetId) {
+    modified();
     imageAssetMap.put(name, assetId);
 
     BufferedImage image = ImageManager.getImageAndWait(assetId);
@@ -1209,6 +1271,7 @@ public void setImageAsset(String name, MD5Key assetId) {
   }
 
   public void setImageAsset(String name) {
+    modified();
     currentImageAsset = name;
   }
 
@@ -1230,6 +1293,7 @@ public MD5Key getPortraitImage() {
   }
 
   public void setPortraitImage(MD5Key image) {
+    modified();
     portraitImage = image;
   }
 
@@ -1238,6 +1302,7 @@ public MD5Key getCharsheetImage() {
   }
 
   public void setCharsheetImage(MD5Key charsheetImage) {
+    modified();
     this.charsheetImage = charsheetImage;
   }
 
@@ -1262,6 +1327,7 @@ public ZoneRenderer getZoneRenderer() { // Returns the ZoneRenderer the token is
   }
 
   public void setId(GUID id) {
+    modified();
     this.id = id;
   }
 
@@ -1274,16 +1340,19 @@ public int getY() {
   }
 
   public void setX(int x) {
+    modified();
     lastX = this.x;
     this.x = x;
   }
 
   public void setY(int y) {
+    modified();
     lastY = this.y;
     this.y = y;
   }
 
   public void setLastPath(Path<? extends AbstractPoint> path) {
+    modified();
     lastPath = path;
   }
 
@@ -1308,10 +1377,12 @@ public double getScaleY() {
   }
 
   public void setScaleX(double scaleX) {
+    modified();
     this.scaleX = scaleX;
   }
 
   public void setScaleY(double scaleY) {
+    modified();
     this.scaleY = scaleY;
   }
 
@@ -1332,10 +1403,12 @@ public boolean isSnapToScale() {
    * @param snapScale The snapScale to set.
    */
   public void setSnapToScale(boolean snapScale) {
+    modified();
     this.snapToScale = snapScale;
   }
 
   public void setVisible(boolean visible) {
+    modified();
     this.isVisible = visible;
   }
 
@@ -1357,6 +1430,7 @@ public boolean isVisibleOnlyToOwner() {
    * @param visibleOnlyToOwner the visibleOnlyToOwner to set
    */
   public void setVisibleOnlyToOwner(boolean visibleOnlyToOwner) {
+    modified();
     this.visibleOnlyToOwner = visibleOnlyToOwner;
   }
 
@@ -1365,6 +1439,7 @@ public boolean isAlwaysVisible() {
   }
 
   public void setAlwaysVisibleTolerance(int tolerance) {
+    modified();
     if (tolerance < 1) {
       tolerance = 1;
     }
@@ -1385,6 +1460,7 @@ public int getAlwaysVisibleTolerance() {
   }
 
   public void setColorSensitivity(int tolerance) {
+    modified();
     vblColorSensitivity = tolerance;
   }
 
@@ -1427,6 +1503,7 @@ public Area getTransformedMaskTopology(Zone.TopologyType topologyType) {
    * @param topology the topology area to set.
    */
   public void setMaskTopology(Zone.TopologyType topologyType, @Nullable Area topology) {
+    modified();
     if (topology != null && topology.isEmpty()) {
       topology = null;
     }
@@ -1543,10 +1620,12 @@ public Area getTransformedMaskTopology(Area areaToTransform) {
   }
 
   public void setIsAlwaysVisible(boolean isAlwaysVisible) {
+    modified();
     this.isAlwaysVisible = isAlwaysVisible;
   }
 
   public void toggleIsAlwaysVisible() {
+    modified();
     isAlwaysVisible = !isAlwaysVisible;
   }
 
@@ -1637,6 +1716,7 @@ public ZonePoint getDragAnchor(Zone zone) {
    * @param newDragAnchorPosition The new position that the anchor should be located at.
    */
   public void moveDragAnchorTo(Zone zone, ZonePoint newDragAnchorPosition) {
+    modified();
     var anchor = getDragAnchor(zone);
     var offsetX = anchor.x - getX();
     var offsetY = anchor.y - getY();
@@ -1753,6 +1833,7 @@ public String getSightType() {
   }
 
   public void setSightType(String sightType) {
+    modified();
     this.sightType = sightType;
   }
 
@@ -1767,6 +1848,7 @@ public TokenFootprint getFootprint(Grid grid) {
   }
 
   public TokenFootprint setFootprint(Grid grid, TokenFootprint footprint) {
+    modified();
     return grid.getFootprint(getSizeMap().put(grid.getClass().getName(), footprint.getId()));
   }
 
@@ -1783,6 +1865,7 @@ public boolean isSnapToGrid() {
   }
 
   public void setSnapToGrid(boolean snapToGrid) {
+    modified();
     this.snapToGrid = snapToGrid;
   }
 
@@ -1816,6 +1899,7 @@ public List<String> getSetStates() {
    * @return The original value of the state, if any.
    */
   public Object setState(String aState, Object aValue) {
+    modified();
     // the GUI sends null to mean remove a state/bar
     if (aValue == null) {
       return state.remove(aState);
@@ -1838,16 +1922,19 @@ public Object setState(String aState, Object aValue) {
    * @param aValue The new value for the property.
    */
   public void setAllStates(Object aValue) {
+    modified();
     for (Object sname : MapTool.getCampaign().getTokenStatesMap().keySet()) {
       setState(sname.toString(), aValue);
     }
   }
 
   public void resetProperty(String key) {
+    modified();
     getPropertyMap().remove(key);
   }
 
   public void setProperty(String key, Object value) {
+    modified();
     getPropertyMap().put(key, value);
   }
 
@@ -1970,6 +2057,7 @@ private void loadOldMacros() {
     if (macroMap == null) {
       return;
     }
+    modified();
     MacroButtonProperties prop;
     for (var macro : macroMap.entrySet()) {
       prop = new MacroButtonProperties(getMacroNextIndex());
@@ -2049,6 +2137,7 @@ public List<MacroButtonProperties> getMacroList(boolean secure) {
    * @param clearOld whether the old macros at other indexes should be removed
    */
   public void saveMacroList(List<MacroButtonProperties> newMacroList, boolean clearOld) {
+    modified();
     if (clearOld) {
       macroPropertiesMap.clear();
     }
@@ -2066,6 +2155,7 @@ public void saveMacroList(List<MacroButtonProperties> newMacroList, boolean clea
    * @param prop the properties of the macro
    */
   public void saveMacro(MacroButtonProperties prop) {
+    modified();
     getMacroPropertiesMap(false).put(prop.getIndex(), prop);
   }
 
@@ -2075,6 +2165,7 @@ public void saveMacro(MacroButtonProperties prop) {
    * @param index the index of the macro
    */
   public void deleteMacro(int index) {
+    modified();
     getMacroPropertiesMap(false).remove(index);
   }
 
@@ -2093,6 +2184,7 @@ public boolean hasMacros(boolean secure) {
   }
 
   public void setSpeechMap(Map<String, String> map) {
+    modified();
     getSpeechMap().clear();
     getSpeechMap().putAll(map);
   }
@@ -2106,6 +2198,7 @@ public String getSpeech(String key) {
   }
 
   public void setSpeech(String key, String value) {
+    modified();
     getSpeechMap().put(key, value);
   }
 
@@ -2149,6 +2242,7 @@ public String getNotes() {
    * @param aNotes Setter for notes
    */
   public void setNotes(String aNotes) {
+    modified();
     notes = aNotes;
   }
 
@@ -2157,6 +2251,7 @@ public String getNotesType() {
   }
 
   public void setNotesType(String type) {
+    modified();
     notesType = type;
   }
 
@@ -2165,6 +2260,7 @@ public boolean isFlippedY() {
   }
 
   public void setFlippedY(boolean isFlippedY) {
+    modified();
     this.isFlippedY = isFlippedY;
   }
 
@@ -2173,6 +2269,7 @@ public boolean isFlippedX() {
   }
 
   public void setFlippedX(boolean isFlippedX) {
+    modified();
     this.isFlippedX = isFlippedX;
   }
 
@@ -2184,6 +2281,7 @@ public boolean isFlippedIso() {
   }
 
   public void setFlippedIso(boolean isFlippedIso) {
+    modified();
     this.isFlippedIso = isFlippedIso;
   }
 
@@ -2195,6 +2293,7 @@ public Color getVisionOverlayColor() {
   }
 
   public void setVisionOverlayColor(Color color) {
+    modified();
     if (color != null) {
       visionOverlayColorValue = color.getRGB();
     } else {
@@ -2209,6 +2308,7 @@ public String toString() {
   }
 
   public void setAnchor(int x, int y) {
+    modified();
     anchorX = x;
     anchorY = y;
   }
@@ -2238,6 +2338,7 @@ public double getSizeScale() {
    * @param scale the scale of the token
    */
   public void setSizeScale(double scale) {
+    modified();
     sizeScale = scale;
   }
 
@@ -2463,10 +2564,12 @@ public boolean isBeingImpersonated() {
   }
 
   public void setBeingImpersonated(boolean bool) {
+    modified();
     beingImpersonated = bool;
   }
 
   public void deleteMacroGroup(String macroGroup, Boolean secure) {
+    modified();
     List<MacroButtonProperties> tempMacros = new ArrayList<>(getMacroList(true));
 
     for (MacroButtonProperties nextProp : tempMacros) {
@@ -2480,6 +2583,7 @@ public void deleteMacroGroup(String macroGroup, Boolean secure) {
   }
 
   public void deleteAllMacros(Boolean secure) {
+    modified();
     List<MacroButtonProperties> tempMacros = new ArrayList<>(getMacroList(true));
     for (MacroButtonProperties nextProp : tempMacros) {
       // Lee: maybe erasing the command will suffice to fix the hotkey bug.
@@ -2495,6 +2599,7 @@ public void deleteAllMacros(Boolean secure) {
   }
 
   public void renameMacroGroup(String oldMacroGroup, String newMacroGroup) {
+    modified();
     List<MacroButtonProperties> tempMacros = new ArrayList<>(getMacroList(true));
 
     for (MacroButtonProperties nextProp : tempMacros) {
@@ -2635,6 +2740,7 @@ protected Object readResolve() {
    * @param exposedAreaGUID the exposedAreaGUID to set
    */
   public void setExposedAreaGUID(GUID exposedAreaGUID) {
+    modified();
     this.exposedAreaGUID = exposedAreaGUID;
   }
 
@@ -2672,6 +2778,7 @@ public HeroLabData getHeroLabData() {
   }
 
   public void setHeroLabData(HeroLabData heroLabData) {
+    modified();
     this.heroLabData = heroLabData;
   }
 
@@ -2684,6 +2791,7 @@ public void setHeroLabData(HeroLabData heroLabData) {
    * @param parameters An array of parameters
    */
   public void updateProperty(Zone zone, Update update, List<TokenPropertyValueDto> parameters) {
+    modified();
     boolean lightChanged = false;
     boolean macroChanged = false;
     boolean panelLookChanged = false; // appearance of token in a panel changed
@@ -3218,6 +3326,7 @@ public StatSheetProperties getStatSheet() {
    * @param statSheet the stat sheet properties for this token.
    */
   public void setStatSheet(StatSheetProperties statSheet) {
+    modified();
     this.statSheet = statSheet;
   }
 
@@ -3232,6 +3341,7 @@ public boolean usingDefaultStatSheet() {
 
   /** Use the default stat sheet for the tokens token type. */
   public void useDefaultStatSheet() {
+    modified();
     setStatSheet(null);
   }
 }
@@ -0,0 +1,318 @@
+/*
+ * This software Copyright by the RPTools.net development team, and
+ * licensed under the Affero GPL Version 3 or, at your option, any later
+ * version.
+ *
+ * MapTool Source Code is distributed in the hope that it will be
+ * useful, but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ *
+ * You should have received a copy of the GNU Affero General Public
+ * License * along with this source Code.  If not, please visit
+ * <http://www.gnu.org/licenses/> and specifically the Affero license
+ * text at <http://www.gnu.org/licenses/agpl.html>.
+ */
+package net.rptools.maptool.model;
+
+import java.awt.Rectangle;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.BiFunction;
+
+/**
+ * A spatial index of the tokens of a {@link Zone}, used to find the tokens near some cells or
+ * pixels without looking at every token on the map. Tokens are put into square buckets twice, once
+ * by the grid cells they occupy and once by their pixel bounds.
+ *
+ * <p>The index is brought up to date when it is queried, tokens whose modification count moved
+ * since they were indexed are indexed again and a change of grid starts it over. Queries return
+ * candidates: every token that matches is returned, but so can tokens near it that do not.
+ *
+ * <p>This class is thread safe.
+ */
+public final class TokenCellIndex {
+
+  /** The width and height of a bucket, in cells. */
+  private static final int BUCKET_CELLS = 8;
+
+  /** Tokens covering more buckets than this are returned by every query instead. */
+  private static final int MAX_BUCKETS_PER_TOKEN = 256;
+
+  /** The zone the tokens are on. */
+  private final Zone zone;
+
+  /** The tokens by the cells they occupy. */
+  private final Buckets cells = new Buckets(TokenCellIndex::cellExtent);
+
+  /** The tokens by their pixel bounds. */
+  private final Buckets pixels = new Buckets(TokenCellIndex::pixelExtent);
+
+  /** The grid the index was built for. */
+  private Grid grid;
+
+  /** The size of {@link #grid} when the index was built. */
+  private int gridSize;
+
+  /** The x offset of {@link #grid} when the index was built. */
+  private int gridOffsetX;
+
+  /** The y offset of {@link #grid} when the index was built. */
+  private int gridOffsetY;
+
+  /**
+   * Creates a new {@code TokenCellIndex}.
+   *
+   * @param zone the zone to index the tokens of.
+   */
+  TokenCellIndex(Zone zone) {
+    this.zone = zone;
+  }
+
+  /**
+   * Returns the tokens that may occupy a cell in the given range of cells. The range is inclusive.
+   *
+   * @param minX the smallest cell x.
+   * @param minY the smallest cell y.
+   * @param maxX the largest cell x.
+   * @param maxY the largest cell y.
+   * @return a set of the candidate tokens, compared by identity.
+   */
+  public synchronized Set<Token> getTokensInCells(int minX, int minY, int maxX, int maxY) {
+    checkGrid();
+    cells.update(zone, BUCKET_CELLS);
+    return cells.query(minX, minY, maxX, maxY);
+  }
+
+  /**
+   * Returns the tokens whose bounds may overlap the given range of pixels. The range is inclusive.
+   *
+   * @param minX the smallest x.
+   * @param minY the smallest y.
+   * @param maxX the largest x.
+   * @param maxY the largest y.
+   * @return a set of the candidate tokens, compared by identity.
+   */
+  public synchronized Set<Token> getTokensInBounds(int minX, int minY, int maxX, int maxY) {
+    checkGrid();
+    pixels.update(zone, BUCKET_CELLS * Math.max(1, gridSize));
+    return pixels.query(minX, minY, maxX, maxY);
+  }
+
+  /** Empties the index if the grid of the zone changed since it was built. */
+  private void checkGrid() {
+    Grid current = zone.getGrid();
+    if (current != grid
+        || current.getSize() != gridSize
+        || current.getOffsetX() != gridOffsetX
+        || current.getOffsetY() != gridOffsetY) {
+      grid = current;
+      gridSize = current.getSize();
+      gridOffsetX = current.getOffsetX();
+      gridOffsetY = current.getOffsetY();
+      cells.clear();
+      pixels.clear();
+    }
+  }
+
+  /**
+   * Returns the range of cells occupied by a token.
+   *
+   * @param zone the zone the token is on.
+   * @param token the token.
+   * @return the inclusive range of cells, or {@code null} if the token occupies no cells.
+   */
+  private static Rectangle cellExtent(Zone zone, Token token) {
+    Rectangle extent = null;
+    for (CellPoint cell : token.getOccupiedCells(zone.getGrid())) {
+      if (extent == null) {
+        extent = new Rectangle(cell.x, cell.y, 0, 0);
+      } else {
+        extent.add(cell.x, cell.y);
+      }
+    }
+    return extent;
+  }
+
+  /**
+   * Returns the pixels covered by the bounds of a token. The range includes both edges so that it
+   * also holds the centre of the token.
+   *
+   * @param zone the zone the token is on.
+   * @param token the token.
+   * @return the inclusive range of pixels.
+   */
+  private static Rectangle pixelExtent(Zone zone, Token token) {
+    Rectangle bounds = token.getBounds(zone);
+    var extent = new Rectangle(bounds.x, bounds.y, 0, 0);
+    extent.add(bounds.x + bounds.width, bounds.y + bounds.height);
+    return extent;
+  }
+
+  /** A token in the index and the range of buckets it was put in. */
+  private static final class Entry {
+    private final Token token;
+    private final long modificationCount;
+    private final int minX, minY, maxX, maxY;
+    private int generation;
+
+    private Entry(Token token, int minX, int minY, int maxX, int maxY) {
+      this.token = token;
+      this.modificationCount = token.getModificationCount();
+      this.minX = minX;
+      this.minY = minY;
+      this.maxX = maxX;
+      this.maxY = maxY;
+    }
+
+    private boolean isOversized() {
+      return (long) (maxX - minX + 1) * (maxY - minY + 1) > MAX_BUCKETS_PER_TOKEN;
+    }
+  }
+
+  /** Tokens bucketed by one kind of extent. */
+  private static final class Buckets {
+    /** Returns the inclusive extent of a token, {@code null} if it has none. */
+    private final BiFunction<Zone, Token, Rectangle> extent;
+
+    private final Map<GUID, Entry> entries = new HashMap<>();
+    private final Map<Long, List<Token>> buckets = new HashMap<>();
+    private final List<Token> oversized = new ArrayList<>();
+    private int bucketSize;
+    private int generation;
+
+    private Buckets(BiFunction<Zone, Token, Rectangle> extent) {
+      this.extent = extent;
+    }
+
+    private void clear() {
+      entries.clear();
+      buckets.clear();
+      oversized.clear();
+    }
+
+    /**
+     * Indexes the tokens of the zone that are new or were modified since they were indexed, and
+     * drops the tokens no longer on it.
+     *
+     * @param zone the zone.
+     * @param size the width and height of a bucket.
+     */
+    private void update(Zone zone, int size) {
+      if (size != bucketSize) {
+        clear();
+        bucketSize = size;
+      }
+      generation++;
+      List<Token> tokens = zone.getAllTokens();
+      for (Token token : tokens) {
+        Entry entry = entries.get(token.getId());
+        if (entry == null
+            || entry.token != token
+            || entry.modificationCount != token.getModificationCount()) {
+          if (entry != null) {
+            remove(entry);
+          }
+          entry = add(zone, token);
+        }
+        entry.generation = generation;
+      }
+      if (entries.size() > tokens.size()) {
+        List<Entry> removed = new ArrayList<>();
+        for (Entry entry : entries.values()) {
+          if (entry.generation != generation) {
+            removed.add(entry);
+          }
+        }
+        for (Entry entry : removed) {
+          remove(entry);
+          entries.remove(entry.token.getId());
+        }
+      }
+    }
+
+    private Entry add(Zone zone, Token token) {
+      Rectangle r = extent.apply(zone, token);
+      Entry entry;
+      if (r == null) {
+        // Never matched by a query, but kept so it is not looked at again until it changes.
+        entry = new Entry(token, 0, 0, -1, -1);
+      } else {
+        entry =
+            new Entry(
+                token,
+                Math.floorDiv(r.x, bucketSize),
+                Math.floorDiv(r.y, bucketSize),
+                Math.floorDiv(r.x + r.width, bucketSize),
+                Math.floorDiv(r.y + r.height, bucketSize));
+      }
+      entries.put(token.getId(), entry);
+      if (entry.isOversized()) {
+        oversized.add(token);
+      } else {
+        for (int x = entry.minX; x <= entry.maxX; x++) {
+          for (int y = entry.minY; y <= entry.maxY; y++) {
+            buckets.computeIfAbsent(key(x, y), k -> new ArrayList<>(4)).add(token);
+          }
+        }
+      }
+      return entry;
+    }
+
+    private void remove(Entry entry) {
+      if (entry.isOversized()) {
+        oversized.removeIf(t -> t == entry.token);
+        return;
+      }
+      for (int x = entry.minX; x <= entry.maxX; x++) {
+        for (int y = entry.minY; y <= entry.maxY; y++) {
+          Long key = key(x, y);
+          List<Token> bucket = buckets.get(key);
+          if (bucket != null) {
+            bucket.removeIf(t -> t == entry.token);
+            if (bucket.isEmpty()) {
+              buckets.remove(key);
+            }
+          }
+        }
+      }
+    }
+
+    private Set<Token> query(int minX, int minY, int maxX, int maxY) {
+      Set<Token> result = Collections.newSetFromMap(new IdentityHashMap<>());
+      result.addAll(oversized);
+      int bx1 = Math.floorDiv(minX, bucketSize);
+      int by1 = Math.floorDiv(minY, bucketSize);
+      int bx2 = Math.floorDiv(maxX, bucketSize);
+      int by2 = Math.floorDiv(maxY, bucketSize);
+      if ((long) (bx2 - bx1 + 1) * (by2 - by1 + 1) > buckets.size()) {
+        // Fewer buckets hold tokens than the range covers, so look at those instead.
+        for (Map.Entry<Long, List<Token>> bucket : buckets.entrySet()) {
+          int x = (int) (bucket.getKey() >> 32);
+          int y = (int) (long) bucket.getKey();
+          if (x >= bx1 && x <= bx2 && y >= by1 && y <= by2) {
+            result.addAll(bucket.getValue());
+          }
+        }
+      } else {
+        for (int x = bx1; x <= bx2; x++) {
+          for (int y = by1; y <= by2; y++) {
+            List<Token> bucket = buckets.get(key(x, y));
+            if (bucket != null) {
+              result.addAll(bucket);
+            }
+          }
+        }
+      }
+      return result;
+    }
+
+    private static long key(int x, int y) {
+      return ((long) x << 32) | (y & 0xffffffffL);
+    }
+  }
+}
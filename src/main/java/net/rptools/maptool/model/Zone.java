@@ -14,11 +14,13 @@
  */
 package net.rptools.maptool.model;
 
+import com.google.protobuf.ByteString;
 import com.google.protobuf.StringValue;
 import java.awt.Color;
 import java.awt.Point;
 import java.awt.Rectangle;
 import java.awt.geom.Area;
+import java.io.IOException;
 import java.util.*;
 import java.util.function.Predicate;
 import java.util.stream.Collectors;
@@ -360,13 +362,67 @@ public enum TopologyType {
 
   private InitiativeList initiativeList = new InitiativeList(this);
 
-  /** The global exposed area. */
+  /** The global exposed area, only used if the exposure is not stored as a mask. */
   private Area exposedArea = new Area();
 
+  /**
+   * The global exposed area stored as a tiled bit mask, {@code null} if the exposure for this zone
+   * is stored as {@link Area}s.
+   */
+  private ExposureMask exposedMask;
+
+  /** The {@link Area} built from {@link #exposedMask}, {@code null} if it needs rebuilding. */
+  private transient Area exposedMaskArea;
+
+  /** The number of token views whose combined exposed area is kept. */
+  private static final int EXPOSED_VIEW_CACHE_SIZE = 8;
+
+  /**
+   * The combined exposed area of the tokens of recent views, keyed by the exposed area ids of the
+   * tokens. Only used if the exposure is stored as a mask, created on demand.
+   */
+  private transient Map<List<GUID>, CachedExposure> exposedViewCache;
+
+  /**
+   * A combined exposed area, and the masks and modification counts it was built from.
+   *
+   * @param global the global exposure mask.
+   * @param globalCount the modification count of the global exposure mask.
+   * @param masks the exposure masks of the tokens, {@code null} for tokens without exposure.
+   * @param counts the modification counts of the exposure masks of the tokens.
+   * @param area the combined exposed area.
+   */
+  private record CachedExposure(
+      ExposureMask global, long globalCount, ExposureMask[] masks, long[] counts, Area area) {
+    boolean isCurrent(ExposureMask global, ExposureMask[] masks, long[] counts) {
+      if (this.global != global || globalCount != global.getModificationCount()) {
+        return false;
+      }
+      for (int i = 0; i < masks.length; i++) {
+        if (this.masks[i] != masks[i] || this.counts[i] != counts[i]) {
+          return false;
+        }
+      }
+      return true;
+    }
+  }
+
   private boolean hasFog;
   private DrawablePaint fogPaint;
   private transient UndoPerZone undo;
 
+  /**
+   * The number of times the zone has been modified, used to detect out of date copies. Changes to
+   * tokens are counted by the tokens themselves.
+   */
+  private transient volatile long modificationCount;
+
+  /** The number of times the walls or mask topology of the zone have been changed. */
+  private transient volatile long topologyModificationCount;
+
+  /** The spatial index of the tokens, {@code null} until it is first needed. */
+  private transient TokenCellIndex tokenIndex;
+
   // region Topology masks
 
   /**
@@ -441,6 +497,7 @@ public Zone() {
   }
 
   public void setBackgroundPaint(DrawablePaint paint) {
+    modified();
     backgroundPaint = paint;
   }
 
@@ -451,11 +508,13 @@ public MD5Key getBackgroundAsset() {
   }
 
   public void setMapAsset(MD5Key id) {
+    modified();
     mapAsset = id;
     boardChanged = true;
   }
 
   public void setTokenVisionDistance(int units) {
+    modified();
     tokenVisionDistance = units;
   }
 
@@ -468,6 +527,7 @@ public VisionType getVisionType() {
   }
 
   public void setVisionType(VisionType visionType) {
+    modified();
     this.visionType = visionType;
   }
 
@@ -476,6 +536,7 @@ public LightingStyle getLightingStyle() {
   }
 
   public void setLightingStyle(LightingStyle lightingStyle) {
+    modified();
     this.lightingStyle = lightingStyle;
     new MapToolEventBus().getMainEventBus().post(new ZoneLightingChanged(this));
   }
@@ -485,10 +546,12 @@ public TokenSelection getTokenSelection() {
   }
 
   public void setTokenSelection(TokenSelection tokenSelection) {
+    modified();
     this.tokenSelection = tokenSelection;
   }
 
   public void setFogPaint(DrawablePaint paint) {
+    modified();
     fogPaint = paint;
   }
 
@@ -519,10 +582,12 @@ public void setFogPaint(DrawablePaint paint) {
   }
 
   public void setName(String name) {
+    modified();
     this.name = name;
   }
 
   public void setPlayerAlias(String playerAlias) {
+    modified();
     this.playerAlias =
         playerAlias == null || playerAlias.equals("") || playerAlias.equals(name)
             ? null
@@ -618,6 +683,8 @@ public Zone(Zone zone, boolean keepIds) {
       }
     }
     exposedAreaMeta = new HashMap<GUID, ExposedAreaMetaData>(zone.exposedAreaMeta.size() * 4 / 3);
+    // Set the exposure storage first so the token exposed areas copied below use it.
+    exposedMask = zone.exposedMask == null ? null : new ExposureMask(zone.exposedMask);
 
     // Copy the tokens, save a map between old and new for the initiative list.
     if (zone.initiativeList == null) {
@@ -693,6 +760,38 @@ public GUID getId() {
     return id;
   }
 
+  /**
+   * Returns the number of times the zone has been modified, not counting changes to its tokens. A
+   * cached copy of the zone made when the count was the same is still up to date, apart from its
+   * tokens and initiative list.
+   *
+   * @return the modification count.
+   */
+  public long getModificationCount() {
+    return modificationCount;
+  }
+
+  /** Records that the zone has been modified. */
+  private void modified() {
+    modificationCount++;
+  }
+
+  /**
+   * Returns the number of times the walls or mask topology of the zone have been changed, including
+   * the mask topology of its tokens. Anything worked out from the topology when the count was the
+   * same is still up to date.
+   *
+   * @return the topology modification count.
+   */
+  public long getTopologyModificationCount() {
+    return topologyModificationCount;
+  }
+
+  /** Records that the topology of the zone has been modified. */
+  private void topologyModified() {
+    topologyModificationCount++;
+  }
+
   /**
    * Should be invoked only when a Zone has been imported from an external source and needs to be
    * cleaned up before being used.
@@ -706,6 +805,7 @@ public int getHeight() {
   }
 
   public void setHeight(int height) {
+    modified();
     this.height = height;
   }
 
@@ -714,6 +814,7 @@ public int getWidth() {
   }
 
   public void setWidth(int width) {
+    modified();
     this.width = width;
   }
 
@@ -722,10 +823,12 @@ public boolean isVisible() {
   }
 
   public void setVisible(boolean isVisible) {
+    modified();
     this.isVisible = isVisible;
   }
 
   public void setGrid(Grid grid) {
+    modified();
     this.grid = grid;
     grid.setZone(this);
     new MapToolEventBus().getMainEventBus().post(new GridChanged(this));
@@ -740,6 +843,7 @@ public int getGridColor() {
   }
 
   public void setGridColor(int color) {
+    modified();
     gridColor = color;
   }
 
@@ -754,10 +858,12 @@ public boolean isBoardChanged() {
   }
 
   public void setBoardChanged(boolean set) {
+    modified();
     boardChanged = set;
   }
 
   public void setBoard(Point position) {
+    modified();
     boardPosition.x = position.x;
     boardPosition.y = position.y;
     setBoardChanged(true);
@@ -765,6 +871,7 @@ public void setBoard(Point position) {
   }
 
   public void setBoard(int newX, int newY) {
+    modified();
     boardPosition.x = newX;
     boardPosition.y = newY;
     setBoardChanged(true);
@@ -772,6 +879,7 @@ public void setBoard(int newX, int newY) {
   }
 
   public void setBoard(Point position, MD5Key asset) {
+    modified();
     this.setMapAsset(asset);
     this.setBoard(position);
   }
@@ -789,6 +897,7 @@ public boolean drawBoard() {
   }
 
   public void setDrawBoard(boolean draw) {
+    modified();
     drawBoard = draw;
   }
 
@@ -801,6 +910,7 @@ public float getImageScaleX() {
   }
 
   public void setImageScaleX(float imageScaleX) {
+    modified();
     this.imageScaleX = imageScaleX;
   }
 
@@ -809,6 +919,7 @@ public float getImageScaleY() {
   }
 
   public void setImageScaleY(float imageScaleY) {
+    modified();
     this.imageScaleY = imageScaleY;
   }
 
@@ -820,6 +931,7 @@ public boolean hasFog() {
   }
 
   public void setHasFog(boolean flag) {
+    modified();
     hasFog = flag;
     new MapToolEventBus().getMainEventBus().post(new FogChanged(this));
   }
@@ -846,16 +958,14 @@ public boolean isPointVisible(ZonePoint point, PlayerView view) {
       return true;
     }
     if (MapTool.getServerPolicy().isUseIndividualFOW() && getVisionType() != VisionType.OFF) {
-      Area combined = new Area(exposedArea);
-      if (view.isUsingTokenView()) {
-        for (Token tok : view.getTokens()) { // only owned and HasSight tokens are returned
-          ExposedAreaMetaData meta = exposedAreaMeta.get(tok.getExposedAreaGUID());
-          if (meta != null) {
-            combined.add(meta.getExposedAreaHistory());
-          }
-        }
+      // only owned and HasSight tokens are returned
+      List<Token> tokens = view.isUsingTokenView() ? view.getTokens() : List.of();
+      if (exposedMask != null) {
+        return combineExposureMasks(tokens).contains(point.x, point.y);
       }
-      return combined.contains(point.x, point.y);
+      return combineExposedAreas(tokens).contains(point.x, point.y);
+    } else if (exposedMask != null) {
+      return exposedMask.contains(point.x, point.y);
     } else {
       return exposedArea.contains(point.x, point.y);
     }
@@ -904,22 +1014,19 @@ public boolean isTokenVisible(Token token) {
 
     // Token is visible, and there is fog
     Rectangle tokenSize = token.getBounds(this);
-    Area combined = new Area(exposedArea);
+    List<Token> tokens = new ArrayList<>();
     PlayerView view = MapTool.getFrame().getZoneRenderer(this).getPlayerView();
     if (MapTool.getServerPolicy().isUseIndividualFOW() && getVisionType() != VisionType.OFF) {
       // Jamz: Lets change the logic a bit looking for ownerships
       if (view.isUsingTokenView()) {
         for (Token tok : view.getTokens()) {
-          if (!AppUtil.playerOwns(tok)) {
-            continue;
-          }
-          if (exposedAreaMeta.containsKey(tok.getExposedAreaGUID())) {
-            combined.add(exposedAreaMeta.get(tok.getExposedAreaGUID()).getExposedAreaHistory());
+          if (AppUtil.playerOwns(tok)) {
+            tokens.add(tok);
           }
         }
       }
     }
-    return combined.intersects(tokenSize);
+    return combineExposedAreas(tokens).intersects(tokenSize);
   }
 
   public boolean isTokenFootprintVisible(Token token) {
@@ -940,21 +1047,19 @@ public boolean isTokenFootprintVisible(Token token) {
     // Token is visible, and there is fog
     Rectangle tokenSize = token.getBounds(this);
     Area tokenFootprint = getGrid().getTokenCellArea(tokenSize);
-    Area combined = new Area(exposedArea);
+    List<Token> tokens = new ArrayList<>();
     PlayerView view = MapTool.getFrame().getZoneRenderer(this).getPlayerView();
     if (MapTool.getServerPolicy().isUseIndividualFOW() && getVisionType() != VisionType.OFF) {
       if (view.isUsingTokenView()) {
         // Should this use FindTokenFunctions.OwnedFilter and zone.getTokenList()?
         for (Token tok : view.getTokens()) {
-          if (!AppUtil.playerOwns(tok)) {
-            continue;
-          }
-          if (exposedAreaMeta.containsKey(tok.getExposedAreaGUID())) {
-            combined.add(exposedAreaMeta.get(tok.getExposedAreaGUID()).getExposedAreaHistory());
+          if (AppUtil.playerOwns(tok)) {
+            tokens.add(tok);
           }
         }
       }
     }
+    Area combined = combineExposedAreas(tokens);
     combined.intersect(tokenFootprint);
     return !combined.isEmpty();
     // return combined.intersects(tokenSize);
@@ -992,12 +1097,16 @@ public List<MaskTopology> getMasks(Set<TopologyType> types, @Nullable GUID exclu
   }
 
   public void replaceWalls(WallTopology walls) {
+    modified();
+    topologyModified();
     this.walls = walls;
     this.nodedTopology = null;
     new MapToolEventBus().getMainEventBus().post(new WallTopologyChanged(this));
   }
 
   public void updateWall(Wall wall) {
+    modified();
+    topologyModified();
     var existingWall = this.walls.getWall(wall.from(), wall.to());
 
     existingWall.ifPresentOrElse(
@@ -1044,6 +1153,8 @@ public Area getMaskTopology(TopologyType topologyType) {
    * @param topologyType the type of the topology
    */
   public void updateMaskTopology(Area area, boolean erase, TopologyType topologyType) {
+    modified();
+    topologyModified();
     var topology =
         switch (topologyType) {
           case WALL_VBL -> this.topology;
@@ -1068,6 +1179,7 @@ public void updateMaskTopology(Area area, boolean erase, TopologyType topologyTy
 
   /** Fire the event {@link MaskTopologyChanged}. */
   public void tokenMaskTopologyChanged(Collection<TopologyType> types) {
+    topologyModified();
     if (types.contains(TopologyType.WALL_VBL)
         || types.contains(TopologyType.HILL_VBL)
         || types.contains(TopologyType.PIT_VBL)
@@ -1098,6 +1210,7 @@ public Area getTokenMaskTopology(TopologyType type, @Nullable GUID excluding) {
    * @param token the token that changed
    */
   public void tokenChanged(Token token) {
+    token.modified();
     new MapToolEventBus()
         .getMainEventBus()
         .post(new TokensChanged(this, Collections.singletonList(token)));
@@ -1109,6 +1222,7 @@ public void tokenChanged(Token token) {
    * @param token the token that had its macro changed
    */
   public void tokenMacroChanged(Token token) {
+    token.modified();
     new MapToolEventBus().getMainEventBus().post(new TokenMacroChanged(token));
   }
 
@@ -1118,6 +1232,7 @@ public void tokenMacroChanged(Token token) {
    * @param token the token that had its panel appearance changed
    */
   public void tokenPanelChanged(Token token) {
+    token.modified();
     new MapToolEventBus().getMainEventBus().post(new TokenPanelChanged(token));
   }
 
@@ -1127,7 +1242,12 @@ public void tokenPanelChanged(Token token) {
    * @param globalOnly should the exposed area of all tokens be also cleared?
    */
   public void clearExposedArea(boolean globalOnly) {
+    modified();
     exposedArea = new Area();
+    if (exposedMask != null) {
+      exposedMask = new ExposureMask(exposedMask.getResolution());
+      exposedMaskArea = null;
+    }
     if (!globalOnly) {
       exposedAreaMeta.clear();
     }
@@ -1140,6 +1260,7 @@ public void clearExposedArea(boolean globalOnly) {
    * @param tokenSet the set of token GUID to reset
    */
   public void clearExposedArea(Set<GUID> tokenSet) {
+    modified();
     // Jamz: Clear FoW for set tokens only, for use by
     // ExposeVisibleAreaOnlyAction Menu action and exposePCOnlyArea() macro
 
@@ -1166,6 +1287,7 @@ public void clearExposedArea(Set<GUID> tokenSet) {
    * @param tok the token to expose for, or null
    */
   public void exposeArea(Area area, Token tok) {
+    modified();
     if (area == null || area.isEmpty()) {
       return;
     }
@@ -1175,7 +1297,7 @@ public void exposeArea(Area area, Token tok) {
         GUID tea = tok.getExposedAreaGUID();
         ExposedAreaMetaData meta = exposedAreaMeta.get(tea);
         if (meta == null) {
-          meta = new ExposedAreaMetaData();
+          meta = ExposedAreaMetaData.create(getExposureMaskResolution());
           exposedAreaMeta.put(tea, meta);
         }
         meta.addToExposedAreaHistory(area);
@@ -1184,14 +1306,15 @@ public void exposeArea(Area area, Token tok) {
         // Zones, but not
         // ZoneRenderers
         {
-          zr.getZoneView().flush();
+          // Only the exposed area changed. Lights and vision are still valid.
+          zr.getZoneView().flushFog();
         }
         putToken(tok);
         new MapToolEventBus().getMainEventBus().post(new FogChanged(this));
         return; // FJE Added so that TEA isn't added to the GEA, below.
       }
     }
-    exposedArea.add(area);
+    addGlobalExposedArea(area);
     new MapToolEventBus().getMainEventBus().post(new FogChanged(this));
   }
 
@@ -1203,6 +1326,7 @@ public void exposeArea(Area area, Token tok) {
    * @param selectedToks the set GUID of selected tokens
    */
   public void exposeArea(Area area, Set<GUID> selectedToks) {
+    modified();
     if (area == null || area.isEmpty()) {
       return;
     }
@@ -1210,7 +1334,7 @@ public void exposeArea(Area area, Set<GUID> selectedToks) {
       // Why is this done here and then again below???
       // And just because Vision==Off doesn't mean we aren't doing IF...
       // Jamz: if this exposedArea isn't done then it breaks getExposedTokens when vision is off...
-      exposedArea.add(area);
+      addGlobalExposedArea(area);
     }
     if (selectedToks != null
         && !selectedToks.isEmpty()
@@ -1233,7 +1357,7 @@ public void exposeArea(Area area, Set<GUID> selectedToks) {
           GUID tea = tok.getExposedAreaGUID();
           meta = exposedAreaMeta.get(tea);
           if (meta == null) {
-            meta = new ExposedAreaMetaData();
+            meta = ExposedAreaMetaData.create(getExposureMaskResolution());
             exposedAreaMeta.put(tea, meta);
           }
           meta.addToExposedAreaHistory(area);
@@ -1241,7 +1365,7 @@ public void exposeArea(Area area, Set<GUID> selectedToks) {
       }
     } else {
       // Not using IF so add the EA to the GEA instead of a TEA.
-      exposedArea.add(area);
+      addGlobalExposedArea(area);
     }
     new MapToolEventBus().getMainEventBus().post(new FogChanged(this));
   }
@@ -1254,6 +1378,7 @@ public void exposeArea(Area area, Set<GUID> selectedToks) {
    * @param selectedToks the selected tokens
    */
   public void setFogArea(Area area, Set<GUID> selectedToks) {
+    modified();
     if (area == null) {
       return;
     }
@@ -1269,7 +1394,7 @@ public void setFogArea(Area area, Set<GUID> selectedToks) {
         }
         ExposedAreaMetaData meta = exposedAreaMeta.get(tok.getExposedAreaGUID());
         if (meta == null) {
-          meta = new ExposedAreaMetaData();
+          meta = ExposedAreaMetaData.create(getExposureMaskResolution());
         }
         meta.clearExposedAreaHistory();
         meta.addToExposedAreaHistory(area);
@@ -1279,17 +1404,21 @@ public void setFogArea(Area area, Set<GUID> selectedToks) {
       }
     } else {
       exposedArea.reset();
-      exposedArea.add(area);
+      if (exposedMask != null) {
+        exposedMask.clear();
+      }
+      addGlobalExposedArea(area);
     }
     new MapToolEventBus().getMainEventBus().post(new FogChanged(this));
   }
 
   public void hideArea(Area area, Set<GUID> selectedToks) {
+    modified();
     if (area == null) {
       return;
     }
     if (getVisionType() == VisionType.OFF) {
-      exposedArea.subtract(area);
+      subtractGlobalExposedArea(area);
     }
     if (selectedToks != null
         && !selectedToks.isEmpty()
@@ -1308,7 +1437,7 @@ public void hideArea(Area area, Set<GUID> selectedToks) {
         }
         ExposedAreaMetaData meta = exposedAreaMeta.get(tok.getExposedAreaGUID());
         if (meta == null) {
-          meta = new ExposedAreaMetaData();
+          meta = ExposedAreaMetaData.create(getExposureMaskResolution());
         }
         meta.removeExposedAreaHistory(area);
         exposedAreaMeta.put(tok.getExposedAreaGUID(), meta);
@@ -1316,7 +1445,7 @@ public void hideArea(Area area, Set<GUID> selectedToks) {
         putToken(tok);
       }
     } else {
-      exposedArea.subtract(area);
+      subtractGlobalExposedArea(area);
     }
     new MapToolEventBus().getMainEventBus().post(new FogChanged(this));
   }
@@ -1335,20 +1464,34 @@ public long getCreationTime() {
    * @return the exposed area
    */
   public Area getExposedArea(PlayerView view) {
-    Area combined = new Area(exposedArea);
-
     // Don't need to worry about StrictTokenOwnership since the PlayerView only contains tokens we
     // own by calling
     // AppUtil.playerOwns()
     if (!view.isUsingTokenView()) {
-      return combined;
+      return getExposedArea();
     }
-    for (Token tok : view.getTokens()) {
-      // Don't need this IF statement; see
-      // net.rptools.maptool.client.ui.zone.renderer.ZoneRenderer.getPlayerView(Role)
-      // if (!tok.getHasSight() || !AppUtil.playerOwns(tok)) {
-      // continue;
-      // }
+    // Don't need to check getHasSight() or AppUtil.playerOwns() for the tokens; see
+    // net.rptools.maptool.client.ui.zone.renderer.ZoneRenderer.getPlayerView(Role)
+    return combineExposedAreas(view.getTokens());
+  }
+
+  /**
+   * Returns the union of the global exposed area and the exposed areas of the tokens. The result is
+   * a new {@link Area} that the caller is free to modify.
+   *
+   * @param tokens the tokens whose exposed areas are included.
+   * @return the combined exposed area.
+   */
+  private Area combineExposedAreas(List<Token> tokens) {
+    if (exposedMask != null) {
+      if (tokens.isEmpty()) {
+        return getExposedArea();
+      }
+      return new Area(getCachedExposedArea(tokens));
+    }
+
+    Area combined = new Area(exposedArea);
+    for (Token tok : tokens) {
       ExposedAreaMetaData meta = exposedAreaMeta.get(tok.getExposedAreaGUID());
       if (meta != null) {
         combined.add(meta.getExposedAreaHistory());
@@ -1357,20 +1500,176 @@ public Area getExposedArea(PlayerView view) {
     return combined;
   }
 
+  /**
+   * Returns the union of the global exposed area and the exposed areas of the tokens, reusing the
+   * area built for the same tokens as long as none of the masks it was built from have changed.
+   * This must only be called if the zone stores its exposure as masks.
+   *
+   * @param tokens the tokens whose exposed areas are included.
+   * @return the combined exposed area, which must not be modified.
+   */
+  private Area getCachedExposedArea(List<Token> tokens) {
+    var key = new ArrayList<GUID>(tokens.size());
+    var masks = new ExposureMask[tokens.size()];
+    var counts = new long[tokens.size()];
+    for (int i = 0; i < tokens.size(); i++) {
+      GUID tea = tokens.get(i).getExposedAreaGUID();
+      key.add(tea);
+      ExposedAreaMetaData meta = exposedAreaMeta.get(tea);
+      if (meta == null) {
+        continue;
+      }
+      if (meta.getExposureMaskResolution() != exposedMask.getResolution()) {
+        // Exposure stored as an Area has no modification count, so it can't be cached.
+        return combineExposureMasks(tokens).toArea();
+      }
+      masks[i] = meta.getExposureMask();
+      counts[i] = masks[i].getModificationCount();
+    }
+
+    if (exposedViewCache == null) {
+      exposedViewCache =
+          new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<List<GUID>, CachedExposure> eldest) {
+              return size() > EXPOSED_VIEW_CACHE_SIZE;
+            }
+          };
+    }
+    var cached = exposedViewCache.get(key);
+    if (cached != null && cached.isCurrent(exposedMask, masks, counts)) {
+      return cached.area();
+    }
+    var area = combineExposureMasks(tokens).toArea();
+    exposedViewCache.put(
+        key,
+        new CachedExposure(exposedMask, exposedMask.getModificationCount(), masks, counts, area));
+    return area;
+  }
+
+  /**
+   * Returns the union of the global exposure mask and the exposure masks of the tokens. This must
+   * only be called if the zone stores its exposure as masks.
+   *
+   * @param tokens the tokens whose exposure is included.
+   * @return the combined exposure mask.
+   */
+  private ExposureMask combineExposureMasks(List<Token> tokens) {
+    var combined = new ExposureMask(exposedMask);
+    for (Token tok : tokens) {
+      ExposedAreaMetaData meta = exposedAreaMeta.get(tok.getExposedAreaGUID());
+      if (meta == null) {
+        continue;
+      }
+      if (meta.getExposureMaskResolution() == combined.getResolution()) {
+        combined.add(meta.getExposureMask());
+      } else {
+        combined.add(meta.getExposedAreaHistory());
+      }
+    }
+    return combined;
+  }
+
+  /**
+   * Adds to the global exposed area.
+   *
+   * @param area the area to expose.
+   */
+  private void addGlobalExposedArea(Area area) {
+    if (exposedMask != null) {
+      exposedMask.add(area);
+      exposedMaskArea = null;
+    } else {
+      exposedArea.add(area);
+    }
+  }
+
+  /**
+   * Removes from the global exposed area.
+   *
+   * @param area the area to hide.
+   */
+  private void subtractGlobalExposedArea(Area area) {
+    if (exposedMask != null) {
+      exposedMask.subtract(area);
+      exposedMaskArea = null;
+    } else {
+      exposedArea.subtract(area);
+    }
+  }
+
   /**
    * This is the Global Exposed Area (GEA) discussed so much on the dev-team mailing list. :)
    *
-   * @return Area object representing exposed fog area visible to all tokens
+   * @return a copy of the Area representing exposed fog area visible to all tokens, which the
+   *     caller is free to modify.
+   * @see #getGlobalExposedArea()
    */
   public Area getExposedArea() {
+    return new Area(getGlobalExposedArea());
+  }
+
+  /**
+   * Returns the global exposed area without copying it, for callers that only read it.
+   *
+   * @return the Area representing exposed fog area visible to all tokens, which must not be
+   *     modified.
+   * @see #getExposedArea()
+   */
+  public Area getGlobalExposedArea() {
+    if (exposedMask != null) {
+      if (exposedMaskArea == null) {
+        exposedMaskArea = exposedMask.toArea();
+      }
+      return exposedMaskArea;
+    }
     return exposedArea;
   }
 
+  /**
+   * Returns the resolution used to store the exposed fog of war as tiled bit masks.
+   *
+   * @return the size in zone units of each cell of the {@link ExposureMask}s, or 0 if the exposure
+   *     is stored as {@link Area}s.
+   */
+  public int getExposureMaskResolution() {
+    return exposedMask == null ? 0 : exposedMask.getResolution();
+  }
+
+  /**
+   * Changes how the exposed fog of war is stored, converting the existing global and token
+   * exposure. Storing the exposure as an {@link ExposureMask} keeps the cost of exposing new areas
+   * constant however much of the map has been explored, at the cost of following the edges of the
+   * exposed areas only to the resolution of the mask.
+   *
+   * @param resolution the size in zone units of each cell of the {@link ExposureMask}s, or 0 to
+   *     store the exposure as {@link Area}s.
+   */
+  public void setExposureMaskResolution(int resolution) {
+    modified();
+    if (resolution == getExposureMaskResolution()) {
+      return;
+    }
+    Area global = getExposedArea();
+    if (resolution > 0) {
+      exposedMask = new ExposureMask(resolution);
+      exposedMask.add(global);
+      exposedArea = new Area();
+    } else {
+      exposedMask = null;
+      exposedArea = global;
+    }
+    exposedMaskArea = null;
+    exposedAreaMeta.replaceAll((guid, meta) -> meta.withExposureMaskResolution(resolution));
+    new MapToolEventBus().getMainEventBus().post(new FogChanged(this));
+  }
+
   public double getUnitsPerCell() {
     return Math.max(unitsPerCell, 0);
   }
 
   public void setUnitsPerCell(double unitsPerCell) {
+    modified();
     this.unitsPerCell = unitsPerCell;
   }
 
@@ -1383,6 +1682,7 @@ public AStarRoundingOptions getAStarRounding() {
   }
 
   public void setAStarRounding(AStarRoundingOptions aStarRounding) {
+    modified();
     this.aStarRounding = aStarRounding;
   }
 
@@ -1405,6 +1705,7 @@ public void sortZOrder() {
   // labels
   ///////////////////////////////////////////////////////////////////////////
   public void putLabel(Label label) {
+    modified();
     boolean newLabel = labels.containsKey(label.getId());
     labels.put(label.getId(), label);
 
@@ -1420,6 +1721,7 @@ public List<Label> getLabels() {
   }
 
   public void removeLabel(GUID labelId) {
+    modified();
     Label label = labels.remove(labelId);
     if (label != null) {
       new MapToolEventBus().getMainEventBus().post(new LabelRemoved(label));
@@ -1431,11 +1733,13 @@ public void removeLabel(GUID labelId) {
   ///////////////////////////////////////////////////////////////////////////
 
   public void addDrawable(DrawnElement drawnElement) {
+    modified();
     drawablesByLayer.get(drawnElement.getDrawable().getLayer()).add(drawnElement);
     new MapToolEventBus().getMainEventBus().post(new DrawableAdded(this, drawnElement));
   }
 
   public void updateDrawable(DrawnElement drawnElement, Pen pen) {
+    modified();
     final var elementList = drawablesByLayer.get(drawnElement.getDrawable().getLayer());
     for (DrawnElement de : elementList) {
       if (de.getDrawable().getId().equals(drawnElement.getDrawable().getId())) {
@@ -1447,6 +1751,7 @@ public void updateDrawable(DrawnElement drawnElement, Pen pen) {
   }
 
   public void addDrawableRear(DrawnElement drawnElement) {
+    modified();
     // Since the list is drawn in order
     // items that are drawn first are at the "back"
     drawablesByLayer.get(drawnElement.getDrawable().getLayer()).addFirst(drawnElement);
@@ -1458,6 +1763,7 @@ public List<DrawnElement> getDrawnElements(Zone.Layer layer) {
   }
 
   public void removeDrawable(GUID drawableId) {
+    modified();
     // Since we don't know anything about the drawable, look through all the layers
     // Do we need to remove it from the Undo manager as well? Probably. Perhaps some
     // UndoPerZone method that searches and deletes the drawable ID?
@@ -1483,6 +1789,7 @@ private void removeDrawable(List<DrawnElement> drawableList, GUID drawableId) {
   }
 
   public void clearDrawables(Layer layer) {
+    modified();
     final var original = drawablesByLayer.get(layer);
     final var copy = new ArrayList<>(original);
     original.clear();
@@ -1494,6 +1801,7 @@ public void clearDrawables(Layer layer) {
   }
 
   public void addDrawable(Pen pen, Drawable drawable) {
+    modified();
     undo.addDrawable(pen, drawable);
   }
 
@@ -1502,6 +1810,7 @@ public boolean canUndo() {
   }
 
   public void undoDrawable() {
+    modified();
     undo.undo();
   }
 
@@ -1510,6 +1819,7 @@ public boolean canRedo() {
   }
 
   public void redoDrawable() {
+    modified();
     undo.redo();
   }
 
@@ -1525,6 +1835,7 @@ public void redoDrawable() {
    * @param token the Token to be added to this zone
    */
   public void putToken(Token token) {
+    token.modified();
     boolean newToken = !tokenMap.containsKey(token.getId());
 
     tokenMap.put(token.getId(), token);
@@ -1579,6 +1890,7 @@ public void putTokens(List<Token> tokens) {
     changedTokens.retainAll(values);
 
     for (Token t : tokens) {
+      t.modified();
       tokenMap.put(t.getId(), t);
     }
     tokenOrderedList.removeAll(tokens);
@@ -1724,6 +2036,19 @@ public List<Token> getAllTokens() {
     return List.copyOf(tokenOrderedList);
   }
 
+  /**
+   * Returns the spatial index of the tokens on the zone, which finds the tokens near some cells or
+   * pixels without looking at every token. The index keeps itself up to date.
+   *
+   * @return the token index.
+   */
+  public synchronized TokenCellIndex getTokenIndex() {
+    if (tokenIndex == null) {
+      tokenIndex = new TokenCellIndex(this);
+    }
+    return tokenIndex;
+  }
+
   public Set<MD5Key> getAllAssetIds() {
     Set<MD5Key> idSet = new HashSet<MD5Key>();
 
@@ -2036,6 +2361,7 @@ public void setInitiativeList(InitiativeList initiativeList) {
   }
 
   public void optimize() {
+    modified();
     log.debug("Optimizing Map " + getName());
     MapTool.getFrame().setStatusMessage(I18N.getText("Zone.status.optimizing", getName()));
     collapseDrawables();
@@ -2231,7 +2557,7 @@ public ExposedAreaMetaData getExposedAreaMetaData(GUID tokenExposedAreaGUID) {
     if (meta != null) {
       return meta;
     }
-    meta = new ExposedAreaMetaData();
+    meta = ExposedAreaMetaData.create(getExposureMaskResolution());
     exposedAreaMeta.put(tokenExposedAreaGUID, meta);
     return meta;
   }
@@ -2243,10 +2569,12 @@ public ExposedAreaMetaData getExposedAreaMetaData(GUID tokenExposedAreaGUID) {
    * @param meta the exposed metadata
    */
   public void setExposedAreaMetaData(GUID tokenExposedAreaGUID, ExposedAreaMetaData meta) {
+    modified();
     if (exposedAreaMeta == null) {
       exposedAreaMeta = new HashMap<GUID, ExposedAreaMetaData>();
     }
-    exposedAreaMeta.put(tokenExposedAreaGUID, meta);
+    exposedAreaMeta.put(
+        tokenExposedAreaGUID, meta.withExposureMaskResolution(getExposureMaskResolution()));
     new MapToolEventBus().getMainEventBus().post(new FogChanged(this));
   }
 
@@ -2265,6 +2593,7 @@ public boolean getWaypointExposureToggle() {
    * @param toggle toggle for exposure method
    */
   public void setWaypointExposureToggle(boolean toggle) {
+    modified();
     exposeFogAtWaypoints = toggle;
   }
 
@@ -2306,6 +2635,19 @@ public static Zone fromDto(ZoneDto dto) {
                     GUID.valueOf(id), new ExposedAreaMetaData(Mapper.map(area))));
     zone.initiativeList = InitiativeList.fromDto(dto.getInitiative());
     zone.exposedArea = Mapper.map(dto.getExposedArea());
+    if (dto.getExposureMaskResolution() > 0) {
+      try {
+        zone.exposedMask = ExposureMask.fromBytes(dto.getExposedMask().toByteArray());
+        for (var entry : dto.getExposedAreaMetaMaskMap().entrySet()) {
+          zone.exposedAreaMeta.put(
+              GUID.valueOf(entry.getKey()),
+              new ExposedAreaMetaData(ExposureMask.fromBytes(entry.getValue().toByteArray())));
+        }
+      } catch (IOException e) {
+        log.error("Unable to read exposed fog of war for zone {}", zone.id, e);
+        zone.exposedMask = new ExposureMask(dto.getExposureMaskResolution());
+      }
+    }
     zone.hasFog = dto.getHasFog();
     zone.fogPaint = DrawablePaint.fromDto(dto.getFogPaint());
     zone.topology = Mapper.map(dto.getTopology());
@@ -2333,6 +2675,19 @@ public static Zone fromDto(ZoneDto dto) {
   }
 
   public ZoneDto toDto() {
+    return toDtoWithoutTokens()
+        .toBuilder()
+        .addAllTokens(tokenMap.values().stream().map(t -> t.toDto()).collect(Collectors.toList()))
+        .build();
+  }
+
+  /**
+   * Returns the zone as a DTO that does not contain any of the tokens, this is used when the
+   * tokens are converted separately.
+   *
+   * @return the zone without its tokens.
+   */
+  public ZoneDto toDtoWithoutTokens() {
     var dto = ZoneDto.newBuilder();
     dto.setName(name);
     if (playerAlias != null) {
@@ -2357,16 +2712,24 @@ public ZoneDto toDto() {
                     .build()));
 
     dto.addAllLabels(labels.values().stream().map(l -> l.toDto()).collect(Collectors.toList()));
-    dto.addAllTokens(tokenMap.values().stream().map(t -> t.toDto()).collect(Collectors.toList()));
     exposedAreaMeta.forEach(
         (id, area) -> {
           if (id == null) {
             return;
           }
-          dto.putExposedAreaMeta(id.toString(), Mapper.map(area.getExposedAreaHistory()));
+          if (area.getExposureMask() != null) {
+            dto.putExposedAreaMetaMask(
+                id.toString(), ByteString.copyFrom(area.getExposureMask().toBytes()));
+          } else {
+            dto.putExposedAreaMeta(id.toString(), Mapper.map(area.getExposedAreaHistory()));
+          }
         });
     dto.setInitiative(initiativeList.toDto());
     dto.setExposedArea(Mapper.map(exposedArea));
+    if (exposedMask != null) {
+      dto.setExposureMaskResolution(exposedMask.getResolution());
+      dto.setExposedMask(ByteString.copyFrom(exposedMask.toBytes()));
+    }
     dto.setHasFog(hasFog);
     dto.setTopology(Mapper.map(topology));
     if (fogPaint == null) { // Account for old campaigns without fog paint
@@ -0,0 +1,55 @@
+/*
+ * This software Copyright by the RPTools.net development team, and
+ * licensed under the Affero GPL Version 3 or, at your option, any later
+ * version.
+ *
+ * MapTool Source Code is distributed in the hope that it will be
+ * useful, but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ *
+ * You should have received a copy of the GNU Affero General Public
+ * License * along with this source Code.  If not, please visit
+ * <http://www.gnu.org/licenses/> and specifically the Affero license
+ * text at <http://www.gnu.org/licenses/agpl.html>.
+ */
+package net.rptools.maptool.model.converters;
+
+import com.thoughtworks.xstream.converters.ConversionException;
+import com.thoughtworks.xstream.converters.Converter;
+import com.thoughtworks.xstream.converters.MarshallingContext;
+import com.thoughtworks.xstream.converters.UnmarshallingContext;
+import com.thoughtworks.xstream.io.HierarchicalStreamReader;
+import com.thoughtworks.xstream.io.HierarchicalStreamWriter;
+import java.io.IOException;
+import java.util.Base64;
+import net.rptools.maptool.model.ExposureMask;
+
+/**
+ * Converts {@link ExposureMask} to a compact representation, the base 64 encoding of {@link
+ * ExposureMask#toBytes()}, rather than writing out every tile field by field.
+ *
+ * <pre>{@code
+ * <exposureMask>AQAAAAoAAAAB...</exposureMask>
+ * }</pre>
+ */
+public class ExposureMaskConverter implements Converter {
+
+  @Override
+  public boolean canConvert(Class type) {
+    return ExposureMask.class.equals(type);
+  }
+
+  @Override
+  public void marshal(Object source, HierarchicalStreamWriter writer, MarshallingContext context) {
+    writer.setValue(Base64.getEncoder().encodeToString(((ExposureMask) source).toBytes()));
+  }
+
+  @Override
+  public Object unmarshal(HierarchicalStreamReader reader, UnmarshallingContext context) {
+    try {
+      return ExposureMask.fromBytes(Base64.getDecoder().decode(reader.getValue().trim()));
+    } catch (IOException | IllegalArgumentException e) {
+      throw new ConversionException("Invalid exposure mask", e);
+    }
+  }
+}
@@ -20,6 +20,7 @@
 import java.util.*;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 import net.rptools.lib.MD5Key;
 import net.rptools.maptool.model.Asset;
@@ -37,11 +38,10 @@ public class MemoryDataStore implements DataStore {
   private record PropertyTypeNamespace(String propertyType, String namespace) {}
 
   /** Class used to cache definitions. */
-  private final Map<String, Set<String>> propertyTypeNamespaceMap =
-      Collections.synchronizedMap(new HashMap<>());
+  private final Map<String, Set<String>> propertyTypeNamespaceMap = new ConcurrentHashMap<>();
 
   private final Map<PropertyTypeNamespace, Map<String, DataValue>> namespaceDataMap =
-      Collections.synchronizedMap(new HashMap<>());
+      new ConcurrentHashMap<>();
 
   /** Class for logging. */
   private static final Logger log = LogManager.getLogger(MemoryDataStore.class);
@@ -49,6 +49,23 @@ private record PropertyTypeNamespace(String propertyType, String namespace) {}
   /** Creates a new MemoryDataStore. */
   MemoryDataStore() {}
 
+  /**
+   * Runs an operation on the calling thread and returns its result as a completed future. The maps
+   * are all concurrent so there is no need to hand the operation off to another thread, and
+   * callers that wait on the result don't pay for a thread switch.
+   *
+   * @param operation the operation to run.
+   * @param <T> the type of the result.
+   * @return a future completed with the result, or completed exceptionally if the operation threw.
+   */
+  private static <T> CompletableFuture<T> complete(Supplier<T> operation) {
+    try {
+      return CompletableFuture.completedFuture(operation.get());
+    } catch (RuntimeException e) {
+      return CompletableFuture.failedFuture(e);
+    }
+  }
+
   /**
    * Returns if the namespace exists for the property type.
    *
@@ -70,7 +87,7 @@ public CompletableFuture<Set<String>> getPropertyTypes() {
   @Override
   public CompletableFuture<Set<String>> getPropertyNamespaces(String type) {
 
-    return CompletableFuture.supplyAsync(
+    return complete(
         () -> {
           var propertyTypeNamespace = propertyTypeNamespaceMap.get(type);
           if (propertyTypeNamespace != null) {
@@ -104,7 +121,7 @@ private DataValue getData(String type, String namespace, String name) {
   @Override
   public CompletableFuture<DataType> getPropertyDataType(
       String type, String namespace, String name) {
-    return CompletableFuture.supplyAsync(
+    return complete(
         () -> {
           var data = getData(type, namespace, name);
           return data == null ? DataType.UNDEFINED : data.getDataType();
@@ -114,7 +131,7 @@ public CompletableFuture<DataType> getPropertyDataType(
   @Override
   public CompletableFuture<Map<String, DataType>> getPropertyDataTypeMap(
       String type, String namespace) {
-    return CompletableFuture.supplyAsync(
+    return complete(
         () -> {
           var dataTypeMap = new HashMap<String, DataType>();
           var values = namespaceDataMap.get(new PropertyTypeNamespace(type, namespace));
@@ -130,7 +147,7 @@ public CompletableFuture<Map<String, DataType>> getPropertyDataTypeMap(
 
   @Override
   public CompletableFuture<Boolean> hasProperty(String type, String namespace, String name) {
-    return CompletableFuture.supplyAsync(
+    return complete(
         () -> {
           var def = getData(type, namespace, name);
           if (def != null) {
@@ -143,7 +160,7 @@ public CompletableFuture<Boolean> hasProperty(String type, String namespace, Str
 
   @Override
   public CompletableFuture<Boolean> isPropertyDefined(String type, String namespace, String name) {
-    return CompletableFuture.supplyAsync(
+    return complete(
         () -> {
           var data = getData(type, namespace, name);
           if (data != null) {
@@ -156,7 +173,7 @@ public CompletableFuture<Boolean> isPropertyDefined(String type, String namespac
 
   @Override
   public CompletableFuture<DataValue> getProperty(String type, String namespace, String name) {
-    return CompletableFuture.supplyAsync(
+    return complete(
         () -> {
           var prop = getData(type, namespace, name);
           return Objects.requireNonNullElseGet(prop, () -> DataValueFactory.undefined(name));
@@ -165,7 +182,7 @@ public CompletableFuture<DataValue> getProperty(String type, String namespace, S
 
   @Override
   public CompletableFuture<Set<DataValue>> getProperties(String type, String namespace) {
-    return CompletableFuture.supplyAsync(
+    return complete(
         () -> {
           var values = namespaceDataMap.get(new PropertyTypeNamespace(type, namespace));
           if (values != null) {
@@ -188,82 +205,72 @@ private DataValue setData(String type, String namespace, DataValue value) {
       throw InvalidDataOperation.createNamespaceDoesNotExist(namespace, type);
     }
 
-    DataValue setValue = value;
-    var existing = getData(type, namespace, value.getName());
-    // If no value exists we can put anything there, if a value exists we have to check type
-    // is
-    // correct
     var dataMap =
         namespaceDataMap.computeIfAbsent(
             new PropertyTypeNamespace(type, namespace), k -> new ConcurrentHashMap<>());
-    if (existing == null || existing.getDataType() == DataType.UNDEFINED) {
-      dataMap.put(value.getName(), value);
-    } else {
-      var newValue = DataType.convert(value, existing.getDataType());
-      dataMap.put(newValue.getName(), newValue);
-      setValue = newValue;
-    }
-
-    return setValue;
+    // If no value exists we can put anything there, if a value exists we have to check type
+    // is correct. This is done atomically so a concurrent set can't change the type in between.
+    return dataMap.compute(
+        value.getName(),
+        (name, existing) -> {
+          if (existing == null || existing.getDataType() == DataType.UNDEFINED) {
+            return value;
+          } else {
+            return DataType.convert(value, existing.getDataType());
+          }
+        });
   }
 
   @Override
   public CompletableFuture<DataValue> setProperty(String type, String namespace, DataValue value) {
-    return CompletableFuture.supplyAsync(() -> setData(type, namespace, value));
+    return complete(() -> setData(type, namespace, value));
   }
 
   @Override
   public CompletableFuture<DataValue> setLongProperty(
       String type, String namespace, String name, long value) {
-    return CompletableFuture.supplyAsync(
-        () -> setData(type, namespace, DataValueFactory.fromLong(name, value)));
+    return complete(() -> setData(type, namespace, DataValueFactory.fromLong(name, value)));
   }
 
   @Override
   public CompletableFuture<DataValue> setDoubleProperty(
       String type, String namespace, String name, double value) {
-    return CompletableFuture.supplyAsync(
-        () -> setData(type, namespace, DataValueFactory.fromDouble(name, value)));
+    return complete(() -> setData(type, namespace, DataValueFactory.fromDouble(name, value)));
   }
 
   @Override
   public CompletableFuture<DataValue> setStringProperty(
       String type, String namespace, String name, String value) {
-    return CompletableFuture.supplyAsync(
-        () -> setData(type, namespace, DataValueFactory.fromString(name, value)));
+    return complete(() -> setData(type, namespace, DataValueFactory.fromString(name, value)));
   }
 
   @Override
   public CompletableFuture<DataValue> setBooleanProperty(
       String type, String namespace, String name, boolean value) {
-    return CompletableFuture.supplyAsync(
-        () -> setData(type, namespace, DataValueFactory.fromBoolean(name, value)));
+    return complete(() -> setData(type, namespace, DataValueFactory.fromBoolean(name, value)));
   }
 
   @Override
   public CompletableFuture<DataValue> setJsonArrayProperty(
       String type, String namespace, String name, JsonArray value) {
-    return CompletableFuture.supplyAsync(
-        () -> setData(type, namespace, DataValueFactory.fromJsonArray(name, value)));
+    return complete(() -> setData(type, namespace, DataValueFactory.fromJsonArray(name, value)));
   }
 
   @Override
   public CompletableFuture<DataValue> setJsonObjectProperty(
       String type, String namespace, String name, JsonObject value) {
-    return CompletableFuture.supplyAsync(
-        () -> setData(type, namespace, DataValueFactory.fromJsonObject(name, value)));
+    return complete(() -> setData(type, namespace, DataValueFactory.fromJsonObject(name, value)));
   }
 
   @Override
   public CompletableFuture<DataValue> setAssetProperty(
       String type, String namespace, String name, Asset value) {
-    return CompletableFuture.supplyAsync(
-        () -> setData(type, namespace, DataValueFactory.fromAsset(name, value)));
+    return complete(() -> setData(type, namespace, DataValueFactory.fromAsset(name, value)));
   }
 
   @Override
   public CompletableFuture<Void> removeProperty(String type, String namespace, String name) {
-    return CompletableFuture.supplyAsync(
+    return complete(
         () -> {
           var key = new PropertyTypeNamespace(type, namespace);
           var dataMap = namespaceDataMap.get(key);
@@ -285,8 +292,7 @@ private void createDataNamespace(
       String propertyType, String namespace, Collection<DataValue> initialData) {
 
     Set<String> namespaces =
-        propertyTypeNamespaceMap.computeIfAbsent(
-            propertyType, k -> Collections.synchronizedSet(new HashSet<>()));
+        propertyTypeNamespaceMap.computeIfAbsent(propertyType, k -> ConcurrentHashMap.newKeySet());
 
     namespaces.add(namespace);
 
@@ -301,7 +307,7 @@ private void createDataNamespace(
 
   @Override
   public CompletableFuture<Void> createNamespace(String propertyType, String namespace) {
-    return CompletableFuture.supplyAsync(
+    return complete(
         () -> {
           createDataNamespace(propertyType, namespace, List.of());
           return null;
@@ -311,7 +317,7 @@ public CompletableFuture<Void> createNamespace(String propertyType, String names
   @Override
   public CompletableFuture<Void> createNamespaceWithInitialData(
       String propertyType, String namespace, Collection<DataValue> initialData) {
-    return CompletableFuture.supplyAsync(
+    return complete(
         () -> {
           createDataNamespace(propertyType, namespace, initialData);
           return null;
@@ -321,7 +327,7 @@ public CompletableFuture<Void> createNamespaceWithInitialData(
   @Override
   public CompletableFuture<Void> createNamespaceWithTypes(
       String propertyType, String namespace, Map<String, DataType> dataTypes) {
-    return CompletableFuture.supplyAsync(
+    return complete(
         () -> {
           createDataNamespace(
               propertyType,
@@ -335,7 +341,7 @@ public CompletableFuture<Void> createNamespaceWithTypes(
 
   @Override
   public CompletableFuture<GameDataDto> toDto(String type, String namespace) {
-    return CompletableFuture.supplyAsync(
+    return complete(
         () -> {
           var builder = GameDataDto.newBuilder();
           builder.setType(type);
@@ -350,7 +356,7 @@ public CompletableFuture<GameDataDto> toDto(String type, String namespace) {
 
   @Override
   public CompletableFuture<GameDataValueDto> toDto(DataValue data) {
-    return CompletableFuture.supplyAsync(() -> gameValueToDto(data));
+    return complete(() -> gameValueToDto(data));
   }
 
   /**
@@ -420,7 +426,7 @@ private GameDataValueDto gameValueToDto(DataValue data) {
 
   @Override
   public CompletableFuture<Set<MD5Key>> getAssets() {
-    return CompletableFuture.supplyAsync(
+    return complete(
         () ->
             namespaceDataMap.values().stream()
                 .flatMap(m -> m.values().stream())
@@ -437,7 +443,7 @@ public void clear() {
 
   @Override
   public CompletableFuture<Void> clearNamespace(String propertyType, String namespace) {
-    return CompletableFuture.supplyAsync(
+    return complete(
         () -> {
           namespaceDataMap.remove(new PropertyTypeNamespace(propertyType, namespace));
           return null;
@@ -159,6 +159,9 @@ private record MTScript(String path, boolean autoExecute, String description, MD
   /** The information about the add-on library. */
   private final LibraryInfo libraryInfo;
 
+  /** The archive that the content of the add-on library is read from. */
+  private final AddOnLibraryArchive archive;
+
   /**
    * Class used to represent Drop In Libraries.
    *
@@ -167,6 +170,7 @@ private record MTScript(String path, boolean autoExecute, String description, MD
    * @param eventsDto The MTScript Events Data Transfer Object.
    * @param slashCommandsDto The Slash Commands Data Transfer Object.
    * @param pathAssetMap mapping of paths in the library to {@link MD5Key}s and {@link Type}s.
+   * @param archive The archive that the content of the library is read from.
    */
   private AddOnLibrary(
       MD5Key libraryAssetKey,
@@ -175,7 +179,8 @@ private AddOnLibrary(
       AddOnLibraryEventsDto eventsDto,
       AddOnStatSheetsDto statSheetsDto,
       AddonSlashCommandsDto slashCommandsDto,
-      Map<String, Pair<MD5Key, Type>> pathAssetMap) {
+      Map<String, Pair<MD5Key, Type>> pathAssetMap,
+      AddOnLibraryArchive archive) {
     Objects.requireNonNull(dto, I18N.getText("library.error.invalidDefinition"));
     name = Objects.requireNonNull(dto.getName(), I18N.getText("library.error.emptyName"));
     version =
@@ -190,6 +195,7 @@ private AddOnLibrary(
     this.pathAssetMap = Map.copyOf(pathAssetMap);
     allowsUriAccess = dto.getAllowsUriAccess();
     assetKey = libraryAssetKey;
+    this.archive = archive;
 
     var urlsMap = new HashMap<String, Pair<MD5Key, Type>>();
     var mtsMap = new HashMap<String, MTScript>();
@@ -295,6 +301,7 @@ private AddOnLibrary(
    * @param eventsDto The Events Data Transfer Object.
    * @param slashCommandsDto The Slash Commands Data Transfer Object.
    * @param pathAssetMap mapping of paths in the library to {@link MD5Key}s and {@link Type}s.
+   * @param archive The archive that the content of the library is read from.
    * @return the new Add on library.
    */
   public static AddOnLibrary fromDto(
@@ -304,10 +311,18 @@ public static AddOnLibrary fromDto(
       AddOnLibraryEventsDto eventsDto,
       AddOnStatSheetsDto statSheetsDto,
       AddonSlashCommandsDto slashCommandsDto,
-      Map<String, Pair<MD5Key, Type>> pathAssetMap) {
+      Map<String, Pair<MD5Key, Type>> pathAssetMap,
+      AddOnLibraryArchive archive) {
 
     return new AddOnLibrary(
-        libraryAssetKey, dto, mtsDto, eventsDto, statSheetsDto, slashCommandsDto, pathAssetMap);
+        libraryAssetKey,
+        dto,
+        mtsDto,
+        eventsDto,
+        statSheetsDto,
+        slashCommandsDto,
+        pathAssetMap,
+        archive);
   }
 
   @Override
@@ -437,6 +452,7 @@ public void cleanup() {
     if (JSScriptEngine.hasAddOnContext(jsContextName)) {
       JSScriptEngine.removeAddOnContext(jsContextName);
     }
+    archive.close();
   }
 
   @Override
@@ -515,11 +531,19 @@ public CompletableFuture<InputStream> read(URL location) throws IOException {
       if (values == null) {
         throw new IOException("Invalid Location");
       }
-      return CompletableFuture.supplyAsync(
-          () -> {
-            Asset asset = AssetManager.getAsset(values.getValue0());
-            return new ByteArrayInputStream(asset.getData());
-          });
+      if (AssetManager.hasAssetInMemory(values.getValue0())) {
+        return CompletableFuture.supplyAsync(
+            () -> {
+              Asset asset = AssetManager.getAsset(values.getValue0());
+              return new ByteArrayInputStream(asset.getData());
+            });
+      }
+      // Stream the content straight from the archive rather than reading it all into memory.
+      String entry =
+          AddOnLibraryImporter.CONTENT_DIRECTORY
+              + URL_PUBLIC_DIR
+              + location.getPath().replaceFirst("^/", "");
+      return CompletableFuture.completedFuture(archive.openEntry(entry));
     } else {
       throw new LibraryNotValidException(
           Reason.MISSING_PERMISSIONS, I18N.getText("library.error.addOn.no.access", name));
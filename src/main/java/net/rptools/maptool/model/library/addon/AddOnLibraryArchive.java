@@ -0,0 +1,213 @@
+/*
+ * This software Copyright by the RPTools.net development team, and
+ * licensed under the Affero GPL Version 3 or, at your option, any later
+ * version.
+ *
+ * MapTool Source Code is distributed in the hope that it will be
+ * useful, but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ *
+ * You should have received a copy of the GNU Affero General Public
+ * License * along with this source Code.  If not, please visit
+ * <http://www.gnu.org/licenses/> and specifically the Affero license
+ * text at <http://www.gnu.org/licenses/agpl.html>.
+ */
+package net.rptools.maptool.model.library.addon;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import net.rptools.lib.MD5Key;
+import net.rptools.maptool.model.Asset;
+import net.rptools.maptool.model.Asset.Type;
+import net.rptools.maptool.model.AssetManager;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Read only view of the entries of an add-on library (.mtlib) file. Only the zip central directory
+ * is indexed when the archive is opened, the content of the entries is streamed from the file when
+ * it is requested rather than being held in memory.
+ *
+ * <p>This class is thread safe.
+ */
+public class AddOnLibraryArchive implements Closeable {
+
+  /** Logger instance for this class. */
+  private static final Logger log = LogManager.getLogger(AddOnLibraryArchive.class);
+
+  /** The file backing the archive. */
+  private final File file;
+
+  /** Should the backing file be deleted when the archive is closed. */
+  private final boolean deleteOnClose;
+
+  /** The zip file that is used to read entries. */
+  private final ZipFile zipFile;
+
+  /** The index of the entries in the zip central directory, keyed by name. */
+  private final Map<String, ZipEntry> entries;
+
+  /** The assets that have been registered with the {@link AssetManager} as deferred. */
+  private final Map<MD5Key, Callable<Asset>> deferredAssets = new ConcurrentHashMap<>();
+
+  /** Has the archive been closed. */
+  private volatile boolean closed = false;
+
+  /**
+   * Creates a new {@code AddOnLibraryArchive} and indexes the entries in the zip file.
+   *
+   * @param file the add-on library file.
+   * @param deleteOnClose if {@code true} the file will be deleted when the archive is closed.
+   * @throws IOException if an error occurs reading the zip central directory.
+   */
+  public AddOnLibraryArchive(File file, boolean deleteOnClose) throws IOException {
+    this.file = file;
+    this.deleteOnClose = deleteOnClose;
+    zipFile = new ZipFile(file);
+    var index = new LinkedHashMap<String, ZipEntry>();
+    zipFile.stream().filter(e -> !e.isDirectory()).forEach(e -> index.put(e.getName(), e));
+    entries = Collections.unmodifiableMap(index);
+  }
+
+  /**
+   * Returns the file backing this archive.
+   *
+   * @return the file backing this archive.
+   */
+  public File getFile() {
+    return file;
+  }
+
+  /**
+   * Returns the names of all the (non directory) entries in the archive.
+   *
+   * @return the names of all the entries in the archive.
+   */
+  public Set<String> getEntryNames() {
+    return entries.keySet();
+  }
+
+  /**
+   * Returns if the archive contains an entry with the specified name.
+   *
+   * @param name the name of the entry.
+   * @return {@code true} if the archive contains the entry.
+   */
+  public boolean hasEntry(String name) {
+    return entries.containsKey(name);
+  }
+
+  /**
+   * Returns the uncompressed size of the entry, or -1 if it is not known.
+   *
+   * @param name the name of the entry.
+   * @return the uncompressed size of the entry.
+   */
+  public long getSize(String name) {
+    var entry = entries.get(name);
+    return entry == null ? -1 : entry.getSize();
+  }
+
+  /**
+   * Opens a stream that reads the content of the entry directly from the archive. The caller is
+   * responsible for closing the stream.
+   *
+   * @param name the name of the entry.
+   * @return an {@link InputStream} for the content of the entry.
+   * @throws IOException if the entry does not exist or can not be read.
+   */
+  public InputStream openEntry(String name) throws IOException {
+    if (closed) {
+      throw new IOException("Add-on library archive is closed: " + file);
+    }
+    var entry = entries.get(name);
+    if (entry == null) {
+      throw new IOException("Invalid Location: " + name);
+    }
+    return new BufferedInputStream(zipFile.getInputStream(entry));
+  }
+
+  /**
+   * Reads the whole content of the entry.
+   *
+   * @param name the name of the entry.
+   * @return the content of the entry.
+   * @throws IOException if the entry does not exist or can not be read.
+   */
+  public byte[] readEntry(String name) throws IOException {
+    try (InputStream is = openEntry(name)) {
+      return is.readAllBytes();
+    }
+  }
+
+  /**
+   * Calculates the {@link MD5Key} of the content of the entry without reading the whole entry into
+   * memory.
+   *
+   * @param name the name of the entry.
+   * @return the {@link MD5Key} of the content of the entry.
+   * @throws IOException if the entry does not exist or can not be read.
+   */
+  public MD5Key calculateKey(String name) throws IOException {
+    try (InputStream is = openEntry(name)) {
+      return new MD5Key(is);
+    }
+  }
+
+  /**
+   * Creates an {@link Asset} from the content of the entry.
+   *
+   * @param name the name of the entry.
+   * @param assetName the name to give the {@link Asset}.
+   * @param type the type of the {@link Asset}.
+   * @return the new {@link Asset}.
+   * @throws IOException if the entry does not exist or can not be read.
+   */
+  public Asset createAsset(String name, String assetName, Type type) throws IOException {
+    return type.getFactory().apply(assetName, readEntry(name));
+  }
+
+  /**
+   * Registers the entry with the {@link AssetManager} as a deferred asset. The data for the asset
+   * is only read from the archive when the asset is first requested from the {@link AssetManager}.
+   *
+   * @param name the name of the entry.
+   * @param key the {@link MD5Key} of the content of the entry.
+   * @param assetName the name to give the {@link Asset}.
+   * @param type the type of the {@link Asset}.
+   */
+  public void deferAsset(String name, MD5Key key, String assetName, Type type) {
+    Callable<Asset> source = () -> createAsset(name, assetName, type);
+    deferredAssets.put(key, source);
+    AssetManager.putDeferredAsset(key, source);
+  }
+
+  @Override
+  public void close() {
+    if (closed) {
+      return;
+    }
+    closed = true;
+    deferredAssets.forEach(AssetManager::removeDeferredAsset);
+    deferredAssets.clear();
+    try {
+      zipFile.close();
+    } catch (IOException e) {
+      log.warn("Error closing add-on library archive {}", file, e);
+    }
+    if (deleteOnClose && !file.delete()) {
+      file.deleteOnExit();
+    }
+  }
+}
@@ -14,6 +14,7 @@
  */
 package net.rptools.maptool.model.library.addon;
 
+import com.google.protobuf.Message;
 import com.google.protobuf.util.JsonFormat;
 import java.io.File;
 import java.io.IOException;
@@ -21,6 +22,7 @@
 import java.io.InputStreamReader;
 import java.io.OutputStream;
 import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.zip.ZipEntry;
@@ -132,7 +134,7 @@ public AddOnLibrary importFromAsset(Asset asset) throws IOException {
       outputStream.write(asset.getData());
     }
 
-    return importFromFile(tempFile);
+    return importFromArchive(tempFile.getPath(), new AddOnLibraryArchive(tempFile, true));
   }
 
   /**
@@ -143,62 +145,76 @@ public AddOnLibrary importFromAsset(Asset asset) throws IOException {
    * @throws IOException if an error occurs while reading the asset.
    */
   public AddOnLibrary importFromFile(File file) throws IOException {
-    var diiBuilder = AddOnLibraryDto.newBuilder();
+    // The library content is read from the archive on demand, so work from a private copy so
+    // that the user is free to modify or remove the original file.
+    File tempFile = File.createTempFile("mtlib", "tmp");
+    tempFile.deleteOnExit();
+    Files.copy(file.toPath(), tempFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
 
-    try (var zip = new ZipFile(file)) {
-      ZipEntry entry = zip.getEntry(LIBRARY_INFO_FILE);
-      if (entry == null) {
-        throw new IOException(I18N.getText("library.error.addOn.noConfigFile", file.getPath()));
+    return importFromArchive(file.getPath(), new AddOnLibraryArchive(tempFile, true));
+  }
+
+  public AddOnLibrary importFromClassPath(String path) throws IOException {
+    // Copy the data to temporary file, its a bit hacky, but it works, and we can't create a
+    // ZipFile from anything but a file.
+    if (!path.startsWith("/")) {
+      path = "/" + path;
+    }
+
+    File tempFile = File.createTempFile("mtlib", "tmp");
+    tempFile.deleteOnExit();
+
+    try (var outputStream = Files.newOutputStream(tempFile.toPath())) {
+      try (var inputStream = AddOnLibraryImporter.class.getResourceAsStream(path)) {
+        inputStream.transferTo(outputStream);
+      }
+    }
+
+    return importFromArchive(path, new AddOnLibraryArchive(tempFile, true));
+  }
+
+  /**
+   * Imports the add-on library from the specified archive. Only the configuration files are read
+   * during the import, the content of the library is registered with the {@link AssetManager} as
+   * deferred assets that are read from the archive when they are first used. If the import fails
+   * the archive is closed.
+   *
+   * @param source the description of where the library came from, used in error messages.
+   * @param archive the archive containing the add-on library.
+   * @return the {@link AddOnLibrary} that was imported.
+   * @throws IOException if an error occurs while reading the archive.
+   */
+  private AddOnLibrary importFromArchive(String source, AddOnLibraryArchive archive)
+      throws IOException {
+    try {
+      if (!archive.hasEntry(LIBRARY_INFO_FILE)) {
+        throw new IOException(I18N.getText("library.error.addOn.noConfigFile", source));
       }
       var builder = AddOnLibraryDto.newBuilder();
-      JsonFormat.parser()
-          .ignoringUnknownFields()
-          .merge(new InputStreamReader(zip.getInputStream(entry)), builder);
+      mergeJson(archive, LIBRARY_INFO_FILE, builder);
 
       // MT MacroScript properties
-      var pathAssetMap = processAssets(builder.getNamespace(), zip);
+      var pathAssetMap = processAssets(builder.getNamespace(), archive);
       var mtsPropBuilder = MTScriptPropertiesDto.newBuilder();
-      ZipEntry mtsPropsZipEntry = zip.getEntry(MACROSCRIPT_PROPERTY_FILE);
-      if (mtsPropsZipEntry != null) {
-        JsonFormat.parser()
-            .ignoringUnknownFields()
-            .merge(new InputStreamReader(zip.getInputStream(mtsPropsZipEntry)), mtsPropBuilder);
-      }
+      mergeJson(archive, MACROSCRIPT_PROPERTY_FILE, mtsPropBuilder);
 
       // Event properties
       var eventPropBuilder = AddOnLibraryEventsDto.newBuilder();
-      ZipEntry eventsZipEntry = zip.getEntry(EVENT_PROPERTY_FILE);
-      if (eventsZipEntry != null) {
-        JsonFormat.parser()
-            .ignoringUnknownFields()
-            .merge(new InputStreamReader(zip.getInputStream(eventsZipEntry)), eventPropBuilder);
-      }
+      mergeJson(archive, EVENT_PROPERTY_FILE, eventPropBuilder);
 
       // Stat Sheets
       var statSheetsBuilder = AddOnStatSheetsDto.newBuilder();
-      ZipEntry statSheetEntry = zip.getEntry(STATS_SHEET_FILE);
-      if (statSheetEntry != null) {
-        JsonFormat.parser()
-            .ignoringUnknownFields()
-            .merge(new InputStreamReader(zip.getInputStream(statSheetEntry)), statSheetsBuilder);
-      }
+      mergeJson(archive, STATS_SHEET_FILE, statSheetsBuilder);
 
       // Slash commands
       var slashCommandsBuilder = AddonSlashCommandsDto.newBuilder();
-      ZipEntry slashCommandsEntry = zip.getEntry(SLASH_COMMAND_FILE);
-      if (slashCommandsEntry != null) {
-        JsonFormat.parser()
-            .ignoringUnknownFields()
-            .merge(
-                new InputStreamReader(zip.getInputStream(slashCommandsEntry)),
-                slashCommandsBuilder);
-      }
+      mergeJson(archive, SLASH_COMMAND_FILE, slashCommandsBuilder);
 
       // Copy Metadata
-      addMetaData(builder.getNamespace(), zip, pathAssetMap);
+      addMetaData(builder.getNamespace(), archive, pathAssetMap);
 
       var addOnLib = builder.build();
-      byte[] data = Files.readAllBytes(file.toPath());
+      byte[] data = Files.readAllBytes(archive.getFile().toPath());
       var asset = Type.MTLIB.getFactory().apply(addOnLib.getNamespace(), data);
       addAsset(asset);
 
@@ -209,84 +225,96 @@ public AddOnLibrary importFromFile(File file) throws IOException {
           eventPropBuilder.build(),
           statSheetsBuilder.build(),
           slashCommandsBuilder.build(),
-          pathAssetMap);
+          pathAssetMap,
+          archive);
+    } catch (IOException | RuntimeException e) {
+      archive.close();
+      throw e;
     }
   }
 
-  public AddOnLibrary importFromClassPath(String path) throws IOException {
-    // Copy the data to temporary file, its a bit hacky, but it works, and we can't create a
-    // ZipFile from anything but a file.
-    if (!path.startsWith("/")) {
-      path = "/" + path;
-    }
-
-    File tempFile = File.createTempFile("mtlib", "tmp");
-    tempFile.deleteOnExit();
-
-    try (var outputStream = Files.newOutputStream(tempFile.toPath())) {
-      try (var inputStream = AddOnLibraryImporter.class.getResourceAsStream(path)) {
-        inputStream.transferTo(outputStream);
+  /**
+   * Merges the JSON in the archive entry into the builder, if the entry does not exist the builder
+   * is left unchanged.
+   *
+   * @param archive the archive containing the add-on library.
+   * @param name the name of the entry.
+   * @param builder the builder to merge the JSON into.
+   * @throws IOException if an error occurs reading the entry.
+   */
+  private void mergeJson(AddOnLibraryArchive archive, String name, Message.Builder builder)
+      throws IOException {
+    if (archive.hasEntry(name)) {
+      try (var reader = new InputStreamReader(archive.openEntry(name))) {
+        JsonFormat.parser().ignoringUnknownFields().merge(reader, builder);
       }
     }
-
-    return importFromFile(tempFile);
   }
 
   /**
    * Adds the metadata from the root directory of the zip file to the metadata directory.
    *
    * @param namespace namespace of the add-on library.
-   * @param zip the zipfile containing the add-on library.
+   * @param archive the archive containing the add-on library.
    * @param pathAssetMap the map of asset paths and asset details.
    * @throws IOException
    */
   private void addMetaData(
-      String namespace, ZipFile zip, Map<String, Pair<MD5Key, Type>> pathAssetMap)
+      String namespace, AddOnLibraryArchive archive, Map<String, Pair<MD5Key, Type>> pathAssetMap)
       throws IOException {
-    var entries = zip.stream().filter(e -> !e.getName().contains("/")).toList();
+    var entries = archive.getEntryNames().stream().filter(e -> !e.contains("/")).toList();
     for (var entry : entries) {
-      String path = METADATA_DIR + entry.getName();
-      try (InputStream inputStream = zip.getInputStream(entry)) {
-        byte[] bytes = inputStream.readAllBytes();
-        MediaType mediaType = Asset.getMediaType(entry.getName(), bytes);
-        Asset asset =
-            Type.fromMediaType(mediaType).getFactory().apply(namespace + "/" + path, bytes);
-        addAsset(asset);
-        pathAssetMap.put(path, Pair.with(asset.getMD5Key(), asset.getType()));
-      }
+      String path = METADATA_DIR + entry;
+      pathAssetMap.put(path, addArchiveAsset(namespace + "/" + path, archive, entry));
     }
   }
 
   /**
-   * Reads the assets from the add-on library and adds them to the asset manager.
+   * Indexes the assets in the add-on library and registers them with the asset manager. The
+   * content of each asset is streamed to calculate its {@link MD5Key} and type, but is not kept in
+   * memory.
    *
    * @param namespace the namespace of the add-on library.
-   * @param zip the zipfile containing the add-on library.
+   * @param archive the archive containing the add-on library.
    * @return a map of asset paths and asset details.
    * @throws IOException if there is an error reading the assets from the add-on library.
    */
-  private Map<String, Pair<MD5Key, Type>> processAssets(String namespace, ZipFile zip)
-      throws IOException {
+  private Map<String, Pair<MD5Key, Type>> processAssets(
+      String namespace, AddOnLibraryArchive archive) throws IOException {
     var pathAssetMap = new HashMap<String, Pair<MD5Key, Type>>();
     var entries =
-        zip.stream()
-            .filter(e -> !e.isDirectory())
-            .filter(e -> e.getName().startsWith(CONTENT_DIRECTORY))
-            .toList();
+        archive.getEntryNames().stream().filter(e -> e.startsWith(CONTENT_DIRECTORY)).toList();
     for (var entry : entries) {
-      String path = entry.getName().substring(CONTENT_DIRECTORY.length());
-      try (InputStream inputStream = zip.getInputStream(entry)) {
-        byte[] bytes = inputStream.readAllBytes();
-        MediaType mediaType = Asset.getMediaType(entry.getName(), bytes);
-        Asset asset =
-            Type.fromMediaType(mediaType).getFactory().apply(namespace + "/" + path, bytes);
-        addAsset(asset);
-        pathAssetMap.put(path, Pair.with(asset.getMD5Key(), asset.getType()));
-      }
+      String path = entry.substring(CONTENT_DIRECTORY.length());
+      pathAssetMap.put(path, addArchiveAsset(namespace + "/" + path, archive, entry));
     }
     return pathAssetMap;
   }
 
+  /**
+   * Registers an entry in the archive as a deferred asset with the {@link AssetManager} if it is
+   * not already in memory.
+   *
+   * @param assetName the name of the asset.
+   * @param archive the archive containing the add-on library.
+   * @param entry the name of the entry in the archive.
+   * @return the {@link MD5Key} and {@link Type} of the asset.
+   * @throws IOException if there is an error reading the entry.
+   */
+  private Pair<MD5Key, Type> addArchiveAsset(
+      String assetName, AddOnLibraryArchive archive, String entry) throws IOException {
+    MD5Key key = archive.calculateKey(entry);
+    MediaType mediaType;
+    try (InputStream inputStream = archive.openEntry(entry)) {
+      mediaType = Asset.getMediaType(entry, inputStream);
+    }
+    Type type = Type.fromMediaType(mediaType);
+    if (!AssetManager.hasAssetInMemory(key)) {
+      archive.deferAsset(entry, key, assetName, type);
+    }
+    return Pair.with(key, type);
+  }
+
   /**
    * Adds the {@link Asset} to the {@link AssetManager} if it does not already exist.
    *
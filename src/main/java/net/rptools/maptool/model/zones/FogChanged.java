@@ -14,6 +14,7 @@
  */
 package net.rptools.maptool.model.zones;
 
+import net.rptools.maptool.events.CoalescableEvent;
 import net.rptools.maptool.model.Zone;
 
-public record FogChanged(Zone zone) {}
+public record FogChanged(Zone zone) implements CoalescableEvent {}
@@ -0,0 +1,42 @@
+/*
+ * This software Copyright by the RPTools.net development team, and
+ * licensed under the Affero GPL Version 3 or, at your option, any later
+ * version.
+ *
+ * MapTool Source Code is distributed in the hope that it will be
+ * useful, but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ *
+ * You should have received a copy of the GNU Affero General Public
+ * License * along with this source Code.  If not, please visit
+ * <http://www.gnu.org/licenses/> and specifically the Affero license
+ * text at <http://www.gnu.org/licenses/agpl.html>.
+ */
+package net.rptools.maptool.model.zones;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import net.rptools.maptool.model.GUID;
+import net.rptools.maptool.model.Token;
+
+/** Helpers for the token lists of the token events. */
+final class TokenLists {
+
+  private TokenLists() {}
+
+  /**
+   * Combines the tokens of two events. A token in both lists is kept once, in the position of the
+   * first list but using the instance of the second list as that is the most recent.
+   *
+   * @param first the tokens of the first event.
+   * @param second the tokens of the second event.
+   * @return the combined tokens.
+   */
+  static List<Token> merge(List<Token> first, List<Token> second) {
+    var tokens = new LinkedHashMap<GUID, Token>();
+    first.forEach(token -> tokens.put(token.getId(), token));
+    second.forEach(token -> tokens.put(token.getId(), token));
+    return new ArrayList<>(tokens.values());
+  }
+}
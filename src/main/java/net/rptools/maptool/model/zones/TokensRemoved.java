@@ -15,7 +15,18 @@
 package net.rptools.maptool.model.zones;
 
 import java.util.List;
+import javax.annotation.Nullable;
+import net.rptools.maptool.events.CoalescableEvent;
 import net.rptools.maptool.model.Token;
 import net.rptools.maptool.model.Zone;
 
-public record TokensRemoved(Zone zone, List<Token> tokens) {}
+public record TokensRemoved(Zone zone, List<Token> tokens) implements CoalescableEvent {
+
+  @Override
+  public @Nullable Object coalesce(Object next) {
+    if (next instanceof TokensRemoved other && other.zone == zone) {
+      return new TokensRemoved(zone, TokenLists.merge(tokens, other.tokens));
+    }
+    return null;
+  }
+}
@@ -0,0 +1,225 @@
+/*
+ * This software Copyright by the RPTools.net development team, and
+ * licensed under the Affero GPL Version 3 or, at your option, any later
+ * version.
+ *
+ * MapTool Source Code is distributed in the hope that it will be
+ * useful, but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ *
+ * You should have received a copy of the GNU Affero General Public
+ * License * along with this source Code.  If not, please visit
+ * <http://www.gnu.org/licenses/> and specifically the Affero license
+ * text at <http://www.gnu.org/licenses/agpl.html>.
+ */
+package net.rptools.maptool.server;
+
+import com.google.protobuf.ByteString;
+import com.google.protobuf.CodedOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+import net.rptools.maptool.model.GUID;
+import net.rptools.maptool.model.Token;
+import net.rptools.maptool.model.Zone;
+import net.rptools.maptool.server.proto.CampaignDto;
+import net.rptools.maptool.server.proto.Message;
+import net.rptools.maptool.server.proto.PutTokenMsg;
+import net.rptools.maptool.server.proto.PutZoneMsg;
+import net.rptools.maptool.server.proto.SetCampaignMsg;
+import net.rptools.maptool.server.proto.TokenDto;
+import net.rptools.maptool.server.proto.ZoneDto;
+
+/**
+ * Caches the encoded protobuf bytes of the zones and tokens sent to clients, so that a zone or
+ * token that is sent several times, e.g. when players join or switch maps, is only converted and
+ * encoded again if it has changed.
+ *
+ * <p>A cached encoding is out of date once the {@link Zone#getModificationCount()} or {@link
+ * Token#getModificationCount()} it was made at has changed. A zone is cached without its tokens,
+ * each token is cached separately and the encoded zone is spliced together from the cached parts,
+ * so a change to one token does not require the whole zone to be encoded again. This works because
+ * a protobuf message is encoded as the concatenation of its fields.
+ *
+ * <p>This class is thread safe.
+ */
+public class EncodedDtoCache {
+
+  /** The encoding of a token. */
+  private record TokenEntry(Token token, long modificationCount, ByteString bytes) {}
+
+  /** The encoding of a zone without its tokens and the encodings of its tokens. */
+  private static class ZoneEntry {
+    private long modificationCount;
+    private ByteString bytes;
+    private Map<GUID, TokenEntry> tokens = new HashMap<>();
+  }
+
+  /** The cached encodings of each zone, zones that are no longer used are dropped. */
+  private final Map<Zone, ZoneEntry> zones = new WeakHashMap<>();
+
+  /**
+   * Returns the encoded {@link ZoneDto} of a zone.
+   *
+   * @param zone the zone.
+   * @return the encoded zone.
+   */
+  public synchronized ByteString getZone(Zone zone) {
+    var entry = zoneEntry(zone);
+    long modificationCount = zone.getModificationCount();
+    if (entry.bytes == null || entry.modificationCount != modificationCount) {
+      entry.bytes = zone.toDtoWithoutTokens().toBuilder().clearInitiative().build().toByteString();
+      entry.modificationCount = modificationCount;
+    }
+
+    var tokens = new HashMap<GUID, TokenEntry>();
+    try {
+      var output = ByteString.newOutput(entry.bytes.size() * 2);
+      var out = CodedOutputStream.newInstance(output);
+      out.writeRawBytes(entry.bytes);
+      // The initiative list is not covered by the zone modification count, always encode it.
+      var initiative = zone.getInitiativeList().toDto().toByteString();
+      out.writeBytes(ZoneDto.INITIATIVE_FIELD_NUMBER, initiative);
+      for (Token token : zone.getAllTokens()) {
+        var tokenEntry = tokenEntry(entry, token);
+        tokens.put(token.getId(), tokenEntry);
+        out.writeBytes(ZoneDto.TOKENS_FIELD_NUMBER, tokenEntry.bytes());
+      }
+      out.flush();
+      entry.tokens = tokens;
+      return output.toByteString();
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  /**
+   * Returns the encoded {@link TokenDto} of a token.
+   *
+   * @param zone the zone the token is on.
+   * @param token the token.
+   * @return the encoded token.
+   */
+  public synchronized ByteString getToken(Zone zone, Token token) {
+    return tokenEntry(zoneEntry(zone), token).bytes();
+  }
+
+  /** Removes all cached encodings. */
+  public synchronized void clear() {
+    zones.clear();
+  }
+
+  /**
+   * Returns the entry for a zone.
+   *
+   * @param zone the zone.
+   * @return the entry for the zone.
+   */
+  private ZoneEntry zoneEntry(Zone zone) {
+    return zones.computeIfAbsent(zone, z -> new ZoneEntry());
+  }
+
+  /**
+   * Returns the entry for a token, encoding the token again if it has changed.
+   *
+   * @param zoneEntry the entry of the zone the token is on.
+   * @param token the token.
+   * @return the up to date entry for the token.
+   */
+  private TokenEntry tokenEntry(ZoneEntry zoneEntry, Token token) {
+    var entry = zoneEntry.tokens.get(token.getId());
+    long modificationCount = token.getModificationCount();
+    if (entry == null || entry.token() != token || entry.modificationCount() != modificationCount) {
+      entry = new TokenEntry(token, modificationCount, token.toDto().toByteString());
+      zoneEntry.tokens.put(token.getId(), entry);
+    }
+    return entry;
+  }
+
+  /**
+   * Creates an encoded {@link Message} containing a {@link PutZoneMsg}.
+   *
+   * @param zone the encoded zone.
+   * @param serverVersion the version of the campaign the zone was encoded at.
+   * @return the encoded message.
+   */
+  public static byte[] putZoneMessage(ByteString zone, long serverVersion) {
+    var putZoneMsg = field(PutZoneMsg.ZONE_FIELD_NUMBER, zone);
+    try {
+      var output = ByteString.newOutput(putZoneMsg.size() + 20);
+      var out = CodedOutputStream.newInstance(output);
+      out.writeBytes(Message.PUT_ZONE_MSG_FIELD_NUMBER, putZoneMsg);
+      out.writeInt64(Message.SERVER_VERSION_FIELD_NUMBER, serverVersion);
+      out.flush();
+      return output.toByteString().toByteArray();
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  /**
+   * Creates an encoded {@link Message} containing a {@link SetCampaignMsg}.
+   *
+   * @param campaign the campaign without its zones.
+   * @param zones the encoded zones of the campaign.
+   * @param pendingZoneIds the ids of the zones that are sent later.
+   * @return the encoded message.
+   */
+  public static byte[] setCampaignMessage(
+      CampaignDto campaign, List<ByteString> zones, List<GUID> pendingZoneIds) {
+    var campaignBytes = campaign.toByteString();
+    for (var zone : zones) {
+      campaignBytes = campaignBytes.concat(field(CampaignDto.ZONES_FIELD_NUMBER, zone));
+    }
+    var msg = SetCampaignMsg.newBuilder();
+    pendingZoneIds.forEach(id -> msg.addPendingZoneGuids(id.toString()));
+    var msgBytes = msg.build().toByteString();
+    msgBytes = msgBytes.concat(field(SetCampaignMsg.CAMPAIGN_FIELD_NUMBER, campaignBytes));
+    return field(Message.SET_CAMPAIGN_MSG_FIELD_NUMBER, msgBytes).toByteArray();
+  }
+
+  /**
+   * Creates an encoded {@link Message} containing a {@link PutTokenMsg}.
+   *
+   * @param putTokenMsg the message without its token.
+   * @param token the encoded token.
+   * @param serverVersion the version of the campaign that includes the token.
+   * @return the encoded message.
+   */
+  public static byte[] putTokenMessage(
+      PutTokenMsg putTokenMsg, ByteString token, long serverVersion) {
+    var msg = putTokenMsg.toByteString().concat(field(PutTokenMsg.TOKEN_FIELD_NUMBER, token));
+    try {
+      var output = ByteString.newOutput(msg.size() + 20);
+      var out = CodedOutputStream.newInstance(output);
+      out.writeBytes(Message.PUT_TOKEN_MSG_FIELD_NUMBER, msg);
+      out.writeInt64(Message.SERVER_VERSION_FIELD_NUMBER, serverVersion);
+      out.flush();
+      return output.toByteString().toByteArray();
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  /**
+   * Encodes a length delimited field, i.e. an embedded message.
+   *
+   * @param fieldNumber the number of the field.
+   * @param value the encoded value of the field.
+   * @return the encoded field.
+   */
+  public static ByteString field(int fieldNumber, ByteString value) {
+    try {
+      var output = ByteString.newOutput(value.size() + 10);
+      var out = CodedOutputStream.newInstance(output);
+      out.writeBytes(fieldNumber, value);
+      out.flush();
+      return output.toByteString();
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+}
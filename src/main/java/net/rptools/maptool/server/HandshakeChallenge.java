@@ -97,7 +97,11 @@ private static HandshakeChallenge createChallenge(
     }
   }
 
-  static HandshakeChallenge fromSymmetricChallengeBytes(
+  /**
+   * Reads a challenge encrypted with a shared password. Public so that scripted clients, such as
+   * the load test, can answer the challenge the way {@link ClientHandshake} does.
+   */
+  public static HandshakeChallenge fromSymmetricChallengeBytes(
       String username, byte[] challenge, CipherUtil.Key key, byte[] iv)
       throws NoSuchPaddingException,
           NoSuchAlgorithmException,
@@ -14,14 +14,18 @@
  */
 package net.rptools.maptool.server;
 
+import com.google.protobuf.ByteString;
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Random;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.LongConsumer;
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 import javax.swing.SwingUtilities;
@@ -41,12 +45,13 @@
 import net.rptools.maptool.model.Campaign;
 import net.rptools.maptool.model.GUID;
 import net.rptools.maptool.model.TextMessage;
+import net.rptools.maptool.model.Zone;
 import net.rptools.maptool.model.player.Player;
 import net.rptools.maptool.model.player.ServerSidePlayerDatabase;
 import net.rptools.maptool.server.proto.Message;
+import net.rptools.maptool.server.proto.Message.MessageTypeCase;
 import net.rptools.maptool.server.proto.PlayerConnectedMsg;
 import net.rptools.maptool.server.proto.PlayerDisconnectedMsg;
-import net.rptools.maptool.server.proto.SetCampaignMsg;
 import net.rptools.maptool.server.proto.UpdateAssetTransferMsg;
 import net.rptools.maptool.transfer.AssetProducer;
 import net.rptools.maptool.transfer.AssetTransferManager;
@@ -91,6 +96,18 @@ public enum State {
   private final DisconnectHandler onConnectionDisconnected;
   private final ServerObserver serverObserver;
 
+  /** The encoded zones and tokens sent to clients. */
+  private final EncodedDtoCache encodedDtoCache = new EncodedDtoCache();
+
+  /** Sends the zones to clients that joined after the campaign skeleton. */
+  private final ZoneStreamer zoneStreamer = new ZoneStreamer(this, encodedDtoCache);
+
+  /** Held while a message from a client is handled, see {@link #handleInOrder(LongConsumer)}. */
+  private final Object changeLock = new Object();
+
+  /** The version of the campaign, the number of messages from clients handled so far. */
+  private long changeVersion;
+
   private State currentState;
 
   public MapToolServer(
@@ -275,12 +292,43 @@ public void addLocalConnection(Connection conn, Player localPlayer) {
   private void addRemoteConnection(Connection conn, Player connPlayer) {
     installConnection(conn, connPlayer);
 
-    var msg2 = SetCampaignMsg.newBuilder().setCampaign(campaign.toDto());
-    sendMessage(conn.getId(), Message.newBuilder().setSetCampaignMsg(msg2).build());
+    // Send the campaign with only the zone the player starts on, the other zones follow in the
+    // background.
+    var campaign = this.campaign;
+    var zones = new ArrayList<>(campaign.getZones());
+    zones.sort(Comparator.comparing(zone -> !zone.isVisible()));
+    Zone landingZone =
+        campaign.getLandingMapId() != null ? campaign.getZone(campaign.getLandingMapId()) : null;
+    if (landingZone == null || !landingZone.isVisible()) {
+      landingZone = zones.stream().filter(Zone::isVisible).findFirst().orElse(null);
+    }
+
+    var startZones = new ArrayList<ByteString>();
+    var pending = new ArrayList<GUID>();
+    for (Zone zone : zones) {
+      if (zone == landingZone) {
+        startZones.add(encodedDtoCache.getZone(zone));
+      } else {
+        pending.add(zone.getId());
+      }
+    }
+    sendEncodedMessage(
+        conn.getId(),
+        MessageTypeCase.SET_CAMPAIGN_MSG,
+        EncodedDtoCache.setCampaignMessage(campaign.toDtoWithoutZones(), startZones, pending));
+    zoneStreamer.stream(conn.getId(), campaign, pending);
   }
 
   public void bootPlayer(String playerId) {
-    var connectionId = getConnectionId(playerId);
+    disconnect(getConnectionId(playerId));
+  }
+
+  /**
+   * Disconnects a client.
+   *
+   * @param connectionId the id of the connection of the client.
+   */
+  public void disconnect(String connectionId) {
     var connection = router.getConnection(connectionId);
     if (connection == null) {
       return;
@@ -300,6 +348,7 @@ private void releaseClientConnection(Connection connection) {
     connection.close();
     router.removeConnection(connection);
     assetManagerMap.remove(connection.getId());
+    zoneStreamer.cancel(connection.getId());
 
     // Notify everyone else about the disconnection.
     var player = playerMap.remove(connection.getId().toUpperCase());
@@ -335,12 +384,22 @@ public void setCampaign(Campaign campaign) {
       campaign = new Campaign();
     }
     this.campaign = campaign;
+    zoneStreamer.cancelAll();
+    encodedDtoCache.clear();
   }
 
   public Campaign getCampaign() {
     return campaign;
   }
 
+  public EncodedDtoCache getEncodedDtoCache() {
+    return encodedDtoCache;
+  }
+
+  public ZoneStreamer getZoneStreamer() {
+    return zoneStreamer;
+  }
+
   public ServerPolicy getPolicy() {
     return new ServerPolicy(policy);
   }
@@ -361,6 +420,8 @@ public void stop() {
     }
 
     assetManagerMap.clear();
+    zoneStreamer.cancelAll();
+    encodedDtoCache.clear();
 
     if (heartbeatThread != null) {
       heartbeatThread.shutdown();
@@ -442,6 +503,33 @@ public void start() throws IOException {
     assetProducerThread.start();
   }
 
+  /**
+   * Handles a message from a client. The messages are handled one at a time and each is given the
+   * next version of the campaign, so the changes they queue on the event dispatch thread are
+   * applied in the order of their versions.
+   *
+   * @param handler the handler of the message, given the version of the message.
+   */
+  public void handleInOrder(LongConsumer handler) {
+    synchronized (changeLock) {
+      handler.accept(++changeVersion);
+    }
+  }
+
+  /**
+   * Queues a task on the event dispatch thread behind the changes of all the messages handled so
+   * far, see {@link #handleInOrder(LongConsumer)}. The campaign the task sees includes the changes
+   * of all messages up to the version it is given, and none of the later ones.
+   *
+   * @param task the task, given the version of the campaign it sees.
+   */
+  public void invokeAtCurrentVersion(LongConsumer task) {
+    synchronized (changeLock) {
+      long version = changeVersion;
+      SwingUtilities.invokeLater(() -> task.accept(version));
+    }
+  }
+
   public void sendMessage(String id, Message message) {
     log.debug("{} sent to {}: {}", getName(), id, message.getMessageTypeCase());
     router.sendMessage(id, message.toByteArray());
@@ -453,6 +541,29 @@ public void sendMessage(String id, Object channel, Message message) {
     router.sendMessage(id, channel, message.toByteArray());
   }
 
+  /**
+   * Sends a message that has already been encoded, e.g. from cached parts.
+   *
+   * @param id the id of the connection to send the message to.
+   * @param type the type of the message, for logging.
+   * @param message the encoded {@link Message}.
+   */
+  public void sendEncodedMessage(String id, MessageTypeCase type, byte[] message) {
+    log.debug("{} sent to {}: {}", getName(), id, type);
+    router.sendMessage(id, message);
+  }
+
+  /**
+   * Sends a message that has already been encoded to all clients.
+   *
+   * @param type the type of the message, for logging.
+   * @param message the encoded {@link Message}.
+   */
+  public void broadcastEncodedMessage(MessageTypeCase type, byte[] message) {
+    log.debug("{} broadcast: {}", getName(), type);
+    router.broadcastMessage(message);
+  }
+
   public void broadcastMessage(Message message) {
     log.debug("{} broadcast: {}", getName(), message.getMessageTypeCase());
     router.broadcastMessage(message.toByteArray());
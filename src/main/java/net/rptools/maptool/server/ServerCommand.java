@@ -85,6 +85,15 @@ default void updateMaskTopology(
 
   void putToken(GUID zoneGUID, Token token);
 
+  /**
+   * Asks the server to send the whole token, used when a change to the token can not be applied
+   * because the local copy is not at the version the change is based on.
+   *
+   * @param zoneGUID the ID of the zone
+   * @param tokenGUID the ID of the token
+   */
+  void getToken(GUID zoneGUID, GUID tokenGUID);
+
   /**
    * Removes a token from a zone.
    *
@@ -14,6 +14,7 @@
  */
 package net.rptools.maptool.server;
 
+import static net.rptools.maptool.server.proto.Message.MessageTypeCase.GET_ASSET_MSG;
 import static net.rptools.maptool.server.proto.Message.MessageTypeCase.HEARTBEAT_MSG;
 
 import java.awt.EventQueue;
@@ -59,6 +60,7 @@
  */
 public class ServerMessageHandler implements MessageHandler {
   private final MapToolServer server;
+  private final TokenDeltaTracker tokenDeltaTracker = new TokenDeltaTracker();
   private static final Logger log = LogManager.getLogger(ServerMessageHandler.class);
 
   public ServerMessageHandler(MapToolServer server) {
@@ -78,204 +80,224 @@ public void handleMessage(String id, byte[] message) {
       if (msgType == HEARTBEAT_MSG) {
         return;
       }
-
-      switch (msgType) {
-        case UPDATE_MASK_TOPOLOGY_MSG -> {
-          handle(msg.getUpdateMaskTopologyMsg());
-          sendToClients(id, msg);
-        }
-        case BRING_TOKENS_TO_FRONT_MSG -> handle(msg.getBringTokensToFrontMsg());
-        case BOOT_PLAYER_MSG -> {
-          handle(msg.getBootPlayerMsg());
-          sendToClients(id, msg);
-        }
-        case CHANGE_ZONE_DISPLAY_NAME_MSG -> handle(msg.getChangeZoneDisplayNameMsg(), msg);
-        case CLEAR_ALL_DRAWINGS_MSG -> {
-          handle(msg.getClearAllDrawingsMsg());
-          sendToAllClients(msg);
-        }
-        case CLEAR_EXPOSED_AREA_MSG -> {
-          handle(msg.getClearExposedAreaMsg());
-          sendToClients(id, msg);
-        }
-        case DRAW_MSG -> {
-          sendToAllClients(msg);
-          handle(msg.getDrawMsg());
-        }
-        case EDIT_TOKEN_MSG -> {
-          handle(id, msg.getEditTokenMsg());
-          sendToClients(id, msg);
-        }
-        case ENFORCE_NOTIFICATION_MSG,
-                ENFORCE_ZONE_MSG,
-                ENFORCE_ZONE_VIEW_MSG,
-                EXEC_LINK_MSG,
-                EXEC_FUNCTION_MSG,
-                MESSAGE_MSG,
-                SET_BOARD_MSG,
-                RESTORE_ZONE_VIEW_MSG,
-                SET_LIVE_TYPING_LABEL_MSG,
-                SET_TOKEN_LOCATION_MSG,
-                START_TOKEN_MOVE_MSG,
-                STOP_TOKEN_MOVE_MSG,
-                TOGGLE_TOKEN_MOVE_WAYPOINT_MSG,
-                UPDATE_TOKEN_MOVE_MSG,
-                ADD_ADD_ON_LIBRARY_MSG,
-                REMOVE_ADD_ON_LIBRARY_MSG,
-                REMOVE_ALL_ADD_ON_LIBRARIES_MSG,
-                UPDATE_DATA_STORE_MSG,
-                UPDATE_DATA_NAMESPACE_MSG,
-                UPDATE_DATA_MSG,
-                REMOVE_DATA_MSG,
-                REMOVE_DATA_NAMESPACE_MSG,
-                REMOVE_DATA_STORE_MSG ->
-            sendToClients(id, msg);
-        case EXPOSE_FOW_MSG -> {
-          handle(msg.getExposeFowMsg());
-          sendToClients(id, msg);
-        }
-        case EXPOSE_PC_AREA_MSG -> {
-          handle(msg.getExposePcAreaMsg());
-          sendToAllClients(msg);
-        }
-        case GET_ASSET_MSG -> handle(id, msg.getGetAssetMsg());
-        case GET_ZONE_MSG -> handle(id, msg.getGetZoneMsg());
-        case HEARTBEAT_MSG -> {
-          /* nothing yet */
-        }
-        case HIDE_FOW_MSG -> {
-          handle(msg.getHideFowMsg());
-          sendToAllClients(msg);
-        }
-        case HIDE_POINTER_MSG, MOVE_POINTER_MSG, SHOW_POINTER_MSG -> sendToAllClients(msg);
-        case PUT_ASSET_MSG -> handle(msg.getPutAssetMsg());
-        case PUT_LABEL_MSG -> {
-          handle(msg.getPutLabelMsg());
-          sendToClients(id, msg);
-        }
-        case PUT_TOKEN_MSG -> {
-          handle(id, msg.getPutTokenMsg());
-          sendToClients(id, msg);
-        }
-        case PUT_ZONE_MSG -> {
-          handle(msg.getPutZoneMsg());
-          sendToClients(id, msg);
-        }
-        case REMOVE_ASSET_MSG -> handle(msg.getRemoveAssetMsg());
-        case REMOVE_LABEL_MSG -> {
-          handle(msg.getRemoveLabelMsg());
-          sendToAllClients(msg);
-        }
-        case REMOVE_TOKEN_MSG -> {
-          handle(msg.getRemoveTokenMsg());
-          sendToClients(id, msg);
-        }
-        case REMOVE_TOKENS_MSG -> {
-          handle(msg.getRemoveTokensMsg());
-          sendToClients(id, msg);
-        }
-        case REMOVE_ZONE_MSG -> {
-          handle(msg.getRemoveZoneMsg());
-          sendToClients(id, msg);
-        }
-        case RENAME_ZONE_MSG -> {
-          handle(msg.getRenameZoneMsg());
-          sendToAllClients(msg);
-        }
-        case SEND_TOKENS_TO_BACK_MSG -> handle(msg.getSendTokensToBackMsg());
-        case SET_CAMPAIGN_MSG -> {
-          handle(msg.getSetCampaignMsg());
-          sendToClients(id, msg);
-        }
-        case SET_CAMPAIGN_NAME_MSG -> {
-          handle(msg.getSetCampaignNameMsg());
-          sendToClients(id, msg);
-        }
-        case SET_CAMPAIGN_LANDING_MAP_MSG -> {
-          handle(msg.getSetCampaignLandingMapMsg());
-          sendToClients(id, msg);
-        }
-        case SET_FOW_MSG -> {
-          handle(msg.getSetFowMsg());
-          sendToAllClients(msg);
-        }
-        case SET_VISION_TYPE_MSG -> {
-          handle(msg.getSetVisionTypeMsg());
-          sendToAllClients(msg);
-        }
-        case SET_ZONE_GRID_SIZE_MSG -> {
-          handle(msg.getSetZoneGridSizeMsg());
-          sendToAllClients(msg);
-        }
-        case SET_ZONE_HAS_FOW_MSG -> {
-          handle(msg.getSetZoneHasFowMsg());
-          sendToAllClients(msg);
-        }
-        case UPDATE_DRAWING_MSG -> {
-          handle(msg.getUpdateDrawingMsg());
-          sendToAllClients(msg);
-        }
-        case UPDATE_TOKEN_PROPERTY_MSG -> {
-          handle(msg.getUpdateTokenPropertyMsg());
-          sendToClients(id, msg);
-        }
-        case SET_ZONE_VISIBILITY_MSG -> {
-          handle(msg.getSetZoneVisibilityMsg());
-          sendToAllClients(msg);
-        }
-        case UNDO_DRAW_MSG -> {
-          sendToAllClients(msg);
-          handle(msg.getUndoDrawMsg());
-        }
-        case SET_SERVER_POLICY_MSG -> {
-          handle(msg.getSetServerPolicyMsg());
-          sendToClients(id, msg);
-        }
-        case UPDATE_CAMPAIGN_MSG -> {
-          handle(msg.getUpdateCampaignMsg());
-          sendToClients(id, msg);
-        }
-        case UPDATE_INITIATIVE_MSG -> {
-          handle(msg.getUpdateInitiativeMsg());
-          sendToAllClients(msg);
-        }
-        case UPDATE_TOKEN_INITIATIVE_MSG -> {
-          handle(msg.getUpdateTokenInitiativeMsg());
-          sendToAllClients(msg);
-        }
-        case UPDATE_CAMPAIGN_MACROS_MSG -> {
-          handle(msg.getUpdateCampaignMacrosMsg());
-          sendToClients(id, msg);
-        }
-        case UPDATE_GM_MACROS_MSG -> {
-          handle(msg.getUpdateGmMacrosMsg());
-          sendToClients(id, msg);
-        }
-        case UPDATE_EXPOSED_AREA_META_MSG -> {
-          handle(msg.getUpdateExposedAreaMetaMsg());
-          sendToClients(id, msg);
-        }
-        case UPDATE_PLAYER_STATUS_MSG -> {
-          handle(id, msg.getUpdatePlayerStatusMsg());
-          sendToClients(id, msg);
-        }
-        case SET_WALL_TOPOLOGY_MSG -> {
-          handle(msg.getSetWallTopologyMsg());
-          sendToClients(id, msg);
-        }
-        case UPDATE_WALL_DATA_MSG -> {
-          handle(msg.getUpdateWallDataMsg());
-          sendToClients(id, msg);
-        }
-
-        default -> log.warn(msgType + " not handled.");
+      // Assets are not part of the campaign, don't hold up the other messages while reading them.
+      if (msgType == GET_ASSET_MSG) {
+        handle(id, msg.getGetAssetMsg());
+        return;
       }
+
+      server.handleInOrder(
+          version -> dispatchMessage(id, msg.toBuilder().setServerVersion(version).build()));
       log.debug("from " + id + " handled: " + msgType);
     } catch (Exception e) {
       MapTool.showError("Unexpected error during message handling", e);
     }
   }
 
+  /**
+   * Handles a message from a client, relaying it to the other clients with its version.
+   *
+   * @param id the id of the connection of the client.
+   * @param msg the message, with the version the server has given it.
+   */
+  private void dispatchMessage(String id, Message msg) {
+    var msgType = msg.getMessageTypeCase();
+    switch (msgType) {
+      case UPDATE_MASK_TOPOLOGY_MSG -> {
+        handle(msg.getUpdateMaskTopologyMsg());
+        sendToClients(id, msg);
+      }
+      case BRING_TOKENS_TO_FRONT_MSG ->
+          handle(msg.getBringTokensToFrontMsg(), msg.getServerVersion());
+      case BOOT_PLAYER_MSG -> {
+        handle(msg.getBootPlayerMsg());
+        sendToClients(id, msg);
+      }
+      case CHANGE_ZONE_DISPLAY_NAME_MSG -> handle(msg.getChangeZoneDisplayNameMsg(), msg);
+      case CLEAR_ALL_DRAWINGS_MSG -> {
+        handle(msg.getClearAllDrawingsMsg());
+        sendToAllClients(msg);
+      }
+      case CLEAR_EXPOSED_AREA_MSG -> {
+        handle(msg.getClearExposedAreaMsg());
+        sendToClients(id, msg);
+      }
+      case DRAW_MSG -> {
+        sendToAllClients(msg);
+        handle(msg.getDrawMsg());
+      }
+      case EDIT_TOKEN_MSG -> {
+        handle(id, msg.getEditTokenMsg());
+        sendToClients(id, msg);
+      }
+      case ENFORCE_NOTIFICATION_MSG,
+              ENFORCE_ZONE_MSG,
+              ENFORCE_ZONE_VIEW_MSG,
+              EXEC_LINK_MSG,
+              EXEC_FUNCTION_MSG,
+              MESSAGE_MSG,
+              SET_BOARD_MSG,
+              RESTORE_ZONE_VIEW_MSG,
+              SET_LIVE_TYPING_LABEL_MSG,
+              SET_TOKEN_LOCATION_MSG,
+              START_TOKEN_MOVE_MSG,
+              STOP_TOKEN_MOVE_MSG,
+              TOGGLE_TOKEN_MOVE_WAYPOINT_MSG,
+              UPDATE_TOKEN_MOVE_MSG,
+              ADD_ADD_ON_LIBRARY_MSG,
+              REMOVE_ADD_ON_LIBRARY_MSG,
+              REMOVE_ALL_ADD_ON_LIBRARIES_MSG,
+              UPDATE_DATA_STORE_MSG,
+              UPDATE_DATA_NAMESPACE_MSG,
+              UPDATE_DATA_MSG,
+              REMOVE_DATA_MSG,
+              REMOVE_DATA_NAMESPACE_MSG,
+              REMOVE_DATA_STORE_MSG ->
+          sendToClients(id, msg);
+      case EXPOSE_FOW_MSG -> {
+        handle(msg.getExposeFowMsg());
+        sendToClients(id, msg);
+      }
+      case EXPOSE_PC_AREA_MSG -> {
+        handle(msg.getExposePcAreaMsg());
+        sendToAllClients(msg);
+      }
+      case GET_ZONE_MSG -> handle(id, msg.getGetZoneMsg());
+      case GET_TOKEN_MSG -> handle(id, msg, msg.getGetTokenMsg());
+      case HEARTBEAT_MSG -> {
+        /* nothing yet */
+      }
+      case HIDE_FOW_MSG -> {
+        handle(msg.getHideFowMsg());
+        sendToAllClients(msg);
+      }
+      case HIDE_POINTER_MSG, MOVE_POINTER_MSG, SHOW_POINTER_MSG -> sendToAllClients(msg);
+      case PUT_ASSET_MSG -> handle(msg.getPutAssetMsg());
+      case PUT_LABEL_MSG -> {
+        handle(msg.getPutLabelMsg());
+        sendToClients(id, msg);
+      }
+      case PUT_TOKEN_MSG -> {
+        var putTokenMsg = withNextVersion(msg.getPutTokenMsg());
+        handle(id, putTokenMsg);
+        sendToClients(id, msg.toBuilder().setPutTokenMsg(putTokenMsg).build());
+      }
+      case PATCH_TOKEN_MSG -> handle(id, msg, msg.getPatchTokenMsg());
+      case PUT_ZONE_MSG -> {
+        handle(msg.getPutZoneMsg());
+        sendToClients(id, msg);
+      }
+      case REMOVE_ASSET_MSG -> handle(msg.getRemoveAssetMsg());
+      case REMOVE_LABEL_MSG -> {
+        handle(msg.getRemoveLabelMsg());
+        sendToAllClients(msg);
+      }
+      case REMOVE_TOKEN_MSG -> {
+        handle(msg.getRemoveTokenMsg());
+        sendToClients(id, msg);
+      }
+      case REMOVE_TOKENS_MSG -> {
+        handle(msg.getRemoveTokensMsg());
+        sendToClients(id, msg);
+      }
+      case REMOVE_ZONE_MSG -> {
+        handle(msg.getRemoveZoneMsg());
+        sendToClients(id, msg);
+      }
+      case RENAME_ZONE_MSG -> {
+        handle(msg.getRenameZoneMsg());
+        sendToAllClients(msg);
+      }
+      case SEND_TOKENS_TO_BACK_MSG -> handle(msg.getSendTokensToBackMsg(), msg.getServerVersion());
+      case SET_CAMPAIGN_MSG -> {
+        handle(msg.getSetCampaignMsg());
+        sendToClients(id, msg);
+      }
+      case SET_CAMPAIGN_NAME_MSG -> {
+        handle(msg.getSetCampaignNameMsg());
+        sendToClients(id, msg);
+      }
+      case SET_CAMPAIGN_LANDING_MAP_MSG -> {
+        handle(msg.getSetCampaignLandingMapMsg());
+        sendToClients(id, msg);
+      }
+      case SET_FOW_MSG -> {
+        handle(msg.getSetFowMsg());
+        sendToAllClients(msg);
+      }
+      case SET_VISION_TYPE_MSG -> {
+        handle(msg.getSetVisionTypeMsg());
+        sendToAllClients(msg);
+      }
+      case SET_ZONE_GRID_SIZE_MSG -> {
+        handle(msg.getSetZoneGridSizeMsg());
+        sendToAllClients(msg);
+      }
+      case SET_ZONE_HAS_FOW_MSG -> {
+        handle(msg.getSetZoneHasFowMsg());
+        sendToAllClients(msg);
+      }
+      case UPDATE_DRAWING_MSG -> {
+        handle(msg.getUpdateDrawingMsg());
+        sendToAllClients(msg);
+      }
+      case UPDATE_TOKEN_PROPERTY_MSG -> {
+        handle(msg.getUpdateTokenPropertyMsg());
+        sendToClients(id, msg);
+      }
+      case SET_ZONE_VISIBILITY_MSG -> {
+        handle(msg.getSetZoneVisibilityMsg());
+        sendToAllClients(msg);
+      }
+      case UNDO_DRAW_MSG -> {
+        sendToAllClients(msg);
+        handle(msg.getUndoDrawMsg());
+      }
+      case SET_SERVER_POLICY_MSG -> {
+        handle(msg.getSetServerPolicyMsg());
+        sendToClients(id, msg);
+      }
+      case UPDATE_CAMPAIGN_MSG -> {
+        handle(msg.getUpdateCampaignMsg());
+        sendToClients(id, msg);
+      }
+      case UPDATE_INITIATIVE_MSG -> {
+        handle(msg.getUpdateInitiativeMsg());
+        sendToAllClients(msg);
+      }
+      case UPDATE_TOKEN_INITIATIVE_MSG -> {
+        handle(msg.getUpdateTokenInitiativeMsg());
+        sendToAllClients(msg);
+      }
+      case UPDATE_CAMPAIGN_MACROS_MSG -> {
+        handle(msg.getUpdateCampaignMacrosMsg());
+        sendToClients(id, msg);
+      }
+      case UPDATE_GM_MACROS_MSG -> {
+        handle(msg.getUpdateGmMacrosMsg());
+        sendToClients(id, msg);
+      }
+      case UPDATE_EXPOSED_AREA_META_MSG -> {
+        handle(msg.getUpdateExposedAreaMetaMsg());
+        sendToClients(id, msg);
+      }
+      case UPDATE_PLAYER_STATUS_MSG -> {
+        handle(id, msg.getUpdatePlayerStatusMsg());
+        sendToClients(id, msg);
+      }
+      case SET_WALL_TOPOLOGY_MSG -> {
+        handle(msg.getSetWallTopologyMsg());
+        sendToClients(id, msg);
+      }
+      case UPDATE_WALL_DATA_MSG -> {
+        handle(msg.getUpdateWallDataMsg());
+        sendToClients(id, msg);
+      }
+
+      default -> log.warn(msgType + " not handled.");
+    }
+  }
+
   private void handle(UpdateExposedAreaMetaMsg msg) {
     EventQueue.invokeLater(
         () -> {
@@ -472,19 +494,20 @@ private void handle(SetCampaignLandingMapMsg msg) {
   }
 
   private void handle(SetCampaignMsg msg) {
+    tokenDeltaTracker.clear();
     EventQueue.invokeLater(
         () -> {
           server.setCampaign(Campaign.fromDto(msg.getCampaign()));
         });
   }
 
-  private void handle(SendTokensToBackMsg msg) {
+  private void handle(SendTokensToBackMsg msg, long serverVersion) {
     EventQueue.invokeLater(
         () -> {
           var zoneGuid = GUID.valueOf(msg.getZoneGuid());
           var tokens =
               msg.getTokenGuidsList().stream().map(GUID::valueOf).collect(Collectors.toSet());
-          sendTokensToBack(zoneGuid, tokens);
+          sendTokensToBack(zoneGuid, tokens, serverVersion);
         });
   }
 
@@ -506,6 +529,7 @@ private void handle(RemoveZoneMsg msg) {
           var zoneGUID = GUID.valueOf(msg.getZoneGuid());
           var zone = server.getCampaign().getZone(zoneGUID);
           server.getCampaign().removeZone(zoneGUID);
+          tokenDeltaTracker.removeAll(zone.getAllTokens().stream().map(Token::getId).toList());
 
           // Now we have fire off adding the tokens in the zone
           new MapToolEventBus()
@@ -523,6 +547,7 @@ private void handle(RemoveTokensMsg msg) {
               msg.getTokenGuidList().stream().map(GUID::valueOf).collect(Collectors.toList());
           Zone zone = server.getCampaign().getZone(zoneGUID);
           zone.removeTokens(tokenGUIDs); // remove server tokens
+          tokenDeltaTracker.removeAll(tokenGUIDs);
         });
   }
 
@@ -533,6 +558,7 @@ private void handle(RemoveTokenMsg msg) {
           var tokenGUID = GUID.valueOf(msg.getTokenGuid());
           var zone = server.getCampaign().getZone(zoneGUID);
           zone.removeToken(tokenGUID); // remove server tokens
+          tokenDeltaTracker.remove(tokenGUID);
         });
   }
 
@@ -591,6 +617,36 @@ private void handle(String id, GetZoneMsg msg) {
     getZone(id, GUID.valueOf(msg.getZoneGuid()));
   }
 
+  /**
+   * Sends a client the whole token it asked for. The version is read now, as messages are
+   * dispatched in order and the tokens updated on the EDT in the same order, the token will be at
+   * this version when it is read.
+   */
+  private void handle(String id, Message msg, GetTokenMsg getTokenMsg) {
+    var tokenGUID = GUID.valueOf(getTokenMsg.getTokenGuid());
+    long version = tokenDeltaTracker.getVersion(tokenGUID);
+    EventQueue.invokeLater(
+        () -> {
+          var zoneGUID = GUID.valueOf(getTokenMsg.getZoneGuid());
+          Zone zone = server.getCampaign().getZone(zoneGUID);
+          Token token = zone == null ? null : zone.getToken(tokenGUID);
+          var reply = Message.newBuilder().setServerVersion(msg.getServerVersion());
+          if (token == null) {
+            reply.setRemoveTokenMsg(
+                RemoveTokenMsg.newBuilder()
+                    .setZoneGuid(zoneGUID.toString())
+                    .setTokenGuid(tokenGUID.toString()));
+          } else {
+            reply.setPutTokenMsg(
+                PutTokenMsg.newBuilder()
+                    .setZoneGuid(zoneGUID.toString())
+                    .setToken(token.toDto())
+                    .setVersion(version));
+          }
+          server.sendMessage(id, reply.build());
+        });
+  }
+
   private void handle(String id, GetAssetMsg msg) {
     getAsset(id, new MD5Key(msg.getAssetId()));
   }
@@ -625,6 +681,50 @@ private void handle(String clientId, PutTokenMsg putTokenMsg) {
         });
   }
 
+  /**
+   * Returns the message with the version of the token set to the next version known to the server,
+   * so that all clients agree on the version the token is at.
+   */
+  private PutTokenMsg withNextVersion(PutTokenMsg putTokenMsg) {
+    var tokenGUID = GUID.valueOf(putTokenMsg.getToken().getId());
+    long version = tokenDeltaTracker.nextVersion(tokenGUID, putTokenMsg.getVersion());
+    if (version == putTokenMsg.getVersion()) {
+      return putTokenMsg;
+    }
+    return putTokenMsg.toBuilder().setVersion(version).build();
+  }
+
+  private void handle(String clientId, Message msg, PatchTokenMsg patchTokenMsg) {
+    var tokenGUID = GUID.valueOf(patchTokenMsg.getTokenGuid());
+    boolean inSequence =
+        tokenDeltaTracker.advance(
+            tokenGUID, patchTokenMsg.getBaseVersion(), patchTokenMsg.getVersion());
+    if (inSequence) {
+      sendToClients(clientId, msg);
+    }
+    EventQueue.invokeLater(
+        () -> {
+          var zoneGUID = GUID.valueOf(patchTokenMsg.getZoneGuid());
+          Zone zone = server.getCampaign().getZone(zoneGUID);
+          Token current = zone == null ? null : zone.getToken(tokenGUID);
+          if (current == null) {
+            log.debug("Ignoring patch for unknown token {}", tokenGUID);
+            return;
+          }
+          var token = Token.fromDto(TokenDeltaTracker.apply(current.toDto(), patchTokenMsg));
+          zone.putToken(token);
+          if (!inSequence) {
+            // The patch was calculated against a version of the token the other clients may not
+            // have, so fall back to sending everyone (including the sender) the whole token.
+            sendTokenToAllClients(
+                zone,
+                token,
+                tokenDeltaTracker.nextVersion(tokenGUID, patchTokenMsg.getVersion()),
+                msg.getServerVersion());
+          }
+        });
+  }
+
   private void handle(String clientId, EditTokenMsg editTokenMsg) {
     EventQueue.invokeLater(
         () -> {
@@ -676,7 +776,7 @@ private void handle(ChangeZoneDisplayNameMsg changeZoneDisplayNameMsg, Message m
     }
   }
 
-  private void handle(BringTokensToFrontMsg bringTokensToFrontMsg) {
+  private void handle(BringTokensToFrontMsg bringTokensToFrontMsg, long serverVersion) {
     EventQueue.invokeLater(
         () -> {
           var zoneGuid = GUID.valueOf(bringTokensToFrontMsg.getZoneGuid());
@@ -684,7 +784,7 @@ private void handle(BringTokensToFrontMsg bringTokensToFrontMsg) {
               bringTokensToFrontMsg.getTokenGuidsList().stream()
                   .map(GUID::valueOf)
                   .collect(Collectors.toSet());
-          bringTokensToFront(zoneGuid, tokenSet);
+          bringTokensToFront(zoneGuid, tokenSet, serverVersion);
         });
   }
 
@@ -753,7 +853,25 @@ private void sendToAllClients(Message message) {
     server.broadcastMessage(message);
   }
 
-  private void bringTokensToFront(GUID zoneGUID, Set<GUID> tokenSet) {
+  /**
+   * Sends a token to all clients, reusing its cached encoding if it has not changed.
+   *
+   * @param zone the zone the token is on.
+   * @param token the token.
+   * @param version the version of the token.
+   * @param serverVersion the version of the message that changed the token, so clients still
+   *     loading the zone can tell whether the zone they receive already includes the change.
+   */
+  private void sendTokenToAllClients(Zone zone, Token token, long version, long serverVersion) {
+    var putTokenMsg =
+        PutTokenMsg.newBuilder().setZoneGuid(zone.getId().toString()).setVersion(version).build();
+    var tokenBytes = server.getEncodedDtoCache().getToken(zone, token);
+    server.broadcastEncodedMessage(
+        Message.MessageTypeCase.PUT_TOKEN_MSG,
+        EncodedDtoCache.putTokenMessage(putTokenMsg, tokenBytes, serverVersion));
+  }
+
+  private void bringTokensToFront(GUID zoneGUID, Set<GUID> tokenSet, long serverVersion) {
     Zone zone = server.getCampaign().getZone(zoneGUID);
 
     // Get the tokens to update
@@ -774,9 +892,8 @@ private void bringTokensToFront(GUID zoneGUID, Set<GUID> tokenSet) {
     }
     // Broadcast
     for (Token token : tokenList) {
-      var putTokenMsg =
-          PutTokenMsg.newBuilder().setZoneGuid(zoneGUID.toString()).setToken(token.toDto());
-      sendToAllClients(Message.newBuilder().setPutTokenMsg(putTokenMsg).build());
+      sendTokenToAllClients(
+          zone, token, tokenDeltaTracker.nextVersion(token.getId(), 0), serverVersion);
     }
     zone.sortZOrder(); // update new ZOrder on server zone
   }
@@ -809,9 +926,7 @@ private void getAsset(String id, MD5Key assetID) {
   }
 
   private void getZone(String id, GUID zoneGUID) {
-    var zone = server.getCampaign().getZone(zoneGUID);
-    var msg = PutZoneMsg.newBuilder().setZone(zone.toDto());
-    server.sendMessage(id, Message.newBuilder().setPutZoneMsg(msg).build());
+    server.getZoneStreamer().send(id, zoneGUID);
   }
 
   private void putToken(String clientId, GUID zoneGUID, Token token) {
@@ -837,7 +952,7 @@ private void putToken(String clientId, GUID zoneGUID, Token token) {
     }
   }
 
-  private void sendTokensToBack(GUID zoneGUID, Set<GUID> tokenSet) {
+  private void sendTokensToBack(GUID zoneGUID, Set<GUID> tokenSet, long serverVersion) {
     Zone zone = server.getCampaign().getZone(zoneGUID);
 
     // Get the tokens to update
@@ -858,9 +973,8 @@ private void sendTokensToBack(GUID zoneGUID, Set<GUID> tokenSet) {
     }
     // Broadcast
     for (Token token : tokenList) {
-      var putTokenMsg =
-          PutTokenMsg.newBuilder().setZoneGuid(zoneGUID.toString()).setToken(token.toDto());
-      sendToAllClients(Message.newBuilder().setPutTokenMsg(putTokenMsg).build());
+      sendTokenToAllClients(
+          zone, token, tokenDeltaTracker.nextVersion(token.getId(), 0), serverVersion);
     }
     zone.sortZOrder(); // update new ZOrder on server zone
   }
@@ -0,0 +1,309 @@
+/*
+ * This software Copyright by the RPTools.net development team, and
+ * licensed under the Affero GPL Version 3 or, at your option, any later
+ * version.
+ *
+ * MapTool Source Code is distributed in the hope that it will be
+ * useful, but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ *
+ * You should have received a copy of the GNU Affero General Public
+ * License * along with this source Code.  If not, please visit
+ * <http://www.gnu.org/licenses/> and specifically the Affero license
+ * text at <http://www.gnu.org/licenses/agpl.html>.
+ */
+package net.rptools.maptool.server;
+
+import com.google.protobuf.Descriptors.FieldDescriptor;
+import com.google.protobuf.MessageOrBuilder;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import javax.annotation.Nullable;
+import net.rptools.maptool.model.GUID;
+import net.rptools.maptool.server.proto.Message;
+import net.rptools.maptool.server.proto.PatchTokenMsg;
+import net.rptools.maptool.server.proto.PutTokenMsg;
+import net.rptools.maptool.server.proto.TokenDto;
+
+/**
+ * Keeps track of the last synchronized state of tokens so that changes to a token can be sent as a
+ * {@link PatchTokenMsg} containing only the fields that changed instead of a full {@link
+ * PutTokenMsg}.
+ *
+ * <p>Every token update carries a version. A patch records the version it was calculated against,
+ * if the receiver has a different version of the token the patch can not be applied safely and
+ * the receiver has to fall back to a full update of the token.
+ *
+ * <p>Only the version is kept for every token, the state of the token is only kept for the most
+ * recently updated tokens. This class is thread safe.
+ */
+public class TokenDeltaTracker {
+
+  /** The maximum number of token states that are kept to calculate patches against. */
+  private static final int MAX_BASES = 256;
+
+  /** The state of a token at a version. */
+  private record Base(long version, TokenDto dto) {}
+
+  /** The last synchronized version of each token. */
+  private final Map<GUID, Long> versions = new HashMap<>();
+
+  /** The last synchronized state of the most recently updated tokens. */
+  private final Map<GUID, Base> bases =
+      new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<GUID, Base> eldest) {
+          return size() > MAX_BASES;
+        }
+      };
+
+  /**
+   * Returns the last synchronized version of the token.
+   *
+   * @param tokenId the id of the token.
+   * @return the version of the token, 0 if it is not known.
+   */
+  public synchronized long getVersion(GUID tokenId) {
+    return versions.getOrDefault(tokenId, 0L);
+  }
+
+  /**
+   * Returns the synchronized state of the token if it is still kept.
+   *
+   * @param tokenId the id of the token.
+   * @param version the version of the token.
+   * @return the state of the token at the version, or {@code null} if it is not known.
+   */
+  @Nullable
+  public synchronized TokenDto getState(GUID tokenId, long version) {
+    var base = bases.get(tokenId);
+    return base != null && base.version() == version ? base.dto() : null;
+  }
+
+  /**
+   * Records the synchronized state of a token.
+   *
+   * @param tokenId the id of the token.
+   * @param version the version of the token, if this is 0 the token is no longer tracked.
+   * @param dto the state of the token.
+   */
+  public synchronized void update(GUID tokenId, long version, TokenDto dto) {
+    if (version == 0) {
+      remove(tokenId);
+      return;
+    }
+    versions.put(tokenId, version);
+    bases.put(tokenId, new Base(version, dto));
+  }
+
+  /**
+   * Moves the token to a new version if it is currently at the version a patch was calculated
+   * against.
+   *
+   * @param tokenId the id of the token.
+   * @param baseVersion the version the patch was calculated against.
+   * @param version the version of the token after the patch.
+   * @return {@code true} if the token was at the base version, {@code false} if there is a gap and
+   *     the patch can not be forwarded as is.
+   */
+  public synchronized boolean advance(GUID tokenId, long baseVersion, long version) {
+    if (baseVersion == 0 || getVersion(tokenId) != baseVersion) {
+      return false;
+    }
+    versions.put(tokenId, version);
+    bases.remove(tokenId);
+    return true;
+  }
+
+  /**
+   * Moves the token to a version later than any it has been at.
+   *
+   * @param tokenId the id of the token.
+   * @param proposed the version proposed by the sender of the update.
+   * @return the new version of the token.
+   */
+  public synchronized long nextVersion(GUID tokenId, long proposed) {
+    long version = Math.max(getVersion(tokenId) + 1, proposed);
+    versions.put(tokenId, version);
+    bases.remove(tokenId);
+    return version;
+  }
+
+  /**
+   * Stops tracking the token.
+   *
+   * @param tokenId the id of the token.
+   */
+  public synchronized void remove(GUID tokenId) {
+    versions.remove(tokenId);
+    bases.remove(tokenId);
+  }
+
+  /**
+   * Stops tracking the tokens, used when tokens or the zone they are on are removed.
+   *
+   * @param tokenIds the ids of the tokens.
+   */
+  public synchronized void removeAll(Collection<GUID> tokenIds) {
+    tokenIds.forEach(this::remove);
+  }
+
+  /** Stops tracking all tokens. */
+  public synchronized void clear() {
+    versions.clear();
+    bases.clear();
+  }
+
+  /**
+   * Creates the message to send the changes to a token. If the last synchronized state of the token
+   * is known a {@link PatchTokenMsg} is created, otherwise a {@link PutTokenMsg}. The new state is
+   * recorded as synchronized.
+   *
+   * @param zoneGUID the id of the zone the token is on.
+   * @param dto the state of the changed token.
+   * @return the message to send, or {@code null} if nothing has changed.
+   */
+  @Nullable
+  public synchronized Message createUpdate(GUID zoneGUID, TokenDto dto) {
+    var tokenId = GUID.valueOf(dto.getId());
+    long baseVersion = getVersion(tokenId);
+    var base = getState(tokenId, baseVersion);
+    var msg = Message.newBuilder();
+    if (base == null) {
+      msg.setPutTokenMsg(
+          PutTokenMsg.newBuilder()
+              .setZoneGuid(zoneGUID.toString())
+              .setToken(dto)
+              .setVersion(baseVersion + 1));
+    } else {
+      var patch = diff(base, dto);
+      if (patch == null) {
+        return null;
+      }
+      msg.setPatchTokenMsg(
+          patch
+              .setZoneGuid(zoneGUID.toString())
+              .setTokenGuid(tokenId.toString())
+              .setBaseVersion(baseVersion)
+              .setVersion(baseVersion + 1));
+    }
+    update(tokenId, baseVersion + 1, dto);
+    return msg.build();
+  }
+
+  /**
+   * Calculates the changes between two states of a token.
+   *
+   * @param from the old state of the token.
+   * @param to the new state of the token.
+   * @return a {@link PatchTokenMsg} builder with the changes filled in, or {@code null} if there
+   *     are no changes.
+   */
+  @Nullable
+  public static PatchTokenMsg.Builder diff(TokenDto from, TokenDto to) {
+    var patch = PatchTokenMsg.newBuilder();
+    var changes = TokenDto.newBuilder();
+    boolean changed = false;
+    for (var field : TokenDto.getDescriptor().getFields()) {
+      if (field.isMapField()) {
+        var fromEntries = mapEntries(from, field);
+        var toEntries = mapEntries(to, field);
+        var removed = new HashSet<>(fromEntries.keySet());
+        removed.removeAll(toEntries.keySet());
+        if (!removed.isEmpty()) {
+          var keys = PatchTokenMsg.RemovedKeys.newBuilder().setField(field.getNumber());
+          removed.forEach(k -> keys.addKeys(String.valueOf(k)));
+          patch.addRemovedKeys(keys);
+          changed = true;
+        }
+        for (var entry : toEntries.entrySet()) {
+          if (!entry.getValue().equals(fromEntries.get(entry.getKey()))) {
+            changes.addRepeatedField(field, entry.getValue());
+            changed = true;
+          }
+        }
+      } else if (field.isRepeated()) {
+        if (!from.getField(field).equals(to.getField(field))) {
+          changes.setField(field, to.getField(field));
+          patch.addChangedFields(field.getNumber());
+          changed = true;
+        }
+      } else if (from.hasField(field) != to.hasField(field)
+          || !Objects.equals(from.getField(field), to.getField(field))) {
+        if (to.hasField(field)) {
+          changes.setField(field, to.getField(field));
+        }
+        patch.addChangedFields(field.getNumber());
+        changed = true;
+      }
+    }
+    return changed ? patch.setChanges(changes) : null;
+  }
+
+  /**
+   * Applies the changes in a patch to a state of a token.
+   *
+   * @param base the state of the token to apply the changes to.
+   * @param patch the changes.
+   * @return the new state of the token.
+   */
+  public static TokenDto apply(TokenDto base, PatchTokenMsg patch) {
+    var builder = base.toBuilder();
+    var changes = patch.getChanges();
+    for (int number : patch.getChangedFieldsList()) {
+      var field = TokenDto.getDescriptor().findFieldByNumber(number);
+      if (field == null || field.isMapField()) {
+        continue;
+      }
+      builder.clearField(field);
+      if (field.isRepeated()) {
+        for (var value : (List<?>) changes.getField(field)) {
+          builder.addRepeatedField(field, value);
+        }
+      } else if (changes.hasField(field)) {
+        builder.setField(field, changes.getField(field));
+      }
+    }
+
+    var removedKeys = new HashMap<Integer, Set<String>>();
+    for (var removed : patch.getRemovedKeysList()) {
+      removedKeys
+          .computeIfAbsent(removed.getField(), f -> new HashSet<>())
+          .addAll(removed.getKeysList());
+    }
+    for (var field : TokenDto.getDescriptor().getFields()) {
+      var removed = removedKeys.getOrDefault(field.getNumber(), Set.of());
+      if (!field.isMapField() || (removed.isEmpty() && changes.getRepeatedFieldCount(field) == 0)) {
+        continue;
+      }
+      var entries = mapEntries(base, field);
+      entries.keySet().removeIf(k -> removed.contains(String.valueOf(k)));
+      entries.putAll(mapEntries(changes, field));
+      builder.clearField(field);
+      entries.values().forEach(e -> builder.addRepeatedField(field, e));
+    }
+    return builder.build();
+  }
+
+  /**
+   * Returns the entries of a map field keyed by the map key.
+   *
+   * @param dto the message containing the map.
+   * @param field the map field.
+   * @return the map entry messages keyed by their key.
+   */
+  private static Map<Object, Object> mapEntries(TokenDto dto, FieldDescriptor field) {
+    var keyField = field.getMessageType().findFieldByName("key");
+    var entries = new LinkedHashMap<Object, Object>();
+    for (var entry : (List<?>) dto.getField(field)) {
+      entries.put(((MessageOrBuilder) entry).getField(keyField), entry);
+    }
+    return entries;
+  }
+}
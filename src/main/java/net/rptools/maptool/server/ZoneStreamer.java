@@ -0,0 +1,191 @@
+/*
+ * This software Copyright by the RPTools.net development team, and
+ * licensed under the Affero GPL Version 3 or, at your option, any later
+ * version.
+ *
+ * MapTool Source Code is distributed in the hope that it will be
+ * useful, but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ *
+ * You should have received a copy of the GNU Affero General Public
+ * License * along with this source Code.  If not, please visit
+ * <http://www.gnu.org/licenses/> and specifically the Affero license
+ * text at <http://www.gnu.org/licenses/agpl.html>.
+ */
+package net.rptools.maptool.server;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import net.rptools.maptool.model.Campaign;
+import net.rptools.maptool.model.GUID;
+import net.rptools.maptool.server.proto.Message;
+import net.rptools.maptool.server.proto.Message.MessageTypeCase;
+import net.rptools.maptool.server.proto.PutZoneMsg;
+import net.rptools.maptool.server.proto.RemoveZoneMsg;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Sends the zones of the campaign to clients that have joined in the background. A joining client
+ * is sent the campaign with only its first zone, the remaining zones are queued here and sent one
+ * at a time as {@link PutZoneMsg}s.
+ *
+ * <p>Each zone is encoded on the event dispatch thread behind the changes of the messages handled
+ * so far and is sent with the version of the campaign it was encoded at, see {@link
+ * MapToolServer#invokeAtCurrentVersion}. The client holds on to the messages for a zone that arrive
+ * before the zone and replays the ones with a later version once it arrives. A zone that has been
+ * removed in the meantime is sent as a {@link RemoveZoneMsg} so the client stops waiting for it.
+ *
+ * <p>A client can ask for a zone before it has been streamed, the zone is then removed from the
+ * queue so that it is not sent twice. This class is thread safe.
+ */
+public class ZoneStreamer {
+
+  private static final Logger log = LogManager.getLogger(ZoneStreamer.class);
+
+  /** The zones still to be sent to a client, and the campaign they belong to. */
+  private record Stream(Campaign campaign, Deque<GUID> zones) {}
+
+  private final MapToolServer server;
+  private final EncodedDtoCache encodedDtoCache;
+
+  /** The zones still to be sent, keyed by connection id. */
+  private final Map<String, Stream> streams = new HashMap<>();
+
+  /**
+   * Creates a new {@code ZoneStreamer}.
+   *
+   * @param server the server to send the zones from.
+   * @param encodedDtoCache the cache of the encoded zones.
+   */
+  public ZoneStreamer(MapToolServer server, EncodedDtoCache encodedDtoCache) {
+    this.server = server;
+    this.encodedDtoCache = encodedDtoCache;
+  }
+
+  /**
+   * Starts sending zones to a client.
+   *
+   * @param connectionId the id of the connection of the client.
+   * @param campaign the campaign the zones belong to.
+   * @param zoneIds the ids of the zones to send, in the order they are sent.
+   */
+  public void stream(String connectionId, Campaign campaign, List<GUID> zoneIds) {
+    if (zoneIds.isEmpty()) {
+      return;
+    }
+    synchronized (this) {
+      streams.put(connectionId, new Stream(campaign, new ArrayDeque<>(zoneIds)));
+    }
+    sendNext(connectionId);
+  }
+
+  /**
+   * Sends a zone to a client because it has asked for it, removing it from the zones still to be
+   * streamed so that it is not sent twice.
+   *
+   * @param connectionId the id of the connection of the client.
+   * @param zoneId the id of the zone.
+   */
+  public void send(String connectionId, GUID zoneId) {
+    synchronized (this) {
+      var stream = streams.get(connectionId);
+      if (stream != null) {
+        stream.zones().remove(zoneId);
+      }
+    }
+    var campaign = server.getCampaign();
+    server.invokeAtCurrentVersion(version -> send(connectionId, campaign, zoneId, version));
+  }
+
+  /**
+   * Stops sending zones to a client.
+   *
+   * @param connectionId the id of the connection of the client.
+   */
+  public synchronized void cancel(String connectionId) {
+    streams.remove(connectionId);
+  }
+
+  /** Stops sending zones to all clients, e.g. because the campaign has been replaced. */
+  public synchronized void cancelAll() {
+    streams.clear();
+  }
+
+  /**
+   * Queues the next zone to be sent to a client, the one after it is queued once it has been sent.
+   *
+   * @param connectionId the id of the connection of the client.
+   */
+  private void sendNext(String connectionId) {
+    Stream stream;
+    GUID zoneId;
+    synchronized (this) {
+      stream = streams.get(connectionId);
+      zoneId = stream == null ? null : stream.zones().poll();
+      if (zoneId == null) {
+        streams.remove(connectionId);
+        return;
+      }
+    }
+    server.invokeAtCurrentVersion(
+        version -> {
+          if (send(connectionId, stream.campaign(), zoneId, version)) {
+            sendNext(connectionId);
+          }
+        });
+  }
+
+  /**
+   * Sends a zone to a client. If the cached encoding of the zone can not be sent the zone is
+   * converted and sent again, if that fails as well the client is disconnected as it would be left
+   * waiting for the zone.
+   *
+   * @param connectionId the id of the connection of the client.
+   * @param campaign the campaign the zone belongs to.
+   * @param zoneId the id of the zone.
+   * @param version the version of the campaign the zone is sent at.
+   * @return {@code true} if the client can be sent more zones.
+   */
+  private boolean send(String connectionId, Campaign campaign, GUID zoneId, long version) {
+    if (server.getCampaign() != campaign) {
+      cancel(connectionId);
+      return false;
+    }
+
+    var zone = campaign.getZone(zoneId);
+    if (zone == null) {
+      // Removed since the client joined.
+      var msg = RemoveZoneMsg.newBuilder().setZoneGuid(zoneId.toString());
+      server.sendMessage(
+          connectionId,
+          Message.newBuilder().setRemoveZoneMsg(msg).setServerVersion(version).build());
+      return true;
+    }
+
+    try {
+      server.sendEncodedMessage(
+          connectionId,
+          MessageTypeCase.PUT_ZONE_MSG,
+          EncodedDtoCache.putZoneMessage(encodedDtoCache.getZone(zone), version));
+      return true;
+    } catch (Exception e) {
+      log.warn("Unable to send the cached zone {} to {}", zoneId, connectionId, e);
+    }
+
+    try {
+      var msg = PutZoneMsg.newBuilder().setZone(zone.toDto());
+      server.sendMessage(
+          connectionId, Message.newBuilder().setPutZoneMsg(msg).setServerVersion(version).build());
+      return true;
+    } catch (Exception e) {
+      log.error("Unable to send zone {} to {}, disconnecting it", zoneId, connectionId, e);
+      cancel(connectionId);
+      server.disconnect(connectionId);
+      return false;
+    }
+  }
+}
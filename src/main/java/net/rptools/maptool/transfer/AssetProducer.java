@@ -16,14 +16,18 @@
 
 import com.google.protobuf.ByteString;
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
 import net.rptools.lib.MD5Key;
 import net.rptools.maptool.server.proto.AssetChunkDto;
 
 /**
  * Creates data chunks for transferring binary data. Assumes large datasets (otherwise it would be a
- * direct transfer) so expects the data to be streamed from a file
+ * direct transfer) so expects the data to be streamed from a file, each chunk is read from the file
+ * when it is needed so that neither the asset data nor the file is read into the heap as a whole
+ * and no file is left open between chunks.
  *
  * @author trevor
  */
@@ -62,16 +66,17 @@ public AssetChunkDto nextChunk(int size) throws IOException {
     if (currentPosition + size > length) {
       size = (int) (length - currentPosition);
     }
-    byte[] data = new byte[size];
-    try (FileInputStream in = new FileInputStream(assetFile)) {
-      in.skip(currentPosition);
-      in.read(data, 0, size);
+    var buffer = ByteBuffer.allocate(size);
+    try (var channel = FileChannel.open(assetFile.toPath(), StandardOpenOption.READ)) {
+      while (buffer.hasRemaining()) {
+        if (channel.read(buffer, currentPosition + buffer.position()) < 0) {
+          throw new IOException("Unexpected end of " + assetFile);
+        }
+      }
     }
+    var chunk = ByteString.copyFrom(buffer.flip());
     currentPosition += size;
-    return AssetChunkDto.newBuilder()
-        .setId(id.toString())
-        .setData(ByteString.copyFrom(data))
-        .build();
+    return AssetChunkDto.newBuilder().setId(id.toString()).setData(chunk).build();
   }
 
   /**
@@ -0,0 +1,177 @@
+/*
+ * This software Copyright by the RPTools.net development team, and
+ * licensed under the Affero GPL Version 3 or, at your option, any later
+ * version.
+ *
+ * MapTool Source Code is distributed in the hope that it will be
+ * useful, but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ *
+ * You should have received a copy of the GNU Affero General Public
+ * License * along with this source Code.  If not, please visit
+ * <http://www.gnu.org/licenses/> and specifically the Affero license
+ * text at <http://www.gnu.org/licenses/agpl.html>.
+ */
+package net.rptools.maptool.util;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.google.protobuf.CodedInputStream;
+import com.google.protobuf.StringValue;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import net.rptools.lib.MD5Key;
+import net.rptools.maptool.client.ui.Scale;
+import net.rptools.maptool.model.Campaign;
+import net.rptools.maptool.model.CampaignSnapshot;
+import net.rptools.maptool.model.GUID;
+import net.rptools.maptool.model.Zone;
+import net.rptools.maptool.server.proto.CampaignDto;
+import net.rptools.maptool.server.proto.PersistedCampaignDto;
+import net.rptools.maptool.server.proto.ZoneDto;
+import net.rptools.maptool.util.PersistenceUtil.PersistedCampaign;
+
+/**
+ * Reads and writes campaigns in the protobuf campaign format. The format is a length delimited
+ * {@link PersistedCampaignDto} header followed by one length delimited {@link ZoneDto} per zone, so
+ * only a single zone has to be held as a DTO while writing, and the zones can be decoded in
+ * parallel while reading.
+ */
+final class CampaignProtobufFormat {
+
+  /** The path of the campaign in the campaign file. */
+  static final String CAMPAIGN_FILE = "campaign.pb";
+
+  /** Thread factory for the threads that decode zones. */
+  private static final ThreadFactory threadFactory =
+      new ThreadFactoryBuilder().setNameFormat("campaign-zone-decoder-%d").setDaemon(true).build();
+
+  private CampaignProtobufFormat() {}
+
+  /**
+   * Writes the campaign to the stream.
+   *
+   * @param persistedCampaign the campaign to write.
+   * @param out the stream to write to.
+   * @throws IOException if an error occurs writing to the stream.
+   */
+  static void write(PersistedCampaign persistedCampaign, OutputStream out) throws IOException {
+    var zones = persistedCampaign.campaign.getZones();
+    writeHeader(
+        persistedCampaign.campaign.toDtoWithoutZones(), zones.size(), persistedCampaign, out);
+    for (Zone zone : zones) {
+      zone.toDto().writeDelimitedTo(out);
+    }
+  }
+
+  /**
+   * Writes a snapshot of the campaign to the stream.
+   *
+   * @param snapshot the snapshot of the campaign to write.
+   * @param persistedCampaign the assets and current view to write with the snapshot, its campaign
+   *     is ignored.
+   * @param out the stream to write to.
+   * @throws IOException if an error occurs writing to the stream.
+   */
+  static void write(
+      CampaignSnapshot snapshot, PersistedCampaign persistedCampaign, OutputStream out)
+      throws IOException {
+    writeHeader(snapshot.campaign(), snapshot.zones().size(), persistedCampaign, out);
+    for (ZoneDto zone : snapshot.zones()) {
+      zone.writeDelimitedTo(out);
+    }
+  }
+
+  /**
+   * Writes the campaign header to the stream.
+   *
+   * @param campaign the campaign without its zones.
+   * @param zoneCount the number of zones that follow the header.
+   * @param persistedCampaign the assets and current view of the campaign.
+   * @param out the stream to write to.
+   * @throws IOException if an error occurs writing to the stream.
+   */
+  private static void writeHeader(
+      CampaignDto campaign, int zoneCount, PersistedCampaign persistedCampaign, OutputStream out)
+      throws IOException {
+    var header = PersistedCampaignDto.newBuilder().setCampaign(campaign).setZoneCount(zoneCount);
+    persistedCampaign.assetMap.keySet().forEach(key -> header.addAssetIds(key.toString()));
+    if (persistedCampaign.currentZoneId != null) {
+      header.setCurrentZoneId(StringValue.of(persistedCampaign.currentZoneId.toString()));
+    }
+    if (persistedCampaign.currentView != null) {
+      header.setCurrentView(
+          PersistedCampaignDto.ViewDto.newBuilder()
+              .setScale(persistedCampaign.currentView.getScale())
+              .setOffsetX(persistedCampaign.currentView.getOffsetX())
+              .setOffsetY(persistedCampaign.currentView.getOffsetY()));
+    }
+    header.build().writeDelimitedTo(out);
+  }
+
+  /**
+   * Reads a campaign from the stream. The zones are decoded in parallel.
+   *
+   * @param in the stream to read from.
+   * @return the campaign.
+   * @throws IOException if an error occurs reading the stream or the campaign is not valid.
+   */
+  static PersistedCampaign read(InputStream in) throws IOException {
+    var header = PersistedCampaignDto.parseDelimitedFrom(in);
+    if (header == null) {
+      throw new EOFException("Missing campaign header");
+    }
+
+    var persistedCampaign = new PersistedCampaign();
+    persistedCampaign.campaign = Campaign.fromDto(header.getCampaign());
+    header.getAssetIdsList().forEach(id -> persistedCampaign.assetMap.put(new MD5Key(id), null));
+    if (header.hasCurrentZoneId()) {
+      persistedCampaign.currentZoneId = GUID.valueOf(header.getCurrentZoneId().getValue());
+    }
+    if (header.hasCurrentView()) {
+      var view = header.getCurrentView();
+      persistedCampaign.currentView = new Scale();
+      persistedCampaign.currentView.setScale(view.getScale());
+      persistedCampaign.currentView.setOffset(view.getOffsetX(), view.getOffsetY());
+    }
+
+    int threads = Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors() - 1));
+    var executor = Executors.newFixedThreadPool(threads, threadFactory);
+    try {
+      var zones = new ArrayList<Future<Zone>>(header.getZoneCount());
+      for (int i = 0; i < header.getZoneCount(); i++) {
+        int firstByte = in.read();
+        if (firstByte == -1) {
+          throw new EOFException("Expected " + header.getZoneCount() + " zones, found " + i);
+        }
+        int size = CodedInputStream.readRawVarint32(firstByte, in);
+        byte[] bytes = in.readNBytes(size);
+        if (bytes.length != size) {
+          throw new EOFException("Truncated zone " + i);
+        }
+        zones.add(executor.submit(() -> Zone.fromDto(ZoneDto.parseFrom(bytes))));
+      }
+      for (var zone : zones) {
+        persistedCampaign.campaign.putZone(zone.get());
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Interrupted while reading campaign");
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof IOException ioe) {
+        throw ioe;
+      }
+      throw new IOException("Unable to read zone", e.getCause());
+    } finally {
+      executor.shutdownNow();
+    }
+    return persistedCampaign;
+  }
+}
@@ -0,0 +1,245 @@
+/*
+ * This software Copyright by the RPTools.net development team, and
+ * licensed under the Affero GPL Version 3 or, at your option, any later
+ * version.
+ *
+ * MapTool Source Code is distributed in the hope that it will be
+ * useful, but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ *
+ * You should have received a copy of the GNU Affero General Public
+ * License * along with this source Code.  If not, please visit
+ * <http://www.gnu.org/licenses/> and specifically the Affero license
+ * text at <http://www.gnu.org/licenses/agpl.html>.
+ */
+package net.rptools.maptool.util;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.function.Predicate;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * The queue of image decodes run by the {@link ImageManager}. Decodes are run by a fixed number of
+ * worker threads in order of urgency: urgent decodes come first, then small images before large
+ * ones, and otherwise in the order they were queued.
+ *
+ * <p>The number of pixels being decoded at once is bounded by a pixel budget, as a decoded image
+ * takes four bytes a pixel no matter how well it is compressed. The next decode only starts if it
+ * fits in what is left of the budget, or if nothing else is being decoded so an image larger than
+ * the whole budget still gets decoded. Decodes are started strictly in order, a large image at the
+ * head of the queue is not overtaken by smaller ones and so is never starved.
+ *
+ * @param <K> the type of the keys the decodes are queued by, only one decode is queued for a key.
+ */
+final class ImageDecodeQueue<K> {
+  private static final Logger log = LogManager.getLogger(ImageDecodeQueue.class);
+
+  /** Images with more pixels than this are decoded after the smaller images of the same urgency. */
+  static final long LARGE_IMAGE_PIXELS = 1024 * 1024;
+
+  /** The most pixels to decode at once. */
+  private final long pixelBudget;
+
+  /** The queued decodes, most urgent first. */
+  private PriorityQueue<Task<K>> queue = new PriorityQueue<>();
+
+  /** The decodes that are queued or running, so an image is only queued once. */
+  private final Map<K, Task<K>> pending = new HashMap<>();
+
+  /** Gives the decodes the order they were queued in. */
+  private long sequence;
+
+  /** The number of decodes running. */
+  private int active;
+
+  /** The number of pixels of the decodes running. */
+  private long activePixels;
+
+  /**
+   * Creates a queue and starts its worker threads.
+   *
+   * @param threads the number of worker threads.
+   * @param pixelBudget the most pixels to decode at once.
+   * @param threadNameFormat the {@link String#format} format of the worker thread names.
+   */
+  ImageDecodeQueue(int threads, long pixelBudget, String threadNameFormat) {
+    this.pixelBudget = pixelBudget;
+    ThreadFactory factory =
+        new ThreadFactoryBuilder().setNameFormat(threadNameFormat).setDaemon(true).build();
+    for (int i = 0; i < threads; i++) {
+      factory.newThread(this::work).start();
+    }
+  }
+
+  /**
+   * Queues a decode. If a decode is already queued for the key it is not queued again, it is only
+   * moved ahead if it has become urgent.
+   *
+   * @param key the key of the image.
+   * @param pixels the number of pixels of the decoded image.
+   * @param urgent whether the decode is urgent.
+   * @param decode the decode to run.
+   * @return {@code true} if the decode was queued, {@code false} if one was already pending.
+   */
+  synchronized boolean submit(K key, long pixels, boolean urgent, Runnable decode) {
+    Task<K> task = pending.get(key);
+    if (task != null) {
+      // The queue is ordered on insertion, so the task has to be taken out to be moved ahead.
+      if (urgent && !task.urgent && queue.remove(task)) {
+        task.urgent = true;
+        queue.add(task);
+      }
+      return false;
+    }
+    task = new Task<>(key, Math.max(pixels, 0), urgent, sequence++, decode);
+    pending.put(key, task);
+    queue.add(task);
+    notifyAll();
+    return true;
+  }
+
+  /**
+   * Updates the urgency of all queued decodes and cancels the stale ones in a single pass over the
+   * queue. Decodes that are already running are left alone.
+   *
+   * @param urgent tests whether the decode of a key is now urgent.
+   * @param stale tests whether the decode of a key is no longer needed.
+   * @return the keys of the cancelled decodes.
+   */
+  synchronized List<K> reprioritize(Predicate<K> urgent, Predicate<K> stale) {
+    List<K> cancelled = new ArrayList<>();
+    List<Task<K>> kept = new ArrayList<>(queue.size());
+    for (Task<K> task : queue) {
+      if (stale.test(task.key)) {
+        pending.remove(task.key);
+        cancelled.add(task.key);
+      } else {
+        task.urgent = urgent.test(task.key);
+        kept.add(task);
+      }
+    }
+    // Heapify the kept tasks in one go rather than re-adding them one at a time.
+    queue = new PriorityQueue<>(kept);
+    return cancelled;
+  }
+
+  /**
+   * Returns the number of decodes waiting in the queue.
+   *
+   * @return the number of decodes waiting.
+   */
+  synchronized int getQueueDepth() {
+    return queue.size();
+  }
+
+  /**
+   * Returns the number of decodes running.
+   *
+   * @return the number of decodes running.
+   */
+  synchronized int getActiveCount() {
+    return active;
+  }
+
+  /** The loop of a worker thread: take the next decode that fits in the budget and run it. */
+  private void work() {
+    while (true) {
+      Task<K> task;
+      try {
+        task = take();
+      } catch (InterruptedException e) {
+        return;
+      }
+      try {
+        task.decode.run();
+      } catch (Throwable t) {
+        log.error("Image decode failed", t);
+      } finally {
+        finish(task);
+      }
+    }
+  }
+
+  /**
+   * Waits for the decode at the head of the queue to fit in the pixel budget and takes it.
+   *
+   * @return the decode to run.
+   * @throws InterruptedException if the worker thread is interrupted while waiting.
+   */
+  synchronized Task<K> take() throws InterruptedException {
+    while (true) {
+      Task<K> head = queue.peek();
+      if (head != null && (active == 0 || activePixels + head.pixels <= pixelBudget)) {
+        queue.poll();
+        active++;
+        activePixels += head.pixels;
+        return head;
+      }
+      wait();
+    }
+  }
+
+  /**
+   * Releases the budget of a finished decode so the next ones can start.
+   *
+   * @param task the finished decode.
+   */
+  synchronized void finish(Task<K> task) {
+    active--;
+    activePixels -= task.pixels;
+    pending.remove(task.key, task);
+    notifyAll();
+  }
+
+  /**
+   * A queued decode. Tasks are ordered so that the most urgent one is decoded next.
+   *
+   * @param <K> the type of the key of the image.
+   */
+  static final class Task<K> implements Comparable<Task<K>> {
+    private final K key;
+    private final long pixels;
+    private final boolean large;
+    private final long sequence;
+    private final Runnable decode;
+
+    /** Whether the decode is urgent, only changed while out of the queue or it is rebuilt. */
+    private boolean urgent;
+
+    private Task(K key, long pixels, boolean urgent, long sequence, Runnable decode) {
+      this.key = key;
+      this.pixels = pixels;
+      this.large = pixels > LARGE_IMAGE_PIXELS;
+      this.urgent = urgent;
+      this.sequence = sequence;
+      this.decode = decode;
+    }
+
+    /**
+     * Returns the key of the image.
+     *
+     * @return the key of the image.
+     */
+    K getKey() {
+      return key;
+    }
+
+    @Override
+    public int compareTo(Task<K> other) {
+      if (urgent != other.urgent) {
+        return urgent ? -1 : 1;
+      }
+      if (large != other.large) {
+        return large ? 1 : -1;
+      }
+      return Long.compare(sequence, other.sequence);
+    }
+  }
+}
@@ -16,12 +16,15 @@
 
 import java.awt.image.BufferedImage;
 import java.awt.image.ImageObserver;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
 import java.net.URL;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CountDownLatch;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
 import net.rptools.lib.MD5Key;
 import net.rptools.lib.image.ImageUtil;
 import net.rptools.maptool.client.ui.theme.Images;
@@ -37,10 +40,15 @@
 /**
  * The ImageManager class keeps a cache of loaded images. This class can be used to load the raw
  * image data from an asset. The loading of the raw image data into a usable class is done in the
- * background by one of two threads. The ImageManager will return a "?" (UNKNOWN_IMAGE) if the asset
- * is still downloading or the asset image is still being loaded, and a "X" (BROKEN_IMAGE) if the
- * asset or image is invalid. Small images are loaded using a different thread pool from large
- * images, and allows small images to load quicker.
+ * background by a pool of decoder threads sized to the number of cores. The ImageManager will
+ * return a "?" (UNKNOWN_IMAGE) if the asset is still downloading or the asset image is still being
+ * loaded, and a "X" (BROKEN_IMAGE) if the asset or image is invalid.
+ *
+ * <p>Queued images are decoded in order of urgency: images the {@link #setPriorityObserver
+ * priority observer} (the current zone renderer) is waiting for come first, then small images
+ * before large ones, and otherwise in the order they were requested. Changing the priority
+ * observer, i.e. switching maps, cancels the queued decodes nobody else is waiting for.
+ * Decodes run at once are bounded by a pixel budget, see {@link ImageDecodeQueue}.
  *
  * @author RPTools Team.
  */
@@ -65,10 +73,58 @@ public class ImageManager {
   /** The broken image, a "X" is used for all situations where the asset or image was invalid. */
   public static BufferedImage BROKEN_IMAGE;
 
-  /** Small and large thread pools for background processing of asset raw image data. */
-  private static ExecutorService smallImageLoader = Executors.newFixedThreadPool(1);
+  /**
+   * Decode statistics.
+   *
+   * @param queueDepth the number of images waiting to be decoded.
+   * @param activeDecodes the number of images being decoded.
+   * @param decoded the number of images decoded.
+   * @param cancelled the number of queued decodes cancelled because they were stale.
+   * @param meanWaitMillis the mean time in milliseconds an image waited in the queue.
+   * @param maxWaitMillis the maximum time in milliseconds an image waited in the queue.
+   * @param meanDecodeMillis the mean time in milliseconds taken to decode an image.
+   * @param maxDecodeMillis the maximum time in milliseconds taken to decode an image.
+   */
+  public record DecodeStatistics(
+      int queueDepth,
+      int activeDecodes,
+      long decoded,
+      long cancelled,
+      double meanWaitMillis,
+      double maxWaitMillis,
+      double meanDecodeMillis,
+      double maxDecodeMillis) {}
+
+  /** The number of decoder threads, one core is left for the event dispatch thread. */
+  private static final int DECODER_THREADS =
+      Math.max(2, Runtime.getRuntime().availableProcessors() - 1);
+
+  /**
+   * The most pixels to decode at once. A decoded image takes four bytes a pixel and is copied into
+   * a compatible image, so this keeps the decodes in flight to about a quarter of the heap.
+   */
+  private static final long DECODE_PIXEL_BUDGET =
+      Math.max(16 * 1024 * 1024, Runtime.getRuntime().maxMemory() / 32);
+
+  /** The queue of background decodes of asset raw image data, most urgent first. */
+  private static final ImageDecodeQueue<MD5Key> decodeQueue =
+      new ImageDecodeQueue<>(DECODER_THREADS, DECODE_PIXEL_BUDGET, "image-decoder-%d");
+
+  /** The observer whose images are decoded first, {@code null} if there is none. */
+  private static volatile ImageObserver priorityObserver;
+
+  /** The counters for the decode statistics. */
+  private static class DecodeCounters {
+    private long decoded;
+    private long cancelled;
+    private long waitNanos;
+    private long maxWaitNanos;
+    private long decodeNanos;
+    private long maxDecodeNanos;
+  }
 
-  private static ExecutorService largeImageLoader = Executors.newFixedThreadPool(1);
+  /** The counters for the decode statistics, guarded by itself. */
+  private static final DecodeCounters decodeCounters = new DecodeCounters();
 
   private static final Object imageLoaderMutex = new Object();
 
@@ -453,17 +509,158 @@ private static void notifyObservers(Asset asset, BufferedImage image) {
   }
 
   /**
-   * Run a thread to load the asset raw image data in the background using the provided hints.
+   * Queue the asset raw image data to be loaded in the background using the provided hints. If the
+   * image is already queued it is only moved ahead if the priority observer now waits for it.
    *
    * @param asset Load raw image data from this asset
    * @param hints Hints used when loading image data
    */
   private static void backgroundLoadImage(Asset asset, Map<String, Object> hints) {
-    // Use large image loader if the image is larger than 128kb.
-    if (asset.getData().length > 128 * 1024) {
-      largeImageLoader.execute(new BackgroundImageLoader(asset, hints));
-    } else {
-      smallImageLoader.execute(new BackgroundImageLoader(asset, hints));
+    synchronized (imageLoaderMutex) {
+      MD5Key id = asset.getMD5Key();
+      long queuedAt = System.nanoTime();
+      decodeQueue.submit(
+          id,
+          getPixelCount(asset.getData()),
+          isWantedByPriorityObserver(id),
+          () -> decode(asset, hints, queuedAt));
+    }
+  }
+
+  /**
+   * Decodes the asset raw image data and records the time it waited and took in the statistics.
+   *
+   * @param asset Load raw image data from this asset
+   * @param hints Hints used when loading image data
+   * @param queuedAt the {@link System#nanoTime()} the decode was queued at.
+   */
+  private static void decode(Asset asset, Map<String, Object> hints, long queuedAt) {
+    long startedAt = System.nanoTime();
+    try {
+      new BackgroundImageLoader(asset, hints).run();
+    } finally {
+      long finishedAt = System.nanoTime();
+      synchronized (decodeCounters) {
+        var c = decodeCounters;
+        c.decoded++;
+        c.waitNanos += startedAt - queuedAt;
+        c.maxWaitNanos = Math.max(c.maxWaitNanos, startedAt - queuedAt);
+        c.decodeNanos += finishedAt - startedAt;
+        c.maxDecodeNanos = Math.max(c.maxDecodeNanos, finishedAt - startedAt);
+      }
+    }
+  }
+
+  /**
+   * Returns the number of pixels of an image, read from the image header without decoding it. If
+   * the header can't be read the pixels are estimated from the size of the data.
+   *
+   * @param data the raw image data.
+   * @return the number of pixels of the image.
+   */
+  private static long getPixelCount(byte[] data) {
+    try (ImageInputStream in = ImageIO.createImageInputStream(new ByteArrayInputStream(data))) {
+      Iterator<ImageReader> readers = in == null ? null : ImageIO.getImageReaders(in);
+      if (readers != null && readers.hasNext()) {
+        ImageReader reader = readers.next();
+        try {
+          reader.setInput(in, true, true);
+          return (long) reader.getWidth(0) * reader.getHeight(0);
+        } finally {
+          reader.dispose();
+        }
+      }
+    } catch (IOException | RuntimeException e) {
+      log.debug("Unable to read the image size, estimating it", e);
+    }
+    // Compressed images are rarely smaller than a byte for every eight pixels.
+    return data.length * 8L;
+  }
+
+  /**
+   * Returns whether the priority observer is waiting for an image.
+   *
+   * @param assetId the id of the asset of the image.
+   * @return {@code true} if the priority observer is waiting for the image.
+   */
+  private static boolean isWantedByPriorityObserver(MD5Key assetId) {
+    ImageObserver observer = priorityObserver;
+    Set<ImageObserver> observers = imageObserverMap.get(assetId);
+    return observer != null && observers != null && observers.contains(observer);
+  }
+
+  /**
+   * Sets the observer whose images are decoded before any others, this is the zone renderer that
+   * is being displayed. The queued decodes that only the previous priority observer was waiting for
+   * are stale and are cancelled, the previous observer requests them again if it is displayed
+   * again. The queued decodes the new priority observer is waiting for are moved ahead.
+   *
+   * @param observer the new priority observer, or {@code null} for none.
+   */
+  public static void setPriorityObserver(ImageObserver observer) {
+    synchronized (imageLoaderMutex) {
+      ImageObserver previous = priorityObserver;
+      if (previous == observer) {
+        return;
+      }
+      priorityObserver = observer;
+
+      List<MD5Key> stale =
+          decodeQueue.reprioritize(
+              id -> {
+                Set<ImageObserver> observers = imageObserverMap.get(id);
+                return observers != null && observers.contains(observer);
+              },
+              id -> {
+                Set<ImageObserver> observers = imageObserverMap.get(id);
+                return observers == null
+                    || observers.isEmpty()
+                    || (observers.size() == 1 && observers.contains(previous));
+              });
+      for (MD5Key id : stale) {
+        imageObserverMap.remove(id);
+        imageMap.remove(id, TRANSFERING_IMAGE);
+      }
+      int cancelled = stale.size();
+      if (cancelled > 0) {
+        log.debug("Cancelled {} stale image decodes", cancelled);
+        synchronized (decodeCounters) {
+          decodeCounters.cancelled += cancelled;
+        }
+      }
+    }
+  }
+
+  /**
+   * Returns the decode statistics since the statistics were last reset.
+   *
+   * @return the decode statistics.
+   */
+  public static DecodeStatistics getDecodeStatistics() {
+    synchronized (decodeCounters) {
+      var c = decodeCounters;
+      return new DecodeStatistics(
+          decodeQueue.getQueueDepth(),
+          decodeQueue.getActiveCount(),
+          c.decoded,
+          c.cancelled,
+          c.decoded == 0 ? 0 : c.waitNanos / 1e6 / c.decoded,
+          c.maxWaitNanos / 1e6,
+          c.decoded == 0 ? 0 : c.decodeNanos / 1e6 / c.decoded,
+          c.maxDecodeNanos / 1e6);
+    }
+  }
+
+  /** Resets the decode statistics. The queue depth and active decodes are not reset. */
+  public static void resetDecodeStatistics() {
+    synchronized (decodeCounters) {
+      var c = decodeCounters;
+      c.decoded = 0;
+      c.cancelled = 0;
+      c.waitNanos = 0;
+      c.maxWaitNanos = 0;
+      c.decodeNanos = 0;
+      c.maxDecodeNanos = 0;
     }
   }
 
@@ -19,12 +19,15 @@
 import java.awt.Dimension;
 import java.awt.Graphics2D;
 import java.awt.image.BufferedImage;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.OutputStream;
 import java.net.URL;
 import java.nio.charset.StandardCharsets;
 import java.text.ParseException;
@@ -35,6 +38,7 @@
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ExecutionException;
+import javax.annotation.Nullable;
 import javax.imageio.ImageIO;
 import net.rptools.lib.CodeTimer;
 import net.rptools.lib.FileUtil;
@@ -45,6 +49,7 @@
 import net.rptools.maptool.client.AppConstants;
 import net.rptools.maptool.client.AppPreferences;
 import net.rptools.maptool.client.AppUtil;
+import net.rptools.maptool.client.DeveloperOptions;
 import net.rptools.maptool.client.MapTool;
 import net.rptools.maptool.client.swing.SwingUtil;
 import net.rptools.maptool.client.ui.Scale;
@@ -56,6 +61,7 @@
 import net.rptools.maptool.model.AssetManager;
 import net.rptools.maptool.model.Campaign;
 import net.rptools.maptool.model.CampaignProperties;
+import net.rptools.maptool.model.CampaignSnapshot;
 import net.rptools.maptool.model.GUID;
 import net.rptools.maptool.model.LookupTable;
 import net.rptools.maptool.model.MacroButtonProperties;
@@ -142,8 +148,10 @@ public class PersistenceUtil {
    *     libraries will be removed.
    * @since 1.15.0 Labels now have background color and font, will default old lables to a similar
    *     background color to what they had before.
+   * @since 1.18.0 Campaigns are saved in the protobuf campaign format, older versions can only read
+   *     campaigns saved with the legacy campaign format developer option.
    */
-  private static final String CAMPAIGN_VERSION = "1.15.0";
+  static final String CAMPAIGN_VERSION = "1.18.0";
 
   /**
    * Manager of the versioning of campaign models.
@@ -369,6 +377,32 @@ private static String fixupZoneName(String n) {
    * @throws IOException If an I/O error occurs during the save process.
    */
   public static void saveCampaign(Campaign campaign, File campaignFile) throws IOException {
+    saveCampaign(campaign, null, campaignFile);
+  }
+
+  /**
+   * Saves a snapshot of a Campaign to a specified File. Unlike {@link #saveCampaign(Campaign,
+   * File)} this does not access the live campaign, so it can run on a background thread.
+   *
+   * @param snapshot The snapshot of the Campaign to save.
+   * @param campaignFile The File to save the Campaign to.
+   * @throws IOException If an I/O error occurs during the save process.
+   */
+  public static void saveCampaign(CampaignSnapshot snapshot, File campaignFile) throws IOException {
+    saveCampaign(null, snapshot, campaignFile);
+  }
+
+  /**
+   * Saves a Campaign or a snapshot of it to a specified File.
+   *
+   * @param campaign The Campaign to save, ignored if {@code snapshot} is not {@code null}.
+   * @param snapshot The snapshot of the Campaign to save, or {@code null} to save the Campaign.
+   * @param campaignFile The File to save the Campaign to.
+   * @throws IOException If an I/O error occurs during the save process.
+   */
+  private static void saveCampaign(
+      Campaign campaign, @Nullable CampaignSnapshot snapshot, File campaignFile)
+      throws IOException {
     CodeTimer.using(
         "CampaignSave",
         saveTimer -> {
@@ -396,7 +430,8 @@ public static void saveCampaign(Campaign campaign, File campaignFile) throws IOE
             }
             // Save all assets in active use (consolidate duplicates between maps)
             saveTimer.start("Collect all assets");
-            Set<MD5Key> allAssetIds = campaign.getAllAssetIds();
+            Set<MD5Key> allAssetIds =
+                snapshot != null ? snapshot.assetIds() : campaign.getAllAssetIds();
             for (MD5Key key : allAssetIds) {
               // Put in a placeholder; all we really care about is the MD5Key for now...
               persistedCampaign.assetMap.put(key, null);
@@ -420,11 +455,11 @@ public static void saveCampaign(Campaign campaign, File campaignFile) throws IOE
 
             try {
               saveTimer.start("Set content");
-
-              pakFile.setContent(persistedCampaign);
-              pakFile.setProperty(PROP_CAMPAIGN_VERSION, CAMPAIGN_VERSION);
-              pakFile.setProperty(PROP_VERSION, MapTool.getVersion());
-
+              setCampaignContent(
+                  pakFile,
+                  persistedCampaign,
+                  snapshot,
+                  snapshot == null && DeveloperOptions.Toggle.SaveLegacyCampaignFormat.isEnabled());
               saveTimer.stop("Set content");
               saveTimer.start("Save");
               pakFile.save();
@@ -484,6 +519,39 @@ public static void saveCampaign(Campaign campaign, File campaignFile) throws IOE
         });
   }
 
+  /**
+   * Writes the campaign and the campaign version to a campaign file.
+   *
+   * @param pakFile the campaign file.
+   * @param persistedCampaign the campaign, and the assets and view saved with it.
+   * @param snapshot the snapshot of the campaign to write instead of the campaign, or {@code null}.
+   * @param legacy if the campaign should be written in the legacy XML format, which is only
+   *     supported for the campaign itself.
+   * @throws IOException if an error occurs writing the campaign.
+   */
+  static void setCampaignContent(
+      PackedFile pakFile,
+      PersistedCampaign persistedCampaign,
+      @Nullable CampaignSnapshot snapshot,
+      boolean legacy)
+      throws IOException {
+    if (legacy && snapshot == null) {
+      pakFile.setContent(persistedCampaign);
+    } else {
+      try (OutputStream out =
+          new BufferedOutputStream(
+              pakFile.getOutputStream(CampaignProtobufFormat.CAMPAIGN_FILE))) {
+        if (snapshot != null) {
+          CampaignProtobufFormat.write(snapshot, persistedCampaign, out);
+        } else {
+          CampaignProtobufFormat.write(persistedCampaign, out);
+        }
+      }
+    }
+    pakFile.setProperty(PROP_CAMPAIGN_VERSION, CAMPAIGN_VERSION);
+    pakFile.setProperty(PROP_VERSION, MapTool.getVersion());
+  }
+
   /**
    * Saves a thumbnail image for a campaign.
    *
@@ -544,17 +612,29 @@ public static PersistedCampaign loadCampaign(File campaignFile) throws IOExcepti
       // This is where the campaignVersion was added
       campaignVersion = campaignVersion == null ? "1.3.50" : campaignVersion;
 
-      try {
-        persistedCampaign = (PersistedCampaign) pakFile.getContent(campaignVersion);
-      } catch (ConversionException ce) {
-        // Ignore the exception and check for "campaign == null" below...
-        MapTool.showError("PersistenceUtil.error.campaignVersion", ce);
-      } catch (ClassCastException cce) {
-        // Ignore the exception and check for "campaign == null" below...
-        MapTool.showWarning(
-            I18N.getText(
-                "PersistenceUtil.warn.campaignWrongFileType",
-                pakFile.getContent().getClass().getSimpleName()));
+      if (pakFile.hasFile(CampaignProtobufFormat.CAMPAIGN_FILE)) {
+        try (InputStream in =
+            new BufferedInputStream(
+                pakFile.getFileAsInputStream(CampaignProtobufFormat.CAMPAIGN_FILE))) {
+          persistedCampaign = CampaignProtobufFormat.read(in);
+        } catch (IOException ioe) {
+          // Ignore the exception and check for "campaign == null" below...
+          MapTool.showError("PersistenceUtil.error.campaignRead", ioe);
+        }
+      } else {
+        // Legacy XML campaign
+        try {
+          persistedCampaign = (PersistedCampaign) pakFile.getContent(campaignVersion);
+        } catch (ConversionException ce) {
+          // Ignore the exception and check for "campaign == null" below...
+          MapTool.showError("PersistenceUtil.error.campaignVersion", ce);
+        } catch (ClassCastException cce) {
+          // Ignore the exception and check for "campaign == null" below...
+          MapTool.showWarning(
+              I18N.getText(
+                  "PersistenceUtil.warn.campaignWrongFileType",
+                  pakFile.getContent().getClass().getSimpleName()));
+        }
       }
 
       if (persistedCampaign != null) {
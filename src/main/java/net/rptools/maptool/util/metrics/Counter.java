@@ -0,0 +1,104 @@
+/*
+ * This software Copyright by the RPTools.net development team, and
+ * licensed under the Affero GPL Version 3 or, at your option, any later
+ * version.
+ *
+ * MapTool Source Code is distributed in the hope that it will be
+ * useful, but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ *
+ * You should have received a copy of the GNU Affero General Public
+ * License * along with this source Code.  If not, please visit
+ * <http://www.gnu.org/licenses/> and specifically the Affero license
+ * text at <http://www.gnu.org/licenses/agpl.html>.
+ */
+package net.rptools.maptool.util.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+import javax.annotation.Nullable;
+
+/**
+ * A count of events, such as messages sent or cache misses. Incrementing a counter is cheap enough
+ * to be done on every event, even from several threads at once.
+ *
+ * <p>A counter can also report a running total kept by code that can not use the registry, in
+ * which case it counts from the total at the time it was last reset.
+ */
+public final class Counter {
+
+  /** The name of the counter. */
+  private final String name;
+
+  /** The current count. */
+  private final LongAdder count = new LongAdder();
+
+  /** Supplies the running total counted, or {@code null} if the counter is only incremented. */
+  @Nullable private final LongSupplier total;
+
+  /** The running total when the counter was last reset. */
+  private final AtomicLong baseline = new AtomicLong();
+
+  /**
+   * Creates a new counter, counters are obtained through {@link MetricsRegistry#counter(String)}.
+   *
+   * @param name the name of the counter.
+   */
+  Counter(String name) {
+    this(name, null);
+  }
+
+  /**
+   * Creates a new counter that counts a running total, obtained through {@link
+   * MetricsRegistry#counter(String, LongSupplier)}.
+   *
+   * @param name the name of the counter.
+   * @param total supplies the running total, or {@code null} if the counter is only incremented.
+   */
+  Counter(String name, @Nullable LongSupplier total) {
+    this.name = name;
+    this.total = total;
+  }
+
+  /**
+   * Returns the name of the counter.
+   *
+   * @return the name of the counter.
+   */
+  public String getName() {
+    return name;
+  }
+
+  /** Adds one to the counter. */
+  public void increment() {
+    count.increment();
+  }
+
+  /**
+   * Adds to the counter.
+   *
+   * @param amount the amount to add.
+   */
+  public void add(long amount) {
+    count.add(amount);
+  }
+
+  /**
+   * Returns the count since the counter was last reset.
+   *
+   * @return the count.
+   */
+  public long get() {
+    long sum = count.sum();
+    return total == null ? sum : sum + total.getAsLong() - baseline.get();
+  }
+
+  /** Resets the count to zero. */
+  void reset() {
+    count.reset();
+    if (total != null) {
+      baseline.set(total.getAsLong());
+    }
+  }
+}
@@ -0,0 +1,194 @@
+/*
+ * This software Copyright by the RPTools.net development team, and
+ * licensed under the Affero GPL Version 3 or, at your option, any later
+ * version.
+ *
+ * MapTool Source Code is distributed in the hope that it will be
+ * useful, but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ *
+ * You should have received a copy of the GNU Affero General Public
+ * License * along with this source Code.  If not, please visit
+ * <http://www.gnu.org/licenses/> and specifically the Affero license
+ * text at <http://www.gnu.org/licenses/agpl.html>.
+ */
+package net.rptools.maptool.util.metrics;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A histogram of latencies in nanoseconds. Values are counted in buckets that are spaced
+ * logarithmically, eight to every power of two, so percentiles are reported to within about 12% of
+ * the recorded value. Recording a value only increments a few counters so it is cheap enough to be
+ * done on every frame or message, from any thread.
+ */
+public final class LatencyHistogram {
+
+  /**
+   * The latencies recorded by a histogram, in milliseconds.
+   *
+   * @param count the number of values recorded.
+   * @param meanMillis the mean latency.
+   * @param p50Millis the median latency.
+   * @param p90Millis the 90th percentile latency.
+   * @param p99Millis the 99th percentile latency.
+   * @param maxMillis the maximum latency.
+   */
+  public record Snapshot(
+      long count,
+      double meanMillis,
+      double p50Millis,
+      double p90Millis,
+      double p99Millis,
+      double maxMillis) {}
+
+  /** The number of bits of the value below its highest set bit used to select a sub bucket. */
+  private static final int SUB_BUCKET_BITS = 3;
+
+  /** The number of buckets for each power of two. */
+  private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+  /** The number of buckets needed to cover all positive long values. */
+  private static final int BUCKETS = (Long.SIZE - SUB_BUCKET_BITS) * SUB_BUCKETS;
+
+  private static final double NANOS_PER_MILLI = 1_000_000.0;
+
+  /** The name of the histogram. */
+  private final String name;
+
+  /** The number of values recorded in each bucket. */
+  private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+
+  /** The sum of the values recorded. */
+  private final LongAdder total = new LongAdder();
+
+  /** The largest value recorded. */
+  private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+  /**
+   * Creates a new histogram, histograms are obtained through {@link
+   * MetricsRegistry#histogram(String)}.
+   *
+   * @param name the name of the histogram.
+   */
+  LatencyHistogram(String name) {
+    this.name = name;
+  }
+
+  /**
+   * Returns the name of the histogram.
+   *
+   * @return the name of the histogram.
+   */
+  public String getName() {
+    return name;
+  }
+
+  /**
+   * Records a latency.
+   *
+   * @param nanos the latency in nanoseconds, negative values are recorded as zero.
+   */
+  public void record(long nanos) {
+    nanos = Math.max(0, nanos);
+    buckets.incrementAndGet(bucketIndex(nanos));
+    total.add(nanos);
+    max.accumulate(nanos);
+  }
+
+  /**
+   * Records the time elapsed since the start of an operation.
+   *
+   * @param startNanos the {@link System#nanoTime()} at the start of the operation.
+   */
+  public void recordSince(long startNanos) {
+    record(System.nanoTime() - startNanos);
+  }
+
+  /**
+   * Returns the latencies recorded since the histogram was last reset.
+   *
+   * @return the recorded latencies.
+   */
+  public Snapshot snapshot() {
+    long[] counts = new long[BUCKETS];
+    long recorded = 0;
+    for (int i = 0; i < BUCKETS; i++) {
+      counts[i] = buckets.get(i);
+      recorded += counts[i];
+    }
+    long maxNanos = max.get();
+    if (recorded == 0) {
+      return new Snapshot(0, 0, 0, 0, 0, 0);
+    }
+    return new Snapshot(
+        recorded,
+        total.sum() / (double) recorded / NANOS_PER_MILLI,
+        percentile(counts, recorded, 0.50, maxNanos) / NANOS_PER_MILLI,
+        percentile(counts, recorded, 0.90, maxNanos) / NANOS_PER_MILLI,
+        percentile(counts, recorded, 0.99, maxNanos) / NANOS_PER_MILLI,
+        maxNanos / NANOS_PER_MILLI);
+  }
+
+  /** Clears all recorded values. */
+  void reset() {
+    for (int i = 0; i < BUCKETS; i++) {
+      buckets.set(i, 0);
+    }
+    total.reset();
+    max.reset();
+  }
+
+  /**
+   * Returns the value at a percentile, estimated as the upper bound of the bucket it falls in.
+   *
+   * @param counts the count of each bucket.
+   * @param recorded the total of the counts.
+   * @param fraction the percentile as a fraction.
+   * @param maxNanos the largest value recorded, no estimate is larger than this.
+   * @return the estimated value in nanoseconds.
+   */
+  private static long percentile(long[] counts, long recorded, double fraction, long maxNanos) {
+    long rank = (long) Math.ceil(recorded * fraction);
+    long seen = 0;
+    for (int i = 0; i < counts.length; i++) {
+      seen += counts[i];
+      if (seen >= rank) {
+        return Math.min(bucketUpperBound(i), maxNanos);
+      }
+    }
+    return maxNanos;
+  }
+
+  /**
+   * Returns the bucket a value is counted in. Values below {@link #SUB_BUCKETS} have a bucket each,
+   * above that each power of two is split into {@link #SUB_BUCKETS} buckets of equal width.
+   *
+   * @param value the non negative value.
+   * @return the index of the bucket.
+   */
+  static int bucketIndex(long value) {
+    if (value < SUB_BUCKETS) {
+      return (int) value;
+    }
+    int shift = (Long.SIZE - 1 - Long.numberOfLeadingZeros(value)) - SUB_BUCKET_BITS;
+    return (shift + 1) * SUB_BUCKETS + (int) ((value >>> shift) & (SUB_BUCKETS - 1));
+  }
+
+  /**
+   * Returns the largest value counted in a bucket.
+   *
+   * @param index the index of the bucket.
+   * @return the largest value of the bucket.
+   */
+  static long bucketUpperBound(int index) {
+    if (index < SUB_BUCKETS) {
+      return index;
+    }
+    int shift = index / SUB_BUCKETS - 1;
+    long lower = (long) (SUB_BUCKETS + index % SUB_BUCKETS) << shift;
+    return lower + (1L << shift) - 1;
+  }
+}
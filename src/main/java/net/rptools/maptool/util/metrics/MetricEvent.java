@@ -0,0 +1,62 @@
+/*
+ * This software Copyright by the RPTools.net development team, and
+ * licensed under the Affero GPL Version 3 or, at your option, any later
+ * version.
+ *
+ * MapTool Source Code is distributed in the hope that it will be
+ * useful, but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ *
+ * You should have received a copy of the GNU Affero General Public
+ * License * along with this source Code.  If not, please visit
+ * <http://www.gnu.org/licenses/> and specifically the Affero license
+ * text at <http://www.gnu.org/licenses/agpl.html>.
+ */
+package net.rptools.maptool.util.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Period;
+import jdk.jfr.StackTrace;
+
+/**
+ * JFR event recording the value of a metric. One event per metric is emitted every second while a
+ * flight recording that has the event enabled is running.
+ */
+@Name("net.rptools.maptool.Metric")
+@Label("MapTool Metric")
+@Category("MapTool")
+@Description("The value of a MapTool metric since the metrics were last reset")
+@Period("1 s")
+@StackTrace(false)
+class MetricEvent extends Event {
+
+  @Label("Name")
+  String name;
+
+  @Label("Kind")
+  String kind;
+
+  @Label("Count")
+  @Description("The value of a counter or the number of latencies recorded by a histogram")
+  long count;
+
+  @Label("Value")
+  @Description("The value of a gauge")
+  double value;
+
+  @Label("Mean (ms)")
+  double meanMillis;
+
+  @Label("50th Percentile (ms)")
+  double p50Millis;
+
+  @Label("99th Percentile (ms)")
+  double p99Millis;
+
+  @Label("Max (ms)")
+  double maxMillis;
+}
@@ -0,0 +1,243 @@
+/*
+ * This software Copyright by the RPTools.net development team, and
+ * licensed under the Affero GPL Version 3 or, at your option, any later
+ * version.
+ *
+ * MapTool Source Code is distributed in the hope that it will be
+ * useful, but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ *
+ * You should have received a copy of the GNU Affero General Public
+ * License * along with this source Code.  If not, please visit
+ * <http://www.gnu.org/licenses/> and specifically the Affero license
+ * text at <http://www.gnu.org/licenses/agpl.html>.
+ */
+package net.rptools.maptool.util.metrics;
+
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.DoubleSupplier;
+import java.util.function.LongSupplier;
+import javax.annotation.Nullable;
+import jdk.jfr.FlightRecorder;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Registry of the counters, latency histograms and gauges that describe how a running MapTool is
+ * performing, such as frame time, vision time, macro time, network queue depth and asset load
+ * latency.
+ *
+ * <p>Metrics are always collected, they are cheap enough to leave on, and can be viewed in the
+ * metrics frame, written to a file with {@link #writeSnapshot(Path)} or recorded as <code>
+ * net.rptools.maptool.Metric</code> events by a JFR flight recording.
+ *
+ * <p>Metrics are named with dotted lower camel case names grouped by subsystem, e.g. <code>
+ * render.frame</code>. The code being measured usually keeps the metric in a static field:
+ *
+ * <pre>{@code
+ * private static final LatencyHistogram FRAME_TIME = MetricsRegistry.histogram("render.frame");
+ * ...
+ * long start = System.nanoTime();
+ * paint();
+ * FRAME_TIME.recordSince(start);
+ * }</pre>
+ *
+ * <p>This class is thread safe.
+ */
+public final class MetricsRegistry {
+
+  private static final Logger log = LogManager.getLogger(MetricsRegistry.class);
+
+  /** The kinds of metric. */
+  public enum Kind {
+    /** A count of events. */
+    COUNTER,
+    /** A current value, such as a queue depth. */
+    GAUGE,
+    /** A distribution of latencies. */
+    HISTOGRAM
+  }
+
+  /**
+   * The value of a metric at the time a snapshot was taken.
+   *
+   * @param name the name of the metric.
+   * @param kind the kind of metric.
+   * @param count the count of a counter, or number of values recorded by a histogram.
+   * @param value the value of a gauge.
+   * @param latency the latencies recorded by a histogram, {@code null} for other kinds.
+   */
+  public record Sample(
+      String name,
+      Kind kind,
+      long count,
+      double value,
+      @Nullable LatencyHistogram.Snapshot latency) {}
+
+  private static final Map<String, Counter> counters = new ConcurrentHashMap<>();
+
+  private static final Map<String, LatencyHistogram> histograms = new ConcurrentHashMap<>();
+
+  private static final Map<String, DoubleSupplier> gauges = new ConcurrentHashMap<>();
+
+  static {
+    try {
+      FlightRecorder.addPeriodicEvent(MetricEvent.class, MetricsRegistry::emitEvents);
+    } catch (RuntimeException | LinkageError e) {
+      log.warn("Unable to register metric events with the flight recorder", e);
+    }
+  }
+
+  private MetricsRegistry() {}
+
+  /**
+   * Returns the counter with the given name, creating it if needed.
+   *
+   * @param name the name of the counter.
+   * @return the counter.
+   */
+  public static Counter counter(String name) {
+    return counters.computeIfAbsent(name, Counter::new);
+  }
+
+  /**
+   * Registers a counter that counts a running total kept elsewhere, such as by a module that can
+   * not use the registry, replacing any counter registered with the same name. Unlike a gauge it
+   * starts again from zero when the metrics are {@link #reset()}. The supplier must be quick and
+   * thread safe.
+   *
+   * @param name the name of the counter.
+   * @param total supplies the running total.
+   * @return the counter.
+   */
+  public static Counter counter(String name, LongSupplier total) {
+    var counter = new Counter(name, total);
+    counters.put(name, counter);
+    return counter;
+  }
+
+  /**
+   * Returns the latency histogram with the given name, creating it if needed.
+   *
+   * @param name the name of the histogram.
+   * @return the histogram.
+   */
+  public static LatencyHistogram histogram(String name) {
+    return histograms.computeIfAbsent(name, LatencyHistogram::new);
+  }
+
+  /**
+   * Registers a gauge, replacing any gauge registered with the same name. The supplier is called
+   * whenever a snapshot is taken so it should be quick and must be thread safe.
+   *
+   * @param name the name of the gauge.
+   * @param value supplies the current value of the gauge.
+   */
+  public static void gauge(String name, DoubleSupplier value) {
+    gauges.put(name, value);
+  }
+
+  /**
+   * Returns the current value of every metric, ordered by name.
+   *
+   * @return the values of the metrics.
+   */
+  public static List<Sample> snapshot() {
+    var samples = new ArrayList<Sample>();
+    counters
+        .values()
+        .forEach(c -> samples.add(new Sample(c.getName(), Kind.COUNTER, c.get(), 0, null)));
+    histograms
+        .values()
+        .forEach(
+            h -> {
+              var latency = h.snapshot();
+              samples.add(new Sample(h.getName(), Kind.HISTOGRAM, latency.count(), 0, latency));
+            });
+    gauges.forEach(
+        (name, supplier) -> {
+          double value;
+          try {
+            value = supplier.getAsDouble();
+          } catch (RuntimeException e) {
+            log.debug("Unable to read gauge {}", name, e);
+            value = Double.NaN;
+          }
+          samples.add(new Sample(name, Kind.GAUGE, 0, value, null));
+        });
+    samples.sort(Comparator.comparing(Sample::name));
+    return samples;
+  }
+
+  /** Resets all counters and histograms. Gauges report current values so are not affected. */
+  public static void reset() {
+    counters.values().forEach(Counter::reset);
+    histograms.values().forEach(LatencyHistogram::reset);
+  }
+
+  /**
+   * Writes a snapshot of all metrics to a file as JSON.
+   *
+   * @param file the file to write.
+   * @throws IOException if the file can not be written.
+   */
+  public static void writeSnapshot(Path file) throws IOException {
+    var metrics = new JsonArray();
+    for (var sample : snapshot()) {
+      var metric = new JsonObject();
+      metric.addProperty("name", sample.name());
+      metric.addProperty("kind", sample.kind().name());
+      switch (sample.kind()) {
+        case COUNTER -> metric.addProperty("count", sample.count());
+        case GAUGE -> metric.addProperty("value", sample.value());
+        case HISTOGRAM -> {
+          var latency = sample.latency();
+          metric.addProperty("count", latency.count());
+          metric.addProperty("meanMillis", latency.meanMillis());
+          metric.addProperty("p50Millis", latency.p50Millis());
+          metric.addProperty("p90Millis", latency.p90Millis());
+          metric.addProperty("p99Millis", latency.p99Millis());
+          metric.addProperty("maxMillis", latency.maxMillis());
+        }
+      }
+      metrics.add(metric);
+    }
+    var root = new JsonObject();
+    root.addProperty("timestamp", Instant.now().toString());
+    root.add("metrics", metrics);
+
+    var gson = new GsonBuilder().setPrettyPrinting().serializeSpecialFloatingPointValues().create();
+    Files.writeString(file, gson.toJson(root), StandardCharsets.UTF_8);
+  }
+
+  /** Emits a JFR event for each metric, called by the flight recorder when events are enabled. */
+  private static void emitEvents() {
+    for (var sample : snapshot()) {
+      var event = new MetricEvent();
+      event.name = sample.name();
+      event.kind = sample.kind().name();
+      event.count = sample.count();
+      event.value = sample.value();
+      var latency = sample.latency();
+      if (latency != null) {
+        event.meanMillis = latency.meanMillis();
+        event.p50Millis = latency.p50Millis();
+        event.p99Millis = latency.p99Millis();
+        event.maxMillis = latency.maxMillis();
+      }
+      event.commit();
+    }
+  }
+}
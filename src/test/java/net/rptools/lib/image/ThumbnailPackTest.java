@@ -0,0 +1,91 @@
+/*
+ * This software Copyright by the RPTools.net development team, and
+ * licensed under the Affero GPL Version 3 or, at your option, any later
+ * version.
+ *
+ * MapTool Source Code is distributed in the hope that it will be
+ * useful, but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ *
+ * You should have received a copy of the GNU Affero General Public
+ * License * along with this source Code.  If not, please visit
+ * <http://www.gnu.org/licenses/> and specifically the Affero license
+ * text at <http://www.gnu.org/licenses/agpl.html>.
+ */
+package net.rptools.lib.image;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class ThumbnailPackTest {
+  @Test
+  @DisplayName("Test that thumbnails are read back after the pack is opened again")
+  public void testReopen(@TempDir File tempDir) throws IOException {
+    File file = new File(tempDir, ThumbnailPack.FILE_NAME);
+    var pack = new ThumbnailPack(file);
+    pack.put("a", 1, new byte[] {1, 2, 3});
+    pack.put("b", 1, new byte[] {4});
+    pack.put("a", 2, new byte[] {5, 6});
+    pack.close();
+
+    pack = new ThumbnailPack(file);
+    assertArrayEquals(new byte[] {5, 6}, pack.get("a", 2));
+    assertArrayEquals(new byte[] {4}, pack.get("b", 1));
+    assertNull(pack.get("a", 3), "thumbnail older than its source");
+    assertNull(pack.get("c", 0));
+    pack.close();
+  }
+
+  @Test
+  @DisplayName("Test that replaced thumbnails are removed when the pack is opened")
+  public void testCompact(@TempDir File tempDir) throws IOException {
+    File file = new File(tempDir, ThumbnailPack.FILE_NAME);
+    var pack = new ThumbnailPack(file);
+    for (int i = 0; i < 5; i++) {
+      pack.put("a", i, new byte[100]);
+    }
+    pack.close();
+    long size = file.length();
+
+    pack = new ThumbnailPack(file);
+    assertEquals(100, pack.get("a", 4).length);
+    assertTrue(file.length() < size / 2);
+    pack.close();
+  }
+
+  @Test
+  @DisplayName("Test that an incomplete thumbnail at the end of the pack is discarded")
+  public void testIncomplete(@TempDir File tempDir) throws IOException {
+    File file = new File(tempDir, ThumbnailPack.FILE_NAME);
+    var pack = new ThumbnailPack(file);
+    pack.put("a", 1, new byte[10]);
+    pack.put("b", 1, new byte[10]);
+    pack.close();
+    try (var raf = new RandomAccessFile(file, "rw")) {
+      raf.setLength(raf.length() - 5);
+    }
+
+    pack = new ThumbnailPack(file);
+    assertNotNull(pack.get("a", 1));
+    assertNull(pack.get("b", 1));
+    pack.close();
+  }
+
+  @Test
+  @DisplayName("Test that the users of a pack file share one pack")
+  public void testForFile(@TempDir File tempDir) throws IOException {
+    File file = new File(tempDir, ThumbnailPack.FILE_NAME);
+    var pack = ThumbnailPack.forFile(file);
+    assertSame(pack, ThumbnailPack.forFile(new File(tempDir, ThumbnailPack.FILE_NAME)));
+
+    pack.put("a", 1, new byte[] {1});
+    assertArrayEquals(new byte[] {1}, ThumbnailPack.forFile(file).get("a", 1));
+    pack.close();
+  }
+}
@@ -0,0 +1,52 @@
+/*
+ * This software Copyright by the RPTools.net development team, and
+ * licensed under the Affero GPL Version 3 or, at your option, any later
+ * version.
+ *
+ * MapTool Source Code is distributed in the hope that it will be
+ * useful, but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ *
+ * You should have received a copy of the GNU Affero General Public
+ * License * along with this source Code.  If not, please visit
+ * <http://www.gnu.org/licenses/> and specifically the Affero license
+ * text at <http://www.gnu.org/licenses/agpl.html>.
+ */
+package net.rptools.maptool.client;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.google.protobuf.InvalidProtocolBufferException;
+import java.util.List;
+import net.rptools.maptool.model.Token;
+import net.rptools.maptool.model.Zone;
+import net.rptools.maptool.server.EncodedDtoCache;
+import net.rptools.maptool.server.proto.Message;
+import net.rptools.maptool.server.proto.PutTokenMsg;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+class ClientMessageHandlerTest {
+
+  @Test
+  @DisplayName("Token messages for a pending zone are replayed only if the zone does not have them")
+  void pendingZoneReplaysNewerTokenMessages() throws InvalidProtocolBufferException {
+    var zone = new Zone();
+    var token = new Token();
+    zone.putToken(token);
+    var putTokenMsg = PutTokenMsg.newBuilder().setZoneGuid(zone.getId().toString()).build();
+    var tokenBytes = new EncodedDtoCache().getToken(zone, token);
+    // As relayed from a client and as sent by the server itself, e.g. after bringing to front.
+    var relayed =
+        Message.newBuilder()
+            .setPutTokenMsg(putTokenMsg.toBuilder().setToken(token.toDto()))
+            .setServerVersion(5)
+            .build();
+    var older = Message.parseFrom(EncodedDtoCache.putTokenMessage(putTokenMsg, tokenBytes, 6));
+    var newer = Message.parseFrom(EncodedDtoCache.putTokenMessage(putTokenMsg, tokenBytes, 8));
+
+    var replayed = ClientMessageHandler.newerMessages(List.of(relayed, older, newer), 6);
+
+    assertEquals(List.of(newer), replayed);
+  }
+}
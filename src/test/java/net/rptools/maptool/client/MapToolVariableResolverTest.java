@@ -0,0 +1,94 @@
+/*
+ * This software Copyright by the RPTools.net development team, and
+ * licensed under the Affero GPL Version 3 or, at your option, any later
+ * version.
+ *
+ * MapTool Source Code is distributed in the hope that it will be
+ * useful, but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ *
+ * You should have received a copy of the GNU Affero General Public
+ * License * along with this source Code.  If not, please visit
+ * <http://www.gnu.org/licenses/> and specifically the Affero license
+ * text at <http://www.gnu.org/licenses/agpl.html>.
+ */
+package net.rptools.maptool.client;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonParser;
+import java.math.BigDecimal;
+import java.util.List;
+import net.rptools.maptool.client.functions.json.JSONMacroFunctions;
+import net.rptools.parser.ParserException;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+class MapToolVariableResolverTest {
+
+  /** Evaluates {@code target = json.append(source, value)} as the parser does. */
+  private static Object append(
+      MapToolVariableResolver resolver, String target, String source, int value)
+      throws ParserException {
+    List<Object> args = List.of(resolver.getVariable(source), BigDecimal.valueOf(value));
+    Object result =
+        JSONMacroFunctions.getInstance().childEvaluate(null, resolver, "json.append", args);
+    if (target != null) {
+      resolver.setVariable(target, result);
+    }
+    return result;
+  }
+
+  private static JsonArray json(String json) {
+    return JsonParser.parseString(json).getAsJsonArray();
+  }
+
+  @Test
+  @DisplayName("Appending to a variable in a loop appends to the same array")
+  void appendInLoopReusesArray() throws ParserException {
+    var resolver = new MapToolVariableResolver(null);
+    resolver.setVariable("list", "[]");
+
+    Object first = append(resolver, "list", "list", 0);
+    for (int i = 1; i < 5; i++) {
+      assertSame(first, append(resolver, "list", "list", i));
+    }
+    assertEquals(json("[0, 1, 2, 3, 4]"), resolver.getVariable("list"));
+  }
+
+  @Test
+  @DisplayName("An array held by two variables is copied when appended to")
+  void appendCopiesSharedArray() throws ParserException {
+    var resolver = new MapToolVariableResolver(null);
+    resolver.setVariable("list", "[]");
+    append(resolver, "list", "list", 0);
+    append(resolver, "list", "list", 1);
+    resolver.setVariable("copy", resolver.getVariable("list"));
+
+    append(resolver, "list", "list", 2);
+    append(resolver, "list", "list", 3);
+    assertEquals(json("[0, 1]"), resolver.getVariable("copy"));
+    assertEquals(json("[0, 1, 2, 3]"), resolver.getVariable("list"));
+
+    // Read by something else in between, which may have kept it.
+    Object kept = resolver.getVariable("list");
+    append(resolver, "list", "list", 4);
+    assertEquals(json("[0, 1, 2, 3]"), kept);
+  }
+
+  @Test
+  @DisplayName("A variable is unchanged if the array appended to is not stored back into it")
+  void appendWithoutStoringKeepsVariable() throws ParserException {
+    var resolver = new MapToolVariableResolver(null);
+    resolver.setVariable("list", "[]");
+    append(resolver, "list", "list", 0);
+    append(resolver, "list", "list", 1);
+
+    assertEquals(json("[0, 1, 2]"), append(resolver, null, "list", 2));
+    assertEquals(json("[0, 1]"), resolver.getVariable("list"));
+    assertEquals(json("[0, 1, 3]"), append(resolver, "other", "list", 3));
+    assertEquals(json("[0, 1]"), resolver.getVariable("list"));
+    assertEquals(json("[0, 1, 3]"), resolver.getVariable("other"));
+  }
+}
@@ -0,0 +1,84 @@
+/*
+ * This software Copyright by the RPTools.net development team, and
+ * licensed under the Affero GPL Version 3 or, at your option, any later
+ * version.
+ *
+ * MapTool Source Code is distributed in the hope that it will be
+ * useful, but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ *
+ * You should have received a copy of the GNU Affero General Public
+ * License * along with this source Code.  If not, please visit
+ * <http://www.gnu.org/licenses/> and specifically the Affero license
+ * text at <http://www.gnu.org/licenses/agpl.html>.
+ */
+package net.rptools.maptool.client;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import net.rptools.maptool.server.proto.HeartbeatMsg;
+import net.rptools.maptool.server.proto.Message;
+import net.rptools.maptool.server.proto.Message.MessageTypeCase;
+import net.rptools.maptool.server.proto.MovePointerMsg;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+public class OutboundMessageSchedulerTest {
+  private final List<Message> sent = new ArrayList<>();
+  private final OutboundMessageScheduler scheduler = new OutboundMessageScheduler(sent::add, 100);
+
+  private static Message pointer(String player, int x) {
+    return Message.newBuilder()
+        .setMovePointerMsg(MovePointerMsg.newBuilder().setPlayer(player).setX(x))
+        .build();
+  }
+
+  private void schedulePointer(String player, int x) {
+    var message = pointer(player, x);
+    scheduler.schedule(MessageTypeCase.MOVE_POINTER_MSG, player, "", () -> message);
+  }
+
+  @Test
+  @DisplayName("Test that a later message replaces an earlier one for the same target")
+  public void testSupersede() {
+    schedulePointer("alice", 1);
+    schedulePointer("bob", 1);
+    schedulePointer("alice", 2);
+    assertTrue(sent.isEmpty());
+
+    scheduler.flush();
+
+    assertEquals(List.of(pointer("alice", 2), pointer("bob", 1)), sent);
+    var statistics = scheduler.getStatistics().get(MessageTypeCase.MOVE_POINTER_MSG);
+    assertEquals(3, statistics.scheduled());
+    assertEquals(1, statistics.superseded());
+    assertEquals(2, statistics.sent());
+  }
+
+  @Test
+  @DisplayName("Test that a message is not moved before another message for the same target")
+  public void testNoReorderWithinTarget() {
+    schedulePointer("alice", 1);
+    var other = pointer("alice", 99);
+    scheduler.schedule(MessageTypeCase.MOVE_POINTER_MSG, "alice", "other", () -> other);
+    schedulePointer("alice", 2);
+
+    scheduler.flush();
+
+    assertEquals(List.of(pointer("alice", 1), other, pointer("alice", 2)), sent);
+  }
+
+  @Test
+  @DisplayName("Test that sending a message immediately sends the scheduled messages first")
+  public void testBarrier() {
+    schedulePointer("alice", 1);
+    var heartbeat =
+        Message.newBuilder().setHeartbeatMsg(HeartbeatMsg.newBuilder().setData("x")).build();
+
+    scheduler.send(heartbeat);
+
+    assertEquals(List.of(pointer("alice", 1), heartbeat), sent);
+  }
+}
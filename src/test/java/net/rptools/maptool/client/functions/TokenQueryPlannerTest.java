@@ -0,0 +1,94 @@
+/*
+ * This software Copyright by the RPTools.net development team, and
+ * licensed under the Affero GPL Version 3 or, at your option, any later
+ * version.
+ *
+ * MapTool Source Code is distributed in the hope that it will be
+ * useful, but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ *
+ * You should have received a copy of the GNU Affero General Public
+ * License * along with this source Code.  If not, please visit
+ * <http://www.gnu.org/licenses/> and specifically the Affero license
+ * text at <http://www.gnu.org/licenses/agpl.html>.
+ */
+package net.rptools.maptool.client.functions;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.awt.Point;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import net.rptools.maptool.model.Grid;
+import net.rptools.maptool.model.GridFactory;
+import net.rptools.maptool.model.Token;
+import net.rptools.maptool.model.Zone;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+public class TokenQueryPlannerTest {
+
+  /**
+   * Creates a zone with tokens of different sizes scattered over it.
+   *
+   * @param gridType the type of grid, as known by {@link GridFactory}.
+   * @param count the number of tokens.
+   * @param random the source of the positions.
+   * @return the zone.
+   */
+  static Zone createZone(String gridType, int count, Random random) {
+    Zone zone = new Zone();
+    Grid grid = GridFactory.createGrid(gridType);
+    zone.setGrid(grid);
+    int extent = (int) Math.sqrt(count) * 4 * grid.getSize();
+    for (int i = 0; i < count; i++) {
+      var token = new Token();
+      token.setName("Token " + i);
+      token.setX(random.nextInt(extent));
+      token.setY(random.nextInt(extent));
+      if (random.nextInt(10) == 0) {
+        var footprints = grid.getFootprints();
+        token.setFootprint(grid, footprints.get(random.nextInt(footprints.size())));
+      }
+      zone.putToken(token);
+    }
+    return zone;
+  }
+
+  @ParameterizedTest
+  @DisplayName("Planned range and area queries find the same tokens as testing every token")
+  @ValueSource(strings = {GridFactory.SQUARE, GridFactory.HEX_HORI, GridFactory.NONE})
+  void testPlannedMatchesScan(String gridType) throws Exception {
+    var random = new Random(42);
+    Zone zone = createZone(gridType, 500, random);
+    List<Token> tokens = zone.getAllTokens();
+
+    for (int i = 0; i < 50; i++) {
+      Token source = tokens.get(random.nextInt(tokens.size()));
+      var conditions = new ArrayList<TokenQueryPlanner.Condition>();
+      conditions.add(
+          TokenQueryPlanner.range(
+              zone,
+              source,
+              random.nextInt(3),
+              random.nextInt(30),
+              random.nextBoolean(),
+              random.nextBoolean() ? "ONE_TWO_ONE" : "NO_GRID"));
+      if (random.nextBoolean()) {
+        var points = new Point[10];
+        for (int p = 0; p < points.length; p++) {
+          points[p] = new Point(random.nextInt(100), random.nextInt(100));
+        }
+        conditions.add(TokenQueryPlanner.area(zone, points));
+      }
+
+      assertEquals(
+          TokenQueryPlanner.scan(tokens, conditions),
+          TokenQueryPlanner.filter(zone, tokens, conditions));
+      // Moving tokens must be seen by the index.
+      tokens.get(random.nextInt(tokens.size())).setX(random.nextInt(1000));
+    }
+  }
+}
@@ -187,6 +187,19 @@ void concatenateList() throws ParserException {
     }
   }
 
+  @Test
+  void concatenateCopiesOnlySharedArrays() {
+    String before = jsonArray1.toString();
+    JsonArray copied = jsonArrayFunctions.concatenate(jsonArray1, List.of(8), true);
+    assertNotSame(jsonArray1, copied);
+    assertEquals(before, jsonArray1.toString());
+    assertEquals(jsonArray1.size() + 1, copied.size());
+
+    JsonArray appended = jsonArrayFunctions.concatenate(jsonArray1, List.of(8), false);
+    assertSame(jsonArray1, appended);
+    assertEquals(copied, appended);
+  }
+
   @Test
   void remove() {
     JsonArray arr = new JsonArray();
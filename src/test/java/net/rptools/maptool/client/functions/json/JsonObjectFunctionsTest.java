@@ -19,10 +19,12 @@
 import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
 import com.google.gson.JsonParser;
+import java.math.BigDecimal;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Random;
 import java.util.Set;
+import net.rptools.parser.ParserException;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
@@ -298,4 +300,22 @@ void shallowCopy() {
       assertSame(jobj.get(key), copy.get(key));
     }
   }
+
+  @Test
+  void setSharesNestedValuesWithoutChangingThem() throws ParserException {
+    JsonObject jobj = JsonParser.parseString("{a: {b: 1}, c: [1, 2], d: 3}").getAsJsonObject();
+    JsonObject before = jobj.deepCopy();
+
+    JsonObject result = jsonObjectFunctions.set(jobj, List.of("d", BigDecimal.TEN), true);
+    assertEquals(before, jobj, "The object set on is unchanged");
+    assertEquals(10, result.get("d").getAsInt());
+    // The nested values are shared, json.set on one copies it as well.
+    assertSame(jobj.get("a"), result.get("a"));
+    JsonObject nested =
+        jsonObjectFunctions.set(
+            result.getAsJsonObject("a"), List.of("b", BigDecimal.valueOf(2)), true);
+    assertEquals(2, nested.get("b").getAsInt());
+    assertEquals(before, jobj, "The nested object of the object set on is unchanged");
+    assertEquals(1, result.getAsJsonObject("a").get("b").getAsInt());
+  }
 }
@@ -0,0 +1,105 @@
+/*
+ * This software Copyright by the RPTools.net development team, and
+ * licensed under the Affero GPL Version 3 or, at your option, any later
+ * version.
+ *
+ * MapTool Source Code is distributed in the hope that it will be
+ * useful, but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ *
+ * You should have received a copy of the GNU Affero General Public
+ * License * along with this source Code.  If not, please visit
+ * <http://www.gnu.org/licenses/> and specifically the Affero license
+ * text at <http://www.gnu.org/licenses/agpl.html>.
+ */
+package net.rptools.maptool.client.functions.json;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonParser;
+import com.jayway.jsonpath.Configuration;
+import com.jayway.jsonpath.JsonPath;
+import com.jayway.jsonpath.spi.json.GsonJsonProvider;
+import com.jayway.jsonpath.spi.mapper.GsonMappingProvider;
+import java.util.List;
+import java.util.Objects;
+import java.util.function.Supplier;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+class JsonPathCacheTest {
+
+  private static final Configuration config =
+      Configuration.builder()
+          .jsonProvider(new GsonJsonProvider())
+          .mappingProvider(new GsonMappingProvider())
+          .build();
+
+  private static final JsonElement json =
+      JsonParser.parseString(
+          "{a: {b: [1, 2.50, {c: 'x'}], n: null, t: true}, arr: [[1, 2], [3]], 'key_1': 7}");
+
+  @Test
+  @DisplayName("Only plain property and index paths are simple")
+  void parseSimplePath() {
+    assertEquals(List.of(), JsonPathCache.parseSimplePath("$"));
+    assertEquals(List.of("a", "b", 2, "c"), JsonPathCache.parseSimplePath("$.a.b[2].c"));
+    assertEquals(List.of("a", 0, "key_1"), JsonPathCache.parseSimplePath("$['a'][0]['key_1']"));
+    assertNull(JsonPathCache.parseSimplePath("a.b"));
+    assertNull(JsonPathCache.parseSimplePath("$..b"));
+    assertNull(JsonPathCache.parseSimplePath("$.a."));
+    assertNull(JsonPathCache.parseSimplePath("$.a[*]"));
+    assertNull(JsonPathCache.parseSimplePath("$.a[-1]"));
+    assertNull(JsonPathCache.parseSimplePath("$.a[0,1]"));
+    assertNull(JsonPathCache.parseSimplePath("$['a','b']"));
+    assertNull(JsonPathCache.parseSimplePath("$['a b']"));
+    assertNull(JsonPathCache.parseSimplePath("$.a.length()"));
+    assertNull(JsonPathCache.parseSimplePath("$.a[?(@.c)]"));
+  }
+
+  @ParameterizedTest
+  @DisplayName("Reads give the same result or error as JSONPath")
+  @ValueSource(
+      strings = {
+        "$",
+        "$.a",
+        "$.a.b",
+        "$.a.b[0]",
+        "$.a.b[1]",
+        "$.a.b[2].c",
+        "$['a']['b'][2]['c']",
+        "$.a.n",
+        "$.a.t",
+        "$.arr[1][0]",
+        "$.key_1",
+        "$.a.b[5]",
+        "$.a.missing",
+        "$.a.n.x",
+        "$.arr.x",
+        "$.a[0]",
+        "$..c",
+        "$.a.b[*]",
+        "$.a.b.length()",
+        "",
+        "$.a[",
+      })
+  void readMatchesJsonPath(String path) {
+    assertEquals(
+        describe(() -> JsonPath.using(config).parse(json).read(path)),
+        describe(() -> JsonPathCache.read(config, json, path)),
+        path);
+  }
+
+  /** Returns a description of the value or exception so they can be compared. */
+  private static String describe(Supplier<Object> read) {
+    try {
+      Object value = read.get();
+      return value == null ? "null" : value.getClass().getName() + ": " + Objects.toString(value);
+    } catch (RuntimeException e) {
+      return e.getClass().getName() + ": " + e.getMessage();
+    }
+  }
+}
@@ -0,0 +1,161 @@
+/*
+ * This software Copyright by the RPTools.net development team, and
+ * licensed under the Affero GPL Version 3 or, at your option, any later
+ * version.
+ *
+ * MapTool Source Code is distributed in the hope that it will be
+ * useful, but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ *
+ * You should have received a copy of the GNU Affero General Public
+ * License * along with this source Code.  If not, please visit
+ * <http://www.gnu.org/licenses/> and specifically the Affero license
+ * text at <http://www.gnu.org/licenses/agpl.html>.
+ */
+package net.rptools.maptool.client.functions.json;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonParser;
+import com.google.gson.JsonPrimitive;
+import com.jayway.jsonpath.Configuration;
+import com.jayway.jsonpath.DocumentContext;
+import com.jayway.jsonpath.JsonPath;
+import com.jayway.jsonpath.spi.json.GsonJsonProvider;
+import com.jayway.jsonpath.spi.mapper.GsonMappingProvider;
+import java.util.List;
+import java.util.function.Function;
+import org.junit.jupiter.api.Test;
+
+class JsonPathCopierTest {
+
+  private static final Configuration config =
+      Configuration.builder()
+          .jsonProvider(new GsonJsonProvider())
+          .mappingProvider(new GsonMappingProvider())
+          .build();
+
+  private static final String json =
+      "{a: {b: [1, {c: 2}, 3], d: {e: 4}}, f: [{g: 5}, {g: 6}], h: 'text', i: [[1], [2, 3]]}";
+
+  private static final String[] paths = {
+    "$.a.b[1].c",
+    "$.f[*]",
+    "$.f[0]",
+    "$.a.b",
+    "$.a.b[-1]",
+    "$..g",
+    "$.i[*]",
+    "$.f[?(@.g > 5)]",
+    "$['a','h']",
+    "$.a.d",
+    "$",
+    "$.h",
+    "$.missing",
+    "$.a.missing.x",
+    "$.a.b[7]"
+  };
+
+  private static final JsonPrimitive value = new JsonPrimitive(7);
+
+  /** An update done by the copier and the same update done by JSONPath. */
+  private record Update(
+      String name,
+      Function<String, JsonElement> copier,
+      Function<String, Function<DocumentContext, DocumentContext>> jsonPath) {}
+
+  private static List<Update> updates(JsonElement original) {
+    return List.of(
+        new Update(
+            "set",
+            path -> JsonPathCopier.set(config, original, JsonPathCache.get(path), value),
+            path -> doc -> doc.set(path, value)),
+        new Update(
+            "put",
+            path -> JsonPathCopier.put(config, original, JsonPathCache.get(path), "k", value),
+            path -> doc -> doc.put(path, "k", value)),
+        new Update(
+            "add",
+            path -> JsonPathCopier.add(config, original, JsonPathCache.get(path), value),
+            path -> doc -> doc.add(path, value)),
+        new Update(
+            "delete",
+            path -> JsonPathCopier.delete(config, original, JsonPathCache.get(path)),
+            path -> DocumentContext::delete));
+  }
+
+  /** Returns the result of an update, or the exception it threw. */
+  private static Object result(java.util.function.Supplier<JsonElement> update) {
+    try {
+      return update.get();
+    } catch (RuntimeException e) {
+      return e.getClass();
+    }
+  }
+
+  @Test
+  void parsePath() {
+    assertEquals(List.of(), JsonPathCopier.parsePath("$"));
+    assertEquals(List.of("a", "b", 1, "c"), JsonPathCopier.parsePath("$['a']['b'][1]['c']"));
+    assertEquals(List.of("a b", 12), JsonPathCopier.parsePath("$['a b'][12]"));
+    assertEquals(List.of(-1), JsonPathCopier.parsePath("$[-1]"));
+    assertNull(JsonPathCopier.parsePath("$['a','b']"));
+    assertNull(JsonPathCopier.parsePath("$.a"));
+    assertNull(JsonPathCopier.parsePath("$['a'][x]"));
+    assertNull(JsonPathCopier.parsePath("a"));
+  }
+
+  @Test
+  void setCopiesOnlyModifiedPath() {
+    JsonElement original = JsonParser.parseString(json);
+    String before = original.toString();
+
+    JsonElement result =
+        JsonPathCopier.set(config, original, JsonPathCache.get("$.a.b[1].c"), value);
+
+    assertEquals(before, original.toString());
+    assertEquals(
+        "{\"a\":{\"b\":[1,{\"c\":7},3],\"d\":{\"e\":4}},"
+            + "\"f\":[{\"g\":5},{\"g\":6}],\"h\":\"text\",\"i\":[[1],[2,3]]}",
+        result.toString());
+    assertSame(
+        original.getAsJsonObject().get("f"), result.getAsJsonObject().get("f"), "untouched");
+    assertSame(
+        original.getAsJsonObject().getAsJsonObject("a").get("d"),
+        result.getAsJsonObject().getAsJsonObject("a").get("d"),
+        "untouched sibling");
+  }
+
+  @Test
+  void updatesMatchJsonPathAndDoNotChangeOriginal() {
+    for (String path : paths) {
+      JsonElement original = JsonParser.parseString(json);
+      JsonElement expected = JsonParser.parseString(json);
+      for (Update update : updates(original)) {
+        String message = update.name() + " " + path;
+        Object copied = result(() -> update.copier().apply(path));
+        Object evaluated =
+            result(
+                () ->
+                    update
+                        .jsonPath()
+                        .apply(path)
+                        .apply(JsonPath.using(config).parse(original.deepCopy()))
+                        .json());
+        assertEquals(evaluated, copied, message);
+        assertEquals(expected, original, message);
+      }
+    }
+  }
+
+  @Test
+  void deleteFromArray() {
+    JsonElement original = JsonParser.parseString(json);
+    JsonElement result = JsonPathCopier.delete(config, original, JsonPathCache.get("$.f[*]"));
+
+    assertEquals(2, original.getAsJsonObject().getAsJsonArray("f").size());
+    assertEquals(0, result.getAsJsonObject().getAsJsonArray("f").size());
+    assertSame(original.getAsJsonObject().get("a"), result.getAsJsonObject().get("a"));
+  }
+}
@@ -14,12 +14,15 @@
  */
 package net.rptools.maptool.client.swing.preference.net.rptools.lib.io;
 
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
 import net.rptools.lib.io.PackedFile;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.io.TempDir;
@@ -54,4 +57,47 @@ public void saveWithOneResource(@TempDir File tempDir) throws IOException {
       assertEquals(test_content, s);
     }
   }
+
+  @Test
+  public void storesCompressedMediaWithoutCompression(@TempDir File tempDir) throws IOException {
+    File f = new File(tempDir, PACKED_TEST_FILE);
+    byte[] png = {(byte) 0x89, 'P', 'N', 'G', 1, 2, 3, 4};
+    try (PackedFile pf = new PackedFile(f)) {
+      pf.putFile("assets/image", png);
+      pf.putFile("assets/sound.ogg", new byte[] {1, 2, 3});
+      pf.putFile(A_PATH_TXT, "some content".getBytes());
+      pf.save();
+    }
+
+    try (ZipFile zip = new ZipFile(f)) {
+      assertEquals(ZipEntry.STORED, zip.getEntry("assets/image").getMethod());
+      assertEquals(ZipEntry.STORED, zip.getEntry("assets/sound.ogg").getMethod());
+      assertEquals(ZipEntry.DEFLATED, zip.getEntry(A_PATH_TXT).getMethod());
+      assertArrayEquals(png, zip.getInputStream(zip.getEntry("assets/image")).readAllBytes());
+    }
+  }
+
+  @Test
+  public void keepsUnchangedEntriesWhenSavedAgain(@TempDir File tempDir) throws IOException {
+    File f = new File(tempDir, PACKED_TEST_FILE);
+    try (PackedFile pf = new PackedFile(f)) {
+      pf.putFile(A_PATH_TXT, "some content".getBytes());
+      pf.putFile("b_path.txt", "other content".getBytes());
+      pf.save();
+    }
+
+    try (PackedFile pf = new PackedFile(f)) {
+      pf.putFile("b_path.txt", "changed content".getBytes());
+      pf.setProperty("key", "value");
+      pf.save();
+    }
+
+    try (PackedFile loaded = new PackedFile(f)) {
+      assertEquals(
+          "some content", new String(loaded.getFileAsInputStream(A_PATH_TXT).readAllBytes()));
+      assertEquals(
+          "changed content", new String(loaded.getFileAsInputStream("b_path.txt").readAllBytes()));
+      assertEquals("value", loaded.getProperty("key"));
+    }
+  }
 }
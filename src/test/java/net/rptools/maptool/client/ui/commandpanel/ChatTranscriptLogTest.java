@@ -0,0 +1,70 @@
+/*
+ * This software Copyright by the RPTools.net development team, and
+ * licensed under the Affero GPL Version 3 or, at your option, any later
+ * version.
+ *
+ * MapTool Source Code is distributed in the hope that it will be
+ * useful, but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ *
+ * You should have received a copy of the GNU Affero General Public
+ * License * along with this source Code.  If not, please visit
+ * <http://www.gnu.org/licenses/> and specifically the Affero license
+ * text at <http://www.gnu.org/licenses/agpl.html>.
+ */
+package net.rptools.maptool.client.ui.commandpanel;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.List;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+class ChatTranscriptLogTest {
+
+  @Test
+  @DisplayName("Messages are read back in the order they were appended")
+  void appendKeepsOrder() {
+    var log = new ChatTranscriptLog();
+    for (int i = 0; i < 2000; i++) {
+      assertEquals(i, log.append("<div>message " + i + " é</div>"));
+    }
+
+    assertEquals(2000, log.size());
+    assertEquals("<div>message 0 é</div>", log.get(0));
+    assertEquals("<div>message 1999 é</div>", log.get(1999));
+    assertEquals(
+        List.of("<div>message 10 é</div>", "<div>message 11 é</div>"), log.get(10, 12));
+    assertEquals(List.of("<div>message 1999 é</div>"), log.get(1999, 2050));
+  }
+
+  @Test
+  @DisplayName("Clearing removes all messages and new messages start from the beginning")
+  void clearRemovesMessages() {
+    var log = new ChatTranscriptLog();
+    log.append("<div>old</div>");
+    log.append("<div>older</div>");
+
+    log.clear();
+
+    assertEquals(0, log.size());
+    assertThrows(IndexOutOfBoundsException.class, () -> log.get(0));
+    assertEquals(0, log.append("<div>new</div>"));
+    assertEquals(List.of("<div>new</div>"), log.get(0, 10));
+  }
+
+  @Test
+  @DisplayName("Messages sent before a clear are dropped when they are appended after it")
+  void messagesSentBeforeClearAreDropped() {
+    var log = new ChatTranscriptLog();
+    int sentBefore = log.getEpoch();
+    log.append("<div>shown</div>", sentBefore);
+
+    log.clear();
+    int sentAfter = log.getEpoch();
+
+    assertEquals(-1, log.append("<div>queued before clear</div>", sentBefore));
+    assertEquals(0, log.append("<div>sent after clear</div>", sentAfter));
+    assertEquals(List.of("<div>sent after clear</div>"), log.get(0, log.size()));
+  }
+}
@@ -0,0 +1,129 @@
+/*
+ * This software Copyright by the RPTools.net development team, and
+ * licensed under the Affero GPL Version 3 or, at your option, any later
+ * version.
+ *
+ * MapTool Source Code is distributed in the hope that it will be
+ * useful, but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ *
+ * You should have received a copy of the GNU Affero General Public
+ * License * along with this source Code.  If not, please visit
+ * <http://www.gnu.org/licenses/> and specifically the Affero license
+ * text at <http://www.gnu.org/licenses/agpl.html>.
+ */
+package net.rptools.maptool.client.ui.zone;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.awt.Polygon;
+import java.awt.Rectangle;
+import java.awt.geom.Area;
+import java.awt.geom.Rectangle2D;
+import java.util.ArrayList;
+import java.util.List;
+import net.rptools.maptool.client.ui.zone.IlluminationModel.ContributedLight;
+import net.rptools.maptool.client.ui.zone.Illuminator.LitArea;
+import net.rptools.maptool.model.GUID;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+public class IlluminationModelTest {
+  /** Torches along the walls of a room, a brazier in the middle, and a patch of darkness. */
+  private static final List<LitArea> STATIC_LIGHTS =
+      List.of(
+          new LitArea(20, new Area(new Rectangle(0, 0, 100, 100))),
+          new LitArea(20, new Area(new Rectangle(300, 0, 100, 100))),
+          new LitArea(20, new Area(new Rectangle(0, 300, 100, 100))),
+          new LitArea(40, new Area(triangle(150, 150, 250, 150, 200, 250))),
+          new LitArea(-30, new Area(new Rectangle(180, 180, 150, 150))));
+
+  /** The players' lights, overlapping the static lights. */
+  private static final List<LitArea> DYNAMIC_LIGHTS =
+      List.of(
+          new LitArea(30, new Area(new Rectangle(50, 50, 200, 100))),
+          new LitArea(20, new Area(triangle(200, 0, 400, 200, 200, 200))),
+          new LitArea(-40, new Area(new Rectangle(320, 320, 40, 40))));
+
+  private static Polygon triangle(int x0, int y0, int x1, int y1, int x2, int y2) {
+    return new Polygon(new int[] {x0, x1, x2}, new int[] {y0, y1, y2}, 3);
+  }
+
+  private static List<ContributedLight> contribution(LitArea litArea) {
+    // Copy the area so that nothing is shared between the model and the reference.
+    return List.of(
+        new ContributedLight(new LitArea(litArea.lumens(), new Area(litArea.area())), null));
+  }
+
+  private static Illumination reference(List<LitArea> litAreas) {
+    final var illuminator = new Illuminator();
+    for (final var litArea : litAreas) {
+      illuminator.add(new LitArea(litArea.lumens(), new Area(litArea.area())));
+    }
+    return illuminator.getIllumination();
+  }
+
+  private static void assertSameIllumination(Illumination expected, Illumination actual) {
+    assertTrue(expected.getLitArea().equals(actual.getLitArea()));
+    assertTrue(expected.getDarkenedArea().equals(actual.getDarkenedArea()));
+
+    final var expectedLevels = expected.getDisjointObscuredLumensLevels();
+    final var actualLevels = actual.getDisjointObscuredLumensLevels();
+    assertEquals(expectedLevels.size(), actualLevels.size());
+    for (int i = 0; i < expectedLevels.size(); ++i) {
+      final var expectedLevel = expectedLevels.get(i);
+      final var actualLevel = actualLevels.get(i);
+      assertEquals(expectedLevel.lumensStrength(), actualLevel.lumensStrength());
+      assertTrue(expectedLevel.lightArea().equals(actualLevel.lightArea()));
+      assertTrue(expectedLevel.darknessArea().equals(actualLevel.darknessArea()));
+    }
+  }
+
+  @Test
+  @DisplayName("Baked and dynamic lights illuminate the same as a single illuminator")
+  void testBakedLightsMatchReference() {
+    final var model = new IlluminationModel();
+    for (final var litArea : STATIC_LIGHTS) {
+      model.addBakedToken(new GUID(), contribution(litArea), litArea.area().getBounds2D());
+    }
+    final var dynamicIds = DYNAMIC_LIGHTS.stream().map(litArea -> new GUID()).toList();
+    for (int i = 0; i < DYNAMIC_LIGHTS.size(); ++i) {
+      model.addToken(dynamicIds.get(i), contribution(DYNAMIC_LIGHTS.get(i)));
+    }
+
+    final var all = new ArrayList<>(STATIC_LIGHTS);
+    all.addAll(DYNAMIC_LIGHTS);
+    assertSameIllumination(reference(all), model.getIllumination());
+
+    // Move the first dynamic light away. The baked lights are kept, the result still matches.
+    final var moved = new LitArea(30, new Area(new Rectangle(500, 500, 50, 50)));
+    model.removeToken(dynamicIds.get(0));
+    model.addToken(dynamicIds.get(0), contribution(moved));
+    all.set(STATIC_LIGHTS.size(), moved);
+    assertSameIllumination(reference(all), model.getIllumination());
+
+    model.removeDynamicTokens();
+    assertSameIllumination(reference(STATIC_LIGHTS), model.getIllumination());
+  }
+
+  @Test
+  @DisplayName("Only baked tokens that can reach a changed region are removed")
+  void testRemoveBakedTokensInRegion() {
+    final var model = new IlluminationModel();
+    final var nearId = new GUID();
+    final var farId = new GUID();
+    final var near = STATIC_LIGHTS.get(0);
+    final var far = STATIC_LIGHTS.get(1);
+    model.addBakedToken(nearId, contribution(near), near.area().getBounds2D());
+    model.addBakedToken(farId, contribution(far), far.area().getBounds2D());
+
+    // A horizontal wall along the edge of the first torch's reach.
+    model.removeBakedTokens(new Rectangle2D.Double(20, 100, 50, 0));
+
+    assertFalse(model.hasToken(nearId));
+    assertTrue(model.hasToken(farId));
+    assertSameIllumination(reference(List.of(far)), model.getIllumination());
+  }
+}
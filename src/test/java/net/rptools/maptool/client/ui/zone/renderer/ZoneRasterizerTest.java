@@ -0,0 +1,148 @@
+/*
+ * This software Copyright by the RPTools.net development team, and
+ * licensed under the Affero GPL Version 3 or, at your option, any later
+ * version.
+ *
+ * MapTool Source Code is distributed in the hope that it will be
+ * useful, but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ *
+ * You should have received a copy of the GNU Affero General Public
+ * License * along with this source Code.  If not, please visit
+ * <http://www.gnu.org/licenses/> and specifically the Affero license
+ * text at <http://www.gnu.org/licenses/agpl.html>.
+ */
+package net.rptools.maptool.client.ui.zone.renderer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.awt.Color;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import javax.imageio.ImageIO;
+import net.rptools.lib.MD5Key;
+import net.rptools.maptool.client.ui.zone.PlayerView;
+import net.rptools.maptool.model.SquareGrid;
+import net.rptools.maptool.model.Token;
+import net.rptools.maptool.model.Zone;
+import net.rptools.maptool.model.drawing.DrawableColorPaint;
+import net.rptools.maptool.model.player.Player;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class ZoneRasterizerTest {
+
+  private static final Color BACKGROUND = new Color(0x33, 0x66, 0x99);
+
+  private static final MD5Key RED = new MD5Key("red");
+  private static final MD5Key GREEN = new MD5Key("green");
+
+  private static BufferedImage solidImage(Color color) {
+    var image = new BufferedImage(100, 100, BufferedImage.TYPE_INT_RGB);
+    var g = image.createGraphics();
+    g.setColor(color);
+    g.fillRect(0, 0, 100, 100);
+    g.dispose();
+    return image;
+  }
+
+  /** Adds a token one grid cell in size with its top left corner at the given point. */
+  private static Token addToken(Zone zone, MD5Key image, Zone.Layer layer, int x, int y) {
+    var token = new Token();
+    token.setImageAsset(null, image);
+    token.setLayer(layer);
+    token.setSnapToGrid(false);
+    token.setSnapToScale(true);
+    token.setX(x);
+    token.setY(y);
+    zone.putToken(token);
+    return token;
+  }
+
+  private static ZoneRasterizer createRasterizer() {
+    Zone zone = new Zone();
+    zone.setBackgroundPaint(new DrawableColorPaint(BACKGROUND));
+    zone.setDrawBoard(true);
+    zone.setHasFog(false);
+    var rasterizer = new ZoneRasterizer(zone, new PlayerView(Player.Role.GM));
+    rasterizer.setDrawGrid(false);
+    rasterizer.setTileSize(128);
+    rasterizer.setThreads(2);
+    return rasterizer;
+  }
+
+  @Test
+  @DisplayName("A region is streamed into a single PNG of the scaled size")
+  void testRasterizeToPng() throws Exception {
+    var out = new ByteArrayOutputStream();
+    createRasterizer().rasterize(new Rectangle(-100, 50, 700, 500), 0.5, new PngTileWriter(out));
+
+    BufferedImage image = ImageIO.read(new ByteArrayInputStream(out.toByteArray()));
+    assertEquals(350, image.getWidth());
+    assertEquals(250, image.getHeight());
+    assertEquals(BACKGROUND.getRGB(), image.getRGB(0, 0));
+    assertEquals(BACKGROUND.getRGB(), image.getRGB(349, 249));
+    // Across a tile boundary.
+    assertEquals(BACKGROUND.getRGB(), image.getRGB(128, 128));
+  }
+
+  @Test
+  @DisplayName("Tokens are drawn where the zone had them, layer above layer")
+  void testRasterizeTokens() throws Exception {
+    Zone zone = new Zone();
+    var grid = new SquareGrid();
+    grid.setSize(100);
+    zone.setGrid(grid);
+    zone.setBackgroundPaint(new DrawableColorPaint(BACKGROUND));
+    zone.setDrawBoard(true);
+    zone.setHasFog(false);
+    Token background = addToken(zone, RED, Zone.Layer.BACKGROUND, 0, 0);
+    // Overlaps the bottom right quarter of the background token.
+    Token token = addToken(zone, GREEN, Zone.Layer.TOKEN, 50, 50);
+    Map<MD5Key, BufferedImage> images =
+        Map.of(RED, solidImage(Color.RED), GREEN, solidImage(Color.GREEN));
+    var rasterizer =
+        new ZoneRasterizer(zone, new PlayerView(Player.Role.GM), assetIds -> images);
+    rasterizer.setDrawGrid(false);
+    rasterizer.setTileSize(128);
+
+    // Changes after the rasterizer is created are not drawn.
+    token.setX(400);
+    background.setLayer(Zone.Layer.TOKEN);
+    zone.putToken(background);
+
+    var out = new ByteArrayOutputStream();
+    rasterizer.rasterize(new Rectangle(0, 0, 200, 200), 1, new PngTileWriter(out));
+
+    BufferedImage image = ImageIO.read(new ByteArrayInputStream(out.toByteArray()));
+    assertEquals(Color.RED.getRGB(), image.getRGB(25, 25));
+    assertEquals(Color.RED.getRGB(), image.getRGB(75, 25));
+    assertEquals(Color.GREEN.getRGB(), image.getRGB(75, 75));
+    assertEquals(Color.GREEN.getRGB(), image.getRGB(125, 125));
+    assertEquals(BACKGROUND.getRGB(), image.getRGB(175, 25));
+    assertEquals(BACKGROUND.getRGB(), image.getRGB(25, 175));
+  }
+
+  @Test
+  @DisplayName("A region is written as a pyramid of tiles down to a single tile")
+  void testRasterizeToPyramid(@TempDir Path directory) throws Exception {
+    var writer = new TilePyramidWriter(directory);
+    createRasterizer().rasterize(new Rectangle(0, 0, 300, 200), 1, writer);
+
+    // 300x200 in 128 pixel tiles, then 150x100 and 75x50.
+    assertEquals(3, writer.getLevelCount());
+    assertTrue(Files.exists(directory.resolve("0").resolve("2_1.png")));
+    assertTrue(Files.exists(directory.resolve("1").resolve("1_0.png")));
+    BufferedImage top = ImageIO.read(directory.resolve("2").resolve("0_0.png").toFile());
+    assertEquals(75, top.getWidth());
+    assertEquals(50, top.getHeight());
+    assertEquals(BACKGROUND.getRGB(), top.getRGB(37, 25));
+  }
+}
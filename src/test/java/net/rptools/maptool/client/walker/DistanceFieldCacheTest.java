@@ -0,0 +1,167 @@
+/*
+ * This software Copyright by the RPTools.net development team, and
+ * licensed under the Affero GPL Version 3 or, at your option, any later
+ * version.
+ *
+ * MapTool Source Code is distributed in the hope that it will be
+ * useful, but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ *
+ * You should have received a copy of the GNU Affero General Public
+ * License * along with this source Code.  If not, please visit
+ * <http://www.gnu.org/licenses/> and specifically the Affero license
+ * text at <http://www.gnu.org/licenses/agpl.html>.
+ */
+package net.rptools.maptool.client.walker;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.awt.geom.Area;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import net.rptools.maptool.client.functions.TokenLocationFunctions;
+import net.rptools.maptool.events.MapToolEventBus;
+import net.rptools.maptool.model.CellPoint;
+import net.rptools.maptool.model.Grid;
+import net.rptools.maptool.model.GridFactory;
+import net.rptools.maptool.model.Token;
+import net.rptools.maptool.model.Token.TerrainModifierOperation;
+import net.rptools.maptool.model.Zone;
+import net.rptools.maptool.model.zones.ZoneRemoved;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+class DistanceFieldCacheTest {
+  private static final CellPoint ORIGIN = new CellPoint(0, 0);
+
+  private Zone zone;
+  private Grid grid;
+  private Token source;
+  private double unitsPerCell;
+
+  @BeforeEach
+  void setUp() {
+    DistanceFieldCache.clear();
+    zone = new Zone();
+    zone.setGrid(GridFactory.createGrid(GridFactory.SQUARE));
+    grid = zone.getGrid();
+    unitsPerCell = zone.getUnitsPerCell();
+    source = addToken("Source", ORIGIN);
+  }
+
+  private Token addToken(String name, CellPoint cell) {
+    var token = new Token();
+    token.setName(name);
+    token.setX(cell.x * grid.getSize());
+    token.setY(cell.y * grid.getSize());
+    zone.putToken(token);
+    return token;
+  }
+
+  private DistanceField field(WalkerMetric metric, CellPoint... targets) {
+    return DistanceFieldCache.getDistanceField(
+        zone, source, metric, List.of(targets), Double.POSITIVE_INFINITY);
+  }
+
+  @Test
+  @DisplayName("The field holds the movement distance to each cell under the metric")
+  void testDistances() {
+    var target = new CellPoint(3, 0);
+    var diagonal = new CellPoint(2, 2);
+
+    var field = field(WalkerMetric.ONE_TWO_ONE, target, diagonal);
+    assertEquals(0, field.getDistance(ORIGIN));
+    assertEquals(3 * unitsPerCell, field.getDistance(target));
+    assertEquals(3 * unitsPerCell, field.getDistance(diagonal));
+    assertEquals(2 * unitsPerCell, field.getDistance(addToken("Target", new CellPoint(2, 1))));
+
+    field = field(WalkerMetric.ONE_ONE_ONE, target, diagonal);
+    assertEquals(2 * unitsPerCell, field.getDistance(diagonal));
+
+    field = field(WalkerMetric.MANHATTAN, target, diagonal);
+    assertEquals(4 * unitsPerCell, field.getDistance(diagonal));
+  }
+
+  @Test
+  @DisplayName("A field is reused until the topology changes")
+  void testTopologyInvalidates() {
+    var blocked = new CellPoint(1, 0);
+    var field = field(WalkerMetric.ONE_TWO_ONE, blocked);
+    assertSame(field, field(WalkerMetric.ONE_TWO_ONE, blocked));
+    assertEquals(unitsPerCell, field.getDistance(blocked));
+
+    zone.updateMaskTopology(new Area(grid.getBounds(blocked)), false, Zone.TopologyType.MBL);
+
+    var updated = field(WalkerMetric.ONE_TWO_ONE, blocked);
+    assertNotSame(field, updated);
+    assertEquals(-1, updated.getDistance(blocked));
+  }
+
+  @Test
+  @DisplayName("A field is not reused once a token with terrain modifiers changes")
+  void testTerrainTokenInvalidates() {
+    var cell = new CellPoint(1, 0);
+    var field = field(WalkerMetric.ONE_TWO_ONE, cell);
+
+    var terrain = addToken("Terrain", cell);
+    terrain.setTerrainModifierOperation(TerrainModifierOperation.MULTIPLY);
+    terrain.setTerrainModifier(3);
+    var updated = field(WalkerMetric.ONE_TWO_ONE, cell);
+    assertNotSame(field, updated);
+    assertTrue(updated.getDistance(cell) > field.getDistance(cell));
+    assertSame(updated, field(WalkerMetric.ONE_TWO_ONE, cell));
+
+    // Moving the terrain away brings the distance back down.
+    terrain.setX(10 * grid.getSize());
+    var moved = field(WalkerMetric.ONE_TWO_ONE, cell);
+    assertNotSame(updated, moved);
+    assertEquals(field.getDistance(cell), moved.getDistance(cell));
+
+    // Other tokens don't affect movement, so they keep the field.
+    addToken("Bystander", new CellPoint(5, 5)).setX(6 * grid.getSize());
+    assertSame(moved, field(WalkerMetric.ONE_TWO_ONE, cell));
+  }
+
+  @Test
+  @DisplayName("The fields of a zone are dropped when it is removed or the cache is cleared")
+  void testClear() {
+    var cell = new CellPoint(1, 0);
+    var field = field(WalkerMetric.ONE_TWO_ONE, cell);
+
+    new MapToolEventBus().getMainEventBus().post(new ZoneRemoved(zone));
+    // The fields are dropped on a background thread.
+    long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+    var afterRemove = field(WalkerMetric.ONE_TWO_ONE, cell);
+    while (afterRemove == field && System.nanoTime() < deadline) {
+      Thread.onSpinWait();
+      afterRemove = field(WalkerMetric.ONE_TWO_ONE, cell);
+    }
+    assertNotSame(field, afterRemove);
+
+    DistanceFieldCache.clear();
+    assertNotSame(afterRemove, field(WalkerMetric.ONE_TWO_ONE, cell));
+  }
+
+  @Test
+  @DisplayName("getMovementDistances gives the distance to each target, -1 if out of reach")
+  void testGetMovementDistances() throws Exception {
+    var near = addToken("Near", new CellPoint(3, 0));
+    var far = addToken("Far", new CellPoint(20, 0));
+    var targets = List.of(near, far);
+
+    var distances =
+        TokenLocationFunctions.getMovementDistances(
+            zone, source, targets, true, 10 * unitsPerCell, "ONE_TWO_ONE");
+    assertEquals(Set.of(near.getId().toString(), far.getId().toString()), distances.keySet());
+    assertEquals(3 * unitsPerCell, distances.get(near.getId().toString()).getAsDouble());
+    assertEquals(-1, distances.get(far.getId().toString()).getAsDouble());
+
+    distances =
+        TokenLocationFunctions.getMovementDistances(
+            zone, source, targets, false, -1, "ONE_TWO_ONE");
+    assertEquals(3, distances.get(near.getId().toString()).getAsDouble());
+    assertEquals(20, distances.get(far.getId().toString()).getAsDouble());
+  }
+}
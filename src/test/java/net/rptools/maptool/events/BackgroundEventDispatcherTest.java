@@ -0,0 +1,166 @@
+/*
+ * This software Copyright by the RPTools.net development team, and
+ * licensed under the Affero GPL Version 3 or, at your option, any later
+ * version.
+ *
+ * MapTool Source Code is distributed in the hope that it will be
+ * useful, but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ *
+ * You should have received a copy of the GNU Affero General Public
+ * License * along with this source Code.  If not, please visit
+ * <http://www.gnu.org/licenses/> and specifically the Affero license
+ * text at <http://www.gnu.org/licenses/agpl.html>.
+ */
+package net.rptools.maptool.events;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.google.common.eventbus.Subscribe;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.annotation.Nullable;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+public class BackgroundEventDispatcherTest {
+  private record Changed(List<String> names) implements CoalescableEvent {
+    @Override
+    public @Nullable Object coalesce(Object next) {
+      if (next instanceof Changed other) {
+        var combined = new ArrayList<>(names);
+        combined.addAll(other.names);
+        return new Changed(combined);
+      }
+      return null;
+    }
+  }
+
+  private record Blocking(CountDownLatch started, CountDownLatch release) {}
+
+  private record Done() {}
+
+  private static class Recorder {
+    private final List<Object> events = Collections.synchronizedList(new ArrayList<>());
+    private final List<Thread> threads = Collections.synchronizedList(new ArrayList<>());
+    private final CountDownLatch done = new CountDownLatch(1);
+
+    @Subscribe
+    public void onEvent(Object event) throws InterruptedException {
+      threads.add(Thread.currentThread());
+      if (event instanceof Blocking blocking) {
+        blocking.started().countDown();
+        assertTrue(blocking.release().await(10, TimeUnit.SECONDS));
+      }
+      if (event instanceof Done) {
+        done.countDown();
+      } else {
+        events.add(event);
+      }
+    }
+
+    private void awaitDone() throws InterruptedException {
+      assertTrue(done.await(10, TimeUnit.SECONDS));
+    }
+  }
+
+  private static class Failing {
+    private final AtomicInteger calls = new AtomicInteger();
+    private final CountDownLatch done = new CountDownLatch(1);
+
+    @Subscribe
+    public void onEvent(String event) {
+      calls.incrementAndGet();
+      throw new IllegalStateException(event);
+    }
+
+    @Subscribe
+    public void onDone(Done event) {
+      done.countDown();
+    }
+  }
+
+  @Test
+  @DisplayName("Test that events are delivered in order on a background thread")
+  public void testOrder() throws InterruptedException {
+    var dispatcher = new BackgroundEventDispatcher();
+    var recorder = new Recorder();
+    dispatcher.register(recorder);
+
+    var expected = new ArrayList<Object>();
+    for (int i = 0; i < 1000; i++) {
+      expected.add("event " + i);
+      dispatcher.post("event " + i, System.nanoTime());
+    }
+    dispatcher.post(new Done(), System.nanoTime());
+    recorder.awaitDone();
+
+    assertEquals(expected, recorder.events);
+    assertEquals(1, recorder.threads.stream().distinct().count());
+    assertNotSame(Thread.currentThread(), recorder.threads.get(0));
+  }
+
+  @Test
+  @DisplayName("Test that a failing subscriber does not stop the delivery of events")
+  public void testExceptionIsolation() throws InterruptedException {
+    var dispatcher = new BackgroundEventDispatcher();
+    var failing = new Failing();
+    var recorder = new Recorder();
+    dispatcher.register(failing);
+    dispatcher.register(recorder);
+
+    dispatcher.post("a", System.nanoTime());
+    dispatcher.post("b", System.nanoTime());
+    dispatcher.post(new Done(), System.nanoTime());
+    recorder.awaitDone();
+
+    assertTrue(failing.done.await(10, TimeUnit.SECONDS));
+
+    assertEquals(List.of("a", "b"), recorder.events);
+    assertEquals(2, failing.calls.get());
+  }
+
+  @Test
+  @DisplayName("Test that waiting events are combined and counted")
+  public void testCoalesce() throws InterruptedException {
+    var dispatcher = new BackgroundEventDispatcher();
+    var recorder = new Recorder();
+    dispatcher.register(recorder);
+
+    var blocking = new Blocking(new CountDownLatch(1), new CountDownLatch(1));
+    dispatcher.post(blocking, System.nanoTime());
+    assertTrue(blocking.started().await(10, TimeUnit.SECONDS));
+    dispatcher.post(new Changed(List.of("a")), System.nanoTime());
+    dispatcher.post(new Changed(List.of("b")), System.nanoTime());
+    blocking.release().countDown();
+    dispatcher.post(new Done(), System.nanoTime());
+    recorder.awaitDone();
+
+    assertEquals(List.of(blocking, new Changed(List.of("a", "b"))), recorder.events);
+    var statistics = dispatcher.getStatistics().getStatistics().get("Changed");
+    assertEquals(1, statistics.dispatched());
+    assertEquals(1, statistics.coalesced());
+  }
+
+  @Test
+  @DisplayName("Test that unregistered subscribers no longer receive events")
+  public void testUnregister() throws InterruptedException {
+    var dispatcher = new BackgroundEventDispatcher();
+    var removed = new Recorder();
+    var recorder = new Recorder();
+    dispatcher.register(removed);
+    dispatcher.register(recorder);
+    dispatcher.unregister(removed);
+
+    dispatcher.post("a", System.nanoTime());
+    dispatcher.post(new Done(), System.nanoTime());
+    recorder.awaitDone();
+
+    assertEquals(List.of("a"), recorder.events);
+    assertTrue(removed.events.isEmpty());
+  }
+}
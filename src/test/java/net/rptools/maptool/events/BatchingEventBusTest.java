@@ -0,0 +1,102 @@
+/*
+ * This software Copyright by the RPTools.net development team, and
+ * licensed under the Affero GPL Version 3 or, at your option, any later
+ * version.
+ *
+ * MapTool Source Code is distributed in the hope that it will be
+ * useful, but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ *
+ * You should have received a copy of the GNU Affero General Public
+ * License * along with this source Code.  If not, please visit
+ * <http://www.gnu.org/licenses/> and specifically the Affero license
+ * text at <http://www.gnu.org/licenses/agpl.html>.
+ */
+package net.rptools.maptool.events;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.google.common.eventbus.Subscribe;
+import java.util.ArrayList;
+import java.util.List;
+import javax.annotation.Nullable;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+public class BatchingEventBusTest {
+  private record Changed(List<String> names) implements CoalescableEvent {
+    @Override
+    public @Nullable Object coalesce(Object next) {
+      if (next instanceof Changed other) {
+        var combined = new ArrayList<>(names);
+        combined.addAll(other.names);
+        return new Changed(combined);
+      }
+      return null;
+    }
+  }
+
+  private record Refreshed(int id) implements CoalescableEvent {}
+
+  private static class Recorder {
+    private final List<Object> events = new ArrayList<>();
+
+    @Subscribe
+    public void onEvent(Object event) {
+      events.add(event);
+    }
+  }
+
+  @Test
+  @DisplayName("Test that events are posted straight away outside a batch")
+  public void testNoBatch() {
+    var bus = new BatchingEventBus();
+    var recorder = new Recorder();
+    bus.register(recorder);
+
+    bus.post(new Changed(List.of("a")));
+    bus.post(new Changed(List.of("b")));
+
+    assertEquals(List.of(new Changed(List.of("a")), new Changed(List.of("b"))), recorder.events);
+  }
+
+  @Test
+  @DisplayName("Test that consecutive events in a batch are combined after it has run")
+  public void testCoalesce() {
+    var bus = new BatchingEventBus();
+    var recorder = new Recorder();
+    bus.register(recorder);
+
+    bus.batch(
+        () -> {
+          bus.post(new Changed(List.of("a")));
+          bus.post(new Changed(List.of("b")));
+          bus.post(new Refreshed(1));
+          bus.post(new Refreshed(1));
+          bus.post(new Refreshed(2));
+          assertTrue(recorder.events.isEmpty());
+        });
+
+    assertEquals(
+        List.of(new Changed(List.of("a", "b")), new Refreshed(1), new Refreshed(2)),
+        recorder.events);
+  }
+
+  @Test
+  @DisplayName("Test that other events are posted in order with the held back events")
+  public void testOrder() {
+    var bus = new BatchingEventBus();
+    var recorder = new Recorder();
+    bus.register(recorder);
+
+    bus.batch(
+        () -> {
+          bus.post(new Changed(List.of("a")));
+          bus.post("other");
+          bus.post(new Changed(List.of("b")));
+        });
+
+    assertEquals(
+        List.of(new Changed(List.of("a")), "other", new Changed(List.of("b"))), recorder.events);
+  }
+}
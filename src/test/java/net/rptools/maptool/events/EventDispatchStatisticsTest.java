@@ -0,0 +1,79 @@
+/*
+ * This software Copyright by the RPTools.net development team, and
+ * licensed under the Affero GPL Version 3 or, at your option, any later
+ * version.
+ *
+ * MapTool Source Code is distributed in the hope that it will be
+ * useful, but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ *
+ * You should have received a copy of the GNU Affero General Public
+ * License * along with this source Code.  If not, please visit
+ * <http://www.gnu.org/licenses/> and specifically the Affero license
+ * text at <http://www.gnu.org/licenses/agpl.html>.
+ */
+package net.rptools.maptool.events;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.concurrent.TimeUnit;
+import net.rptools.maptool.util.metrics.MetricsRegistry;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+public class EventDispatchStatisticsTest {
+  @Test
+  @DisplayName("Test that the latency and counts are recorded per type of event")
+  public void testStatistics() {
+    var statistics = new EventDispatchStatistics();
+    long now = System.nanoTime();
+    statistics.dispatched("a", now - TimeUnit.MILLISECONDS.toNanos(10));
+    statistics.dispatched("b", now - TimeUnit.MILLISECONDS.toNanos(30));
+    statistics.coalesced("c");
+    statistics.dispatched(1, now);
+
+    var strings = statistics.getStatistics().get("String");
+    assertEquals(2, strings.dispatched());
+    assertEquals(1, strings.coalesced());
+    assertTrue(strings.meanMillis() >= 20);
+    assertTrue(strings.maxMillis() >= 30);
+    assertTrue(strings.maxMillis() >= strings.meanMillis());
+
+    var integers = statistics.getStatistics().get("Integer");
+    assertEquals(1, integers.dispatched());
+    assertEquals(0, integers.coalesced());
+  }
+
+  @Test
+  @DisplayName("Test that coalesced events without a dispatch have no latency")
+  public void testCoalescedOnly() {
+    var statistics = new EventDispatchStatistics();
+    statistics.coalesced("a");
+
+    var strings = statistics.getStatistics().get("String");
+    assertEquals(0, strings.dispatched());
+    assertEquals(1, strings.coalesced());
+    assertEquals(0.0, strings.meanMillis());
+  }
+
+  @Test
+  @DisplayName("Test that resetting clears the statistics")
+  public void testReset() {
+    var statistics = new EventDispatchStatistics();
+    statistics.dispatched("a", System.nanoTime());
+    statistics.resetStatistics();
+
+    assertTrue(statistics.getStatistics().isEmpty());
+  }
+
+  @Test
+  @DisplayName("Test that the statistics are published as metrics when given a name")
+  public void testMetrics() {
+    var statistics = new EventDispatchStatistics("test.dispatch");
+    statistics.dispatched("a", System.nanoTime() - TimeUnit.MILLISECONDS.toNanos(10));
+    statistics.coalesced("b");
+
+    assertEquals(1, MetricsRegistry.histogram("test.dispatch.String").snapshot().count());
+    assertEquals(1, MetricsRegistry.counter("test.dispatch.String.coalesced").get());
+  }
+}
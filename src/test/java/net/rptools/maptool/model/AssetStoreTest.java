@@ -0,0 +1,110 @@
+/*
+ * This software Copyright by the RPTools.net development team, and
+ * licensed under the Affero GPL Version 3 or, at your option, any later
+ * version.
+ *
+ * MapTool Source Code is distributed in the hope that it will be
+ * useful, but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ *
+ * You should have received a copy of the GNU Affero General Public
+ * License * along with this source Code.  If not, please visit
+ * <http://www.gnu.org/licenses/> and specifically the Affero license
+ * text at <http://www.gnu.org/licenses/agpl.html>.
+ */
+package net.rptools.maptool.model;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.Arrays;
+import java.util.Set;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+public class AssetStoreTest {
+  private static Asset asset(int fill, int size) {
+    var data = new byte[size];
+    Arrays.fill(data, (byte) fill);
+    return Asset.createDataAssetType("asset" + fill, data);
+  }
+
+  @Test
+  @DisplayName("Test that the least recently used assets are dropped when over budget")
+  public void testEviction() {
+    var store = new AssetStore(250);
+    var a = asset(1, 100);
+    var b = asset(2, 100);
+    var c = asset(3, 100);
+
+    store.add(a, true);
+    store.add(b, true);
+    store.get(a.getMD5Key());
+    store.add(c, true);
+
+    assertTrue(store.contains(a.getMD5Key()));
+    assertFalse(store.contains(b.getMD5Key()));
+    assertTrue(store.contains(c.getMD5Key()));
+    assertEquals(200, store.getSize());
+    assertEquals(Set.of(a.getMD5Key(), b.getMD5Key(), c.getMD5Key()), store.keys());
+  }
+
+  @Test
+  @DisplayName("Test that assets that can not be read again are not dropped")
+  public void testNotReloadable() {
+    var a = asset(1, 100);
+    var b = asset(2, 100);
+    var store = new AssetStore(150);
+
+    store.add(a, false);
+    store.add(b, true);
+
+    assertTrue(store.contains(a.getMD5Key()));
+    assertFalse(store.contains(b.getMD5Key()));
+
+    store.remove(b.getMD5Key());
+    assertEquals(Set.of(a.getMD5Key()), store.keys());
+  }
+
+  @Test
+  @DisplayName("Test that assets are dropped once they have been persisted")
+  public void testSetPersisted() {
+    var a = asset(1, 100);
+    var b = asset(2, 100);
+    var store = new AssetStore(150);
+
+    store.add(a, false);
+    store.add(b, false);
+    assertEquals(200, store.getSize());
+
+    store.setPersisted(a.getMD5Key());
+    assertFalse(store.contains(a.getMD5Key()));
+    assertTrue(store.contains(b.getMD5Key()));
+
+    store.clearPersisted();
+    store.add(a, false);
+    assertTrue(store.contains(a.getMD5Key()));
+    assertTrue(store.contains(b.getMD5Key()));
+  }
+
+  @Test
+  @DisplayName("Test that assets dropped from memory stay readable when the cache is cleared")
+  public void testClearPersistedInMemory() {
+    var a = asset(1, 100);
+    var b = asset(2, 100);
+    var c = asset(3, 100);
+    var store = new AssetStore(150);
+
+    store.add(a, true);
+    store.add(b, true);
+    assertFalse(store.contains(a.getMD5Key()));
+
+    assertEquals(Set.of(a.getMD5Key()), store.clearPersistedInMemory());
+
+    // b can no longer be read again so it is kept, a is still dropped and can be read again.
+    store.add(c, true);
+    assertTrue(store.contains(b.getMD5Key()));
+    assertFalse(store.contains(c.getMD5Key()));
+    assertEquals(Set.of(a.getMD5Key(), b.getMD5Key(), c.getMD5Key()), store.keys());
+    assertEquals(Set.of(a.getMD5Key(), c.getMD5Key()), store.clearPersistedInMemory());
+  }
+}
@@ -0,0 +1,135 @@
+/*
+ * This software Copyright by the RPTools.net development team, and
+ * licensed under the Affero GPL Version 3 or, at your option, any later
+ * version.
+ *
+ * MapTool Source Code is distributed in the hope that it will be
+ * useful, but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ *
+ * You should have received a copy of the GNU Affero General Public
+ * License * along with this source Code.  If not, please visit
+ * <http://www.gnu.org/licenses/> and specifically the Affero license
+ * text at <http://www.gnu.org/licenses/agpl.html>.
+ */
+package net.rptools.maptool.model;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.List;
+import java.util.Set;
+import net.rptools.maptool.server.proto.TokenDto;
+import net.rptools.maptool.server.proto.ZoneDto;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+class CampaignSnapshotterTest {
+
+  private static Campaign createCampaign() {
+    var campaign = new Campaign();
+    for (int z = 0; z < 2; z++) {
+      var zone = new Zone();
+      zone.setName("Map " + z);
+      for (int t = 0; t < 3; t++) {
+        var token = new Token();
+        token.setName("Token " + z + "." + t);
+        token.setX(t * 50);
+        zone.putToken(token);
+      }
+      campaign.putZone(zone);
+    }
+    return campaign;
+  }
+
+  private static ZoneDto zoneDto(CampaignSnapshot snapshot, Zone zone) {
+    return snapshot.zones().stream()
+        .filter(dto -> dto.getId().equals(zone.getId().toString()))
+        .findFirst()
+        .orElseThrow();
+  }
+
+  private static TokenDto tokenDto(ZoneDto zoneDto, Token token) {
+    return zoneDto.getTokensList().stream()
+        .filter(dto -> dto.getId().equals(token.getId().toString()))
+        .findFirst()
+        .orElseThrow();
+  }
+
+  private static void assertSnapshotOf(Zone zone, ZoneDto dto) {
+    assertEquals(zone.toDtoWithoutTokens(), dto.toBuilder().clearTokens().build());
+    assertEquals(Set.copyOf(zone.toDto().getTokensList()), Set.copyOf(dto.getTokensList()));
+  }
+
+  @Test
+  @DisplayName("A snapshot holds the same zones and tokens as converting the campaign")
+  void snapshotMatchesCampaign() {
+    var campaign = createCampaign();
+    var snapshotter = new CampaignSnapshotter();
+    snapshotter.snapshot(campaign);
+    var token = campaign.getZones().get(0).getAllTokens().get(1);
+    token.setName("Renamed");
+
+    var snapshot = snapshotter.snapshot(campaign);
+
+    assertEquals(campaign.toDtoWithoutZones(), snapshot.campaign());
+    assertEquals(campaign.getAllAssetIds(), snapshot.assetIds());
+    List<Zone> zones = campaign.getZones();
+    assertEquals(zones.size(), snapshot.zones().size());
+    for (Zone zone : zones) {
+      assertSnapshotOf(zone, zoneDto(snapshot, zone));
+    }
+  }
+
+  @Test
+  @DisplayName("An unchanged zone and its tokens are reused from the last snapshot")
+  void unchangedZoneIsReused() {
+    var campaign = createCampaign();
+    var zone = campaign.getZones().get(0);
+    var snapshotter = new CampaignSnapshotter();
+
+    var first = snapshotter.snapshot(campaign);
+    var second = snapshotter.snapshot(campaign);
+
+    assertSame(zoneDto(first, zone), zoneDto(second, zone));
+  }
+
+  @Test
+  @DisplayName("Only the changed token is converted again")
+  void changedTokenIsConverted() {
+    var campaign = createCampaign();
+    var changedZone = campaign.getZones().get(0);
+    var otherZone = campaign.getZones().get(1);
+    var changed = changedZone.getAllTokens().get(0);
+    var unchanged = changedZone.getAllTokens().get(1);
+    var snapshotter = new CampaignSnapshotter();
+    var first = snapshotter.snapshot(campaign);
+
+    changed.setX(1000);
+    var second = snapshotter.snapshot(campaign);
+
+    assertSame(zoneDto(first, otherZone), zoneDto(second, otherZone));
+    assertNotSame(zoneDto(first, changedZone), zoneDto(second, changedZone));
+    assertSame(
+        tokenDto(zoneDto(first, changedZone), unchanged),
+        tokenDto(zoneDto(second, changedZone), unchanged));
+    assertEquals(1000, tokenDto(zoneDto(second, changedZone), changed).getX());
+  }
+
+  @Test
+  @DisplayName("Added and removed tokens and zone changes are picked up")
+  void zoneChangesAreConverted() {
+    var campaign = createCampaign();
+    var zone = campaign.getZones().get(0);
+    var snapshotter = new CampaignSnapshotter();
+    snapshotter.snapshot(campaign);
+
+    zone.removeToken(zone.getAllTokens().get(0).getId());
+    assertSnapshotOf(zone, zoneDto(snapshotter.snapshot(campaign), zone));
+
+    zone.putToken(new Token());
+    assertSnapshotOf(zone, zoneDto(snapshotter.snapshot(campaign), zone));
+
+    zone.setName("Renamed");
+    assertEquals("Renamed", zoneDto(snapshotter.snapshot(campaign), zone).getName());
+  }
+}
@@ -0,0 +1,109 @@
+/*
+ * This software Copyright by the RPTools.net development team, and
+ * licensed under the Affero GPL Version 3 or, at your option, any later
+ * version.
+ *
+ * MapTool Source Code is distributed in the hope that it will be
+ * useful, but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ *
+ * You should have received a copy of the GNU Affero General Public
+ * License * along with this source Code.  If not, please visit
+ * <http://www.gnu.org/licenses/> and specifically the Affero license
+ * text at <http://www.gnu.org/licenses/agpl.html>.
+ */
+package net.rptools.maptool.model;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.awt.Rectangle;
+import java.awt.geom.Area;
+import java.awt.geom.Ellipse2D;
+import java.io.IOException;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+public class ExposureMaskTest {
+  @Test
+  @DisplayName("Test that a new mask is empty")
+  public void testNewMask() {
+    var mask = new ExposureMask(10);
+
+    assertTrue(mask.isEmpty());
+    assertTrue(mask.toArea().isEmpty());
+    assertFalse(mask.contains(5, 5));
+  }
+
+  @Test
+  @DisplayName("Test that adding an area exposes the cells it covers")
+  public void testAdd() {
+    var mask = new ExposureMask(10);
+    mask.add(new Area(new Rectangle(0, 0, 100, 50)));
+
+    assertTrue(mask.contains(5, 5));
+    assertTrue(mask.contains(95, 45));
+    assertFalse(mask.contains(105, 5));
+    assertFalse(mask.contains(5, 55));
+    assertTrue(mask.getBounds().contains(mask.toArea().getBounds()));
+  }
+
+  @Test
+  @DisplayName("Test that subtracting an area hides the cells it covers")
+  public void testSubtract() {
+    var mask = new ExposureMask(10);
+    mask.add(new Area(new Rectangle(-200, -200, 400, 400)));
+    mask.subtract(new Area(new Rectangle(-50, -50, 100, 100)));
+
+    assertTrue(mask.contains(-150, -150));
+    assertFalse(mask.contains(0, 0));
+    assertTrue(mask.contains(75, 0));
+  }
+
+  @Test
+  @DisplayName("Test that the area of a mask covers the same cells as the mask")
+  public void testToArea() {
+    var mask = new ExposureMask(5);
+    mask.add(new Area(new Ellipse2D.Double(-300, 100, 700, 400)));
+    var area = mask.toArea();
+
+    for (int x = -400; x < 500; x += 5) {
+      for (int y = 0; y < 600; y += 5) {
+        assertEquals(mask.contains(x + 2.5, y + 2.5), area.contains(x + 2.5, y + 2.5));
+      }
+    }
+  }
+
+  @Test
+  @DisplayName("Test that a mask survives a round trip through bytes")
+  public void testBytesRoundTrip() throws IOException {
+    var mask = new ExposureMask(7);
+    mask.add(new Area(new Ellipse2D.Double(-1000, -500, 3000, 800)));
+    mask.subtract(new Area(new Rectangle(0, 0, 64, 64)));
+
+    var copy = ExposureMask.fromBytes(mask.toBytes());
+
+    assertEquals(mask.getResolution(), copy.getResolution());
+    assertEquals(mask.getTileCount(), copy.getTileCount());
+    assertTrue(new Area(mask.toArea()).equals(copy.toArea()));
+  }
+
+  @Test
+  @DisplayName("Test that every change to a mask changes its modification count")
+  public void testModificationCount() {
+    var mask = new ExposureMask(10);
+    var other = new ExposureMask(10);
+    other.add(new Area(new Rectangle(0, 0, 10, 10)));
+
+    long count = mask.getModificationCount();
+    mask.add(new Area(new Rectangle(0, 0, 100, 100)));
+    assertNotEquals(count, count = mask.getModificationCount());
+    mask.subtract(new Area(new Rectangle(0, 0, 50, 50)));
+    assertNotEquals(count, count = mask.getModificationCount());
+    mask.add(other);
+    assertNotEquals(count, count = mask.getModificationCount());
+    mask.subtract(other);
+    assertNotEquals(count, count = mask.getModificationCount());
+    mask.clear();
+    assertNotEquals(count, mask.getModificationCount());
+  }
+}
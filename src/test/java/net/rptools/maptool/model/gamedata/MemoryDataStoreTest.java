@@ -18,10 +18,13 @@
 
 import com.google.gson.JsonArray;
 import com.google.gson.JsonObject;
+import java.util.ArrayList;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import net.rptools.maptool.model.gamedata.data.DataType;
 import net.rptools.maptool.model.gamedata.data.DataValueFactory;
 import org.junit.jupiter.api.BeforeEach;
@@ -1123,4 +1126,46 @@ void emptyValueCanBeUpdated() throws ExecutionException, InterruptedException {
         "1",
         mdsWithUndefined.getProperty(PROPERTY_TYPE, NAMESPACE, PROPERTY_NAME).get().asString());
   }
+
+  @Test
+  void operationsCompleteOnCallingThread() {
+    var set = mds1.setLongProperty("testType", "testNamespace", "sync", 1);
+    assertTrue(set.isDone());
+    assertTrue(mds1.getProperty("testType", "testNamespace", "sync").isDone());
+
+    var missing = mds1.setLongProperty("testType", "missingNamespace", "sync", 1);
+    assertTrue(missing.isCompletedExceptionally());
+    var e = assertThrows(ExecutionException.class, missing::get);
+    assertInstanceOf(InvalidDataOperation.class, e.getCause());
+  }
+
+  @Test
+  void concurrentSetsKeepTheFirstType() throws Exception {
+    var executor = Executors.newFixedThreadPool(4);
+    try {
+      var futures = new ArrayList<Future<?>>();
+      for (int i = 0; i < 1000; i++) {
+        int value = i;
+        futures.add(
+            executor.submit(
+                () -> {
+                  if (value % 2 == 0) {
+                    mds1.setLongProperty("testType", "testNamespace", "shared", value).join();
+                  } else {
+                    mds1.setStringProperty("testType", "testNamespace", "shared", "1").join();
+                  }
+                }));
+      }
+      for (var future : futures) {
+        future.get();
+      }
+    } finally {
+      executor.shutdown();
+    }
+
+    var type = mds1.getPropertyDataType("testType", "testNamespace", "shared").get();
+    assertTrue(type == DataType.LONG || type == DataType.STRING);
+    assertEquals(
+        type, mds1.getProperty("testType", "testNamespace", "shared").get().getDataType());
+  }
 }
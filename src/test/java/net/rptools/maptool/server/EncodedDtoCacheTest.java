@@ -0,0 +1,111 @@
+/*
+ * This software Copyright by the RPTools.net development team, and
+ * licensed under the Affero GPL Version 3 or, at your option, any later
+ * version.
+ *
+ * MapTool Source Code is distributed in the hope that it will be
+ * useful, but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ *
+ * You should have received a copy of the GNU Affero General Public
+ * License * along with this source Code.  If not, please visit
+ * <http://www.gnu.org/licenses/> and specifically the Affero license
+ * text at <http://www.gnu.org/licenses/agpl.html>.
+ */
+package net.rptools.maptool.server;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.google.protobuf.ByteString;
+import com.google.protobuf.InvalidProtocolBufferException;
+import java.awt.Color;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+import net.rptools.maptool.model.Token;
+import net.rptools.maptool.model.Zone;
+import net.rptools.maptool.server.proto.Message;
+import net.rptools.maptool.server.proto.PutTokenMsg;
+import net.rptools.maptool.server.proto.ZoneDto;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+class EncodedDtoCacheTest {
+
+  /** A change of each kind a token can go through, all of them must show up in its DTO. */
+  private static final Map<String, Consumer<Token>> MUTATIONS =
+      Map.ofEntries(
+          Map.entry("location", token -> token.setX(token.getX() + 50)),
+          Map.entry("name", token -> token.setName(token.getName() + "!")),
+          Map.entry("property", token -> token.setProperty("HP", "7")),
+          Map.entry("state", token -> token.setState("Dead", Boolean.TRUE)),
+          Map.entry("owner", token -> token.addOwner("player")),
+          Map.entry("speech", token -> token.setSpeech("greeting", "Hello")),
+          Map.entry("notes", token -> token.setNotes("Some notes")),
+          Map.entry("gm notes", token -> token.setGMNotes("Secret notes")),
+          Map.entry("label", token -> token.setLabel("Boss")),
+          Map.entry("halo", token -> token.setHaloColor(Color.RED)),
+          Map.entry("facing", token -> token.setFacing(90)),
+          Map.entry("visibility", token -> token.setVisible(!token.isVisible())),
+          Map.entry("snap to grid", token -> token.setSnapToGrid(!token.isSnapToGrid())),
+          Map.entry("size", token -> token.setSizeScale(2)),
+          Map.entry("impersonation", token -> token.setBeingImpersonated(true)));
+
+  private static void assertEncodes(Zone zone, ByteString encoded)
+      throws InvalidProtocolBufferException {
+    var dto = ZoneDto.parseFrom(encoded);
+    assertEquals(zone.toDtoWithoutTokens(), dto.toBuilder().clearTokens().build());
+    assertEquals(Set.copyOf(zone.toDto().getTokensList()), Set.copyOf(dto.getTokensList()));
+  }
+
+  @Test
+  @DisplayName("The cached encodings match the DTOs after every kind of token change")
+  void encodingFollowsTokenChanges() throws InvalidProtocolBufferException {
+    var zone = new Zone();
+    var token = new Token();
+    token.setName("Goblin");
+    zone.putToken(token);
+    var other = new Token();
+    zone.putToken(other);
+    var cache = new EncodedDtoCache();
+
+    for (var mutation : MUTATIONS.entrySet()) {
+      cache.getZone(zone);
+      var before = token.toDto();
+
+      mutation.getValue().accept(token);
+
+      assertNotEquals(before, token.toDto(), mutation.getKey());
+      assertArrayEquals(
+          token.toDto().toByteArray(),
+          cache.getToken(zone, token).toByteArray(),
+          mutation.getKey());
+      assertArrayEquals(
+          other.toDto().toByteArray(),
+          cache.getToken(zone, other).toByteArray(),
+          mutation.getKey());
+      assertEncodes(zone, cache.getZone(zone));
+    }
+  }
+
+  @Test
+  @DisplayName("An encoded token message carries the token, its version and the server version")
+  void putTokenMessageHasServerVersion() throws InvalidProtocolBufferException {
+    var zone = new Zone();
+    var token = new Token();
+    token.setName("Goblin");
+    zone.putToken(token);
+    var cache = new EncodedDtoCache();
+    var putTokenMsg =
+        PutTokenMsg.newBuilder().setZoneGuid(zone.getId().toString()).setVersion(3).build();
+
+    var msg =
+        Message.parseFrom(
+            EncodedDtoCache.putTokenMessage(putTokenMsg, cache.getToken(zone, token), 42));
+
+    assertEquals(42, msg.getServerVersion());
+    assertEquals(3, msg.getPutTokenMsg().getVersion());
+    assertEquals(zone.getId().toString(), msg.getPutTokenMsg().getZoneGuid());
+    assertEquals(token.toDto(), msg.getPutTokenMsg().getToken());
+  }
+}
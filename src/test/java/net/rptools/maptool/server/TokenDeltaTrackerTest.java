@@ -0,0 +1,130 @@
+/*
+ * This software Copyright by the RPTools.net development team, and
+ * licensed under the Affero GPL Version 3 or, at your option, any later
+ * version.
+ *
+ * MapTool Source Code is distributed in the hope that it will be
+ * useful, but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ *
+ * You should have received a copy of the GNU Affero General Public
+ * License * along with this source Code.  If not, please visit
+ * <http://www.gnu.org/licenses/> and specifically the Affero license
+ * text at <http://www.gnu.org/licenses/agpl.html>.
+ */
+package net.rptools.maptool.server;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.google.protobuf.Int32Value;
+import java.util.List;
+import net.rptools.maptool.model.GUID;
+import net.rptools.maptool.server.proto.TokenDto;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+public class TokenDeltaTrackerTest {
+  private static TokenDto baseToken() {
+    return TokenDto.newBuilder()
+        .setId(new GUID().toString())
+        .setName("Goblin")
+        .setX(50)
+        .setY(100)
+        .setFacing(Int32Value.of(90))
+        .addOwnerList("gm")
+        .putProperties("HP", "7")
+        .putProperties("AC", "15")
+        .putState("Dead", TokenDto.State.newBuilder().setBoolValue(false).build())
+        .build();
+  }
+
+  @Test
+  @DisplayName("Test that identical tokens have no changes")
+  public void testNoChanges() {
+    var token = baseToken();
+
+    assertNull(TokenDeltaTracker.diff(token, token.toBuilder().build()));
+  }
+
+  @Test
+  @DisplayName("Test that a patch only contains the changed fields and properties")
+  public void testPatchContainsOnlyChanges() {
+    var from = baseToken();
+    var to = from.toBuilder().setX(60).putProperties("HP", "3").build();
+
+    var patch = TokenDeltaTracker.diff(from, to).build();
+
+    assertEquals(1, patch.getChangedFieldsCount());
+    assertEquals(TokenDto.X_FIELD_NUMBER, patch.getChangedFields(0));
+    assertEquals(1, patch.getChanges().getPropertiesCount());
+    assertEquals("3", patch.getChanges().getPropertiesOrThrow("HP"));
+    assertEquals("", patch.getChanges().getName());
+  }
+
+  @Test
+  @DisplayName("Test that applying a patch results in the new token")
+  public void testApply() {
+    var from = baseToken();
+    var to =
+        from.toBuilder()
+            .setName("Hobgoblin")
+            .setX(0)
+            .clearFacing()
+            .addOwnerList("player")
+            .removeProperties("AC")
+            .putProperties("Speed", "30")
+            .putState("Dead", TokenDto.State.newBuilder().setBoolValue(true).build())
+            .build();
+
+    var patch = TokenDeltaTracker.diff(from, to).build();
+
+    assertEquals(to, TokenDeltaTracker.apply(from, patch));
+  }
+
+  @Test
+  @DisplayName("Test that a patch does not overwrite other changes to the token")
+  public void testApplyToChangedToken() {
+    var from = baseToken();
+    var patch = TokenDeltaTracker.diff(from, from.toBuilder().putProperties("HP", "1").build());
+    var other = from.toBuilder().setName("Renamed").putProperties("AC", "12").build();
+
+    var result = TokenDeltaTracker.apply(other, patch.build());
+
+    assertEquals("Renamed", result.getName());
+    assertEquals("12", result.getPropertiesOrThrow("AC"));
+    assertEquals("1", result.getPropertiesOrThrow("HP"));
+  }
+
+  @Test
+  @DisplayName("Test that a patch is only accepted against the version it was based on")
+  public void testAdvance() {
+    var tracker = new TokenDeltaTracker();
+    var tokenId = new GUID();
+
+    assertFalse(tracker.advance(tokenId, 0, 1));
+    assertEquals(1, tracker.nextVersion(tokenId, 1));
+    assertTrue(tracker.advance(tokenId, 1, 2));
+    assertFalse(tracker.advance(tokenId, 1, 2));
+    assertEquals(3, tracker.nextVersion(tokenId, 2));
+  }
+
+  @Test
+  @DisplayName("Test that removed tokens are no longer tracked")
+  public void testRemoveAll() {
+    var tracker = new TokenDeltaTracker();
+    var removed = baseToken();
+    var kept = baseToken();
+    var zoneId = new GUID();
+    tracker.createUpdate(zoneId, removed);
+    tracker.createUpdate(zoneId, kept);
+    var removedId = GUID.valueOf(removed.getId());
+    var keptId = GUID.valueOf(kept.getId());
+
+    tracker.removeAll(List.of(removedId));
+
+    assertEquals(0, tracker.getVersion(removedId));
+    assertNull(tracker.getState(removedId, 1));
+    assertEquals(1, tracker.getVersion(keptId));
+    assertNotNull(tracker.getState(keptId, 1));
+  }
+}
@@ -0,0 +1,154 @@
+/*
+ * This software Copyright by the RPTools.net development team, and
+ * licensed under the Affero GPL Version 3 or, at your option, any later
+ * version.
+ *
+ * MapTool Source Code is distributed in the hope that it will be
+ * useful, but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ *
+ * You should have received a copy of the GNU Affero General Public
+ * License * along with this source Code.  If not, please visit
+ * <http://www.gnu.org/licenses/> and specifically the Affero license
+ * text at <http://www.gnu.org/licenses/agpl.html>.
+ */
+package net.rptools.maptool.util;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+class ImageDecodeQueueTest {
+  private static final long SMALL = 100 * 100;
+  private static final long LARGE = ImageDecodeQueue.LARGE_IMAGE_PIXELS + 1;
+  private static final Runnable NOTHING = () -> {};
+
+  /** Takes the next decode of a queue without worker threads and finishes it at once. */
+  private static String next(ImageDecodeQueue<String> queue) throws InterruptedException {
+    var task = queue.take();
+    queue.finish(task);
+    return task.getKey();
+  }
+
+  @Test
+  @DisplayName("Urgent decodes first, then small images before large, then in queued order")
+  void testPrioritisation() throws Exception {
+    var queue = new ImageDecodeQueue<String>(0, Long.MAX_VALUE, "test-%d");
+    queue.submit("large", LARGE, false, NOTHING);
+    queue.submit("small1", SMALL, false, NOTHING);
+    queue.submit("small2", SMALL, false, NOTHING);
+    queue.submit("urgentLarge", LARGE, true, NOTHING);
+    queue.submit("urgentSmall", SMALL, true, NOTHING);
+
+    // Queuing again doesn't add a second decode, but moves it ahead if it became urgent.
+    assertFalse(queue.submit("small2", SMALL, true, NOTHING));
+    assertEquals(5, queue.getQueueDepth());
+
+    List<String> order = new ArrayList<>();
+    for (int i = 0; i < 5; i++) {
+      order.add(next(queue));
+    }
+    assertEquals(List.of("small2", "urgentSmall", "urgentLarge", "small1", "large"), order);
+    assertEquals(0, queue.getQueueDepth());
+  }
+
+  @Test
+  @DisplayName("Reprioritising cancels stale decodes and updates the urgency of the rest")
+  void testReprioritize() throws Exception {
+    var queue = new ImageDecodeQueue<String>(0, Long.MAX_VALUE, "test-%d");
+    queue.submit("a", SMALL, true, NOTHING);
+    queue.submit("b", SMALL, false, NOTHING);
+    queue.submit("c", SMALL, false, NOTHING);
+    queue.submit("d", SMALL, true, NOTHING);
+
+    List<String> cancelled = queue.reprioritize(Set.of("c")::contains, Set.of("a", "d")::contains);
+
+    assertEquals(Set.of("a", "d"), Set.copyOf(cancelled));
+    assertEquals(2, queue.getQueueDepth());
+    assertEquals("c", next(queue));
+    assertEquals("b", next(queue));
+
+    // A cancelled decode is no longer pending so it can be queued again.
+    assertTrue(queue.submit("a", SMALL, false, NOTHING));
+  }
+
+  @Test
+  @DisplayName("Running decodes are not cancelled and stay pending until they finish")
+  void testReprioritizeRunning() throws Exception {
+    var queue = new ImageDecodeQueue<String>(0, Long.MAX_VALUE, "test-%d");
+    queue.submit("a", SMALL, false, NOTHING);
+    var running = queue.take();
+
+    assertEquals(List.of(), queue.reprioritize(key -> false, key -> true));
+    assertEquals(1, queue.getActiveCount());
+    assertFalse(queue.submit("a", SMALL, false, NOTHING));
+
+    queue.finish(running);
+    assertEquals(0, queue.getActiveCount());
+    assertTrue(queue.submit("a", SMALL, false, NOTHING));
+  }
+
+  @Test
+  @DisplayName("Decodes only start while they fit in the pixel budget")
+  void testPixelBudget() throws Exception {
+    var queue = new ImageDecodeQueue<String>(0, 1000, "test-%d");
+    queue.submit("first", 600, false, NOTHING);
+    queue.submit("second", 600, false, NOTHING);
+    queue.submit("third", 300, false, NOTHING);
+
+    var first = queue.take();
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+    try {
+      // The second decode doesn't fit next to the first, and the third doesn't overtake it.
+      Future<ImageDecodeQueue.Task<String>> second = executor.submit(queue::take);
+      assertThrows(TimeoutException.class, () -> second.get(200, TimeUnit.MILLISECONDS));
+      assertEquals(2, queue.getQueueDepth());
+
+      queue.finish(first);
+      assertEquals("second", second.get(10, TimeUnit.SECONDS).getKey());
+      assertEquals("third", queue.take().getKey());
+      assertEquals(2, queue.getActiveCount());
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  @Test
+  @DisplayName("An image larger than the pixel budget is decoded when nothing else is")
+  void testLargerThanBudget() throws Exception {
+    var queue = new ImageDecodeQueue<String>(0, 1000, "test-%d");
+    queue.submit("huge", 5000, false, NOTHING);
+    assertEquals("huge", next(queue));
+  }
+
+  @Test
+  @DisplayName("The worker threads run the queued decodes")
+  void testWorkers() throws Exception {
+    var queue = new ImageDecodeQueue<String>(2, Long.MAX_VALUE, "test-%d");
+    var decoded = Collections.synchronizedList(new ArrayList<String>());
+    var done = new CountDownLatch(3);
+    for (String key : List.of("a", "b", "c")) {
+      queue.submit(
+          key,
+          SMALL,
+          false,
+          () -> {
+            decoded.add(key);
+            done.countDown();
+          });
+    }
+    assertTrue(done.await(10, TimeUnit.SECONDS));
+    assertEquals(Set.of("a", "b", "c"), Set.copyOf(decoded));
+  }
+}
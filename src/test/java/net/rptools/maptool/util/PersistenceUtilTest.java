@@ -0,0 +1,119 @@
+/*
+ * This software Copyright by the RPTools.net development team, and
+ * licensed under the Affero GPL Version 3 or, at your option, any later
+ * version.
+ *
+ * MapTool Source Code is distributed in the hope that it will be
+ * useful, but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ *
+ * You should have received a copy of the GNU Affero General Public
+ * License * along with this source Code.  If not, please visit
+ * <http://www.gnu.org/licenses/> and specifically the Affero license
+ * text at <http://www.gnu.org/licenses/agpl.html>.
+ */
+package net.rptools.maptool.util;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.List;
+import net.rptools.lib.io.PackedFile;
+import net.rptools.maptool.model.Campaign;
+import net.rptools.maptool.model.Token;
+import net.rptools.maptool.model.Zone;
+import net.rptools.maptool.util.PersistenceUtil.PersistedCampaign;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class PersistenceUtilTest {
+
+  private static Campaign createCampaign() {
+    var campaign = new Campaign();
+    campaign.setName("Round trip");
+    for (int z = 0; z < 3; z++) {
+      var zone = new Zone();
+      zone.setName("Map " + z);
+      for (int t = 0; t < 5; t++) {
+        var token = new Token();
+        token.setName("Token " + z + "." + t);
+        token.setX(t * 50);
+        token.setY(z * 50);
+        token.setProperty("HP", Integer.toString(10 + t));
+        zone.putToken(token);
+      }
+      campaign.putZone(zone);
+    }
+    return campaign;
+  }
+
+  private static PersistedCampaign saveAndLoad(Campaign campaign, File file, boolean legacy)
+      throws IOException {
+    var persistedCampaign = new PersistedCampaign();
+    persistedCampaign.campaign = campaign;
+    try (var pakFile = new PackedFile(file)) {
+      PersistenceUtil.setCampaignContent(pakFile, persistedCampaign, null, legacy);
+      pakFile.save();
+    }
+    try (var pakFile = new PackedFile(file)) {
+      assertEquals(
+          PersistenceUtil.CAMPAIGN_VERSION,
+          pakFile.getProperty(PersistenceUtil.PROP_CAMPAIGN_VERSION));
+      assertEquals(legacy, !pakFile.hasFile(CampaignProtobufFormat.CAMPAIGN_FILE));
+    }
+    var loaded = PersistenceUtil.loadCampaign(file);
+    assertNotNull(loaded);
+    return loaded;
+  }
+
+  private static List<Zone> sortedZones(Campaign campaign) {
+    return campaign.getZones().stream().sorted(Comparator.comparing(Zone::getName)).toList();
+  }
+
+  private static void assertSameCampaign(Campaign expected, Campaign actual) {
+    assertEquals(expected.getName(), actual.getName());
+    assertEquals(expected.getTokenTypeMap().keySet(), actual.getTokenTypeMap().keySet());
+    var expectedZones = sortedZones(expected);
+    var actualZones = sortedZones(actual);
+    assertEquals(expectedZones.size(), actualZones.size());
+    for (int i = 0; i < expectedZones.size(); i++) {
+      var expectedZone = expectedZones.get(i);
+      var actualZone = actualZones.get(i);
+      assertEquals(expectedZone.getId(), actualZone.getId());
+      assertEquals(expectedZone.getName(), actualZone.getName());
+      assertEquals(expectedZone.getAllTokens().size(), actualZone.getAllTokens().size());
+      for (Token token : expectedZone.getAllTokens()) {
+        var loadedToken = actualZone.getToken(token.getId());
+        assertNotNull(loadedToken, token.getName());
+        assertEquals(token.getName(), loadedToken.getName());
+        assertEquals(token.getX(), loadedToken.getX());
+        assertEquals(token.getY(), loadedToken.getY());
+        assertEquals(token.getProperty("HP"), loadedToken.getProperty("HP"));
+      }
+    }
+  }
+
+  @Test
+  @DisplayName("A campaign saved in the protobuf format loads with the same zones and tokens")
+  void protobufRoundTrip(@TempDir Path dir) throws IOException {
+    var campaign = createCampaign();
+
+    var loaded = saveAndLoad(campaign, dir.resolve("protobuf.cmpgn").toFile(), false);
+
+    assertSameCampaign(campaign, loaded.campaign);
+  }
+
+  @Test
+  @DisplayName("A campaign saved in the legacy format loads through the XStream fallback")
+  void legacyRoundTrip(@TempDir Path dir) throws IOException {
+    var campaign = createCampaign();
+
+    var loaded = saveAndLoad(campaign, dir.resolve("legacy.cmpgn").toFile(), true);
+
+    assertSameCampaign(campaign, loaded.campaign);
+  }
+}
@@ -0,0 +1,41 @@
+/*
+ * This software Copyright by the RPTools.net development team, and
+ * licensed under the Affero GPL Version 3 or, at your option, any later
+ * version.
+ *
+ * MapTool Source Code is distributed in the hope that it will be
+ * useful, but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ *
+ * You should have received a copy of the GNU Affero General Public
+ * License * along with this source Code.  If not, please visit
+ * <http://www.gnu.org/licenses/> and specifically the Affero license
+ * text at <http://www.gnu.org/licenses/agpl.html>.
+ */
+package net.rptools.maptool.util.metrics;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+class CounterTest {
+
+  @Test
+  @DisplayName("A counter of a running total counts from the total when it was last reset")
+  void runningTotalIsReset() {
+    var total = new AtomicLong(5);
+    var counter = new Counter("test", total::get);
+    assertEquals(5, counter.get());
+
+    total.addAndGet(3);
+    assertEquals(8, counter.get());
+
+    counter.reset();
+    assertEquals(0, counter.get());
+    total.addAndGet(2);
+    counter.increment();
+    assertEquals(3, counter.get());
+  }
+}
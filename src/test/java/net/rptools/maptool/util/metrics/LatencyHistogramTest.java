@@ -0,0 +1,65 @@
+/*
+ * This software Copyright by the RPTools.net development team, and
+ * licensed under the Affero GPL Version 3 or, at your option, any later
+ * version.
+ *
+ * MapTool Source Code is distributed in the hope that it will be
+ * useful, but WITHOUT ANY WARRANTY; without even the implied warranty
+ * of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.
+ *
+ * You should have received a copy of the GNU Affero General Public
+ * License * along with this source Code.  If not, please visit
+ * <http://www.gnu.org/licenses/> and specifically the Affero license
+ * text at <http://www.gnu.org/licenses/agpl.html>.
+ */
+package net.rptools.maptool.util.metrics;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+class LatencyHistogramTest {
+
+  @Test
+  @DisplayName("Buckets are contiguous and each value falls within its bucket")
+  void bucketsAreContiguous() {
+    long previousUpperBound = -1;
+    for (int i = 0; i < 400; i++) {
+      long upperBound = LatencyHistogram.bucketUpperBound(i);
+      assertEquals(i, LatencyHistogram.bucketIndex(previousUpperBound + 1), "lower bound of " + i);
+      assertEquals(i, LatencyHistogram.bucketIndex(upperBound), "upper bound of " + i);
+      previousUpperBound = upperBound;
+    }
+    assertTrue(LatencyHistogram.bucketIndex(Long.MAX_VALUE) < 488);
+  }
+
+  @Test
+  @DisplayName("Percentiles are within the bucket precision")
+  void percentilesAreAccurate() {
+    var histogram = new LatencyHistogram("test");
+    for (int millis = 1; millis <= 100; millis++) {
+      histogram.record(millis * 1_000_000L);
+    }
+
+    var snapshot = histogram.snapshot();
+    assertEquals(100, snapshot.count());
+    assertEquals(50.5, snapshot.meanMillis(), 0.001);
+    assertEquals(50, snapshot.p50Millis(), 50 * 0.125);
+    assertEquals(90, snapshot.p90Millis(), 90 * 0.125);
+    assertEquals(99, snapshot.p99Millis(), 99 * 0.125);
+    assertEquals(100, snapshot.maxMillis(), 0.001);
+  }
+
+  @Test
+  @DisplayName("Reset clears recorded values")
+  void resetClears() {
+    var histogram = new LatencyHistogram("test");
+    histogram.record(5_000_000L);
+    histogram.reset();
+
+    var snapshot = histogram.snapshot();
+    assertEquals(0, snapshot.count());
+    assertEquals(0, snapshot.maxMillis());
+  }
+}